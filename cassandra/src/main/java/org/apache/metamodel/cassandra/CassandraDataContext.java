@@ -18,13 +18,16 @@
  */
 package org.apache.metamodel.cassandra;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
 import org.apache.metamodel.DataContext;
 import org.apache.metamodel.MetaModelException;
+import org.apache.metamodel.MetaModelHelper;
 import org.apache.metamodel.QueryPostprocessDataContext;
 import org.apache.metamodel.data.DataSet;
 import org.apache.metamodel.data.SimpleDataSetHeader;
@@ -37,6 +40,7 @@ import org.apache.metamodel.schema.MutableSchema;
 import org.apache.metamodel.schema.MutableTable;
 import org.apache.metamodel.schema.Schema;
 import org.apache.metamodel.schema.Table;
+import org.apache.metamodel.util.CollectionUtils;
 import org.apache.metamodel.util.SimpleTableDef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,8 +52,11 @@ import com.datastax.driver.core.KeyspaceMetadata;
 import com.datastax.driver.core.Metadata;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TokenRange;
+import com.datastax.driver.core.querybuilder.Clause;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.core.querybuilder.Select.Selection;
@@ -73,6 +80,9 @@ public class CassandraDataContext extends QueryPostprocessDataContext implements
     private final Cluster cassandraCluster;
     private final SimpleTableDef[] tableDefs;
     private final String keySpaceName;
+    private Session session;
+    private int fetchSize = -1;
+    private int tokenRangeScanParallelism = 1;
 
     /**
      * Constructs a {@link CassandraDataContext}. This constructor accepts a
@@ -187,18 +197,174 @@ public class CassandraDataContext extends QueryPostprocessDataContext implements
         return keySpaceName;
     }
 
+    /**
+     * Gets the {@link Session} used to execute queries. The session is created
+     * on first use and shared by all queries of this {@link DataContext}.
+     * 
+     * @return
+     */
+    protected synchronized Session getSession() {
+        if (session == null) {
+            session = cassandraCluster.connect();
+        }
+        return session;
+    }
+
+    /**
+     * Sets the number of rows to fetch per page when reading query results.
+     * If not set, the fetch size of the cluster's query options is used.
+     * 
+     * @param fetchSize
+     * @return
+     */
+    public CassandraDataContext setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of token ranges to scan in parallel when reading all
+     * rows of a table. When set to more than 1, such scans are split into one
+     * CQL query per token range of the cluster's ring, and the results are
+     * read in token order while the upcoming ranges are queried in the
+     * background. Defaults to 1, meaning that a single query is used.
+     * 
+     * @param tokenRangeScanParallelism
+     * @return
+     */
+    public CassandraDataContext setTokenRangeScanParallelism(int tokenRangeScanParallelism) {
+        this.tokenRangeScanParallelism = tokenRangeScanParallelism;
+        return this;
+    }
+
     @Override
     protected DataSet materializeMainSchemaTable(Table table, Column[] columns, int maxRows) {
-        final Select query = QueryBuilder.select().all().from(keySpaceName, table.getName());
+        if (!limitMaxRowsIsSet(maxRows) && tokenRangeScanParallelism > 1) {
+            final List<Statement> statements = createTokenRangeStatements(table, columns);
+            if (statements != null) {
+                logger.debug("Scanning table '{}' using {} token range queries", table.getName(), statements.size());
+                return new CassandraTokenRangeDataSet(getSession(), statements, tokenRangeScanParallelism, columns);
+            }
+        }
+
+        final Select query = createSelect(table, columns);
         if (limitMaxRowsIsSet(maxRows)) {
             query.limit(maxRows);
         }
-        final ResultSet resultSet = cassandraCluster.connect().execute(query);
+        final ResultSet resultSet = getSession().execute(query);
 
         final Iterator<Row> response = resultSet.iterator();
         return new CassandraDataSet(response, columns);
     }
 
+    @Override
+    protected DataSet materializeMainSchemaTable(Table table, List<SelectItem> selectItems,
+            List<FilterItem> whereItems, int firstRow, int maxRows) {
+        final CassandraKeyCriteria criteria = CassandraKeyCriteria.create(getTableMetadata(table), whereItems);
+        final List<FilterItem> remainingItems = criteria.getRemainingItems();
+        final List<SelectItem> workingSelectItems = CollectionUtils.concat(true, selectItems,
+                MetaModelHelper.getEvaluatedSelectItems(remainingItems));
+        if (criteria.getClauses().isEmpty() || !isPlainColumns(workingSelectItems)) {
+            return super.materializeMainSchemaTable(table, selectItems, whereItems, firstRow, maxRows);
+        }
+
+        final Column[] columns = new Column[workingSelectItems.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = workingSelectItems.get(i).getColumn();
+        }
+
+        final Select query = createSelect(table, columns);
+        final Select.Where where = query.where();
+        for (Clause clause : criteria.getClauses()) {
+            where.and(clause);
+        }
+        if (remainingItems.isEmpty() && limitMaxRowsIsSet(maxRows)) {
+            query.limit(firstRow - 1 + maxRows);
+        }
+        final ResultSet resultSet = getSession().execute(query);
+
+        DataSet dataSet = new CassandraDataSet(resultSet.iterator(), columns);
+        if (!remainingItems.isEmpty()) {
+            dataSet = MetaModelHelper.getFiltered(dataSet, remainingItems);
+        }
+        dataSet = MetaModelHelper.getPaged(dataSet, firstRow, maxRows);
+        dataSet = MetaModelHelper.getSelection(selectItems, dataSet);
+        return dataSet;
+    }
+
+    private static boolean isPlainColumns(List<SelectItem> selectItems) {
+        for (SelectItem selectItem : selectItems) {
+            if (selectItem.getColumn() == null || selectItem.getScalarFunction() != null
+                    || selectItem.getAggregateFunction() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Select createSelect(Table table, Column[] columns) {
+        final Select query;
+        if (columns.length == 0) {
+            query = QueryBuilder.select().all().from(keySpaceName, table.getName());
+        } else {
+            Selection select = QueryBuilder.select();
+            for (Column column : columns) {
+                select = select.column(column.getName());
+            }
+            query = select.from(keySpaceName, table.getName());
+        }
+        if (fetchSize > 0) {
+            query.setFetchSize(fetchSize);
+        }
+        return query;
+    }
+
+    /**
+     * Creates a query per (non-wrapping) token range of the ring, in token
+     * order.
+     * 
+     * @return the queries, or null if the table's partition key is not known
+     */
+    private List<Statement> createTokenRangeStatements(Table table, Column[] columns) {
+        final TableMetadata tableMetadata = getTableMetadata(table);
+        if (tableMetadata == null) {
+            return null;
+        }
+        final List<ColumnMetadata> partitionKey = tableMetadata.getPartitionKey();
+        final String[] partitionKeyNames = new String[partitionKey.size()];
+        for (int i = 0; i < partitionKeyNames.length; i++) {
+            // the metadata names are case sensitive
+            partitionKeyNames[i] = Metadata.quote(partitionKey.get(i).getName());
+        }
+        final String token = QueryBuilder.token(partitionKeyNames);
+
+        final List<TokenRange> tokenRanges = new ArrayList<>();
+        for (TokenRange tokenRange : cassandraCluster.getMetadata().getTokenRanges()) {
+            tokenRanges.addAll(tokenRange.unwrap());
+        }
+        if (tokenRanges.isEmpty()) {
+            return null;
+        }
+        Collections.sort(tokenRanges);
+
+        final List<Statement> statements = new ArrayList<>(tokenRanges.size());
+        for (TokenRange tokenRange : tokenRanges) {
+            final Select query = createSelect(table, columns);
+            query.where(QueryBuilder.gt(token, tokenRange.getStart().getValue())).and(
+                    QueryBuilder.lte(token, tokenRange.getEnd().getValue()));
+            statements.add(query);
+        }
+        return statements;
+    }
+
+    private TableMetadata getTableMetadata(Table table) {
+        final KeyspaceMetadata keyspace = cassandraCluster.getMetadata().getKeyspace(keySpaceName);
+        if (keyspace == null) {
+            return null;
+        }
+        return keyspace.getTable(table.getName());
+    }
+
     private boolean limitMaxRowsIsSet(int maxRows) {
         return (maxRows != -1);
     }
@@ -221,21 +387,26 @@ public class CassandraDataContext extends QueryPostprocessDataContext implements
         final Statement statement = select.from(keySpaceName, table.getName()).where(QueryBuilder.eq(primaryKeyColumn
                 .getName(), keyValue));
 
-        final Row row = cassandraCluster.connect().execute(statement).one();
+        final Row row = getSession().execute(statement).one();
 
         return CassandraUtils.toRow(row, new SimpleDataSetHeader(selectItems));
     }
 
     @Override
     protected Number executeCountQuery(Table table, List<FilterItem> whereItems, boolean functionApproximationAllowed) {
-        if (!whereItems.isEmpty()) {
+        final CassandraKeyCriteria criteria = CassandraKeyCriteria.create(getTableMetadata(table), whereItems);
+        if (!criteria.getRemainingItems().isEmpty()) {
             // not supported - will have to be done by counting client-side
             logger.debug(
                     "Not able to execute count query natively - resorting to query post-processing, which may be expensive");
             return null;
         }
-        final Statement statement = QueryBuilder.select().countAll().from(keySpaceName, table.getName());
-        final Row response = cassandraCluster.connect().execute(statement).one();
+        final Select statement = QueryBuilder.select().countAll().from(keySpaceName, table.getName());
+        final Select.Where where = statement.where();
+        for (Clause clause : criteria.getClauses()) {
+            where.and(clause);
+        }
+        final Row response = getSession().execute(statement).one();
         return response.getLong(0);
     }
 
@@ -0,0 +1,285 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.cassandra;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.metamodel.query.FilterItem;
+import org.apache.metamodel.query.OperatorType;
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.util.NumberComparator;
+
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.querybuilder.Clause;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+
+/**
+ * The part of a WHERE clause that can be passed on to Cassandra in a CQL
+ * SELECT statement.
+ * 
+ * CQL only allows restrictions on the primary key of a table (without
+ * resorting to ALLOW FILTERING), so this is limited to:
+ * <ul>
+ * <li>equality of all partition key columns (or IN for the last one), and</li>
+ * <li>equality of a prefix of the clustering columns, optionally followed by a
+ * range on the next clustering column.</li>
+ * </ul>
+ * Clustering columns are only restricted if the partition key is. The
+ * remaining WHERE items have to be evaluated client-side.
+ */
+final class CassandraKeyCriteria {
+
+    private final List<Clause> _clauses;
+    private final List<FilterItem> _remainingItems;
+
+    /**
+     * Creates the {@link CassandraKeyCriteria} of a list of WHERE items (which
+     * are implicitly AND'ed).
+     * 
+     * @param tableMetadata
+     *            the metadata of the table, or null if not available
+     * @param whereItems
+     * @return
+     */
+    public static CassandraKeyCriteria create(TableMetadata tableMetadata, List<FilterItem> whereItems) {
+        final CassandraKeyCriteria criteria = new CassandraKeyCriteria(whereItems);
+        if (tableMetadata != null && !whereItems.isEmpty()) {
+            criteria.restrictPartitionKey(tableMetadata);
+        }
+        return criteria;
+    }
+
+    private CassandraKeyCriteria(List<FilterItem> whereItems) {
+        _clauses = new ArrayList<>();
+        _remainingItems = new ArrayList<>(whereItems);
+    }
+
+    private void restrictPartitionKey(TableMetadata tableMetadata) {
+        final List<ColumnMetadata> partitionKey = tableMetadata.getPartitionKey();
+        final List<FilterItem> keyItems = new ArrayList<>();
+        final List<Clause> keyClauses = new ArrayList<>();
+        for (int i = 0; i < partitionKey.size(); i++) {
+            final ColumnMetadata column = partitionKey.get(i);
+            final boolean last = i == partitionKey.size() - 1;
+            FilterItem keyItem = findItem(column, OperatorType.EQUALS_TO);
+            if (keyItem == null && last) {
+                keyItem = findItem(column, OperatorType.IN);
+            }
+            if (keyItem == null) {
+                // the partition key is not fully restricted
+                return;
+            }
+            keyItems.add(keyItem);
+            keyClauses.add(createClause(column, keyItem));
+        }
+
+        _remainingItems.removeAll(keyItems);
+        _clauses.addAll(keyClauses);
+
+        for (ColumnMetadata column : tableMetadata.getClusteringColumns()) {
+            final FilterItem equalsItem = findItem(column, OperatorType.EQUALS_TO);
+            if (equalsItem != null) {
+                addItem(column, equalsItem);
+                continue;
+            }
+
+            final FilterItem lowerItem = findItem(column, OperatorType.GREATER_THAN, OperatorType.GREATER_THAN_OR_EQUAL);
+            final FilterItem upperItem = findItem(column, OperatorType.LESS_THAN, OperatorType.LESS_THAN_OR_EQUAL);
+            if (lowerItem != null) {
+                addItem(column, lowerItem);
+            }
+            if (upperItem != null) {
+                addItem(column, upperItem);
+            }
+            // no restrictions are allowed after a range (or a gap)
+            break;
+        }
+    }
+
+    private void addItem(ColumnMetadata column, FilterItem item) {
+        _remainingItems.remove(item);
+        _clauses.add(createClause(column, item));
+    }
+
+    /**
+     * Finds a simple WHERE item on a column with one of the given operators,
+     * and with an operand that can be converted to the type of the column.
+     */
+    private FilterItem findItem(ColumnMetadata column, OperatorType... operators) {
+        for (FilterItem item : _remainingItems) {
+            if (item.isCompoundFilter() || item.getExpression() != null) {
+                continue;
+            }
+            final SelectItem selectItem = item.getSelectItem();
+            if (selectItem.getColumn() == null || selectItem.getScalarFunction() != null
+                    || selectItem.getAggregateFunction() != null
+                    || !column.getName().equals(selectItem.getColumn().getName())) {
+                continue;
+            }
+            for (OperatorType operator : operators) {
+                if (operator.equals(item.getOperator()) && toValues(column.getType(), item) != null) {
+                    return item;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Clause createClause(ColumnMetadata column, FilterItem item) {
+        final String name = column.getName();
+        final List<Object> values = toValues(column.getType(), item);
+        final OperatorType operator = item.getOperator();
+        if (OperatorType.IN.equals(operator)) {
+            return QueryBuilder.in(name, values);
+        }
+        final Object value = values.get(0);
+        if (OperatorType.EQUALS_TO.equals(operator)) {
+            return QueryBuilder.eq(name, value);
+        } else if (OperatorType.GREATER_THAN.equals(operator)) {
+            return QueryBuilder.gt(name, value);
+        } else if (OperatorType.GREATER_THAN_OR_EQUAL.equals(operator)) {
+            return QueryBuilder.gte(name, value);
+        } else if (OperatorType.LESS_THAN.equals(operator)) {
+            return QueryBuilder.lt(name, value);
+        } else if (OperatorType.LESS_THAN_OR_EQUAL.equals(operator)) {
+            return QueryBuilder.lte(name, value);
+        }
+        throw new IllegalArgumentException("Unsupported operator: " + operator);
+    }
+
+    private static List<Object> toValues(DataType type, FilterItem item) {
+        final Object operand = item.getOperand();
+        final List<Object> values = new ArrayList<>();
+        if (OperatorType.IN.equals(item.getOperator())) {
+            final Collection<?> operands;
+            if (operand instanceof Collection) {
+                operands = (Collection<?>) operand;
+            } else if (operand instanceof Object[]) {
+                operands = Arrays.asList((Object[]) operand);
+            } else {
+                return null;
+            }
+            if (operands.isEmpty()) {
+                return null;
+            }
+            for (Object o : operands) {
+                final Object value = toValue(type, o);
+                if (value == null) {
+                    return null;
+                }
+                values.add(value);
+            }
+        } else {
+            final Object value = toValue(type, operand);
+            if (value == null) {
+                return null;
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * Converts an operand to the java type of a CQL type, if this can be done
+     * without loss.
+     * 
+     * @return the converted value, or null if not possible
+     */
+    static Object toValue(DataType type, Object operand) {
+        if (operand == null) {
+            return null;
+        }
+        switch (type.getName()) {
+        case ASCII:
+        case TEXT:
+        case VARCHAR:
+            return operand instanceof String ? operand : null;
+        case BOOLEAN:
+            return operand instanceof Boolean ? operand : null;
+        case UUID:
+        case TIMEUUID:
+            if (operand instanceof UUID) {
+                return operand;
+            }
+            if (operand instanceof String) {
+                try {
+                    return UUID.fromString((String) operand);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+            return null;
+        case TIMESTAMP:
+            return operand instanceof Date ? operand : null;
+        case INT:
+            if (isIntegerNumber(operand) && ((Number) operand).longValue() == ((Number) operand).intValue()) {
+                return ((Number) operand).intValue();
+            }
+            return null;
+        case BIGINT:
+        case COUNTER:
+            return isIntegerNumber(operand) ? ((Number) operand).longValue() : null;
+        case VARINT:
+            return isIntegerNumber(operand) ? BigInteger.valueOf(((Number) operand).longValue()) : null;
+        case DOUBLE:
+            return operand instanceof Double || operand instanceof Float ? ((Number) operand).doubleValue() : null;
+        case FLOAT:
+            return operand instanceof Float ? operand : null;
+        case DECIMAL:
+            if (operand instanceof BigDecimal) {
+                return operand;
+            }
+            return isIntegerNumber(operand) ? BigDecimal.valueOf(((Number) operand).longValue()) : null;
+        default:
+            return null;
+        }
+    }
+
+    private static boolean isIntegerNumber(Object operand) {
+        return operand instanceof Number && NumberComparator.isIntegerType((Number) operand);
+    }
+
+    /**
+     * Gets the CQL clauses for the criteria that could be passed on.
+     * 
+     * @return
+     */
+    public List<Clause> getClauses() {
+        return _clauses;
+    }
+
+    /**
+     * Gets the WHERE items that could not be passed on and must be evaluated
+     * client-side.
+     * 
+     * @return
+     */
+    public List<FilterItem> getRemainingItems() {
+        return _remainingItems;
+    }
+}
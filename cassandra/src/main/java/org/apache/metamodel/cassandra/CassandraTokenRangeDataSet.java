@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.cassandra;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.metamodel.data.AbstractDataSet;
+import org.apache.metamodel.data.DataSet;
+import org.apache.metamodel.data.Row;
+import org.apache.metamodel.schema.Column;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+
+/**
+ * A {@link DataSet} implementation that reads the results of several
+ * statements (typically one per token range of a table) one after the other,
+ * while executing a number of the upcoming statements in parallel.
+ */
+final class CassandraTokenRangeDataSet extends AbstractDataSet {
+
+    // when this few rows are left of a page, the next page is fetched in the
+    // background
+    private static final int PREFETCH_THRESHOLD = 100;
+
+    private final Session _session;
+    private final Iterator<Statement> _statements;
+    private final Deque<ResultSetFuture> _futures;
+    private ResultSet _resultSet;
+    private volatile com.datastax.driver.core.Row _dbObject;
+
+    public CassandraTokenRangeDataSet(Session session, List<Statement> statements, int parallelism,
+            Column[] columns) {
+        super(columns);
+        _session = session;
+        _statements = statements.iterator();
+        _futures = new ArrayDeque<>(parallelism);
+        for (int i = 0; i < parallelism && _statements.hasNext(); i++) {
+            executeNextStatement();
+        }
+    }
+
+    private void executeNextStatement() {
+        _futures.add(_session.executeAsync(_statements.next()));
+    }
+
+    @Override
+    public boolean next() {
+        while (true) {
+            if (_resultSet != null) {
+                if (_resultSet.getAvailableWithoutFetching() == PREFETCH_THRESHOLD && !_resultSet.isFullyFetched()) {
+                    _resultSet.fetchMoreResults();
+                }
+                if (!_resultSet.isExhausted()) {
+                    _dbObject = _resultSet.one();
+                    return true;
+                }
+                _resultSet = null;
+            }
+
+            final ResultSetFuture future = _futures.poll();
+            if (future == null) {
+                _dbObject = null;
+                return false;
+            }
+            if (_statements.hasNext()) {
+                executeNextStatement();
+            }
+            _resultSet = future.getUninterruptibly();
+        }
+    }
+
+    @Override
+    public Row getRow() {
+        return CassandraUtils.toRow(_dbObject, getHeader());
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        for (ResultSetFuture future : _futures) {
+            future.cancel(true);
+        }
+        _futures.clear();
+    }
+}
@@ -33,6 +33,7 @@ import org.apache.metamodel.data.DataSet;
 import org.apache.metamodel.data.DataSetTableModel;
 import org.apache.metamodel.data.FilteredDataSet;
 import org.apache.metamodel.data.InMemoryDataSet;
+import org.apache.metamodel.query.OperatorType;
 import org.apache.metamodel.query.Query;
 import org.apache.metamodel.query.parser.QueryParserException;
 import org.apache.metamodel.schema.ColumnType;
@@ -179,6 +180,49 @@ public class CassandraDataContextTest {
         assertEquals("[3]", Arrays.toString(row));
     }
 
+    @Test
+    public void testWhereKeyAndColumnValues() throws Exception {
+        DataSet ds = dc.query().from(testTableName).select("title").where("id").in(firstRowId, secondRowId)
+                .and("title").isEquals(secondRowTitle).execute();
+        try {
+            assertTrue(ds.next());
+            assertEquals("Row[values=[" + secondRowTitle + "]]", ds.getRow().toString());
+            assertFalse(ds.next());
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test
+    public void testCountQueryWithKeyCriteria() throws Exception {
+        Table table = dc.getDefaultSchema().getTableByName(testTableName);
+        Query q = new Query().selectCount().from(table).where(table.getColumnByName("id"), OperatorType.EQUALS_TO,
+                firstRowId);
+        DataSet ds = dc.executeQuery(q);
+        assertEquals(InMemoryDataSet.class, ds.getClass());
+        assertEquals("[[1]]", Arrays.deepToString(ds.toObjectArrays().toArray()));
+    }
+
+    @Test
+    public void testTokenRangeScan() throws Exception {
+        CassandraDataContext tokenRangeDc = new CassandraDataContext(cluster, keyspaceName)
+                .setTokenRangeScanParallelism(4).setFetchSize(2);
+        DataSet ds = tokenRangeDc.query().from(testTableName).select("id").and("title").execute();
+        assertEquals(CassandraTokenRangeDataSet.class, ds.getClass());
+
+        try {
+            assertTrue(ds.next());
+            assertEquals("Row[values=[" + secondRowId + ", " + secondRowTitle + "]]", ds.getRow().toString());
+            assertTrue(ds.next());
+            assertEquals("Row[values=[" + thirdRowId + ", " + thirdRowTitle + "]]", ds.getRow().toString());
+            assertTrue(ds.next());
+            assertEquals("Row[values=[" + firstRowId + ", " + firstRowTitle + "]]", ds.getRow().toString());
+            assertFalse(ds.next());
+        } finally {
+            ds.close();
+        }
+    }
+
     @Test
     public void testQueryForANonExistingTable() throws Exception {
         boolean thrown = false;
@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.metamodel.data.DataSet;
 import org.apache.metamodel.query.FromItem;
@@ -45,8 +46,20 @@ import org.slf4j.LoggerFactory;
 public class CompositeDataContext extends AbstractDataContext {
 
     private final static Logger logger = LoggerFactory.getLogger(CompositeDataContext.class);
+
+    /**
+     * System property for the maximum number of join keys that are shipped
+     * from the smaller side of a cross-datastore join to the larger side (as
+     * an IN filter). A value of 0 (default) disables such semi-joins.
+     */
+    public static final String SYSTEM_PROPERTY_SEMI_JOIN_MAX_KEYS = "metamodel.composite.semijoin.max.keys";
+
+    public static final int DEFAULT_SEMI_JOIN_MAX_KEYS = 0;
+
     private Map<String, CompositeSchema> _compositeSchemas = new HashMap<String, CompositeSchema>();
     private DataContext[] _delegates;
+    private int _semiJoinMaxKeys = getSemiJoinMaxKeysSystemProperty();
+    private ExecutorService _materializationExecutor;
 
     public CompositeDataContext(DataContext... delegates) {
         if (delegates == null) {
@@ -98,8 +111,72 @@ public class CompositeDataContext extends AbstractDataContext {
                     return getDataContext(table);
                 }
             };
-            return new CompositeQueryDelegate(dataContextRetrievalFunction).executeQuery(query);
+            final CompositeQueryDelegate delegate = new CompositeQueryDelegate(dataContextRetrievalFunction,
+                    _semiJoinMaxKeys);
+            delegate.setMaterializationExecutor(_materializationExecutor);
+            return delegate.executeQuery(query);
+        }
+    }
+
+    /**
+     * Sets the maximum number of join keys that are shipped from the smaller
+     * side of a cross-datastore join to the larger side. The smaller side is
+     * determined using COUNT queries on the delegates, and the keys are
+     * retrieved using a DISTINCT query. Since these queries are executed
+     * before the join itself, semi-joins should only be enabled when the
+     * delegates can answer them cheaply, e.g. databases with indexes, as
+     * opposed to file based delegates where each of them is a full scan.
+     * 
+     * @param semiJoinMaxKeys
+     *            the maximum number of keys, or 0 (default) to disable
+     *            semi-joins
+     * @return this datacontext
+     */
+    public CompositeDataContext setSemiJoinMaxKeys(int semiJoinMaxKeys) {
+        if (semiJoinMaxKeys < 0) {
+            throw new IllegalArgumentException("Max keys cannot be negative");
+        }
+        _semiJoinMaxKeys = semiJoinMaxKeys;
+        return this;
+    }
+
+    public int getSemiJoinMaxKeys() {
+        return _semiJoinMaxKeys;
+    }
+
+    /**
+     * Sets an {@link ExecutorService} to use for materializing the tables of
+     * different delegates in parallel, when executing cross-datastore queries.
+     * 
+     * @param materializationExecutor
+     *            the executor to use, or null (default) for sequential
+     *            materialization
+     * @return this datacontext
+     * 
+     * @see QueryPostprocessDataContext#setMaterializationExecutor(ExecutorService)
+     */
+    public CompositeDataContext setMaterializationExecutor(ExecutorService materializationExecutor) {
+        _materializationExecutor = materializationExecutor;
+        return this;
+    }
+
+    public ExecutorService getMaterializationExecutor() {
+        return _materializationExecutor;
+    }
+
+    private static int getSemiJoinMaxKeysSystemProperty() {
+        final String str = System.getProperty(SYSTEM_PROPERTY_SEMI_JOIN_MAX_KEYS);
+        if (str != null) {
+            try {
+                final int value = Integer.parseInt(str.trim());
+                if (value >= 0) {
+                    return value;
+                }
+            } catch (NumberFormatException e) {
+                logger.debug("Failed to parse system property '{}': {}", SYSTEM_PROPERTY_SEMI_JOIN_MAX_KEYS, str);
+            }
         }
+        return DEFAULT_SEMI_JOIN_MAX_KEYS;
     }
 
     private DataContext getDataContext(Table table) {
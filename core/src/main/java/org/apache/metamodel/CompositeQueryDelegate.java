@@ -18,19 +18,104 @@
  */
 package org.apache.metamodel;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.apache.metamodel.data.DataSet;
+import org.apache.metamodel.query.FilterItem;
+import org.apache.metamodel.query.FromItem;
+import org.apache.metamodel.query.JoinType;
+import org.apache.metamodel.query.OperatorType;
 import org.apache.metamodel.query.Query;
+import org.apache.metamodel.query.QueryParameter;
+import org.apache.metamodel.query.SelectItem;
 import org.apache.metamodel.schema.Column;
+import org.apache.metamodel.schema.ColumnType;
 import org.apache.metamodel.schema.Table;
 import org.apache.metamodel.util.Func;
+import org.apache.metamodel.util.NumberComparator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * {@link QueryPostprocessDelegate} which materializes tables using the
+ * delegate {@link DataContext}s of a {@link CompositeDataContext}.
+ * 
+ * Projections and single-table WHERE items are pushed down to the delegates.
+ * For (inner) joins across tables, the side with the least rows (according to
+ * a COUNT query on each delegate) is used as a build side: if it has no more
+ * than a configured number of rows, its distinct join keys are shipped to the
+ * other side as an IN filter (a semi-join), so that only matching rows are
+ * materialized there. Semi-joins are disabled unless a maximum number of keys
+ * is configured.
+ */
 final class CompositeQueryDelegate extends QueryPostprocessDelegate {
 
+	private static final Logger logger = LoggerFactory.getLogger(CompositeQueryDelegate.class);
+
 	private final Func<Table, DataContext> _dataContextRetrievalFunction;
+	private final int _semiJoinMaxKeys;
 
 	public CompositeQueryDelegate(
 			Func<Table, DataContext> dataContextRetrievalFunction) {
+		this(dataContextRetrievalFunction,
+				CompositeDataContext.DEFAULT_SEMI_JOIN_MAX_KEYS);
+	}
+
+	public CompositeQueryDelegate(
+			Func<Table, DataContext> dataContextRetrievalFunction,
+			int semiJoinMaxKeys) {
 		_dataContextRetrievalFunction = dataContextRetrievalFunction;
+		_semiJoinMaxKeys = semiJoinMaxKeys;
+	}
+
+	@Override
+	public DataSet executeQuery(Query query) {
+		if (_semiJoinMaxKeys > 0) {
+			final Query semiJoinQuery = createSemiJoinQuery(query);
+			if (semiJoinQuery != null) {
+				return super.executeQuery(semiJoinQuery);
+			}
+		}
+		return super.executeQuery(query);
+	}
+
+	@Override
+	protected DataSet materializeMainSchemaTable(Table table,
+			List<SelectItem> selectItems, List<FilterItem> whereItems,
+			int firstRow, int maxRows) {
+		final Query q = new Query().from(table);
+		for (SelectItem selectItem : selectItems) {
+			final SelectItem delegateSelectItem = toDelegateSelectItem(selectItem);
+			if (delegateSelectItem == null) {
+				return super.materializeMainSchemaTable(table, selectItems,
+						whereItems, firstRow, maxRows);
+			}
+			q.select(delegateSelectItem);
+		}
+		for (FilterItem whereItem : whereItems) {
+			final FilterItem delegateWhereItem = toDelegateFilterItem(whereItem);
+			if (delegateWhereItem == null) {
+				return super.materializeMainSchemaTable(table, selectItems,
+						whereItems, firstRow, maxRows);
+			}
+			q.where(delegateWhereItem);
+		}
+		if (firstRow > 1) {
+			q.setFirstRow(firstRow);
+		}
+		if (maxRows >= 0) {
+			q.setMaxRows(maxRows);
+		}
+
+		final DataContext dc = _dataContextRetrievalFunction.eval(table);
+		final DataSet dataSet = dc.executeQuery(q);
+		return MetaModelHelper.getSelection(selectItems, dataSet);
 	}
 
 	@Override
@@ -46,4 +131,330 @@ final class CompositeQueryDelegate extends QueryPostprocessDelegate {
 		return dc.executeQuery(q);
 	}
 
+	/**
+	 * Creates a rewritten version of a query, where the join keys of the
+	 * smallest side of a join are added as an IN filter on the other side.
+	 * 
+	 * @param query
+	 * @return the rewritten query, or null if no semi-join is applicable
+	 */
+	Query createSemiJoinQuery(Query query) {
+		final List<FromItem> tableFromItems = new ArrayList<FromItem>();
+		final List<SelectItem[]> joinConditions = new ArrayList<SelectItem[]>();
+		for (FromItem fromItem : query.getFromClause().getItems()) {
+			if (!collectInnerJoins(fromItem, tableFromItems, joinConditions)) {
+				return null;
+			}
+		}
+		if (tableFromItems.size() < 2) {
+			return null;
+		}
+
+		final List<FilterItem> whereItems = query.getWhereClause().getItems();
+		for (FilterItem whereItem : whereItems) {
+			if (!whereItem.isCompoundFilter()
+					&& whereItem.getExpression() == null
+					&& OperatorType.EQUALS_TO.equals(whereItem.getOperator())
+					&& whereItem.getOperand() instanceof SelectItem) {
+				joinConditions.add(new SelectItem[] {
+						whereItem.getSelectItem(),
+						(SelectItem) whereItem.getOperand() });
+			}
+		}
+
+		for (SelectItem[] joinCondition : joinConditions) {
+			final SelectItem leftItem = joinCondition[0];
+			final SelectItem rightItem = joinCondition[1];
+			if (toDelegateSelectItem(leftItem) == null
+					|| toDelegateSelectItem(rightItem) == null) {
+				continue;
+			}
+			final FromItem leftFromItem = QueryPostprocessDataContext
+					.getTableFromItem(leftItem, tableFromItems);
+			final FromItem rightFromItem = QueryPostprocessDataContext
+					.getTableFromItem(rightItem, tableFromItems);
+			if (leftFromItem == null || rightFromItem == null
+					|| leftFromItem == rightFromItem) {
+				continue;
+			}
+			// only the first applicable join condition is considered, to
+			// limit the number of cost hint queries
+			return createSemiJoinQuery(query, tableFromItems, leftItem,
+					leftFromItem, rightItem, rightFromItem);
+		}
+		return null;
+	}
+
+	private Query createSemiJoinQuery(Query query,
+			List<FromItem> tableFromItems, SelectItem leftItem,
+			FromItem leftFromItem, SelectItem rightItem, FromItem rightFromItem) {
+		final List<FilterItem> whereItems = query.getWhereClause().getItems();
+		final List<FilterItem> leftWhereItems = getDelegateWhereItems(
+				whereItems, tableFromItems, leftFromItem);
+		final List<FilterItem> rightWhereItems = getDelegateWhereItems(
+				whereItems, tableFromItems, rightFromItem);
+
+		final Number leftCount = getCount(leftFromItem.getTable(),
+				leftWhereItems);
+		final Number rightCount = getCount(rightFromItem.getTable(),
+				rightWhereItems);
+		if (leftCount == null || rightCount == null) {
+			return null;
+		}
+
+		final boolean buildLeft = leftCount.longValue() <= rightCount.longValue();
+		final long buildCount = Math.min(leftCount.longValue(),
+				rightCount.longValue());
+		final long probeCount = Math.max(leftCount.longValue(),
+				rightCount.longValue());
+		if (buildCount > _semiJoinMaxKeys || probeCount <= buildCount) {
+			return null;
+		}
+
+		final SelectItem buildItem = buildLeft ? leftItem : rightItem;
+		final SelectItem probeItem = buildLeft ? rightItem : leftItem;
+		final Table buildTable = buildLeft ? leftFromItem.getTable()
+				: rightFromItem.getTable();
+		final List<FilterItem> buildWhereItems = buildLeft ? leftWhereItems
+				: rightWhereItems;
+
+		final Set<Object> keys = getKeys(buildTable, buildItem.getColumn(),
+				buildWhereItems);
+		if (keys == null || keys.isEmpty()) {
+			return null;
+		}
+		final List<Object> probeValues = toProbeValues(keys,
+				probeItem.getColumn());
+		if (probeValues == null || probeValues.isEmpty()) {
+			return null;
+		}
+
+		logger.debug(
+				"Applying semi-join with {} keys from {} (estimated {} rows) to {} (estimated {} rows)",
+				new Object[] { probeValues.size(), buildItem, buildCount,
+						probeItem, probeCount });
+
+		final Query semiJoinQuery = query.clone();
+		semiJoinQuery.where(new FilterItem(probeItem, OperatorType.IN,
+				probeValues));
+		return semiJoinQuery;
+	}
+
+	/**
+	 * Collects table from items and join conditions of a from item.
+	 * 
+	 * @return false if the from item contains anything but tables and inner
+	 *         joins, in which case no semi-join is applied
+	 */
+	private static boolean collectInnerJoins(FromItem fromItem,
+			List<FromItem> tableFromItems, List<SelectItem[]> joinConditions) {
+		if (fromItem.getTable() != null) {
+			tableFromItems.add(fromItem);
+			return true;
+		}
+		if (fromItem.getJoin() != JoinType.INNER
+				|| fromItem.getLeftSide() == null
+				|| fromItem.getRightSide() == null) {
+			return false;
+		}
+		if (!collectInnerJoins(fromItem.getLeftSide(), tableFromItems,
+				joinConditions)
+				|| !collectInnerJoins(fromItem.getRightSide(), tableFromItems,
+						joinConditions)) {
+			return false;
+		}
+		final SelectItem[] leftOn = fromItem.getLeftOn();
+		final SelectItem[] rightOn = fromItem.getRightOn();
+		if (leftOn != null && rightOn != null) {
+			for (int i = 0; i < leftOn.length && i < rightOn.length; i++) {
+				joinConditions.add(new SelectItem[] { leftOn[i], rightOn[i] });
+			}
+		}
+		return true;
+	}
+
+	private static List<FilterItem> getDelegateWhereItems(
+			List<FilterItem> whereItems, List<FromItem> tableFromItems,
+			FromItem fromItem) {
+		final List<FilterItem> result = new ArrayList<FilterItem>();
+		for (FilterItem whereItem : whereItems) {
+			if (QueryPostprocessDataContext.getSingleTableFromItem(whereItem,
+					tableFromItems) == fromItem) {
+				// items that cannot be pushed down are left out, which only
+				// widens the counts and keys of the side
+				final FilterItem delegateWhereItem = toDelegateFilterItem(whereItem);
+				if (delegateWhereItem != null) {
+					result.add(delegateWhereItem);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the (possibly approximated) number of rows of a table matching
+	 * some WHERE items. This is the cost hint used to choose the build side
+	 * of a semi-join.
+	 */
+	private Number getCount(Table table, List<FilterItem> whereItems) {
+		final DataContext dc = _dataContextRetrievalFunction.eval(table);
+		final Query q = new Query().selectCount().from(table).where(whereItems);
+		q.getSelectClause().getItem(0).setFunctionApproximationAllowed(true);
+		try (DataSet dataSet = dc.executeQuery(q)) {
+			if (dataSet.next()) {
+				final Object value = dataSet.getRow().getValue(0);
+				if (value instanceof Number) {
+					return (Number) value;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the distinct values of a column, or null if there are more than
+	 * the maximum number of semi-join keys, or if there is a null value (since
+	 * joins match null keys with each other, which an IN filter would not).
+	 */
+	private Set<Object> getKeys(Table table, Column column,
+			List<FilterItem> whereItems) {
+		final DataContext dc = _dataContextRetrievalFunction.eval(table);
+		final Query q = new Query().select(column).from(table)
+				.where(whereItems).selectDistinct();
+		q.setMaxRows(_semiJoinMaxKeys + 1);
+
+		final Set<Object> keys = new LinkedHashSet<Object>();
+		int rows = 0;
+		try (DataSet dataSet = dc.executeQuery(q)) {
+			while (dataSet.next()) {
+				rows++;
+				if (rows > _semiJoinMaxKeys) {
+					return null;
+				}
+				final Object value = dataSet.getRow().getValue(0);
+				if (value == null) {
+					return null;
+				}
+				keys.add(value);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Converts join keys to values that are comparable with the values of the
+	 * probe column, since IN filters are evaluated using equality.
+	 * 
+	 * @return the values, or null if the keys cannot safely be converted
+	 */
+	private static List<Object> toProbeValues(Collection<Object> keys,
+			Column probeColumn) {
+		final ColumnType type = probeColumn.getType();
+		if (type == null) {
+			return null;
+		}
+		final Class<?> javaClass = type.getJavaEquivalentClass();
+		final List<Object> result = new ArrayList<Object>(keys.size());
+		for (Object key : keys) {
+			if (type.isNumber()) {
+				final Number number = toNumber(NumberComparator.toNumber(key),
+						javaClass);
+				if (number == null) {
+					return null;
+				}
+				if (NumberComparator.getComparator().compare(number, key) == 0) {
+					result.add(number);
+				}
+				// else the key cannot be represented by the probe column, and
+				// thus never matches
+			} else if (javaClass != null && javaClass.isInstance(key)) {
+				result.add(key);
+			} else {
+				return null;
+			}
+		}
+		return result;
+	}
+
+	private static Number toNumber(Number number, Class<?> javaClass) {
+		if (number == null) {
+			return null;
+		}
+		if (javaClass == Integer.class) {
+			return number.intValue();
+		} else if (javaClass == Long.class) {
+			return number.longValue();
+		} else if (javaClass == Short.class) {
+			return number.shortValue();
+		} else if (javaClass == Byte.class) {
+			return number.byteValue();
+		} else if (javaClass == Double.class) {
+			return number.doubleValue();
+		} else if (javaClass == Float.class) {
+			return number.floatValue();
+		} else if (javaClass == BigInteger.class) {
+			return number instanceof BigInteger ? number : BigInteger
+					.valueOf(number.longValue());
+		} else if (javaClass == BigDecimal.class) {
+			return number instanceof BigDecimal ? number : new BigDecimal(
+					number.toString());
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a select item for a delegate query, with no reference to the
+	 * from items (and aliases) of the composite query.
+	 * 
+	 * @return the select item, or null if it is not a plain column
+	 */
+	private static SelectItem toDelegateSelectItem(SelectItem selectItem) {
+		if (selectItem.getColumn() == null
+				|| selectItem.getAggregateFunction() != null
+				|| selectItem.getScalarFunction() != null
+				|| selectItem.getSubQuerySelectItem() != null) {
+			return null;
+		}
+		return new SelectItem(selectItem.getColumn());
+	}
+
+	/**
+	 * Creates a filter item for a delegate query.
+	 * 
+	 * @return the filter item, or null if it cannot be pushed down
+	 */
+	private static FilterItem toDelegateFilterItem(FilterItem filterItem) {
+		if (filterItem.getExpression() != null) {
+			return null;
+		}
+		if (filterItem.isCompoundFilter()) {
+			final FilterItem[] childItems = filterItem.getChildItems();
+			final FilterItem[] delegateChildItems = new FilterItem[childItems.length];
+			for (int i = 0; i < childItems.length; i++) {
+				delegateChildItems[i] = toDelegateFilterItem(childItems[i]);
+				if (delegateChildItems[i] == null) {
+					return null;
+				}
+			}
+			return new FilterItem(filterItem.getLogicalOperator(),
+					delegateChildItems);
+		}
+
+		final SelectItem selectItem = toDelegateSelectItem(filterItem
+				.getSelectItem());
+		if (selectItem == null) {
+			return null;
+		}
+		Object operand = filterItem.getOperand();
+		if (operand instanceof QueryParameter) {
+			return null;
+		}
+		if (operand instanceof SelectItem) {
+			operand = toDelegateSelectItem((SelectItem) operand);
+			if (operand == null) {
+				return null;
+			}
+		}
+		return new FilterItem(selectItem, filterItem.getOperator(), operand);
+	}
 }
@@ -28,14 +28,18 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 
 import org.apache.metamodel.data.CachingDataSetHeader;
 import org.apache.metamodel.data.DataSet;
 import org.apache.metamodel.data.DataSetHeader;
+import org.apache.metamodel.data.DataSetHeaderMatcher;
 import org.apache.metamodel.data.DefaultRow;
 import org.apache.metamodel.data.EmptyDataSet;
+import org.apache.metamodel.data.ExternalSortDataSet;
 import org.apache.metamodel.data.FilteredDataSet;
 import org.apache.metamodel.data.FirstRowDataSet;
+import org.apache.metamodel.data.HashJoinDataSet;
 import org.apache.metamodel.data.IRowFilter;
 import org.apache.metamodel.data.InMemoryDataSet;
 import org.apache.metamodel.data.MaxRowsDataSet;
@@ -43,9 +47,12 @@ import org.apache.metamodel.data.Row;
 import org.apache.metamodel.data.ScalarFunctionDataSet;
 import org.apache.metamodel.data.SimpleDataSetHeader;
 import org.apache.metamodel.data.SubSelectionDataSet;
+import org.apache.metamodel.query.AggregateFunction;
+import org.apache.metamodel.query.DefaultAggregateFunction;
 import org.apache.metamodel.query.FilterItem;
 import org.apache.metamodel.query.FromItem;
 import org.apache.metamodel.query.GroupByItem;
+import org.apache.metamodel.query.OperatorType;
 import org.apache.metamodel.query.OrderByItem;
 import org.apache.metamodel.query.Query;
 import org.apache.metamodel.query.ScalarFunction;
@@ -82,6 +89,16 @@ public final class MetaModelHelper {
 
     private final static Logger logger = LoggerFactory.getLogger(MetaModelHelper.class);
 
+    /**
+     * System property which defines the maximum number of rows to hold in
+     * memory when ordering datasets. If set, larger datasets are sorted using
+     * temporary files. By default all rows are sorted in memory.
+     */
+    public static final String SYSTEM_PROPERTY_ORDER_BY_MAX_ROWS_IN_MEMORY = "metamodel.query.orderby.max.rows.in.memory";
+
+    private static final int AGGREGATE_INPUT_COUNT_ALL = -2;
+    private static final int AGGREGATE_INPUT_UNSUPPORTED = -3;
+
     private MetaModelHelper() {
         // Prevent instantiation
     }
@@ -179,66 +196,159 @@ public final class MetaModelHelper {
         return getCarthesianProduct(fromDataSets, new FilterItem[0]);
     }
 
+    /**
+     * Gets the carthesian product of a number of datasets, filtered by a set
+     * of WHERE items.
+     * 
+     * Rather than materializing the full product, the datasets are joined one
+     * at a time. Filters that only concern a single dataset are applied to it
+     * before joining, equi-join filters (column = column across datasets) are
+     * executed as hash joins and other filters are applied as soon as all the
+     * datasets they refer to are joined. Only the first dataset is streamed,
+     * the others are read into memory.
+     * 
+     * @param fromDataSets
+     *            the datasets to join
+     * @param whereItems
+     *            the filters to apply
+     * @return the filtered carthesian product
+     */
     public static DataSet getCarthesianProduct(DataSet[] fromDataSets, Iterable<FilterItem> whereItems) {
         // First check if carthesian product is even nescesary
         if (fromDataSets.length == 1) {
             return getFiltered(fromDataSets[0], whereItems);
         }
 
-        List<SelectItem> selectItems = new ArrayList<SelectItem>();
-        for (DataSet dataSet : fromDataSets) {
-            for (int i = 0; i < dataSet.getSelectItems().length; i++) {
-                SelectItem item = dataSet.getSelectItems()[i];
-                selectItems.add(item);
-            }
+        final List<SelectItem> selectItems = new ArrayList<SelectItem>();
+        final int[] offsets = new int[fromDataSets.length + 1];
+        for (int i = 0; i < fromDataSets.length; i++) {
+            offsets[i] = selectItems.size();
+            selectItems.addAll(Arrays.asList(fromDataSets[i].getSelectItems()));
         }
+        offsets[fromDataSets.length] = selectItems.size();
 
-        int selectItemOffset = 0;
-        List<Object[]> data = new ArrayList<Object[]>();
-        for (int fromDataSetIndex = 0; fromDataSetIndex < fromDataSets.length; fromDataSetIndex++) {
-            DataSet fromDataSet = fromDataSets[fromDataSetIndex];
-            SelectItem[] fromSelectItems = fromDataSet.getSelectItems();
-            if (fromDataSetIndex == 0) {
-                while (fromDataSet.next()) {
-                    Object[] values = fromDataSet.getRow().getValues();
-                    Object[] row = new Object[selectItems.size()];
-                    System.arraycopy(values, 0, row, selectItemOffset, values.length);
-                    data.add(row);
-                }
-                fromDataSet.close();
-            } else {
-                List<Object[]> fromDataRows = new ArrayList<Object[]>();
-                while (fromDataSet.next()) {
-                    fromDataRows.add(fromDataSet.getRow().getValues());
-                }
-                fromDataSet.close();
-                for (int i = 0; i < data.size(); i = i + fromDataRows.size()) {
-                    Object[] originalRow = data.get(i);
-                    data.remove(i);
-                    for (int j = 0; j < fromDataRows.size(); j++) {
-                        Object[] newRow = fromDataRows.get(j);
-                        System.arraycopy(newRow, 0, originalRow, selectItemOffset, newRow.length);
-                        data.add(i + j, originalRow.clone());
+        // resolve the filters against the header of the final product, to
+        // determine at which stage of the joining they can be applied
+        final DataSetHeader header = new CachingDataSetHeader(selectItems);
+        final List<List<FilterItem>> singleDataSetFilters = new ArrayList<List<FilterItem>>();
+        final List<List<FilterItem>> joinFilters = new ArrayList<List<FilterItem>>();
+        for (int i = 0; i < fromDataSets.length; i++) {
+            singleDataSetFilters.add(new ArrayList<FilterItem>());
+            joinFilters.add(new ArrayList<FilterItem>());
+        }
+        final List<FilterItem> remainingFilters = new ArrayList<FilterItem>();
+        if (whereItems != null) {
+            for (FilterItem whereItem : whereItems) {
+                int minIndex = Integer.MAX_VALUE;
+                int maxIndex = -1;
+                boolean resolved = whereItem.getExpression() == null;
+                for (SelectItem evaluatedItem : getReferencedSelectItems(whereItem, new ArrayList<SelectItem>())) {
+                    final int index = header.indexOf(evaluatedItem);
+                    if (index == -1) {
+                        resolved = false;
+                        break;
                     }
+                    final int dataSetIndex = getDataSetIndex(offsets, index);
+                    minIndex = Math.min(minIndex, dataSetIndex);
+                    maxIndex = Math.max(maxIndex, dataSetIndex);
+                }
+                if (!resolved || maxIndex == -1) {
+                    remainingFilters.add(whereItem);
+                } else if (minIndex == maxIndex) {
+                    singleDataSetFilters.get(maxIndex).add(whereItem);
+                } else {
+                    joinFilters.get(maxIndex).add(whereItem);
                 }
             }
-            selectItemOffset += fromSelectItems.length;
         }
 
-        if (data.isEmpty()) {
-            return new EmptyDataSet(selectItems);
+        DataSet result = getFiltered(fromDataSets[0], singleDataSetFilters.get(0));
+        for (int i = 1; i < fromDataSets.length; i++) {
+            final DataSet buildDataSet = getFiltered(fromDataSets[i], singleDataSetFilters.get(i));
+
+            result = getHashJoin(result, buildDataSet, joinFilters.get(i), false);
+        }
+
+        return getFiltered(result, remainingFilters);
+    }
+
+    /**
+     * Collects the select items that a filter item refers to. Unlike
+     * {@link #getEvaluatedSelectItems(List)} equal select items are not
+     * collapsed, since they may still refer to different datasets.
+     */
+    private static List<SelectItem> getReferencedSelectItems(FilterItem filterItem, List<SelectItem> result) {
+        final FilterItem[] childItems = filterItem.getChildItems();
+        if (childItems != null) {
+            for (FilterItem childItem : childItems) {
+                getReferencedSelectItems(childItem, result);
+            }
+        }
+        if (filterItem.getSelectItem() != null) {
+            result.add(filterItem.getSelectItem());
+        }
+        if (filterItem.getOperand() instanceof SelectItem) {
+            result.add((SelectItem) filterItem.getOperand());
         }
+        return result;
+    }
 
+    /**
+     * Creates a {@link HashJoinDataSet} which uses the equi-join conditions
+     * (column = column across the two datasets) as hash keys.
+     */
+    private static DataSet getHashJoin(DataSet probeDataSet, DataSet buildDataSet, List<FilterItem> joinConditions,
+            boolean outerJoin) {
+        final SelectItem[] probeItems = probeDataSet.getSelectItems();
+        final SelectItem[] buildItems = buildDataSet.getSelectItems();
+        final List<SelectItem> selectItems = new ArrayList<SelectItem>(probeItems.length + buildItems.length);
+        selectItems.addAll(Arrays.asList(probeItems));
+        selectItems.addAll(Arrays.asList(buildItems));
         final DataSetHeader header = new CachingDataSetHeader(selectItems);
-        final List<Row> rows = new ArrayList<Row>(data.size());
-        for (Object[] objects : data) {
-            rows.add(new DefaultRow(header, objects, null));
+
+        final List<Integer> probeKeyIndexes = new ArrayList<Integer>();
+        final List<Integer> buildKeyIndexes = new ArrayList<Integer>();
+        for (FilterItem joinCondition : joinConditions) {
+            if (isEquiJoin(joinCondition)) {
+                final int index1 = header.indexOf(joinCondition.getSelectItem());
+                final int index2 = header.indexOf((SelectItem) joinCondition.getOperand());
+                final int probeIndex = Math.min(index1, index2);
+                final int buildIndex = Math.max(index1, index2);
+                if (probeIndex != -1 && probeIndex < probeItems.length && buildIndex >= probeItems.length) {
+                    probeKeyIndexes.add(probeIndex);
+                    buildKeyIndexes.add(buildIndex - probeItems.length);
+                }
+            }
         }
 
-        DataSet result = new InMemoryDataSet(header, rows);
-        if (whereItems != null) {
-            DataSet filteredResult = getFiltered(result, whereItems);
-            result = filteredResult;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Joining datasets using {} hash keys and {} join conditions", probeKeyIndexes.size(),
+                    joinConditions.size());
+        }
+
+        return new HashJoinDataSet(probeDataSet, buildDataSet, toIntArray(probeKeyIndexes),
+                toIntArray(buildKeyIndexes), compile(joinConditions, header), outerJoin);
+    }
+
+    private static boolean isEquiJoin(FilterItem filterItem) {
+        return !filterItem.isCompoundFilter() && filterItem.getExpression() == null
+                && OperatorType.EQUALS_TO.equals(filterItem.getOperator())
+                && filterItem.getOperand() instanceof SelectItem;
+    }
+
+    private static int getDataSetIndex(int[] offsets, int selectItemIndex) {
+        for (int i = 0; i < offsets.length - 1; i++) {
+            if (selectItemIndex < offsets[i + 1]) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Select item index out of bounds: " + selectItemIndex);
+    }
+
+    private static int[] toIntArray(List<Integer> list) {
+        final int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
         }
         return result;
     }
@@ -248,17 +358,27 @@ public final class MetaModelHelper {
     }
 
     public static DataSet getFiltered(DataSet dataSet, Iterable<FilterItem> filterItems) {
-        List<IRowFilter> filters = CollectionUtils.map(filterItems, new Func<FilterItem, IRowFilter>() {
+        final DataSetHeader header = new CachingDataSetHeader(dataSet.getSelectItems());
+        final IRowFilter[] filters = compile(filterItems, header);
+        if (filters.length == 0) {
+            return dataSet;
+        }
+
+        return new FilteredDataSet(dataSet, filters);
+    }
+
+    /**
+     * Compiles filter items against the header of the rows they will be
+     * applied to, see {@link FilterItem#compile(DataSetHeader)}.
+     */
+    private static IRowFilter[] compile(Iterable<FilterItem> filterItems, final DataSetHeader header) {
+        final List<IRowFilter> filters = CollectionUtils.map(filterItems, new Func<FilterItem, IRowFilter>() {
             @Override
             public IRowFilter eval(FilterItem filterItem) {
-                return filterItem;
+                return filterItem.compile(header);
             }
         });
-        if (filters.isEmpty()) {
-            return dataSet;
-        }
-
-        return new FilteredDataSet(dataSet, filters.toArray(new IRowFilter[filters.size()]));
+        return filters.toArray(new IRowFilter[filters.size()]);
     }
 
     public static DataSet getFiltered(DataSet dataSet, FilterItem... filterItems) {
@@ -303,10 +423,22 @@ public final class MetaModelHelper {
         return getGrouped(selectItems, dataSet, groupByItems.toArray(new GroupByItem[groupByItems.size()]));
     }
 
+    /**
+     * Groups a dataset by a set of {@link GroupByItem}s and evaluates the
+     * aggregate functions of the select items for each group. Each group
+     * holds one {@link AggregateBuilder} per aggregate function, which the
+     * values are added to as the dataset is traversed, so memory consumption
+     * is proportional to the number of groups, not the number of rows.
+     * 
+     * @param selectItems
+     * @param dataSet
+     * @param groupByItems
+     * @return
+     */
     public static DataSet getGrouped(List<SelectItem> selectItems, DataSet dataSet, GroupByItem[] groupByItems) {
         DataSet result = dataSet;
         if (groupByItems != null && groupByItems.length > 0) {
-            Map<Row, Map<SelectItem, List<Object>>> uniqueRows = new HashMap<Row, Map<SelectItem, List<Object>>>();
+            final Map<Row, AggregateBuilder<?>[]> uniqueRows = new HashMap<Row, AggregateBuilder<?>[]>();
 
             final SelectItem[] groupBySelects = new SelectItem[groupByItems.length];
             for (int i = 0; i < groupBySelects.length; i++) {
@@ -314,81 +446,97 @@ public final class MetaModelHelper {
             }
             final DataSetHeader groupByHeader = new CachingDataSetHeader(groupBySelects);
 
-            // Creates a list of SelectItems that have functions
-            List<SelectItem> functionItems = getFunctionSelectItems(selectItems);
+            // Creates a list of SelectItems that have aggregate functions
+            final List<SelectItem> functionItems = getAggregateFunctionSelectItems(selectItems);
+
+            // Resolve the input indexes of the group keys and aggregates once
+            final DataSetHeader inputHeader = new CachingDataSetHeader(dataSet.getSelectItems());
+            final DataSetHeaderMatcher inputHeaderMatcher = new DataSetHeaderMatcher(inputHeader);
+            final int[] groupByIndexes = new int[groupBySelects.length];
+            final int[] groupBySubQueryIndexes = new int[groupBySelects.length];
+            for (int i = 0; i < groupBySelects.length; i++) {
+                final SelectItem subQuerySelectItem = groupBySelects[i].getSubQuerySelectItem();
+                groupBySubQueryIndexes[i] = subQuerySelectItem == null ? -1 : inputHeader.indexOf(subQuerySelectItem);
+                groupByIndexes[i] = inputHeader.indexOf(groupBySelects[i]);
+            }
+            final int[] inputIndexes = getAggregateInputIndexes(functionItems, inputHeader);
+
+            // a reusable row for looking up the group of each row
+            final Object[] groupValues = new Object[groupBySelects.length];
+            final Row groupRow = new DefaultRow(groupByHeader, groupValues);
 
             // Loop through the dataset and identify groups
             while (dataSet.next()) {
-                Row row = dataSet.getRow();
-
-                // Subselect a row prototype with only the unique values that
-                // define the group
-                Row uniqueRow = row.getSubSelection(groupByHeader);
-
-                // function input is the values used for calculating aggregate
-                // functions in the group
-                Map<SelectItem, List<Object>> functionInput;
-                if (!uniqueRows.containsKey(uniqueRow)) {
-                    // If this group already exist, use an existing function
-                    // input
-                    functionInput = new HashMap<SelectItem, List<Object>>();
-                    for (SelectItem item : functionItems) {
-                        functionInput.put(item, new ArrayList<Object>());
+                final Row row = dataSet.getRow();
+                final boolean indexed = inputHeaderMatcher.matches(row);
+
+                // Select only the unique values that define the group
+                final Row uniqueRow;
+                if (indexed) {
+                    for (int i = 0; i < groupValues.length; i++) {
+                        Object value = null;
+                        if (groupBySubQueryIndexes[i] != -1) {
+                            value = row.getValue(groupBySubQueryIndexes[i]);
+                        }
+                        if (value == null && groupByIndexes[i] != -1) {
+                            value = row.getValue(groupByIndexes[i]);
+                        }
+                        groupValues[i] = value;
                     }
-                    uniqueRows.put(uniqueRow, functionInput);
+                    uniqueRow = groupRow;
                 } else {
-                    // If this is a new group, create a new function input
-                    functionInput = uniqueRows.get(uniqueRow);
+                    uniqueRow = row.getSubSelection(groupByHeader);
                 }
 
-                // Loop through aggregate functions to check for validity
-                for (SelectItem item : functionItems) {
-                    List<Object> objects = functionInput.get(item);
-                    Column column = item.getColumn();
-                    if (column != null) {
-                        Object value = row.getValue(new SelectItem(column));
-                        objects.add(value);
-                    } else if (SelectItem.isCountAllItem(item)) {
-                        // Just use the empty string, since COUNT(*) don't
-                        // evaluate values (but null values should be prevented)
-                        objects.add("");
+                // the aggregate builders of the group
+                AggregateBuilder<?>[] aggregateBuilders = uniqueRows.get(uniqueRow);
+                if (aggregateBuilders == null) {
+                    // If this is a new group, create new aggregate builders
+                    aggregateBuilders = new AggregateBuilder<?>[functionItems.size()];
+                    for (int i = 0; i < aggregateBuilders.length; i++) {
+                        aggregateBuilders[i] = createAggregateBuilder(functionItems.get(i));
+                    }
+                    if (uniqueRow == groupRow) {
+                        uniqueRows.put(new DefaultRow(groupByHeader, groupValues.clone()), aggregateBuilders);
                     } else {
-                        throw new IllegalArgumentException("Expression function not supported: " + item);
+                        uniqueRows.put(uniqueRow, aggregateBuilders);
                     }
                 }
+
+                // Add the values of the row to the aggregates of the group
+                for (int i = 0; i < aggregateBuilders.length; i++) {
+                    aggregateBuilders[i].add(getAggregateInput(row, indexed, inputIndexes[i], functionItems.get(i)));
+                }
             }
 
             dataSet.close();
             final List<Row> resultData = new ArrayList<Row>();
             final DataSetHeader resultHeader = new CachingDataSetHeader(selectItems);
 
+            final int[] functionIndexes = new int[selectItems.size()];
+            for (int i = 0; i < functionIndexes.length; i++) {
+                functionIndexes[i] = functionItems.indexOf(selectItems.get(i));
+            }
+
             // Loop through the groups to generate aggregates
-            for (Entry<Row, Map<SelectItem, List<Object>>> entry : uniqueRows.entrySet()) {
-                Row row = entry.getKey();
-                Map<SelectItem, List<Object>> functionInput = entry.getValue();
-                Object[] resultRow = new Object[selectItems.size()];
+            for (Entry<Row, AggregateBuilder<?>[]> entry : uniqueRows.entrySet()) {
+                final Row row = entry.getKey();
+                final AggregateBuilder<?>[] aggregateBuilders = entry.getValue();
+                final Object[] resultRow = new Object[selectItems.size()];
                 // Loop through select items to generate a row
-                int i = 0;
-                for (SelectItem item : selectItems) {
-                    int uniqueRowIndex = row.indexOf(item);
+                for (int i = 0; i < resultRow.length; i++) {
+                    final SelectItem item = selectItems.get(i);
+                    final int uniqueRowIndex = row.indexOf(item);
                     if (uniqueRowIndex != -1) {
                         // If there's already a value for the select item in the
                         // row, keep it (it's one of the grouped by columns)
                         resultRow[i] = row.getValue(uniqueRowIndex);
-                    } else {
-                        // Use the function input to calculate the aggregate
-                        // value
-                        List<Object> objects = functionInput.get(item);
-                        if (objects != null) {
-                            Object functionResult = item.getAggregateFunction().evaluate(objects.toArray());
-                            resultRow[i] = functionResult;
-                        } else {
-                            if (item.getAggregateFunction() != null) {
-                                logger.error("No function input found for SelectItem: {}", item);
-                            }
-                        }
+                    } else if (functionIndexes[i] != -1) {
+                        // Use the aggregate builder to get the aggregate value
+                        resultRow[i] = aggregateBuilders[functionIndexes[i]].getAggregate();
+                    } else if (item.getAggregateFunction() != null) {
+                        logger.error("No function input found for SelectItem: {}", item);
                     }
-                    i++;
                 }
                 resultData.add(new DefaultRow(resultHeader, resultRow, null));
             }
@@ -422,7 +570,7 @@ public final class MetaModelHelper {
 
         final Map<SelectItem, AggregateBuilder<?>> aggregateBuilders = new HashMap<SelectItem, AggregateBuilder<?>>();
         for (SelectItem item : functionItems) {
-            aggregateBuilders.put(item, item.getAggregateFunction().createAggregateBuilder());
+            aggregateBuilders.put(item, createAggregateBuilder(item));
         }
 
         final DataSetHeader header;
@@ -435,22 +583,26 @@ public final class MetaModelHelper {
             header = new SimpleDataSetHeader(workSelectItems);
         }
 
+        // Resolve the input indexes of the aggregates and the other values
+        // once, instead of looking them up for every row
+        final DataSetHeader inputHeader = new CachingDataSetHeader(dataSet.getSelectItems());
+        final DataSetHeaderMatcher inputHeaderMatcher = new DataSetHeaderMatcher(inputHeader);
+        final int[] inputIndexes = getAggregateInputIndexes(functionItems, inputHeader);
+        final AggregateBuilder<?>[] builders = new AggregateBuilder<?>[functionItems.size()];
+        for (int i = 0; i < builders.length; i++) {
+            builders[i] = aggregateBuilders.get(functionItems.get(i));
+        }
+        final int[] valueIndexes = new int[header.size()];
+        for (int i = 0; i < valueIndexes.length; i++) {
+            valueIndexes[i] = inputHeader.indexOf(header.getSelectItem(i));
+        }
+
         final List<Row> resultRows = new ArrayList<Row>();
         while (dataSet.next()) {
             final Row inputRow = dataSet.getRow();
-            for (SelectItem item : functionItems) {
-                final AggregateBuilder<?> aggregateBuilder = aggregateBuilders.get(item);
-                final Column column = item.getColumn();
-                if (column != null) {
-                    Object value = inputRow.getValue(new SelectItem(column));
-                    aggregateBuilder.add(value);
-                } else if (SelectItem.isCountAllItem(item)) {
-                    // Just use the empty string, since COUNT(*) don't
-                    // evaluate values (but null values should be prevented)
-                    aggregateBuilder.add("");
-                } else {
-                    throw new IllegalArgumentException("Expression function not supported: " + item);
-                }
+            final boolean indexed = inputHeaderMatcher.matches(inputRow);
+            for (int i = 0; i < builders.length; i++) {
+                builders[i].add(getAggregateInput(inputRow, indexed, inputIndexes[i], functionItems.get(i)));
             }
 
             // If the result should also contain non-aggregated values, we
@@ -458,9 +610,12 @@ public final class MetaModelHelper {
             if (!onlyAggregates) {
                 final Object[] values = new Object[header.size()];
                 for (int i = 0; i < header.size(); i++) {
-                    final Object value = inputRow.getValue(header.getSelectItem(i));
-                    if (value != null) {
-                        values[i] = value;
+                    if (indexed) {
+                        if (valueIndexes[i] != -1) {
+                            values[i] = inputRow.getValue(valueIndexes[i]);
+                        }
+                    } else {
+                        values[i] = inputRow.getValue(header.getSelectItem(i));
                     }
                 }
                 resultRows.add(new DefaultRow(header, values));
@@ -508,6 +663,71 @@ public final class MetaModelHelper {
         return new InMemoryDataSet(header, resultRows);
     }
 
+    /**
+     * Creates the {@link AggregateBuilder} for an aggregate function select
+     * item, taking function parameters into account where applicable.
+     */
+    private static AggregateBuilder<?> createAggregateBuilder(SelectItem item) {
+        final AggregateFunction function = item.getAggregateFunction();
+        if (function instanceof DefaultAggregateFunction) {
+            return ((DefaultAggregateFunction<?>) function).createAggregateBuilder(item.getFunctionParameters());
+        }
+        return function.createAggregateBuilder();
+    }
+
+    /**
+     * Resolves the indexes of the input values of a list of aggregate function
+     * select items, see {@link #getAggregateInput(Row, boolean, int, SelectItem)}.
+     */
+    private static int[] getAggregateInputIndexes(List<SelectItem> functionItems, DataSetHeader inputHeader) {
+        final int[] inputIndexes = new int[functionItems.size()];
+        for (int i = 0; i < inputIndexes.length; i++) {
+            final SelectItem item = functionItems.get(i);
+            final Column column = item.getColumn();
+            if (column != null) {
+                inputIndexes[i] = inputHeader.indexOf(new SelectItem(column));
+            } else if (SelectItem.isCountAllItem(item)) {
+                inputIndexes[i] = AGGREGATE_INPUT_COUNT_ALL;
+            } else {
+                inputIndexes[i] = AGGREGATE_INPUT_UNSUPPORTED;
+            }
+        }
+        return inputIndexes;
+    }
+
+    /**
+     * Gets the value of a row that should be added to the aggregate of a
+     * function select item.
+     * 
+     * @param row
+     *            the input row
+     * @param indexed
+     *            whether the row corresponds to the header that the input
+     *            index was resolved against
+     * @param inputIndex
+     *            the resolved input index
+     * @param item
+     *            the aggregate function select item
+     * @return
+     */
+    private static Object getAggregateInput(Row row, boolean indexed, int inputIndex, SelectItem item) {
+        if (inputIndex == AGGREGATE_INPUT_COUNT_ALL) {
+            // Just use the empty string, since COUNT(*) don't
+            // evaluate values (but null values should be prevented)
+            return "";
+        }
+        if (inputIndex == AGGREGATE_INPUT_UNSUPPORTED) {
+            throw new IllegalArgumentException("Expression function not supported: " + item);
+        }
+        if (!indexed) {
+            return row.getValue(new SelectItem(item.getColumn()));
+        }
+        if (inputIndex == -1) {
+            return null;
+        }
+        return row.getValue(inputIndex);
+    }
+
     /**
      * 
      * @param selectItems
@@ -549,12 +769,29 @@ public final class MetaModelHelper {
     }
 
     public static DataSet getOrdered(DataSet dataSet, final OrderByItem... orderByItems) {
+        return getOrdered(dataSet, getOrderByMaxRowsInMemory(), orderByItems);
+    }
+
+    /**
+     * Orders a dataset by a set of {@link OrderByItem}s.
+     * 
+     * @param dataSet
+     *            the dataset to order
+     * @param maxRowsInMemory
+     *            the maximum number of rows to hold in memory while ordering.
+     *            If the dataset contains more rows than this, sorted runs of
+     *            rows are spilled to temporary files and merged afterwards. A
+     *            value of -1 means that all rows are sorted in memory.
+     * @param orderByItems
+     *            the items to order by
+     * @return the ordered dataset
+     */
+    public static DataSet getOrdered(DataSet dataSet, int maxRowsInMemory, final OrderByItem... orderByItems) {
         if (orderByItems != null && orderByItems.length != 0) {
-            final int[] sortIndexes = new int[orderByItems.length];
-            for (int i = 0; i < orderByItems.length; i++) {
-                OrderByItem item = orderByItems[i];
-                int indexOf = dataSet.indexOf(item.getSelectItem());
-                sortIndexes[i] = indexOf;
+            final Comparator<Row> comparator = createOrderByComparator(dataSet, orderByItems);
+
+            if (maxRowsInMemory > 0) {
+                return new ExternalSortDataSet(dataSet, comparator, maxRowsInMemory);
             }
 
             final List<Row> data = readDataSetFull(dataSet);
@@ -562,30 +799,6 @@ public final class MetaModelHelper {
                 return new EmptyDataSet(dataSet.getSelectItems());
             }
 
-            final Comparator<Object> valueComparator = ObjectComparator.getComparator();
-
-            // create a comparator for doing the actual sorting/ordering
-            final Comparator<Row> comparator = new Comparator<Row>() {
-                public int compare(Row o1, Row o2) {
-                    for (int i = 0; i < sortIndexes.length; i++) {
-                        int sortIndex = sortIndexes[i];
-                        Object sortObj1 = o1.getValue(sortIndex);
-                        Object sortObj2 = o2.getValue(sortIndex);
-                        int compare = valueComparator.compare(sortObj1, sortObj2);
-                        if (compare != 0) {
-                            OrderByItem orderByItem = orderByItems[i];
-                            boolean ascending = orderByItem.isAscending();
-                            if (ascending) {
-                                return compare;
-                            } else {
-                                return compare * -1;
-                            }
-                        }
-                    }
-                    return 0;
-                }
-            };
-
             Collections.sort(data, comparator);
 
             dataSet = new InMemoryDataSet(data);
@@ -593,6 +806,140 @@ public final class MetaModelHelper {
         return dataSet;
     }
 
+    /**
+     * Orders a dataset by a set of {@link OrderByItem}s, when only a particular
+     * page of the ordered rows is needed. Instead of sorting all rows, only the
+     * top rows (up until the last row of the page) are kept, using a bounded
+     * priority queue.
+     * 
+     * Note that paging is not applied by this method, see
+     * {@link #getPaged(DataSet, int, int)}.
+     * 
+     * @param dataSet
+     *            the dataset to order
+     * @param orderByItems
+     *            the items to order by
+     * @param firstRow
+     *            the first row of the page (1-based)
+     * @param maxRows
+     *            the maximum number of rows of the page, or -1 if all rows
+     *            should be ordered
+     * @return the ordered dataset, containing at least the rows of the page
+     */
+    public static DataSet getOrdered(DataSet dataSet, List<OrderByItem> orderByItems, int firstRow, int maxRows) {
+        final long topRows = (long) firstRow - 1 + maxRows;
+        final int maxRowsInMemory = getOrderByMaxRowsInMemory();
+        if (orderByItems.isEmpty() || maxRows < 0 || topRows > Integer.MAX_VALUE
+                || (maxRowsInMemory > 0 && topRows > maxRowsInMemory)) {
+            return getOrdered(dataSet, maxRowsInMemory,
+                    orderByItems.toArray(new OrderByItem[orderByItems.size()]));
+        }
+
+        final OrderByItem[] orderByItemArray = orderByItems.toArray(new OrderByItem[orderByItems.size()]);
+        final Comparator<Row> rowComparator = createOrderByComparator(dataSet, orderByItemArray);
+        final Comparator<NumberedRow> comparator = new Comparator<NumberedRow>() {
+            @Override
+            public int compare(NumberedRow o1, NumberedRow o2) {
+                final int result = rowComparator.compare(o1.row, o2.row);
+                if (result == 0) {
+                    // keep the original order of equal rows
+                    return Long.compare(o1.rowNumber, o2.rowNumber);
+                }
+                return result;
+            }
+        };
+
+        // a max-heap of the top rows, ie. the head is the "worst" row
+        final int limit = (int) topRows;
+        final PriorityQueue<NumberedRow> heap = new PriorityQueue<NumberedRow>(Math.max(1, Math.min(limit, 1024)),
+                Collections.reverseOrder(comparator));
+        long rowNumber = 0;
+        while (dataSet.next()) {
+            final NumberedRow entry = new NumberedRow(dataSet.getRow(), rowNumber);
+            rowNumber++;
+            if (heap.size() < limit) {
+                heap.add(entry);
+            } else if (limit > 0 && comparator.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        dataSet.close();
+
+        if (heap.isEmpty()) {
+            return new EmptyDataSet(dataSet.getSelectItems());
+        }
+
+        final List<NumberedRow> entries = new ArrayList<NumberedRow>(heap);
+        Collections.sort(entries, comparator);
+        final List<Row> rows = new ArrayList<Row>(entries.size());
+        for (NumberedRow entry : entries) {
+            rows.add(entry.row);
+        }
+        return new InMemoryDataSet(rows);
+    }
+
+    /**
+     * A row and its position in the dataset it originates from.
+     */
+    private static final class NumberedRow {
+
+        private final Row row;
+        private final long rowNumber;
+
+        public NumberedRow(Row row, long rowNumber) {
+            this.row = row;
+            this.rowNumber = rowNumber;
+        }
+    }
+
+    private static Comparator<Row> createOrderByComparator(DataSet dataSet, final OrderByItem... orderByItems) {
+        final int[] sortIndexes = new int[orderByItems.length];
+        for (int i = 0; i < orderByItems.length; i++) {
+            OrderByItem item = orderByItems[i];
+            int indexOf = dataSet.indexOf(item.getSelectItem());
+            sortIndexes[i] = indexOf;
+        }
+
+        final Comparator<Object> valueComparator = ObjectComparator.getComparator();
+
+        // create a comparator for doing the actual sorting/ordering
+        return new Comparator<Row>() {
+            public int compare(Row o1, Row o2) {
+                for (int i = 0; i < sortIndexes.length; i++) {
+                    int sortIndex = sortIndexes[i];
+                    Object sortObj1 = o1.getValue(sortIndex);
+                    Object sortObj2 = o2.getValue(sortIndex);
+                    int compare = valueComparator.compare(sortObj1, sortObj2);
+                    if (compare != 0) {
+                        OrderByItem orderByItem = orderByItems[i];
+                        boolean ascending = orderByItem.isAscending();
+                        if (ascending) {
+                            return compare;
+                        } else {
+                            return compare * -1;
+                        }
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    private static int getOrderByMaxRowsInMemory() {
+        final String str = System.getProperty(SYSTEM_PROPERTY_ORDER_BY_MAX_ROWS_IN_MEMORY);
+        if (str == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(str.trim());
+        } catch (NumberFormatException e) {
+            logger.debug("Failed to parse system property '{}': '{}'", SYSTEM_PROPERTY_ORDER_BY_MAX_ROWS_IN_MEMORY,
+                    str);
+            return -1;
+        }
+    }
+
     public static List<Row> readDataSetFull(DataSet dataSet) {
         final List<Row> result;
         if (dataSet instanceof InMemoryDataSet) {
@@ -676,6 +1023,8 @@ public final class MetaModelHelper {
 
     /**
      * Performs a left join (aka left outer join) operation on two datasets.
+     * The right dataset is read and indexed by the join columns once, after
+     * which the left dataset is streamed.
      * 
      * @param ds1
      *            the left dataset
@@ -698,45 +1047,15 @@ public final class MetaModelHelper {
         System.arraycopy(si1, 0, selectItems, 0, si1.length);
         System.arraycopy(si2, 0, selectItems, si1.length, si2.length);
 
-        List<Row> resultRows = new ArrayList<Row>();
-        List<Row> ds2data = readDataSetFull(ds2);
+        final List<Row> ds2data = readDataSetFull(ds2);
         if (ds2data.isEmpty()) {
             // no need to join, simply return a new view (with null values) on
             // the previous dataset.
             return getSelection(selectItems, ds1);
         }
 
-        final DataSetHeader header = new CachingDataSetHeader(selectItems);
-
-        while (ds1.next()) {
-
-            // Construct a single-row dataset for making a carthesian product
-            // against ds2
-            Row ds1row = ds1.getRow();
-            List<Row> ds1rows = new ArrayList<Row>();
-            ds1rows.add(ds1row);
-
-            DataSet carthesianProduct = getCarthesianProduct(
-                    new DataSet[] { new InMemoryDataSet(new CachingDataSetHeader(si1), ds1rows),
-                            new InMemoryDataSet(new CachingDataSetHeader(si2), ds2data) },
-                    onConditions);
-            List<Row> carthesianRows = readDataSetFull(carthesianProduct);
-            if (carthesianRows.size() > 0) {
-                resultRows.addAll(carthesianRows);
-            } else {
-                Object[] values = ds1row.getValues();
-                Object[] row = new Object[selectItems.length];
-                System.arraycopy(values, 0, row, 0, values.length);
-                resultRows.add(new DefaultRow(header, row));
-            }
-        }
-        ds1.close();
-
-        if (resultRows.isEmpty()) {
-            return new EmptyDataSet(selectItems);
-        }
-
-        return new InMemoryDataSet(header, resultRows);
+        final DataSet buildDataSet = new InMemoryDataSet(new CachingDataSetHeader(si2), ds2data);
+        return getHashJoin(ds1, buildDataSet, Arrays.asList(onConditions), true);
     }
 
     /**
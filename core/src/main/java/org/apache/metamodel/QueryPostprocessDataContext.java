@@ -22,8 +22,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.metamodel.convert.ConvertedDataSetInterceptor;
 import org.apache.metamodel.convert.Converters;
@@ -58,6 +65,7 @@ import org.apache.metamodel.schema.Schema;
 import org.apache.metamodel.schema.Table;
 import org.apache.metamodel.schema.TableType;
 import org.apache.metamodel.util.CollectionUtils;
+import org.apache.metamodel.util.FileHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,6 +84,7 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
     public static final String INFORMATION_SCHEMA_NAME = "information_schema";
 
     private final Map<Column, TypeConverter<?, ?>> _converters;
+    private volatile ExecutorService _materializationExecutor;
 
     public QueryPostprocessDataContext() {
         super();
@@ -87,7 +96,6 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
         final List<SelectItem> selectItems = query.getSelectClause().getItems();
         final List<FromItem> fromItems = query.getFromClause().getItems();
         final List<FilterItem> whereItems = query.getWhereClause().getItems();
-        final List<SelectItem> whereSelectItems = query.getWhereClause().getEvaluatedSelectItems();
         final List<GroupByItem> groupByItems = query.getGroupByClause().getItems();
         final List<SelectItem> groupBySelectItems = query.getGroupByClause().getEvaluatedSelectItems();
         final List<SelectItem> havingSelectItems = query.getHavingClause().getEvaluatedSelectItems();
@@ -180,20 +188,26 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
             }
         }
 
+        // WHERE items that only concern a single table are applied when
+        // materializing that table, instead of on the joined data
+        final Map<FromItem, List<FilterItem>> tableWhereItems = new IdentityHashMap<FromItem, List<FilterItem>>();
+        final List<FilterItem> joinWhereItems = splitWhereItems(fromItems, whereItems, tableWhereItems);
+
         // Creates a list for all select items that are needed to execute query
         // (some may only be used as part of a filter, but not shown in result)
-        List<SelectItem> workSelectItems = CollectionUtils.concat(true, selectItems, whereSelectItems,
-                groupBySelectItems, havingSelectItems, orderBySelectItems);
+        List<SelectItem> workSelectItems = CollectionUtils.concat(true, selectItems,
+                MetaModelHelper.getEvaluatedSelectItems(joinWhereItems), groupBySelectItems, havingSelectItems,
+                orderBySelectItems);
 
         // Materialize the tables in the from clause
-        final DataSet[] fromDataSets = new DataSet[fromItems.size()];
-        for (int i = 0; i < fromDataSets.length; i++) {
-            FromItem fromItem = fromItems.get(i);
-            fromDataSets[i] = materializeFromItem(fromItem, workSelectItems);
+        final List<List<SelectItem>> fromSelectItems = new ArrayList<List<SelectItem>>(fromItems.size());
+        for (int i = 0; i < fromItems.size(); i++) {
+            fromSelectItems.add(workSelectItems);
         }
+        final DataSet[] fromDataSets = materializeFromItems(fromItems, fromSelectItems, tableWhereItems, true);
 
         // Execute the query using the raw data
-        DataSet dataSet = MetaModelHelper.getCarthesianProduct(fromDataSets, whereItems);
+        DataSet dataSet = MetaModelHelper.getCarthesianProduct(fromDataSets, joinWhereItems);
 
         // we can now exclude the select items imposed by the WHERE clause (and
         // should, to make the aggregation process faster)
@@ -207,12 +221,14 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
         }
         dataSet = MetaModelHelper.getFiltered(dataSet, havingItems);
 
+        // when only the top rows are needed, the ordering can avoid sorting
+        // all rows
         if (query.getSelectClause().isDistinct()) {
             dataSet = MetaModelHelper.getSelection(selectItems, dataSet);
             dataSet = MetaModelHelper.getDistinct(dataSet);
-            dataSet = MetaModelHelper.getOrdered(dataSet, orderByItems);
+            dataSet = MetaModelHelper.getOrdered(dataSet, orderByItems, firstRow, maxRows);
         } else {
-            dataSet = MetaModelHelper.getOrdered(dataSet, orderByItems);
+            dataSet = MetaModelHelper.getOrdered(dataSet, orderByItems, firstRow, maxRows);
             dataSet = MetaModelHelper.getSelection(selectItems, dataSet);
         }
 
@@ -279,7 +295,302 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
         return null;
     }
 
+    /**
+     * Splits the WHERE items of a query into the items that only concern a
+     * single table of the FROM clause, and the items that have to be applied
+     * on the joined data. Items are only assigned to tables of which the rows
+     * are not null-extended by an outer join, and which can be identified
+     * unambiguously.
+     * 
+     * @param fromItems
+     * @param whereItems
+     * @param tableWhereItems
+     *            a map to put the WHERE items of each table {@link FromItem}
+     *            into
+     * @return the WHERE items that were not assigned to a single table
+     */
+    private List<FilterItem> splitWhereItems(List<FromItem> fromItems, List<FilterItem> whereItems,
+            Map<FromItem, List<FilterItem>> tableWhereItems) {
+        if (whereItems.isEmpty()) {
+            return whereItems;
+        }
+
+        final List<FromItem> tableFromItems = new ArrayList<FromItem>();
+        final List<FromItem> filterableFromItems = new ArrayList<FromItem>();
+        for (FromItem fromItem : fromItems) {
+            collectTableFromItems(fromItem, true, tableFromItems, filterableFromItems);
+        }
+        if (filterableFromItems.isEmpty()) {
+            return whereItems;
+        }
+
+        final List<FilterItem> joinWhereItems = new ArrayList<FilterItem>();
+        for (FilterItem whereItem : whereItems) {
+            final FromItem fromItem = getSingleTableFromItem(whereItem, tableFromItems);
+            if (fromItem != null && filterableFromItems.contains(fromItem)) {
+                List<FilterItem> items = tableWhereItems.get(fromItem);
+                if (items == null) {
+                    items = new ArrayList<FilterItem>();
+                    tableWhereItems.put(fromItem, items);
+                }
+                items.add(whereItem);
+            } else {
+                joinWhereItems.add(whereItem);
+            }
+        }
+        return joinWhereItems;
+    }
+
+    private static void collectTableFromItems(FromItem fromItem, boolean filterable, List<FromItem> tableFromItems,
+            List<FromItem> filterableFromItems) {
+        if (fromItem.getTable() != null) {
+            tableFromItems.add(fromItem);
+            if (filterable) {
+                filterableFromItems.add(fromItem);
+            }
+        } else if (fromItem.getJoin() != null && fromItem.getLeftSide() != null && fromItem.getRightSide() != null) {
+            final JoinType joinType = fromItem.getJoin();
+            collectTableFromItems(fromItem.getLeftSide(), filterable && joinType != JoinType.RIGHT, tableFromItems,
+                    filterableFromItems);
+            collectTableFromItems(fromItem.getRightSide(), filterable && joinType != JoinType.LEFT, tableFromItems,
+                    filterableFromItems);
+        }
+    }
+
+    /**
+     * Gets the table {@link FromItem} that all select items of a
+     * {@link FilterItem} refer to.
+     * 
+     * @return the from item, or null if the filter item refers to several (or
+     *         no) from items, or if it cannot be determined
+     */
+    static FromItem getSingleTableFromItem(FilterItem filterItem, List<FromItem> tableFromItems) {
+        if (filterItem.getExpression() != null) {
+            return null;
+        }
+        if (filterItem.isCompoundFilter()) {
+            FromItem result = null;
+            for (FilterItem childItem : filterItem.getChildItems()) {
+                final FromItem fromItem = getSingleTableFromItem(childItem, tableFromItems);
+                if (fromItem == null || (result != null && result != fromItem)) {
+                    return null;
+                }
+                result = fromItem;
+            }
+            return result;
+        }
+
+        final FromItem fromItem = getTableFromItem(filterItem.getSelectItem(), tableFromItems);
+        if (fromItem == null) {
+            return null;
+        }
+        final Object operand = filterItem.getOperand();
+        if (operand instanceof SelectItem && getTableFromItem((SelectItem) operand, tableFromItems) != fromItem) {
+            return null;
+        }
+        return fromItem;
+    }
+
+    static FromItem getTableFromItem(SelectItem selectItem, List<FromItem> tableFromItems) {
+        if (selectItem == null || selectItem.getSubQuerySelectItem() != null
+                || selectItem.getAggregateFunction() != null) {
+            return null;
+        }
+
+        final FromItem selectedFromItem = selectItem.getFromItem();
+        if (selectedFromItem != null) {
+            FromItem result = null;
+            for (FromItem fromItem : tableFromItems) {
+                if (fromItem.equals(selectedFromItem)) {
+                    if (result != null) {
+                        // the from item occurs more than once
+                        return null;
+                    }
+                    result = fromItem;
+                }
+            }
+            return result;
+        }
+
+        final Column column = selectItem.getColumn();
+        if (column == null || column.getTable() == null) {
+            return null;
+        }
+        FromItem result = null;
+        for (FromItem fromItem : tableFromItems) {
+            if (column.getTable().equals(fromItem.getTable())) {
+                if (result != null) {
+                    // the table occurs more than once
+                    return null;
+                }
+                result = fromItem;
+            }
+        }
+        return result;
+    }
+
     protected DataSet materializeFromItem(final FromItem fromItem, final List<SelectItem> selectItems) {
+        return materializeFromItem(fromItem, selectItems, Collections.<FromItem, List<FilterItem>> emptyMap(), true);
+    }
+
+    /**
+     * Sets an {@link ExecutorService} to use for materializing independent
+     * {@link FromItem}s (and the two sides of joins) of a query in parallel.
+     * This is typically useful when the tables are materialized from slow or
+     * remote sources. By default (null) all {@link FromItem}s are materialized
+     * sequentially.
+     * 
+     * Note that {@link FromItem}s containing subqueries are always
+     * materialized by the thread executing the query, and that tasks of the
+     * executor never submit further tasks, so that a bounded thread pool
+     * cannot be exhausted by tasks waiting for other tasks.
+     * 
+     * @param materializationExecutor
+     *            the executor to use, or null for sequential materialization
+     */
+    public void setMaterializationExecutor(ExecutorService materializationExecutor) {
+        _materializationExecutor = materializationExecutor;
+    }
+
+    public ExecutorService getMaterializationExecutor() {
+        return _materializationExecutor;
+    }
+
+    /**
+     * Materializes a number of {@link FromItem}s, in parallel if a
+     * materialization executor is set. If the materialization of any of the
+     * {@link FromItem}s fails, the remaining tasks are cancelled and the
+     * already materialized {@link DataSet}s are closed.
+     * 
+     * @param fromItems
+     * @param selectItems
+     *            the select items to materialize for each from item
+     * @param tableWhereItems
+     * @param parallel
+     *            whether or not parallel materialization is allowed
+     * @return
+     */
+    private DataSet[] materializeFromItems(final List<FromItem> fromItems, final List<List<SelectItem>> selectItems,
+            final Map<FromItem, List<FilterItem>> tableWhereItems, final boolean parallel) {
+        final DataSet[] dataSets = new DataSet[fromItems.size()];
+        final ExecutorService executor = _materializationExecutor;
+        if (!parallel || executor == null || dataSets.length < 2) {
+            for (int i = 0; i < dataSets.length; i++) {
+                dataSets[i] = materializeFromItem(fromItems.get(i), selectItems.get(i), tableWhereItems, parallel);
+            }
+            return dataSets;
+        }
+
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        // the datasets materialized by tasks, which are closed by whoever
+        // observes a failure last: the task itself or the cancellation
+        final AtomicReferenceArray<DataSet> materialized = new AtomicReferenceArray<DataSet>(dataSets.length);
+        final List<Future<DataSet>> futures = new ArrayList<Future<DataSet>>(dataSets.length);
+        boolean success = false;
+        try {
+            // the first from item is always materialized by the calling thread
+            futures.add(null);
+            for (int i = 1; i < dataSets.length; i++) {
+                final FromItem fromItem = fromItems.get(i);
+                if (containsSubQuery(fromItem)) {
+                    futures.add(null);
+                } else {
+                    final List<SelectItem> fromItemSelectItems = selectItems.get(i);
+                    final int index = i;
+                    futures.add(executor.submit(new Callable<DataSet>() {
+                        @Override
+                        public DataSet call() throws Exception {
+                            final DataSet dataSet = materializeFromItem(fromItem, fromItemSelectItems,
+                                    tableWhereItems, false);
+                            materialized.set(index, dataSet);
+                            if (failed.get() && materialized.compareAndSet(index, dataSet, null)) {
+                                // a sibling failed, nobody is going to consume
+                                // the dataset
+                                dataSet.close();
+                                return null;
+                            }
+                            return dataSet;
+                        }
+                    }));
+                }
+            }
+
+            for (int i = 0; i < dataSets.length; i++) {
+                if (futures.get(i) == null) {
+                    dataSets[i] = materializeFromItem(fromItems.get(i), selectItems.get(i), tableWhereItems, true);
+                }
+            }
+            for (int i = 0; i < dataSets.length; i++) {
+                if (futures.get(i) != null) {
+                    dataSets[i] = futures.get(i).get();
+                }
+            }
+            success = true;
+            return dataSets;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetaModelException("Interrupted while materializing FROM items", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MetaModelException(e);
+        } finally {
+            if (!success) {
+                cancelMaterialization(failed, materialized, futures, dataSets);
+            }
+        }
+    }
+
+    private static void cancelMaterialization(AtomicBoolean failed, AtomicReferenceArray<DataSet> materialized,
+            List<Future<DataSet>> futures, DataSet[] dataSets) {
+        // set the failed flag before collecting the materialized datasets, so
+        // that tasks which complete later close their own datasets
+        failed.set(true);
+        for (int i = 0; i < futures.size(); i++) {
+            final Future<DataSet> future = futures.get(i);
+            if (future == null) {
+                // materialized by the calling thread
+                if (dataSets[i] != null) {
+                    FileHelper.safeClose(dataSets[i]);
+                }
+            } else {
+                future.cancel(true);
+                final DataSet dataSet = materialized.getAndSet(i, null);
+                if (dataSet != null) {
+                    FileHelper.safeClose(dataSet);
+                }
+            }
+        }
+    }
+
+    private static boolean containsSubQuery(FromItem fromItem) {
+        if (fromItem.getSubQuery() != null) {
+            return true;
+        }
+        if (fromItem.getLeftSide() != null && containsSubQuery(fromItem.getLeftSide())) {
+            return true;
+        }
+        return fromItem.getRightSide() != null && containsSubQuery(fromItem.getRightSide());
+    }
+
+    /**
+     * Materializes a {@link FromItem}, applying WHERE items to the table
+     * {@link FromItem}s that they have been assigned to.
+     * 
+     * @param fromItem
+     * @param selectItems
+     * @param tableWhereItems
+     * @param parallel
+     *            whether or not the sides of joins may be materialized in
+     *            parallel
+     * @return
+     */
+    private DataSet materializeFromItem(final FromItem fromItem, final List<SelectItem> selectItems,
+            final Map<FromItem, List<FilterItem>> tableWhereItems, final boolean parallel) {
         DataSet dataSet;
         JoinType joinType = fromItem.getJoin();
         if (fromItem.getTable() != null) {
@@ -307,30 +618,35 @@ public abstract class QueryPostprocessDataContext extends AbstractDataContext im
                 }
             }
 
+            List<FilterItem> whereItems = tableWhereItems.get(fromItem);
+            if (whereItems == null) {
+                whereItems = Collections.emptyList();
+            }
+
             if (logger.isDebugEnabled()) {
-                logger.debug("calling materializeTable(" + table.getName() + "," + selectItemsToMaterialize + ",1,-1");
+                logger.debug("calling materializeTable(" + table.getName() + "," + selectItemsToMaterialize + ","
+                        + whereItems + ",1,-1");
             }
 
             // Dispatching to the concrete subclass of
             // QueryPostprocessDataContextStrategy
-            dataSet = materializeTable(table, selectItemsToMaterialize, 1, -1);
+            dataSet = materializeTable(table, selectItemsToMaterialize, whereItems, 1, -1);
 
         } else if (joinType != null) {
             // We need to (recursively) materialize a joined FromItem
             if (fromItem.getLeftSide() == null || fromItem.getRightSide() == null) {
                 throw new IllegalArgumentException("Joined FromItem requires both left and right side: " + fromItem);
             }
-            final DataSet[] fromItemDataSets = new DataSet[2];
 
-            // materialize left side
+            // materialize left and right side
             final List<SelectItem> leftOn = Arrays.asList(fromItem.getLeftOn());
-            fromItemDataSets[0] = materializeFromItem(fromItem.getLeftSide(),
-                    CollectionUtils.concat(true, selectItems, leftOn));
-
-            // materialize right side
             final List<SelectItem> rightOn = Arrays.asList(fromItem.getRightOn());
-            fromItemDataSets[1] = materializeFromItem(fromItem.getRightSide(),
-                    CollectionUtils.concat(true, selectItems, rightOn));
+            final List<List<SelectItem>> sideSelectItems = new ArrayList<List<SelectItem>>(2);
+            sideSelectItems.add(CollectionUtils.concat(true, selectItems, leftOn));
+            sideSelectItems.add(CollectionUtils.concat(true, selectItems, rightOn));
+            final DataSet[] fromItemDataSets = materializeFromItems(
+                    Arrays.asList(fromItem.getLeftSide(), fromItem.getRightSide()), sideSelectItems, tableWhereItems,
+                    parallel);
 
             final FilterItem[] onConditions = new FilterItem[leftOn.size()];
             for (int i = 0; i < onConditions.length; i++) {
@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.data;
+
+import org.apache.metamodel.query.SelectItem;
+
+/**
+ * Determines if rows have the layout of a particular {@link DataSetHeader},
+ * ie. the same select items (the same instances) in the same order, so that
+ * indexes resolved against the header can be used to get their values.
+ * 
+ * Rows are matched by the identity of their header, and a header that is not
+ * the expected one is only verified once, so matching the rows of a
+ * {@link DataSet} does not copy their select items.
+ */
+public final class DataSetHeaderMatcher {
+
+    private final DataSetHeader _header;
+
+    // the last header that was verified to match, shared without
+    // synchronization since any verified header is a valid cache entry
+    private DataSetHeader _verifiedHeader;
+
+    public DataSetHeaderMatcher(DataSetHeader header) {
+        _header = header;
+    }
+
+    /**
+     * Determines if a row has the layout of the header of this matcher.
+     * 
+     * @param row
+     * @return
+     */
+    public boolean matches(Row row) {
+        if (row instanceof AbstractRow) {
+            final DataSetHeader rowHeader = ((AbstractRow) row).getHeader();
+            if (rowHeader == _header || rowHeader == _verifiedHeader) {
+                return true;
+            }
+            if (rowHeader.size() != _header.size()) {
+                return false;
+            }
+            for (int i = 0; i < rowHeader.size(); i++) {
+                if (rowHeader.getSelectItem(i) != _header.getSelectItem(i)) {
+                    return false;
+                }
+            }
+            _verifiedHeader = rowHeader;
+            return true;
+        }
+
+        // other row implementations do not expose their header
+        final SelectItem[] selectItems = row.getSelectItems();
+        if (selectItems.length != _header.size()) {
+            return false;
+        }
+        for (int i = 0; i < selectItems.length; i++) {
+            if (selectItems[i] != _header.getSelectItem(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,271 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.metamodel.MetaModelException;
+import org.apache.metamodel.util.FileHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link DataSet} that sorts another {@link DataSet} without requiring all
+ * rows to be held in memory. Rows are buffered up to a configurable maximum,
+ * after which the buffer is sorted and spilled to a temporary file as a
+ * "run". When the wrapped dataset is exhausted, the runs are merged while
+ * this dataset is traversed.
+ *
+ * If the wrapped dataset fits within the in-memory buffer, no files are
+ * written at all. Note that the values of spilled rows must be serializable
+ * and that row styles are not retained for spilled rows.
+ */
+public final class ExternalSortDataSet extends AbstractDataSet implements WrappingDataSet {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExternalSortDataSet.class);
+
+    // how often to reset object streams, to avoid retaining written objects
+    private static final int RESET_INTERVAL = 1000;
+
+    private final DataSet _dataSet;
+    private final Comparator<Row> _comparator;
+    private final int _maxRowsInMemory;
+
+    private List<File> _runFiles;
+    private Iterator<Row> _memoryIterator;
+    private PriorityQueue<RunReader> _mergeQueue;
+    private Row _row;
+
+    /**
+     * Constructs an {@link ExternalSortDataSet}.
+     *
+     * @param dataSet
+     *            the dataset to sort
+     * @param comparator
+     *            the comparator that defines the sort order
+     * @param maxRowsInMemory
+     *            the maximum number of rows to keep in memory before spilling
+     *            a sorted run to disk
+     */
+    public ExternalSortDataSet(DataSet dataSet, Comparator<Row> comparator, int maxRowsInMemory) {
+        super(dataSet);
+        if (maxRowsInMemory < 1) {
+            throw new IllegalArgumentException("Max rows in memory must be a positive number");
+        }
+        _dataSet = dataSet;
+        _comparator = comparator;
+        _maxRowsInMemory = maxRowsInMemory;
+    }
+
+    @Override
+    public DataSet getWrappedDataSet() {
+        return _dataSet;
+    }
+
+    @Override
+    public boolean next() {
+        if (_runFiles == null) {
+            sort();
+        }
+
+        if (_memoryIterator != null) {
+            if (_memoryIterator.hasNext()) {
+                _row = _memoryIterator.next();
+                return true;
+            }
+            _row = null;
+            return false;
+        }
+
+        final RunReader reader = _mergeQueue.poll();
+        if (reader == null) {
+            _row = null;
+            return false;
+        }
+        _row = reader.getRow();
+        if (reader.next()) {
+            _mergeQueue.add(reader);
+        } else {
+            reader.close();
+        }
+        return true;
+    }
+
+    @Override
+    public Row getRow() {
+        return _row;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        _dataSet.close();
+        if (_mergeQueue != null) {
+            for (RunReader reader : _mergeQueue) {
+                reader.close();
+            }
+            _mergeQueue = null;
+        }
+        if (_runFiles != null) {
+            for (File file : _runFiles) {
+                deleteRunFile(file);
+            }
+        }
+        _memoryIterator = null;
+    }
+
+    private void sort() {
+        _runFiles = new ArrayList<File>();
+        List<Row> buffer = new ArrayList<Row>();
+        try {
+            while (_dataSet.next()) {
+                buffer.add(_dataSet.getRow());
+                if (buffer.size() >= _maxRowsInMemory) {
+                    spill(buffer);
+                    buffer = new ArrayList<Row>();
+                }
+            }
+        } finally {
+            _dataSet.close();
+        }
+
+        if (_runFiles.isEmpty()) {
+            // everything fit in memory
+            Collections.sort(buffer, _comparator);
+            _memoryIterator = buffer.iterator();
+            return;
+        }
+
+        if (!buffer.isEmpty()) {
+            spill(buffer);
+        }
+
+        logger.debug("Merging {} sorted runs", _runFiles.size());
+
+        _mergeQueue = new PriorityQueue<RunReader>(_runFiles.size());
+        for (int i = 0; i < _runFiles.size(); i++) {
+            final RunReader reader = new RunReader(_runFiles.get(i), i);
+            if (reader.next()) {
+                _mergeQueue.add(reader);
+            } else {
+                reader.close();
+            }
+        }
+    }
+
+    private void spill(List<Row> buffer) {
+        Collections.sort(buffer, _comparator);
+
+        final File file = FileHelper.createTempFile("metamodel_sort", ".run");
+        file.deleteOnExit();
+        _runFiles.add(file);
+
+        logger.debug("Spilling sorted run of {} rows to {}", buffer.size(), file);
+
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(FileHelper.getOutputStream(file));
+            int count = 0;
+            for (Row row : buffer) {
+                out.writeBoolean(true);
+                out.writeObject(row.getValues());
+                count++;
+                if (count % RESET_INTERVAL == 0) {
+                    out.reset();
+                }
+            }
+            out.writeBoolean(false);
+            out.flush();
+        } catch (IOException e) {
+            throw new MetaModelException("Failed to write sorted run to temporary file: " + file, e);
+        } finally {
+            FileHelper.safeClose(out);
+        }
+    }
+
+    private void deleteRunFile(File file) {
+        if (file.exists() && !file.delete()) {
+            logger.warn("Could not delete temporary file: {}", file);
+        }
+    }
+
+    /**
+     * Reads the rows of a single sorted run. Readers are ordered by their
+     * current row, and by their run number for equal rows, which keeps the
+     * sort stable.
+     */
+    private final class RunReader implements Comparable<RunReader> {
+
+        private final File _file;
+        private final int _runNumber;
+        private ObjectInputStream _in;
+        private Row _currentRow;
+
+        public RunReader(File file, int runNumber) {
+            _file = file;
+            _runNumber = runNumber;
+            try {
+                _in = new ObjectInputStream(FileHelper.getInputStream(file));
+            } catch (IOException e) {
+                throw new MetaModelException("Failed to read sorted run from temporary file: " + file, e);
+            }
+        }
+
+        public boolean next() {
+            try {
+                if (!_in.readBoolean()) {
+                    _currentRow = null;
+                    return false;
+                }
+                final Object[] values = (Object[]) _in.readObject();
+                _currentRow = new DefaultRow(getHeader(), values);
+                return true;
+            } catch (IOException | ClassNotFoundException e) {
+                throw new MetaModelException("Failed to read sorted run from temporary file: " + _file, e);
+            }
+        }
+
+        public Row getRow() {
+            return _currentRow;
+        }
+
+        public void close() {
+            FileHelper.safeClose(_in);
+            deleteRunFile(_file);
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            final int result = _comparator.compare(_currentRow, other._currentRow);
+            if (result == 0) {
+                return _runNumber - other._runNumber;
+            }
+            return result;
+        }
+    }
+}
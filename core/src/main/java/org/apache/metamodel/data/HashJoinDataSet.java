@@ -0,0 +1,304 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.util.BooleanComparator;
+
+/**
+ * {@link DataSet} that joins a streamed "probe" {@link DataSet} with a "build"
+ * {@link DataSet}. The build side is read once and indexed in a hash table by
+ * its join key columns, after which every probe row is only combined with the
+ * build rows that share its key. Without any key columns every build row is a
+ * candidate, ie. the join degrades to a nested loop.
+ *
+ * If the join is an outer join, probe rows without any matching build row are
+ * also emitted, with null values for the build side.
+ *
+ * Candidate rows are always verified using the join conditions, so the hash
+ * table is only used to prune candidates. Key values that cannot safely be
+ * hashed (eg. a number compared to a string) make the probe row fall back to
+ * scanning all build rows, which preserves the comparison semantics of
+ * {@link org.apache.metamodel.query.FilterItem}.
+ */
+public final class HashJoinDataSet extends AbstractDataSet implements WrappingDataSet {
+
+    private final DataSet _probeDataSet;
+    private final DataSet _buildDataSet;
+    private final int[] _probeKeyIndexes;
+    private final int[] _buildKeyIndexes;
+    private final IRowFilter[] _joinConditions;
+    private final boolean _outerJoin;
+    private final int _probeWidth;
+    private final int _buildWidth;
+
+    private Map<Object, List<Object[]>> _buckets;
+    private List<Object[]> _buildRows;
+    private Class<?>[] _buildKeyFamilies;
+    private boolean _hashable;
+
+    private Object[] _probeValues;
+    private List<Object[]> _candidates;
+    private int _candidateIndex;
+    private boolean _probeMatched;
+    private Row _row;
+
+    /**
+     * Constructs a {@link HashJoinDataSet}.
+     *
+     * @param probeDataSet
+     *            the (left) dataset to stream
+     * @param buildDataSet
+     *            the (right) dataset to read and index
+     * @param probeKeyIndexes
+     *            the indexes of the key columns in the probe dataset
+     * @param buildKeyIndexes
+     *            the indexes of the key columns in the build dataset,
+     *            corresponding to the probe key indexes
+     * @param joinConditions
+     *            the conditions that a joined row must satisfy
+     * @param outerJoin
+     *            whether probe rows without matches should be kept (with null
+     *            values for the build side)
+     */
+    public HashJoinDataSet(DataSet probeDataSet, DataSet buildDataSet, int[] probeKeyIndexes, int[] buildKeyIndexes,
+            IRowFilter[] joinConditions, boolean outerJoin) {
+        super(createHeader(probeDataSet, buildDataSet));
+        if (probeKeyIndexes.length != buildKeyIndexes.length) {
+            throw new IllegalArgumentException("Probe and build key indexes must have same length");
+        }
+        _probeDataSet = probeDataSet;
+        _buildDataSet = buildDataSet;
+        _probeKeyIndexes = probeKeyIndexes;
+        _buildKeyIndexes = buildKeyIndexes;
+        _joinConditions = joinConditions;
+        _outerJoin = outerJoin;
+        _probeWidth = probeDataSet.getSelectItems().length;
+        _buildWidth = buildDataSet.getSelectItems().length;
+    }
+
+    private static DataSetHeader createHeader(DataSet probeDataSet, DataSet buildDataSet) {
+        final SelectItem[] probeItems = probeDataSet.getSelectItems();
+        final SelectItem[] buildItems = buildDataSet.getSelectItems();
+        final SelectItem[] selectItems = new SelectItem[probeItems.length + buildItems.length];
+        System.arraycopy(probeItems, 0, selectItems, 0, probeItems.length);
+        System.arraycopy(buildItems, 0, selectItems, probeItems.length, buildItems.length);
+        return new CachingDataSetHeader(selectItems);
+    }
+
+    @Override
+    public DataSet getWrappedDataSet() {
+        return _probeDataSet;
+    }
+
+    @Override
+    public boolean next() {
+        if (_buildRows == null) {
+            build();
+        }
+
+        while (true) {
+            while (_candidates != null && _candidateIndex < _candidates.size()) {
+                final Object[] buildValues = _candidates.get(_candidateIndex);
+                _candidateIndex++;
+                final Row row = createRow(_probeValues, buildValues);
+                if (accept(row)) {
+                    _probeMatched = true;
+                    _row = row;
+                    return true;
+                }
+            }
+
+            if (_outerJoin && _candidates != null && !_probeMatched) {
+                _probeMatched = true;
+                _row = createRow(_probeValues, null);
+                return true;
+            }
+
+            if (!_probeDataSet.next()) {
+                _row = null;
+                _candidates = null;
+                return false;
+            }
+
+            _probeValues = _probeDataSet.getRow().getValues();
+            _candidates = getCandidates(_probeValues);
+            _candidateIndex = 0;
+            _probeMatched = false;
+        }
+    }
+
+    @Override
+    public Row getRow() {
+        return _row;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        _probeDataSet.close();
+        _buildDataSet.close();
+        _buckets = null;
+        _candidates = null;
+    }
+
+    private boolean accept(Row row) {
+        for (IRowFilter joinCondition : _joinConditions) {
+            if (!joinCondition.accept(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Row createRow(Object[] probeValues, Object[] buildValues) {
+        final Object[] values = new Object[_probeWidth + _buildWidth];
+        System.arraycopy(probeValues, 0, values, 0, _probeWidth);
+        if (buildValues != null) {
+            System.arraycopy(buildValues, 0, values, _probeWidth, _buildWidth);
+        }
+        return new DefaultRow(getHeader(), values);
+    }
+
+    private void build() {
+        final int keyCount = _buildKeyIndexes.length;
+        _buildRows = new ArrayList<Object[]>();
+        _buckets = new HashMap<Object, List<Object[]>>();
+        _buildKeyFamilies = new Class<?>[keyCount];
+        _hashable = keyCount > 0;
+
+        while (_buildDataSet.next()) {
+            final Object[] values = _buildDataSet.getRow().getValues();
+            _buildRows.add(values);
+
+            for (int i = 0; i < keyCount; i++) {
+                final Class<?> family = getKeyFamily(values[_buildKeyIndexes[i]]);
+                if (family != null) {
+                    if (_buildKeyFamilies[i] == null) {
+                        _buildKeyFamilies[i] = family;
+                    } else if (_buildKeyFamilies[i] != family) {
+                        // mixed value types can only be compared one by one
+                        _hashable = false;
+                    }
+                }
+            }
+
+            if (_hashable) {
+                final Object key = createKey(values, _buildKeyIndexes);
+                List<Object[]> bucket = _buckets.get(key);
+                if (bucket == null) {
+                    bucket = new ArrayList<Object[]>(1);
+                    _buckets.put(key, bucket);
+                }
+                bucket.add(values);
+            }
+        }
+        _buildDataSet.close();
+
+        if (!_hashable) {
+            _buckets = null;
+        }
+    }
+
+    private List<Object[]> getCandidates(Object[] probeValues) {
+        if (!_hashable || !isKeyComparable(probeValues)) {
+            return _buildRows;
+        }
+        final List<Object[]> bucket = _buckets.get(createKey(probeValues, _probeKeyIndexes));
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        return bucket;
+    }
+
+    private boolean isKeyComparable(Object[] probeValues) {
+        for (int i = 0; i < _probeKeyIndexes.length; i++) {
+            final Class<?> family = getKeyFamily(probeValues[_probeKeyIndexes[i]]);
+            if (family != null && _buildKeyFamilies[i] != null && family != _buildKeyFamilies[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object createKey(Object[] values, int[] keyIndexes) {
+        if (keyIndexes.length == 1) {
+            return normalizeKeyValue(values[keyIndexes[0]]);
+        }
+        final Object[] key = new Object[keyIndexes.length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = normalizeKeyValue(values[keyIndexes[i]]);
+        }
+        return Arrays.asList(key);
+    }
+
+    /**
+     * Determines the "family" of a key value. Values are only looked up in the
+     * hash table if they belong to the same family as the build side values,
+     * since only then does hashing agree with the
+     * {@link org.apache.metamodel.util.ObjectComparator} semantics.
+     */
+    private static Class<?> getKeyFamily(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return Number.class;
+        }
+        if (BooleanComparator.isBoolean(value)) {
+            return Boolean.class;
+        }
+        if (value instanceof Date || value instanceof Calendar) {
+            return Date.class;
+        }
+        return value.getClass();
+    }
+
+    private static Object normalizeKeyValue(Object value) {
+        if (value instanceof Number) {
+            final double d = ((Number) value).doubleValue();
+            // collapse -0.0 and 0.0 since collisions are verified anyway
+            return d == 0d ? 0d : d;
+        }
+        if (value instanceof String && BooleanComparator.isBoolean(value)) {
+            return Boolean.valueOf((String) value);
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof Calendar) {
+            return ((Calendar) value).getTimeInMillis();
+        }
+        if (value != null && !(value instanceof Comparable)) {
+            // non-comparable values are compared by their string
+            // representation
+            return value.toString();
+        }
+        return value;
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.metamodel.data;
 
 import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.metamodel.query.SelectItem;
 import org.apache.metamodel.util.Action;
@@ -38,6 +39,18 @@ public final class RowPublisherDataSet extends AbstractDataSet {
 
     private static final Logger logger = LoggerFactory.getLogger(RowPublisherDataSet.class);
 
+    /**
+     * System property for the number of rows that are handed over from the
+     * publishing thread to the consuming thread at a time.
+     */
+    public static final String SYSTEM_PROPERTY_BATCH_SIZE = "metamodel.rowpublisher.batch.size";
+
+    /**
+     * System property for the number of batches that the publishing thread
+     * may be ahead of the consuming thread.
+     */
+    public static final String SYSTEM_PROPERTY_QUEUE_SIZE = "metamodel.rowpublisher.queue.size";
+
     private final int _maxRows;
     private final Action<RowPublisher> _publishAction;
     private final Closeable[] _closeables;
@@ -61,12 +74,51 @@ public final class RowPublisherDataSet extends AbstractDataSet {
         return _maxRows;
     }
 
+    /**
+     * Gets the number of row batches currently waiting to be consumed.
+     * 
+     * @return
+     */
+    public int getQueueDepth() {
+        final RowPublisherImpl rowPublisher = _rowPublisher;
+        return rowPublisher == null ? 0 : rowPublisher.getQueueDepth();
+    }
+
+    /**
+     * Gets the number of times the publishing action had to wait because the
+     * consumer of this dataset was behind.
+     * 
+     * @return
+     */
+    public int getProducerStalls() {
+        final RowPublisherImpl rowPublisher = _rowPublisher;
+        return rowPublisher == null ? 0 : rowPublisher.getProducerStalls();
+    }
+
+    /**
+     * Gets the number of times the consumer of this dataset had to wait for
+     * the publishing action to publish more rows.
+     * 
+     * @return
+     */
+    public int getConsumerStalls() {
+        final RowPublisherImpl rowPublisher = _rowPublisher;
+        return rowPublisher == null ? 0 : rowPublisher.getConsumerStalls();
+    }
+
     @Override
     public void close() {
         super.close();
         _closed = true;
         if (_rowPublisher != null) {
-            _rowPublisher.finished();
+            _rowPublisher.cancel();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Closing. Max queue depth: {}, producer stalls: {} ({} ms), consumer stalls: {} ({} ms)",
+                        new Object[] { _rowPublisher.getMaxQueueDepth(), _rowPublisher.getProducerStalls(),
+                                _rowPublisher.getProducerStallTime(TimeUnit.MILLISECONDS),
+                                _rowPublisher.getConsumerStalls(),
+                                _rowPublisher.getConsumerStallTime(TimeUnit.MILLISECONDS) });
+            }
             _rowPublisher = null;
         }
         if (_closeables != null) {
@@ -85,22 +137,30 @@ public final class RowPublisherDataSet extends AbstractDataSet {
 
     @Override
     public boolean next() {
+        if (_closed) {
+            return false;
+        }
         if (_rowPublisher == null) {
             // first time, create the publisher
-            _rowPublisher = new RowPublisherImpl(this);
+            final RowPublisherImpl rowPublisher = new RowPublisherImpl(this,
+                    getSystemProperty(SYSTEM_PROPERTY_BATCH_SIZE, RowPublisherImpl.DEFAULT_BATCH_SIZE),
+                    getSystemProperty(SYSTEM_PROPERTY_QUEUE_SIZE, RowPublisherImpl.DEFAULT_QUEUE_SIZE));
+            _rowPublisher = rowPublisher;
             logger.info("Starting separate thread for publishing action: {}", _publishAction);
             Runnable runnable = new Runnable() {
                 public void run() {
                     boolean successful = false;
                     try {
-                        _publishAction.run(_rowPublisher);
+                        _publishAction.run(rowPublisher);
                         logger.debug("Publshing action finished!");
                         successful = true;
-                    } catch (Exception e) {
-                        _rowPublisher.failed(e);
+                    } catch (Throwable e) {
+                        // also catch errors, the consumer would otherwise
+                        // wait for rows forever
+                        rowPublisher.failed(e);
                     }
                     if (successful) {
-                        _rowPublisher.finished();
+                        rowPublisher.finished();
                     }
                 };
             };
@@ -117,4 +177,18 @@ public final class RowPublisherDataSet extends AbstractDataSet {
         return _rowPublisher.getRow();
     }
 
+    private static int getSystemProperty(String key, int defaultValue) {
+        final String str = System.getProperty(key);
+        if (str != null) {
+            try {
+                final int value = Integer.parseInt(str.trim());
+                if (value > 0) {
+                    return value;
+                }
+            } catch (NumberFormatException e) {
+                logger.debug("Failed to parse system property '{}': {}", key, str);
+            }
+        }
+        return defaultValue;
+    }
 }
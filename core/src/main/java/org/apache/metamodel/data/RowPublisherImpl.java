@@ -18,61 +18,92 @@
  */
 package org.apache.metamodel.data;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.metamodel.MetaModelException;
 
 /**
  * Row publisher implementation used by {@link RowPublisherDataSet}.
+ * 
+ * Rows are handed over from the publishing thread to the consuming thread in
+ * batches, through a bounded queue of batches. Both sides block (without
+ * polling) when the queue is full or empty respectively, and are woken up
+ * when the other side makes progress, finishes, fails or cancels.
  */
 class RowPublisherImpl implements RowPublisher {
 
-	public static final int BUFFER_SIZE = 20;
+	public static final int DEFAULT_BATCH_SIZE = 64;
+	public static final int DEFAULT_QUEUE_SIZE = 16;
 
 	private final RowPublisherDataSet _dataSet;
-	private final BlockingQueue<Row> _queue;
-	private final AtomicBoolean _finished;
-	private final AtomicInteger _rowCount;
-	private volatile Row _currentRow;
-	private volatile Exception _error;
+	private final int _batchSize;
+	private final int _queueSize;
+
+	private final ReentrantLock _lock = new ReentrantLock();
+	private final Condition _notEmpty = _lock.newCondition();
+	private final Condition _notFull = _lock.newCondition();
+	private final Queue<Row[]> _queue;
+
+	// written while holding _lock, volatile for lock-free checks
+	private volatile boolean _finished;
+	private volatile boolean _cancelled;
+
+	// guarded by _lock
+	private Throwable _error;
+	private int _maxQueueDepth;
+	private int _producerStalls;
+	private long _producerStallNanos;
+	private int _consumerStalls;
+	private long _consumerStallNanos;
+
+	// only accessed by the publishing thread
+	private Row[] _publishBatch;
+	private int _publishBatchCount;
+	private int _rowCount;
+
+	// only accessed by the consuming thread
+	private Row[] _consumeBatch;
+	private int _consumeBatchIndex;
+	private Row _currentRow;
 
 	public RowPublisherImpl(RowPublisherDataSet dataSet) {
+		this(dataSet, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_SIZE);
+	}
+
+	public RowPublisherImpl(RowPublisherDataSet dataSet, int batchSize, int queueSize) {
+		if (batchSize < 1 || queueSize < 1) {
+			throw new IllegalArgumentException("Batch size and queue size must be positive numbers");
+		}
 		_dataSet = dataSet;
-		_queue = new ArrayBlockingQueue<Row>(BUFFER_SIZE);
-		_finished = new AtomicBoolean(false);
-		_rowCount = new AtomicInteger();
+		_batchSize = batchSize;
+		_queueSize = queueSize;
+		_queue = new ArrayDeque<Row[]>(queueSize);
 	}
 
 	@Override
 	public boolean publish(Row row) {
-		if (_finished.get()) {
+		if (isDone()) {
 			return false;
 		}
-		while (!offer(row)) {
-			if (_finished.get()) {
-				return false;
-			}
-			// wait one more cycle
+		if (_publishBatch == null) {
+			_publishBatch = new Row[_batchSize];
 		}
-		int rowCount = _rowCount.incrementAndGet();
-		if (_dataSet.getMaxRows() > 0 && rowCount >= _dataSet.getMaxRows()) {
+		_publishBatch[_publishBatchCount] = row;
+		_publishBatchCount++;
+		_rowCount++;
+
+		if (_dataSet.getMaxRows() > 0 && _rowCount >= _dataSet.getMaxRows()) {
 			finished();
 			return false;
 		}
-		return true;
-	}
-
-	private boolean offer(Row row) {
-		try {
-			return _queue.offer(row, 1000, TimeUnit.MICROSECONDS);
-		} catch (InterruptedException e) {
-			// do nothing
-			return false;
+		if (_publishBatchCount == _batchSize) {
+			return flush();
 		}
+		return true;
 	}
 
 	@Override
@@ -87,38 +118,239 @@ class RowPublisherImpl implements RowPublisher {
 		return publish(row);
 	}
 
+	/**
+	 * Hands over the current batch to the consumer, waiting for room in the
+	 * queue if necessary.
+	 * 
+	 * @return false if the consumer has cancelled
+	 */
+	private boolean flush() {
+		if (_publishBatchCount == 0) {
+			return !isDone();
+		}
+		final Row[] batch;
+		if (_publishBatchCount == _batchSize) {
+			batch = _publishBatch;
+		} else {
+			batch = new Row[_publishBatchCount];
+			System.arraycopy(_publishBatch, 0, batch, 0, _publishBatchCount);
+		}
+		_publishBatch = null;
+		_publishBatchCount = 0;
+
+		_lock.lock();
+		try {
+			if (_queue.size() >= _queueSize && !_cancelled) {
+				_producerStalls++;
+				final long start = System.nanoTime();
+				while (_queue.size() >= _queueSize && !_cancelled) {
+					_notFull.awaitUninterruptibly();
+				}
+				_producerStallNanos += System.nanoTime() - start;
+			}
+			if (_cancelled) {
+				return false;
+			}
+			_queue.add(batch);
+			_maxQueueDepth = Math.max(_maxQueueDepth, _queue.size());
+			_notEmpty.signal();
+			return !_finished;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	private boolean isDone() {
+		return _finished || _cancelled;
+	}
+
 	@Override
 	public void finished() {
-		_finished.set(true);
+		if (isDone()) {
+			return;
+		}
+		flush();
+		_lock.lock();
+		try {
+			_finished = true;
+			_notEmpty.signalAll();
+		} finally {
+			_lock.unlock();
+		}
 	}
 
-	public boolean next() {
-		if (_queue.isEmpty() && _finished.get()) {
-			return false;
+	/**
+	 * Invoked when the publishing action fails. Rows published before the
+	 * failure are still handed over before the error is reported to the
+	 * consumer. Errors are reported as well, so that the consumer is never
+	 * left waiting for rows.
+	 * 
+	 * @param error
+	 */
+	public void failed(Throwable error) {
+		if (!isDone()) {
+			flush();
+		}
+		_lock.lock();
+		try {
+			_error = error;
+			_finished = true;
+			_notEmpty.signalAll();
+		} finally {
+			_lock.unlock();
 		}
+	}
+
+	/**
+	 * Invoked by the consumer when it is no longer interested in rows. Wakes
+	 * up the publisher, which will be told to stop publishing.
+	 */
+	public void cancel() {
+		_lock.lock();
 		try {
-			_currentRow = _queue.poll(1000, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			// do nothing
+			_cancelled = true;
+			_queue.clear();
+			_notFull.signalAll();
+			_notEmpty.signalAll();
+		} finally {
+			_lock.unlock();
 		}
-		if (_currentRow != null) {
+	}
+
+	public boolean next() {
+		if (_consumeBatch != null && _consumeBatchIndex < _consumeBatch.length) {
+			_currentRow = _consumeBatch[_consumeBatchIndex];
+			_consumeBatchIndex++;
 			return true;
 		}
-		if (_error != null) {
-			if (_error instanceof RuntimeException) {
-				throw (RuntimeException) _error;
+		_consumeBatch = null;
+		_currentRow = null;
+
+		final Throwable error;
+		_lock.lock();
+		try {
+			if (_queue.isEmpty() && !_finished && !_cancelled) {
+				_consumerStalls++;
+				final long start = System.nanoTime();
+				while (_queue.isEmpty() && !_finished && !_cancelled) {
+					_notEmpty.awaitUninterruptibly();
+				}
+				_consumerStallNanos += System.nanoTime() - start;
+			}
+			final Row[] batch = _queue.poll();
+			if (batch != null) {
+				_notFull.signal();
+				_consumeBatch = batch;
+				_consumeBatchIndex = 1;
+				_currentRow = batch[0];
+				return true;
+			}
+			error = _error;
+		} finally {
+			_lock.unlock();
+		}
+
+		if (error != null) {
+			if (error instanceof RuntimeException) {
+				throw (RuntimeException) error;
 			}
-			throw new MetaModelException(_error);
+			if (error instanceof Error) {
+				throw (Error) error;
+			}
+			throw new MetaModelException((Exception) error);
 		}
-		// "busy" (1 second) wait
-		return next();
+		return false;
 	}
 
 	public Row getRow() {
 		return _currentRow;
 	}
 
-	public void failed(Exception error) {
-		_error = error;
+	/**
+	 * Gets the number of batches currently waiting in the queue.
+	 * 
+	 * @return
+	 */
+	public int getQueueDepth() {
+		_lock.lock();
+		try {
+			return _queue.size();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the maximum number of batches that have been waiting in the queue.
+	 * 
+	 * @return
+	 */
+	public int getMaxQueueDepth() {
+		_lock.lock();
+		try {
+			return _maxQueueDepth;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of times the publisher had to wait for the consumer
+	 * because the queue was full.
+	 * 
+	 * @return
+	 */
+	public int getProducerStalls() {
+		_lock.lock();
+		try {
+			return _producerStalls;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the total time that the publisher has waited for the consumer.
+	 * 
+	 * @param timeUnit
+	 * @return
+	 */
+	public long getProducerStallTime(TimeUnit timeUnit) {
+		_lock.lock();
+		try {
+			return timeUnit.convert(_producerStallNanos, TimeUnit.NANOSECONDS);
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of times the consumer had to wait for the publisher
+	 * because the queue was empty.
+	 * 
+	 * @return
+	 */
+	public int getConsumerStalls() {
+		_lock.lock();
+		try {
+			return _consumerStalls;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the total time that the consumer has waited for the publisher.
+	 * 
+	 * @param timeUnit
+	 * @return
+	 */
+	public long getConsumerStallTime(TimeUnit timeUnit) {
+		_lock.lock();
+		try {
+			return timeUnit.convert(_consumerStallNanos, TimeUnit.NANOSECONDS);
+		} finally {
+			_lock.unlock();
+		}
 	}
 }
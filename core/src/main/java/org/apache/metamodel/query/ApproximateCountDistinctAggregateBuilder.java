@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.query;
+
+import org.apache.metamodel.util.AggregateBuilder;
+import org.apache.metamodel.util.NumberComparator;
+
+/**
+ * Aggregate builder for the {@link FunctionType#APPROX_COUNT_DISTINCT}
+ * function, based on the HyperLogLog algorithm.
+ *
+ * Values are counted exactly until there are more than
+ * {@link #EXACT_THRESHOLD} distinct values. After that only a fixed size array
+ * of HyperLogLog registers (16 KB) is kept, with a typical relative error of
+ * less than 1%.
+ */
+final class ApproximateCountDistinctAggregateBuilder implements AggregateBuilder<Long> {
+
+    static final int EXACT_THRESHOLD = 1024;
+
+    private static final int PRECISION = 14;
+    private static final int REGISTER_COUNT = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+    private final byte[] _registers = new byte[REGISTER_COUNT];
+    private CountDistinctAggregateBuilder _exact = new CountDistinctAggregateBuilder();
+
+    @Override
+    public void add(Object o) {
+        if (o == null) {
+            return;
+        }
+
+        if (_exact != null) {
+            _exact.add(o);
+            if (_exact.getCount() > EXACT_THRESHOLD) {
+                _exact = null;
+            }
+        }
+
+        final long hash = hash(o);
+        final int index = (int) (hash >>> (64 - PRECISION));
+        final long remainder = (hash << PRECISION) | (1L << (PRECISION - 1));
+        final byte rank = (byte) (Long.numberOfLeadingZeros(remainder) + 1);
+        if (rank > _registers[index]) {
+            _registers[index] = rank;
+        }
+    }
+
+    @Override
+    public Long getAggregate() {
+        if (_exact != null) {
+            return _exact.getCount();
+        }
+
+        double sum = 0;
+        int zeroRegisters = 0;
+        for (byte register : _registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeroRegisters++;
+            }
+        }
+
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if (estimate <= 2.5 * REGISTER_COUNT && zeroRegisters != 0) {
+            // small range correction (linear counting)
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeroRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Creates a 64 bit hash of a value. Equal values (and integers of
+     * different types with the same value) get the same hash.
+     */
+    private static long hash(Object o) {
+        if (o instanceof Number && NumberComparator.isIntegerType((Number) o)) {
+            return mix(((Number) o).longValue());
+        }
+        if (o instanceof Double) {
+            return mix(Double.doubleToLongBits((Double) o));
+        }
+        if (o instanceof String) {
+            // 64 bit FNV-1a, since String.hashCode() only has 32 bits
+            final String str = (String) o;
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < str.length(); i++) {
+                hash ^= str.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+        return mix(o.hashCode());
+    }
+
+    /**
+     * The finalization step of MurmurHash3, which spreads the bits of a value
+     * over the full 64 bits.
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.query;
+
+import java.util.Arrays;
+
+import org.apache.metamodel.util.AbstractNumberAggregateBuilder;
+
+/**
+ * Aggregate builder for the {@link FunctionType#APPROX_MEDIAN} and
+ * {@link FunctionType#APPROX_PERCENTILE} functions, based on a (merging)
+ * t-digest.
+ *
+ * Incoming values are buffered and periodically merged into a bounded number
+ * of centroids (weighted means). Centroids near the extremes are kept small,
+ * which keeps the estimates of both median and tail percentiles accurate
+ * while the memory consumption stays fixed regardless of the number of
+ * values.
+ */
+final class ApproximatePercentileAggregateBuilder extends AbstractNumberAggregateBuilder<Double> {
+
+    private static final double COMPRESSION = 100;
+    private static final int BUFFER_SIZE = 500;
+
+    private final double _percentile;
+
+    private double[] _means = new double[0];
+    private double[] _weights = new double[0];
+    private final double[] _buffer = new double[BUFFER_SIZE];
+    private int _bufferCount;
+    private double _totalWeight;
+    private double _min = Double.POSITIVE_INFINITY;
+    private double _max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Constructs an {@link ApproximatePercentileAggregateBuilder}.
+     * 
+     * @param percentile
+     *            the percentile to estimate, between 0 and 1
+     */
+    public ApproximatePercentileAggregateBuilder(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1, got: " + percentile);
+        }
+        _percentile = percentile;
+    }
+
+    @Override
+    protected void add(Number number) {
+        final double value = number.doubleValue();
+        if (Double.isNaN(value)) {
+            return;
+        }
+        _buffer[_bufferCount] = value;
+        _bufferCount++;
+        if (_bufferCount == BUFFER_SIZE) {
+            compress();
+        }
+    }
+
+    /**
+     * Merges the buffered values into the centroids.
+     */
+    private void compress() {
+        if (_bufferCount == 0) {
+            return;
+        }
+
+        Arrays.sort(_buffer, 0, _bufferCount);
+        _min = Math.min(_min, _buffer[0]);
+        _max = Math.max(_max, _buffer[_bufferCount - 1]);
+
+        // merge the sorted buffer and the (sorted) centroids
+        final int pointCount = _means.length + _bufferCount;
+        final double[] means = new double[pointCount];
+        final double[] weights = new double[pointCount];
+        int centroidIndex = 0;
+        int bufferIndex = 0;
+        for (int i = 0; i < pointCount; i++) {
+            if (bufferIndex == _bufferCount
+                    || (centroidIndex < _means.length && _means[centroidIndex] <= _buffer[bufferIndex])) {
+                means[i] = _means[centroidIndex];
+                weights[i] = _weights[centroidIndex];
+                centroidIndex++;
+            } else {
+                means[i] = _buffer[bufferIndex];
+                weights[i] = 1;
+                bufferIndex++;
+            }
+        }
+        _totalWeight += _bufferCount;
+        _bufferCount = 0;
+
+        // combine neighbouring points as long as the size limit of the
+        // scale function allows it
+        int count = 0;
+        double weightSoFar = 0;
+        double weightLimit = _totalWeight * getQuantile(getScale(0) + 1);
+        for (int i = 1; i < pointCount; i++) {
+            final double proposedWeight = weights[count] + weights[i];
+            if (weightSoFar + proposedWeight <= weightLimit) {
+                means[count] = means[count] + (means[i] - means[count]) * weights[i] / proposedWeight;
+                weights[count] = proposedWeight;
+            } else {
+                weightSoFar += weights[count];
+                weightLimit = _totalWeight * getQuantile(getScale(weightSoFar / _totalWeight) + 1);
+                count++;
+                means[count] = means[i];
+                weights[count] = weights[i];
+            }
+        }
+        count++;
+
+        _means = Arrays.copyOf(means, count);
+        _weights = Arrays.copyOf(weights, count);
+    }
+
+    private static double getScale(double quantile) {
+        return COMPRESSION / (2 * Math.PI) * Math.asin(2 * quantile - 1);
+    }
+
+    private static double getQuantile(double scale) {
+        if (scale >= COMPRESSION / 4) {
+            return 1;
+        }
+        return (Math.sin(scale * 2 * Math.PI / COMPRESSION) + 1) / 2;
+    }
+
+    @Override
+    public Double getAggregate() {
+        compress();
+        if (_means.length == 0) {
+            return null;
+        }
+        if (_means.length == 1) {
+            return _means[0];
+        }
+
+        // interpolate between the centers of the centroids, and between the
+        // extreme centroids and the min/max values
+        final double target = _percentile * _totalWeight;
+        double center = _weights[0] / 2;
+        if (target <= center) {
+            return interpolate(0, _min, center, _means[0], target);
+        }
+        for (int i = 1; i < _means.length; i++) {
+            final double nextCenter = center + (_weights[i - 1] + _weights[i]) / 2;
+            if (target <= nextCenter) {
+                return interpolate(center, _means[i - 1], nextCenter, _means[i], target);
+            }
+            center = nextCenter;
+        }
+        return interpolate(center, _means[_means.length - 1], _totalWeight, _max, target);
+    }
+
+    private static double interpolate(double x1, double y1, double x2, double y2, double x) {
+        if (x2 <= x1) {
+            return y2;
+        }
+        return y1 + (y2 - y1) * (x - x1) / (x2 - x1);
+    }
+}
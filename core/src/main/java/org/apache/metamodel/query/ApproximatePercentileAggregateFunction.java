@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.query;
+
+import org.apache.metamodel.schema.ColumnType;
+import org.apache.metamodel.util.AggregateBuilder;
+import org.apache.metamodel.util.NumberComparator;
+
+/**
+ * Aggregate function which estimates a percentile of numeric values using a
+ * fixed amount of memory. The percentile (between 0 and 1) is given as the
+ * function parameter, eg. <code>APPROX_PERCENTILE('0.95',col)</code>. Without
+ * a parameter, eg. when using {@link #createAggregateBuilder()} or
+ * {@link #evaluate(Object...)}, the median is estimated.
+ */
+public class ApproximatePercentileAggregateFunction extends DefaultAggregateFunction<Double> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The percentile that is estimated when no percentile parameter is given.
+     */
+    public static final double DEFAULT_PERCENTILE = 0.5;
+
+    @Override
+    public String getFunctionName() {
+        return "APPROX_PERCENTILE";
+    }
+
+    /**
+     * Creates an aggregate builder which estimates the
+     * {@link #DEFAULT_PERCENTILE}, since there is no percentile parameter.
+     */
+    @Override
+    public AggregateBuilder<Double> createAggregateBuilder() {
+        return new ApproximatePercentileAggregateBuilder(DEFAULT_PERCENTILE);
+    }
+
+    /**
+     * Creates an aggregate builder for the percentile given in the function
+     * parameters, or for the {@link #DEFAULT_PERCENTILE} if there are none.
+     * 
+     * @param functionParameters
+     *            the function parameters of the select item
+     * @return an AggregateBuilder instance
+     * @throws IllegalArgumentException
+     *             if the percentile parameter is not a number
+     */
+    @Override
+    public AggregateBuilder<Double> createAggregateBuilder(Object[] functionParameters) {
+        if (functionParameters == null || functionParameters.length == 0) {
+            return createAggregateBuilder();
+        }
+        final Number percentile = NumberComparator.toNumber(functionParameters[0]);
+        if (percentile == null) {
+            throw new IllegalArgumentException("Percentile is not a number: " + functionParameters[0]);
+        }
+        return new ApproximatePercentileAggregateBuilder(percentile.doubleValue());
+    }
+
+    @Override
+    public ColumnType getExpectedColumnType(ColumnType type) {
+        return ColumnType.DOUBLE;
+    }
+
+}
@@ -25,19 +25,21 @@ import org.apache.metamodel.util.AbstractNumberAggregateBuilder;
  */
 final class AverageAggregateBuilder extends AbstractNumberAggregateBuilder<Double> {
 
-	public double _average;
-	public int _numValues;
-	
+	private final SumAggregateBuilder _sum = new SumAggregateBuilder();
+	private long _numValues;
+
 	@Override
 	protected void add(Number number) {
-		double total = _average * _numValues + number.doubleValue();
+		_sum.add(number);
 		_numValues++;
-		_average = total / _numValues;
 	}
 
 	@Override
 	public Double getAggregate() {
-		return _average;
+		if (_numValues == 0) {
+			return 0d;
+		}
+		return _sum.getSum() / _numValues;
 	}
 
 }
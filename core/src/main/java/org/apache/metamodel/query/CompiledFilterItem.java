@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.query;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Comparator;
+import java.util.Set;
+
+import org.apache.metamodel.data.DataSetHeader;
+import org.apache.metamodel.data.DataSetHeaderMatcher;
+import org.apache.metamodel.data.IRowFilter;
+import org.apache.metamodel.data.Row;
+import org.apache.metamodel.util.BooleanComparator;
+import org.apache.metamodel.util.NumberComparator;
+import org.apache.metamodel.util.ObjectComparator;
+import org.apache.metamodel.util.WildcardPattern;
+
+/**
+ * A non-compound {@link FilterItem} compiled against a particular
+ * {@link DataSetHeader}. Select item indexes, the operator and (if possible)
+ * the LIKE pattern are resolved once instead of for every evaluated row.
+ *
+ * The evaluation result is always the same as that of
+ * {@link FilterItem#evaluate(Row)}.
+ *
+ * @see FilterItem#compile(DataSetHeader)
+ */
+final class CompiledFilterItem implements IRowFilter {
+
+    private static final int EQUALS_TO = 0;
+    private static final int DIFFERENT_FROM = 1;
+    private static final int GREATER_THAN = 2;
+    private static final int GREATER_THAN_OR_EQUAL = 3;
+    private static final int LESS_THAN = 4;
+    private static final int LESS_THAN_OR_EQUAL = 5;
+    private static final int LIKE = 6;
+    private static final int IN = 7;
+
+    private static final Comparator<Object> COMPARATOR = ObjectComparator.getComparator();
+
+    private final FilterItem _filterItem;
+    private final DataSetHeaderMatcher _headerMatcher;
+    private final int _operator;
+    private final int _selectItemIndex;
+    private final int _operandIndex;
+    private final Object _operand;
+    private final WildcardPattern _likePattern;
+    private final Set<?> _inValues;
+
+    // type specific information about constant operands
+    private final boolean _integerOperand;
+    private final long _longOperand;
+    private final boolean _doubleOperand;
+    private final double _doubleValueOperand;
+    private final boolean _stringOperand;
+
+    public CompiledFilterItem(FilterItem filterItem, DataSetHeader header, Set<?> inValues) {
+        _filterItem = filterItem;
+        _headerMatcher = new DataSetHeaderMatcher(header);
+        _operator = getOperatorCode(filterItem.getOperator());
+        _selectItemIndex = header.indexOf(filterItem.getSelectItem());
+
+        final Object operand = filterItem.getOperand();
+        if (operand instanceof SelectItem) {
+            _operandIndex = header.indexOf((SelectItem) operand);
+            _operand = null;
+        } else {
+            _operandIndex = -2;
+            _operand = operand;
+        }
+
+        if (_operator == LIKE && _operand instanceof String) {
+            _likePattern = new WildcardPattern((String) _operand, '%');
+        } else {
+            _likePattern = null;
+        }
+        _inValues = inValues;
+
+        _integerOperand = _operand instanceof Number && NumberComparator.isIntegerType((Number) _operand);
+        _longOperand = _integerOperand ? ((Number) _operand).longValue() : 0;
+        _doubleOperand = _operand instanceof Number && !_integerOperand && !(_operand instanceof BigInteger)
+                && !(_operand instanceof BigDecimal);
+        _doubleValueOperand = _doubleOperand ? ((Number) _operand).doubleValue() : 0d;
+        _stringOperand = _operand instanceof String && !BooleanComparator.isBoolean(_operand);
+    }
+
+    private static int getOperatorCode(OperatorType operator) {
+        // resolve the operator by equality once, so that evaluation can rely
+        // on a simple switch
+        if (OperatorType.EQUALS_TO.equals(operator)) {
+            return EQUALS_TO;
+        } else if (OperatorType.DIFFERENT_FROM.equals(operator)) {
+            return DIFFERENT_FROM;
+        } else if (OperatorType.GREATER_THAN.equals(operator)) {
+            return GREATER_THAN;
+        } else if (OperatorType.GREATER_THAN_OR_EQUAL.equals(operator)) {
+            return GREATER_THAN_OR_EQUAL;
+        } else if (OperatorType.LESS_THAN.equals(operator)) {
+            return LESS_THAN;
+        } else if (OperatorType.LESS_THAN_OR_EQUAL.equals(operator)) {
+            return LESS_THAN_OR_EQUAL;
+        } else if (OperatorType.LIKE.equals(operator)) {
+            return LIKE;
+        } else if (OperatorType.IN.equals(operator)) {
+            return IN;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean accept(Row row) {
+        if (!_headerMatcher.matches(row)) {
+            // the row does not correspond to the compiled header
+            return _filterItem.evaluate(row);
+        }
+
+        final Object selectItemValue = getValue(row, _selectItemIndex);
+        final Object operandValue;
+        if (_operandIndex == -2) {
+            operandValue = _operand;
+        } else {
+            operandValue = getValue(row, _operandIndex);
+        }
+
+        if (operandValue == null) {
+            if (_operator == DIFFERENT_FROM) {
+                return (selectItemValue != null);
+            } else if (_operator == EQUALS_TO) {
+                return (selectItemValue == null);
+            } else {
+                return false;
+            }
+        } else if (selectItemValue == null) {
+            return _operator == DIFFERENT_FROM;
+        }
+
+        switch (_operator) {
+        case EQUALS_TO:
+            return compare(selectItemValue, operandValue) == 0;
+        case DIFFERENT_FROM:
+            return compare(selectItemValue, operandValue) != 0;
+        case GREATER_THAN:
+            return compare(selectItemValue, operandValue) > 0;
+        case GREATER_THAN_OR_EQUAL:
+            return compare(selectItemValue, operandValue) >= 0;
+        case LESS_THAN:
+            return compare(selectItemValue, operandValue) < 0;
+        case LESS_THAN_OR_EQUAL:
+            return compare(selectItemValue, operandValue) <= 0;
+        case LIKE:
+            final WildcardPattern likePattern;
+            if (_likePattern == null) {
+                likePattern = new WildcardPattern((String) operandValue, '%');
+            } else {
+                likePattern = _likePattern;
+            }
+            return likePattern.matches((String) selectItemValue);
+        case IN:
+            return _inValues.contains(selectItemValue);
+        default:
+            throw new IllegalStateException("Operator could not be determined");
+        }
+    }
+
+    private static Object getValue(Row row, int index) {
+        if (index == -1) {
+            return null;
+        }
+        return row.getValue(index);
+    }
+
+    /**
+     * Compares a value with the operand. Constant number and string operands
+     * are compared without going through the general purpose
+     * {@link ObjectComparator}, as long as the value has a matching type.
+     */
+    private int compare(Object selectItemValue, Object operandValue) {
+        if (_integerOperand) {
+            if (selectItemValue instanceof Number && NumberComparator.isIntegerType((Number) selectItemValue)) {
+                return Long.compare(((Number) selectItemValue).longValue(), _longOperand);
+            }
+        } else if (_doubleOperand) {
+            if (selectItemValue instanceof Number && !(selectItemValue instanceof BigInteger)
+                    && !(selectItemValue instanceof BigDecimal)) {
+                return Double.compare(((Number) selectItemValue).doubleValue(), _doubleValueOperand);
+            }
+        } else if (_stringOperand) {
+            if (selectItemValue instanceof String) {
+                return ((String) selectItemValue).compareTo((String) operandValue);
+            }
+        }
+        return COMPARATOR.compare(selectItemValue, operandValue);
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledFilterItem[" + _filterItem + "]";
+    }
+
+    /**
+     * A compiled compound filter item, combining compiled child items with
+     * either AND or OR.
+     */
+    static final class Compound implements IRowFilter {
+
+        private final IRowFilter[] _children;
+        private final boolean _and;
+
+        public Compound(IRowFilter[] children, boolean and) {
+            _children = children;
+            _and = and;
+        }
+
+        @Override
+        public boolean accept(Row row) {
+            for (IRowFilter child : _children) {
+                if (child.accept(row) != _and) {
+                    return !_and;
+                }
+            }
+            return _and;
+        }
+    }
+}
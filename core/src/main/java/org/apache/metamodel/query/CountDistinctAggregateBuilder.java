@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.query;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.metamodel.util.AggregateBuilder;
+import org.apache.metamodel.util.NumberComparator;
+
+/**
+ * Aggregate builder that counts the distinct non-null values added to it.
+ *
+ * Integer values (see {@link NumberComparator#isIntegerType(Number)}) are kept
+ * in an open addressing hash set of primitive longs, so counting distinct
+ * integer keys does not retain a boxed object per value. Other values are kept
+ * in a regular {@link HashSet}.
+ */
+final class CountDistinctAggregateBuilder implements AggregateBuilder<Long> {
+
+    private static final float MAX_LOAD_FACTOR = 0.5f;
+
+    private long[] _longs = new long[16];
+    private boolean[] _used = new boolean[16];
+    private int _longCount;
+    private Set<Object> _objects;
+
+    @Override
+    public void add(Object o) {
+        if (o == null) {
+            return;
+        }
+        if (o instanceof Number && NumberComparator.isIntegerType((Number) o)) {
+            addLong(((Number) o).longValue());
+        } else {
+            if (_objects == null) {
+                _objects = new HashSet<Object>();
+            }
+            _objects.add(o);
+        }
+    }
+
+    private void addLong(long value) {
+        int index = indexOf(_longs, _used, value);
+        if (_used[index]) {
+            return;
+        }
+        _longs[index] = value;
+        _used[index] = true;
+        _longCount++;
+
+        if (_longCount > _longs.length * MAX_LOAD_FACTOR) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        final long[] oldLongs = _longs;
+        final boolean[] oldUsed = _used;
+        _longs = new long[oldLongs.length * 2];
+        _used = new boolean[oldUsed.length * 2];
+        for (int i = 0; i < oldLongs.length; i++) {
+            if (oldUsed[i]) {
+                final int index = indexOf(_longs, _used, oldLongs[i]);
+                _longs[index] = oldLongs[i];
+                _used[index] = true;
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of a value using linear probing. Returns either the slot
+     * containing the value, or the first free slot.
+     */
+    private static int indexOf(long[] longs, boolean[] used, long value) {
+        final int mask = longs.length - 1;
+        int index = hash(value) & mask;
+        while (used[index] && longs[index] != value) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static int hash(long value) {
+        // mix the bits, since consecutive keys are very common
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Gets the number of distinct values as a primitive long.
+     * 
+     * @return
+     */
+    long getCount() {
+        long count = _longCount;
+        if (_objects != null) {
+            count += _objects.size();
+        }
+        return count;
+    }
+
+    @Override
+    public Long getAggregate() {
+        return getCount();
+    }
+}
@@ -53,6 +53,19 @@ public abstract class DefaultAggregateFunction<T> implements AggregateFunction {
         return builder.getAggregate();
     }
 
+    /**
+     * Creates an aggregate builder for a select item which may have function
+     * parameters. Functions that take parameters override this method, by
+     * default the parameters are ignored.
+     * 
+     * @param functionParameters
+     *            the function parameters of the select item, may be null
+     * @return an AggregateBuilder instance
+     */
+    public AggregateBuilder<?> createAggregateBuilder(Object[] functionParameters) {
+        return createAggregateBuilder();
+    }
+
     @Override
     public String toString() {
         return getFunctionName();
@@ -37,6 +37,9 @@ public interface FunctionType extends Serializable {
     public static final AggregateFunction RANDOM = new RandomAggregateFunction();
     public static final AggregateFunction FIRST = new FirstAggregateFunction();
     public static final AggregateFunction LAST = new LastAggregateFunction();
+    public static final AggregateFunction APPROX_COUNT_DISTINCT = new ApproximateCountDistinctAggregateFunction();
+    public static final AggregateFunction APPROX_MEDIAN = new ApproximateMedianAggregateFunction();
+    public static final AggregateFunction APPROX_PERCENTILE = new ApproximatePercentileAggregateFunction();
     public static final ScalarFunction TO_STRING = new ToStringFunction();
     public static final ScalarFunction TO_NUMBER = new ToNumberFunction();
     public static final ScalarFunction TO_DATE = new ToDateFunction();
@@ -49,6 +49,12 @@ public class FunctionTypeFactory {
             return FunctionType.FIRST;
         case "LAST":
             return FunctionType.LAST;
+        case "APPROX_COUNT_DISTINCT":
+            return FunctionType.APPROX_COUNT_DISTINCT;
+        case "APPROX_MEDIAN":
+            return FunctionType.APPROX_MEDIAN;
+        case "APPROX_PERCENTILE":
+            return FunctionType.APPROX_PERCENTILE;
         case "TO_NUMBER":
         case "NUMBER":
         case "TO_NUM":
@@ -18,11 +18,16 @@
  */
 package org.apache.metamodel.query;
 
+import java.util.Comparator;
+
 import org.apache.metamodel.util.AggregateBuilder;
+import org.apache.metamodel.util.NumberComparator;
 import org.apache.metamodel.util.ObjectComparator;
 
 final class MaxAggregateBuilder implements AggregateBuilder<Object> {
 
+	private static final Comparator<Object> COMPARATOR = ObjectComparator.getComparator();
+
 	private Object max;
 
 	@Override
@@ -33,13 +38,21 @@ final class MaxAggregateBuilder implements AggregateBuilder<Object> {
 		if (max == null) {
 			max = o;
 		} else {
-			Comparable<Object> comparable = ObjectComparator.getComparable(max);
-			if (comparable.compareTo(o) < 0) {
+			if (compare(max, o) < 0) {
 				max = o;
 			}
 		}
 	}
 
+	private static int compare(Object o1, Object o2) {
+		if (o1 instanceof Number && o2 instanceof Number && NumberComparator.isIntegerType((Number) o1)
+				&& NumberComparator.isIntegerType((Number) o2)) {
+			// avoid the general purpose comparator for the common case
+			return Long.compare(((Number) o1).longValue(), ((Number) o2).longValue());
+		}
+		return COMPARATOR.compare(o1, o2);
+	}
+
 	@Override
 	public Object getAggregate() {
         return max;
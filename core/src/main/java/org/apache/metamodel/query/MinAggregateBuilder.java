@@ -18,11 +18,16 @@
  */
 package org.apache.metamodel.query;
 
+import java.util.Comparator;
+
 import org.apache.metamodel.util.AggregateBuilder;
+import org.apache.metamodel.util.NumberComparator;
 import org.apache.metamodel.util.ObjectComparator;
 
 final class MinAggregateBuilder implements AggregateBuilder<Object> {
 
+	private static final Comparator<Object> COMPARATOR = ObjectComparator.getComparator();
+
 	private Object min;
 
 	@Override
@@ -33,13 +38,21 @@ final class MinAggregateBuilder implements AggregateBuilder<Object> {
 		if (min == null) {
 			min = o;
 		} else {
-			Comparable<Object> comparable = ObjectComparator.getComparable(min);
-			if (comparable.compareTo(o) > 0) {
+			if (compare(min, o) > 0) {
 				min = o;
 			}
 		}
 	}
 
+	private static int compare(Object o1, Object o2) {
+		if (o1 instanceof Number && o2 instanceof Number && NumberComparator.isIntegerType((Number) o1)
+				&& NumberComparator.isIntegerType((Number) o2)) {
+			// avoid the general purpose comparator for the common case
+			return Long.compare(((Number) o1).longValue(), ((Number) o2).longValue());
+		}
+		return COMPARATOR.compare(o1, o2);
+	}
+
 	@Override
 	public Object getAggregate() {
 		return min;
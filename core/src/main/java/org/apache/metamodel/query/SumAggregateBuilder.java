@@ -19,22 +19,51 @@
 package org.apache.metamodel.query;
 
 import org.apache.metamodel.util.AbstractNumberAggregateBuilder;
+import org.apache.metamodel.util.NumberComparator;
 
 /**
- * Aggregate builder for the {@link FunctionType#SUM} function
+ * Aggregate builder for the {@link FunctionType#SUM} function.
+ * 
+ * Integer values are summed up as primitive longs (as long as the sum does
+ * not overflow) and other values as primitive doubles. Since the aggregate is
+ * a {@link Double}, integer sums are only exact up to 2^53, but they are
+ * rounded once instead of accumulating a rounding error for every value.
  */
 final class SumAggregateBuilder extends AbstractNumberAggregateBuilder<Double> {
 
-    private double sum;
+    private long longSum;
+    private double doubleSum;
 
     @Override
     protected void add(Number number) {
-        sum += number.doubleValue();
+        if (NumberComparator.isIntegerType(number)) {
+            final long value = number.longValue();
+            final long result = longSum + value;
+            if (((longSum ^ result) & (value ^ result)) < 0) {
+                // overflow, move the integer sum to the double sum
+                doubleSum += longSum;
+                doubleSum += value;
+                longSum = 0;
+            } else {
+                longSum = result;
+            }
+        } else {
+            doubleSum += number.doubleValue();
+        }
+    }
+
+    /**
+     * Gets the sum as a primitive double.
+     * 
+     * @return
+     */
+    double getSum() {
+        return doubleSum + longSum;
     }
 
     @Override
     public Double getAggregate() {
-        return sum;
+        return getSum();
     }
 
 }
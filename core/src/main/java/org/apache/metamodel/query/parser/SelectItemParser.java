@@ -18,6 +18,9 @@
  */
 package org.apache.metamodel.query.parser;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.metamodel.MetaModelException;
 import org.apache.metamodel.MetaModelHelper;
 import org.apache.metamodel.query.*;
@@ -108,6 +111,7 @@ public final class SelectItemParser implements QueryPartProcessor {
 
         final boolean functionApproximation;
         final FunctionType function;
+        final List<Object> functionParameters = new ArrayList<Object>();
         final int startParenthesis = expression.indexOf('(');
         if (startParenthesis > 0 && expression.endsWith(")")) {
             functionApproximation = (expression.startsWith(SelectItem.FUNCTION_APPROXIMATION_PREFIX));
@@ -121,6 +125,7 @@ public final class SelectItemParser implements QueryPartProcessor {
                     selectItem.setFunctionApproximationAllowed(functionApproximation);
                     return selectItem;
                 }
+                expression = parseFunctionParameters(expression, functionParameters);
             }
         } else {
             function = null;
@@ -175,7 +180,12 @@ public final class SelectItemParser implements QueryPartProcessor {
                 }
 
                 if (column != null) {
-                    final SelectItem selectItem = new SelectItem(function, column, fromItem);
+                    final SelectItem selectItem;
+                    if (functionParameters.isEmpty()) {
+                        selectItem = new SelectItem(function, column, fromItem);
+                    } else {
+                        selectItem = new SelectItem(function, functionParameters.toArray(), column, fromItem);
+                    }
                     selectItem.setFunctionApproximationAllowed(functionApproximation);
                     return selectItem;
                 }
@@ -204,4 +214,31 @@ public final class SelectItemParser implements QueryPartProcessor {
         }
         return null;
     }
+
+    /**
+     * Parses the function parameters that precede the function argument, eg.
+     * <code>'0.95',col</code> (the way that {@link SelectItem#toSql()} writes
+     * them).
+     * 
+     * @param expression
+     *            the expression within the function parenthesis
+     * @param functionParameters
+     *            the list to add parsed parameters to
+     * @return the remaining expression
+     */
+    private String parseFunctionParameters(String expression, List<Object> functionParameters) {
+        while (expression.startsWith("'")) {
+            final int endQuote = expression.indexOf('\'', 1);
+            if (endQuote == -1) {
+                break;
+            }
+            final String remainder = expression.substring(endQuote + 1).trim();
+            if (!remainder.startsWith(",")) {
+                break;
+            }
+            functionParameters.add(expression.substring(1, endQuote));
+            expression = remainder.substring(1).trim();
+        }
+        return expression;
+    }
 }
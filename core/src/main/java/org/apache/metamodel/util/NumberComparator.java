@@ -88,10 +88,10 @@ public final class NumberComparator implements Comparator<Object> {
         }
 
         if (isIntegerType(n1) && isIntegerType(n2)) {
-            return Long.valueOf(n1.longValue()).compareTo(n2.longValue());
+            return Long.compare(n1.longValue(), n2.longValue());
         }
 
-        return Double.valueOf(n1.doubleValue()).compareTo(n2.doubleValue());
+        return Double.compare(n1.doubleValue(), n2.doubleValue());
     }
 
     /**
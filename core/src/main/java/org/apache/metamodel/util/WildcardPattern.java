@@ -36,6 +36,7 @@ public final class WildcardPattern implements Serializable {
 	private final boolean _endsWithDelim;
 	private String _pattern;
 	private char _wildcard;
+	private transient String[] _tokens;
 
 	public WildcardPattern(String pattern, char wildcard) {
 		_pattern = pattern;
@@ -46,18 +47,32 @@ public final class WildcardPattern implements Serializable {
 			_startsWithDelim = _pattern.charAt(0) == _wildcard;
 			_endsWithDelim = _pattern.charAt(pattern.length() - 1) == _wildcard;
 		}
+		_tokens = tokenize();
+	}
+
+	private String[] tokenize() {
+		StringTokenizer st = new StringTokenizer(_pattern,
+				Character.toString(_wildcard));
+		String[] tokens = new String[st.countTokens()];
+		for (int i = 0; i < tokens.length; i++) {
+			tokens[i] = st.nextToken();
+		}
+		return tokens;
 	}
 
 	public boolean matches(String value) {
 		if (value == null) {
 			return false;
 		}
-		StringTokenizer st = new StringTokenizer(_pattern,
-				Character.toString(_wildcard));
+		String[] tokens = _tokens;
+		if (tokens == null) {
+			// deserialized instance
+			tokens = tokenize();
+			_tokens = tokens;
+		}
 		int charIndex = 0;
-		while (st.hasMoreTokens()) {
+		for (String token : tokens) {
 			int oldIndex = charIndex;
-			String token = st.nextToken();
 			charIndex = value.indexOf(token, charIndex);
 			if (charIndex == -1 || !_startsWithDelim && oldIndex == 0 && charIndex != 0) {
 				return false;
@@ -18,6 +18,7 @@
  */
 package org.apache.metamodel;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -114,4 +115,85 @@ public class CompositeDataContextTest extends TestCase {
 		assertEquals("Row[values=[4, 4, yo, world]]", ds.getRow().toString());
 		assertFalse(ds.next());
 	}
-}
\ No newline at end of file
+
+	public void testSemiJoinWithFilteredBuildSide() throws Exception {
+		final List<String> queries = new ArrayList<String>();
+		DataContext dc1 = new MockDataContext("schema1", "table1", "dc1");
+		DataContext dc2 = new MockDataContext("schema2", "table2", "dc2") {
+			@Override
+			public DataSet executeQuery(Query query) {
+				queries.add(query.toSql());
+				return super.executeQuery(query);
+			}
+		};
+
+		DataContext composite = new CompositeDataContext(dc1, dc2).setSemiJoinMaxKeys(1000);
+		Table table1 = dc1.getDefaultSchema().getTableByName("table1");
+		Table table2 = dc2.getDefaultSchema().getTableByName("table2");
+
+		DataSet ds = composite.query().from(table1).innerJoin(table2)
+				.on(table1.getColumnByName("foo"), table2.getColumnByName("foo"))
+				.select(table1.getColumnByName("bar"), table2.getColumnByName("baz"))
+				.where(table1.getColumnByName("bar")).eq("hello").execute();
+		assertTrue(ds.next());
+		assertEquals("Row[values=[hello, world]]", ds.getRow().toString());
+		assertFalse(ds.next());
+		ds.close();
+
+		// the count of table2 is used as a cost hint, and only rows matching
+		// the keys of table1 are materialized
+		assertEquals("[SELECT APPROXIMATE COUNT(*) FROM schema2.table2, "
+				+ "SELECT table2.baz, table2.foo FROM schema2.table2 WHERE table2.foo IN ('1')]",
+				queries.toString());
+	}
+
+	public void testSemiJoinDisabled() throws Exception {
+		final List<String> queries = new ArrayList<String>();
+		DataContext dc1 = new MockDataContext("schema1", "table1", "dc1");
+		DataContext dc2 = new MockDataContext("schema2", "table2", "dc2") {
+			@Override
+			public DataSet executeQuery(Query query) {
+				queries.add(query.toSql());
+				return super.executeQuery(query);
+			}
+		};
+
+		// semi-joins are disabled by default
+		CompositeDataContext composite = new CompositeDataContext(dc1, dc2);
+		assertEquals(0, composite.getSemiJoinMaxKeys());
+		Table table1 = dc1.getDefaultSchema().getTableByName("table1");
+		Table table2 = dc2.getDefaultSchema().getTableByName("table2");
+
+		DataSet ds = composite.query().from(table1).innerJoin(table2)
+				.on(table1.getColumnByName("foo"), table2.getColumnByName("foo"))
+				.select(table1.getColumnByName("bar"), table2.getColumnByName("baz"))
+				.where(table1.getColumnByName("bar")).eq("hello")
+				.and(table2.getColumnByName("baz")).eq("world").execute();
+		assertTrue(ds.next());
+		assertEquals("Row[values=[hello, world]]", ds.getRow().toString());
+		assertFalse(ds.next());
+		ds.close();
+
+		// single table filters are still pushed down to the delegate
+		assertEquals("[SELECT table2.baz, table2.foo FROM schema2.table2 WHERE table2.baz = 'world']",
+				queries.toString());
+	}
+
+	public void testSemiJoinWithNullKeys() throws Exception {
+		// the "bar" value of the second row is null in both tables
+		DataContext dc1 = new MockDataContext("schema1", "table1", null);
+		DataContext dc2 = new MockDataContext("schema2", "table2", null);
+
+		DataContext composite = new CompositeDataContext(dc1, dc2).setSemiJoinMaxKeys(1000);
+		Table table1 = dc1.getDefaultSchema().getTableByName("table1");
+		Table table2 = dc2.getDefaultSchema().getTableByName("table2");
+
+		DataSet ds = composite.query().from(table1).innerJoin(table2)
+				.on(table1.getColumnByName("bar"), table2.getColumnByName("bar"))
+				.select(table1.getColumnByName("foo"), table2.getColumnByName("foo"))
+				.where(table1.getColumnByName("baz")).eq("world").execute();
+		assertEquals("[Row[values=[1, 1]], Row[values=[2, 2]], Row[values=[4, 4]]]",
+				ds.toRows().toString());
+		ds.close();
+	}
+}
@@ -20,6 +20,7 @@ package org.apache.metamodel;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.metamodel.data.DataSet;
@@ -32,6 +33,8 @@ import org.apache.metamodel.data.SimpleDataSetHeader;
 import org.apache.metamodel.data.SubSelectionDataSet;
 import org.apache.metamodel.query.FilterItem;
 import org.apache.metamodel.query.FromItem;
+import org.apache.metamodel.query.FunctionType;
+import org.apache.metamodel.query.GroupByItem;
 import org.apache.metamodel.query.JoinType;
 import org.apache.metamodel.query.OperatorType;
 import org.apache.metamodel.query.OrderByItem;
@@ -43,6 +46,7 @@ import org.apache.metamodel.schema.MutableColumn;
 import org.apache.metamodel.schema.MutableTable;
 import org.apache.metamodel.schema.Schema;
 import org.apache.metamodel.schema.Table;
+import org.apache.metamodel.util.AggregateBuilder;
 
 public class MetaModelHelperTest extends MetaModelTestCase {
 
@@ -81,6 +85,35 @@ public class MetaModelHelperTest extends MetaModelTestCase {
         assertEquals(5, objectArrays.size());
     }
 
+    public void testLeftJoinMultipleMatchesAndNonEquiCondition() throws Exception {
+        SelectItem si1 = new SelectItem(new MutableColumn("person_id", ColumnType.INTEGER));
+        SelectItem si2 = new SelectItem(new MutableColumn("person_role_id", ColumnType.INTEGER));
+        SelectItem si3 = new SelectItem(new MutableColumn("role_id", ColumnType.INTEGER));
+        SelectItem si4 = new SelectItem(new MutableColumn("role_level", ColumnType.INTEGER));
+        List<Object[]> data1 = new ArrayList<Object[]>();
+        data1.add(new Object[] { 1, 1 });
+        data1.add(new Object[] { 2, 2 });
+        data1.add(new Object[] { 3, 3 });
+
+        List<Object[]> data2 = new ArrayList<Object[]>();
+        data2.add(new Object[] { 1, 10 });
+        data2.add(new Object[] { 1, 20 });
+        data2.add(new Object[] { 2, 1 });
+
+        DataSet ds1 = createDataSet(new SelectItem[] { si1, si2 }, data1);
+        DataSet ds2 = createDataSet(new SelectItem[] { si3, si4 }, data2);
+        FilterItem[] onConditions = new FilterItem[] { new FilterItem(si2, OperatorType.EQUALS_TO, si3),
+                new FilterItem(si4, OperatorType.GREATER_THAN, 5) };
+
+        DataSet result = MetaModelHelper.getLeftJoin(ds1, ds2, onConditions);
+        List<Object[]> objectArrays = result.toObjectArrays();
+        assertEquals("[1, 1, 1, 10]", Arrays.toString(objectArrays.get(0)));
+        assertEquals("[1, 1, 1, 20]", Arrays.toString(objectArrays.get(1)));
+        assertEquals("[2, 2, null, null]", Arrays.toString(objectArrays.get(2)));
+        assertEquals("[3, 3, null, null]", Arrays.toString(objectArrays.get(3)));
+        assertEquals(4, objectArrays.size());
+    }
+
     public void testRightJoin() throws Exception {
         SelectItem si1 = new SelectItem(new MutableColumn("person_id", ColumnType.INTEGER));
         SelectItem si2 = new SelectItem(new MutableColumn("person_name", ColumnType.VARCHAR));
@@ -155,6 +188,59 @@ public class MetaModelHelperTest extends MetaModelTestCase {
         assertFalse(dataSet.next());
     }
 
+    public void testCarthesianProductWithEquiJoin() throws Exception {
+        SelectItem si1 = new SelectItem(new MutableColumn("person_id", ColumnType.INTEGER));
+        SelectItem si2 = new SelectItem(new MutableColumn("person_role_id", ColumnType.INTEGER));
+        SelectItem si3 = new SelectItem(new MutableColumn("role_id", ColumnType.INTEGER));
+        SelectItem si4 = new SelectItem(new MutableColumn("role_name", ColumnType.VARCHAR));
+        List<Object[]> data1 = new ArrayList<Object[]>();
+        data1.add(new Object[] { 1, 2 });
+        data1.add(new Object[] { 2, null });
+        data1.add(new Object[] { 3, 1L });
+        data1.add(new Object[] { 4, 2 });
+
+        List<Object[]> data2 = new ArrayList<Object[]>();
+        data2.add(new Object[] { 1, "class president" });
+        data2.add(new Object[] { 2, "bad boy" });
+        data2.add(new Object[] { 2, "trying harder" });
+
+        DataSet ds1 = createDataSet(new SelectItem[] { si1, si2 }, data1);
+        DataSet ds2 = createDataSet(new SelectItem[] { si3, si4 }, data2);
+
+        DataSet result = MetaModelHelper.getCarthesianProduct(new DataSet[] { ds1, ds2 }, new FilterItem(si2,
+                OperatorType.EQUALS_TO, si3), new FilterItem(si4, OperatorType.DIFFERENT_FROM, "trying harder"));
+        List<Object[]> objectArrays = result.toObjectArrays();
+        assertEquals("[1, 2, 2, bad boy]", Arrays.toString(objectArrays.get(0)));
+        assertEquals("[3, 1, 1, class president]", Arrays.toString(objectArrays.get(1)));
+        assertEquals("[4, 2, 2, bad boy]", Arrays.toString(objectArrays.get(2)));
+        assertEquals(3, objectArrays.size());
+    }
+
+    public void testCarthesianProductWithEquiJoinOnMixedTypes() throws Exception {
+        SelectItem si1 = new SelectItem(new MutableColumn("foo", ColumnType.VARCHAR));
+        SelectItem si2 = new SelectItem(new MutableColumn("bar", ColumnType.INTEGER));
+        List<Object[]> data1 = new ArrayList<Object[]>();
+        data1.add(new Object[] { "1" });
+        data1.add(new Object[] { 2 });
+        data1.add(new Object[] { "3" });
+
+        List<Object[]> data2 = new ArrayList<Object[]>();
+        data2.add(new Object[] { 1 });
+        data2.add(new Object[] { 2 });
+        data2.add(new Object[] { 3 });
+
+        DataSet ds1 = createDataSet(new SelectItem[] { si1 }, data1);
+        DataSet ds2 = createDataSet(new SelectItem[] { si2 }, data2);
+
+        DataSet result = MetaModelHelper.getCarthesianProduct(new DataSet[] { ds1, ds2 }, new FilterItem(si1,
+                OperatorType.EQUALS_TO, si2));
+        List<Object[]> objectArrays = result.toObjectArrays();
+        assertEquals("[1, 1]", Arrays.toString(objectArrays.get(0)));
+        assertEquals("[2, 2]", Arrays.toString(objectArrays.get(1)));
+        assertEquals("[3, 3]", Arrays.toString(objectArrays.get(2)));
+        assertEquals(3, objectArrays.size());
+    }
+
     public void testGetCarthesianProductNoRows() throws Exception {
         DataSet dataSet = MetaModelHelper.getCarthesianProduct(createDataSet4(), createDataSet2(), createDataSet3());
         assertEquals(4, dataSet.getSelectItems().length);
@@ -182,6 +268,124 @@ public class MetaModelHelperTest extends MetaModelTestCase {
         assertFalse(dataSet.next());
     }
 
+    public void testGetGrouped() throws Exception {
+        MutableColumn nameColumn = new MutableColumn("name", ColumnType.VARCHAR);
+        MutableColumn amountColumn = new MutableColumn("amount", ColumnType.INTEGER);
+        SelectItem nameItem = new SelectItem(nameColumn);
+        SelectItem amountItem = new SelectItem(amountColumn);
+        List<Object[]> data = new ArrayList<Object[]>();
+        data.add(new Object[] { "foo", 1 });
+        data.add(new Object[] { "bar", 2 });
+        data.add(new Object[] { "foo", 3 });
+        data.add(new Object[] { "foo", null });
+        DataSet dataSet = createDataSet(new SelectItem[] { nameItem, amountItem }, data);
+
+        SelectItem sumItem = new SelectItem(FunctionType.SUM, amountColumn);
+        SelectItem countItem = new SelectItem(FunctionType.COUNT, amountColumn);
+        List<SelectItem> selectItems = Arrays.asList(nameItem, sumItem, countItem, SelectItem.getCountAllItem());
+
+        DataSet result = MetaModelHelper.getGrouped(selectItems, dataSet,
+                new GroupByItem[] { new GroupByItem(nameItem) });
+        List<String> rows = new ArrayList<String>();
+        for (Object[] values : result.toObjectArrays()) {
+            rows.add(Arrays.toString(values));
+        }
+        Collections.sort(rows);
+        assertEquals("[[bar, 2.0, 1, 1], [foo, 4.0, 2, 3]]", rows.toString());
+    }
+
+    public void testGetAggregated() throws Exception {
+        MutableColumn nameColumn = new MutableColumn("name", ColumnType.VARCHAR);
+        MutableColumn amountColumn = new MutableColumn("amount", ColumnType.INTEGER);
+        SelectItem nameItem = new SelectItem(nameColumn);
+        SelectItem amountItem = new SelectItem(amountColumn);
+        List<Object[]> data = new ArrayList<Object[]>();
+        data.add(new Object[] { "foo", 1 });
+        data.add(new Object[] { "bar", null });
+        data.add(new Object[] { "baz", 3 });
+
+        SelectItem maxItem = new SelectItem(FunctionType.MAX, amountColumn);
+        DataSet result = MetaModelHelper.getAggregated(Arrays.asList(maxItem, SelectItem.getCountAllItem()),
+                createDataSet(new SelectItem[] { nameItem, amountItem }, data));
+        assertEquals("[[3, 3]]", Arrays.deepToString(result.toObjectArrays().toArray()));
+
+        result = MetaModelHelper.getAggregated(Arrays.asList(nameItem, maxItem),
+                createDataSet(new SelectItem[] { nameItem, amountItem }, data));
+        assertEquals("[[foo, 3], [bar, 3], [baz, 3]]", Arrays.deepToString(result.toObjectArrays().toArray()));
+    }
+
+    public void testGetAggregatedRowsWithOtherLayout() throws Exception {
+        MutableColumn nameColumn = new MutableColumn("name", ColumnType.VARCHAR);
+        MutableColumn amountColumn = new MutableColumn("amount", ColumnType.INTEGER);
+        SelectItem nameItem = new SelectItem(nameColumn);
+        SelectItem amountItem = new SelectItem(amountColumn);
+
+        // rows of the same size as the dataset header, but in another order
+        DataSetHeader rowHeader = new SimpleDataSetHeader(new SelectItem[] { amountItem, nameItem });
+        DataSet dataSet = new InMemoryDataSet(new SimpleDataSetHeader(new SelectItem[] { nameItem, amountItem }),
+                new DefaultRow(rowHeader, new Object[] { 1, "foo" }), new DefaultRow(rowHeader, new Object[] { 3,
+                        "bar" }));
+
+        SelectItem maxItem = new SelectItem(FunctionType.MAX, amountColumn);
+        DataSet result = MetaModelHelper.getAggregated(Arrays.asList(nameItem, maxItem), dataSet);
+        assertEquals("[[foo, 3], [bar, 3]]", Arrays.deepToString(result.toObjectArrays().toArray()));
+    }
+
+    public void testGetAggregatedApproximateFunctions() throws Exception {
+        MutableColumn amountColumn = new MutableColumn("amount", ColumnType.INTEGER);
+        SelectItem amountItem = new SelectItem(amountColumn);
+        List<Object[]> data = new ArrayList<Object[]>();
+        for (int i = 1; i <= 100; i++) {
+            data.add(new Object[] { i });
+        }
+
+        SelectItem countDistinctItem = new SelectItem(FunctionType.APPROX_COUNT_DISTINCT, amountColumn);
+        SelectItem medianItem = new SelectItem(FunctionType.APPROX_MEDIAN, amountColumn);
+        SelectItem percentileItem = new SelectItem(FunctionType.APPROX_PERCENTILE, new Object[] { "0.99" },
+                amountColumn);
+        DataSet result = MetaModelHelper.getAggregated(Arrays.asList(countDistinctItem, medianItem, percentileItem),
+                createDataSet(new SelectItem[] { amountItem }, data));
+        assertEquals("[[100, 50.5, 99.5]]", Arrays.deepToString(result.toObjectArrays().toArray()));
+    }
+
+    public void testGetOrderedWithMaxRowsInMemory() throws Exception {
+        DataSet dataSet = createDataSet1();
+        OrderByItem orderByItem = new OrderByItem(dataSet.getSelectItems()[0], OrderByItem.Direction.DESC);
+
+        dataSet = MetaModelHelper.getOrdered(dataSet, 1, orderByItem);
+        assertTrue(dataSet.next());
+        assertEquals("Row[values=[o]]", dataSet.getRow().toString());
+        assertTrue(dataSet.next());
+        assertEquals("Row[values=[o]]", dataSet.getRow().toString());
+        assertTrue(dataSet.next());
+        assertEquals("Row[values=[f]]", dataSet.getRow().toString());
+        assertFalse(dataSet.next());
+        dataSet.close();
+    }
+
+    public void testGetOrderedTopRows() throws Exception {
+        SelectItem keyItem = new SelectItem(new MutableColumn("key", ColumnType.INTEGER));
+        SelectItem valueItem = new SelectItem(new MutableColumn("value", ColumnType.VARCHAR));
+        List<Object[]> data = new ArrayList<Object[]>();
+        data.add(new Object[] { 3, "a" });
+        data.add(new Object[] { 1, "b" });
+        data.add(new Object[] { 2, "c" });
+        data.add(new Object[] { 1, "d" });
+        data.add(new Object[] { 5, "e" });
+        data.add(new Object[] { 2, "f" });
+        DataSet dataSet = createDataSet(new SelectItem[] { keyItem, valueItem }, data);
+
+        List<OrderByItem> orderByItems = Arrays.asList(new OrderByItem(keyItem));
+        dataSet = MetaModelHelper.getOrdered(dataSet, orderByItems, 2, 3);
+        dataSet = MetaModelHelper.getPaged(dataSet, 2, 3);
+
+        List<Object[]> objectArrays = dataSet.toObjectArrays();
+        assertEquals("[1, d]", Arrays.toString(objectArrays.get(0)));
+        assertEquals("[2, c]", Arrays.toString(objectArrays.get(1)));
+        assertEquals("[2, f]", Arrays.toString(objectArrays.get(2)));
+        assertEquals(3, objectArrays.size());
+    }
+
     private DataSet createDataSet1() {
         List<Object[]> data1 = new ArrayList<Object[]>();
         data1.add(new Object[] { "f" });
@@ -324,4 +528,57 @@ public class MetaModelHelperTest extends MetaModelTestCase {
         assertEquals("Row[values=[1, 2, null]]", joinedDs.getRow().toString());
         assertFalse(joinedDs.next());
     }
+
+    /**
+     * Micro-measurement of the aggregation loop of
+     * {@link MetaModelHelper#getAggregated(List, DataSet)}, which resolves the
+     * input indexes of the aggregates once per dataset. For comparison, the
+     * same aggregates are built by looking up the input value by select item
+     * for every row, as was previously done. This is not a rigorous benchmark
+     * (JMH is not a part of this build), so the timings are only printed, and
+     * only the results are asserted.
+     */
+    public void testAggregatedInputResolutionTiming() throws Exception {
+        final MutableColumn col1 = new MutableColumn("foo", ColumnType.INTEGER);
+        final MutableColumn col2 = new MutableColumn("bar", ColumnType.INTEGER);
+        final SelectItem[] inputItems = new SelectItem[] { new SelectItem(col1), new SelectItem(col2) };
+        final List<Object[]> data = new ArrayList<Object[]>();
+        for (int i = 0; i < 100000; i++) {
+            data.add(new Object[] { i % 100, i });
+        }
+        final List<SelectItem> functionItems = Arrays.asList(new SelectItem(FunctionType.SUM, col2), new SelectItem(
+                FunctionType.MAX, col1));
+
+        Object[] resolved = null;
+        Object[] lookedUp = null;
+        long resolvedNanos = Long.MAX_VALUE;
+        long lookedUpNanos = Long.MAX_VALUE;
+        // the best of a number of rounds is reported, to leave out the warm-up
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            final DataSet ds = MetaModelHelper.getAggregated(functionItems, createDataSet(inputItems, data));
+            assertTrue(ds.next());
+            resolved = ds.getRow().getValues();
+            ds.close();
+            resolvedNanos = Math.min(resolvedNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            final AggregateBuilder<?> sumBuilder = FunctionType.SUM.createAggregateBuilder();
+            final AggregateBuilder<?> maxBuilder = FunctionType.MAX.createAggregateBuilder();
+            final DataSet input = createDataSet(inputItems, data);
+            while (input.next()) {
+                final Row row = input.getRow();
+                sumBuilder.add(row.getValue(new SelectItem(col2)));
+                maxBuilder.add(row.getValue(new SelectItem(col1)));
+            }
+            input.close();
+            lookedUp = new Object[] { sumBuilder.getAggregate(), maxBuilder.getAggregate() };
+            lookedUpNanos = Math.min(lookedUpNanos, System.nanoTime() - start);
+        }
+
+        assertEquals("[4.99995E9, 99]", Arrays.toString(resolved));
+        assertEquals(Arrays.toString(lookedUp), Arrays.toString(resolved));
+        System.out.println("Aggregating 100000 rows: " + resolvedNanos / 1000 + " us with resolved input indexes, "
+                + lookedUpNanos / 1000 + " us with per-row lookups");
+    }
 }
@@ -21,10 +21,19 @@ package org.apache.metamodel;
 import java.nio.channels.UnsupportedAddressTypeException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.table.TableModel;
 
+import org.apache.metamodel.data.AbstractDataSet;
 import org.apache.metamodel.data.DataSet;
 import org.apache.metamodel.data.DataSetHeader;
 import org.apache.metamodel.data.DataSetTableModel;
@@ -865,6 +874,228 @@ public class QueryPostprocessDataContextTest extends MetaModelTestCase {
         assertFalse(data.next());
     }
 
+    public void testCarthesianProductWithSingleTableWhereItems() throws Exception {
+        final QueryPostprocessDataContext delegate = (QueryPostprocessDataContext) getDataContext();
+        final Map<Table, List<FilterItem>> materializedWhereItems = new HashMap<Table, List<FilterItem>>();
+        final DataContext dc = new QueryPostprocessDataContext() {
+            @Override
+            protected DataSet materializeMainSchemaTable(Table table, List<SelectItem> selectItems,
+                    List<FilterItem> whereItems, int firstRow, int maxRows) {
+                materializedWhereItems.put(table, whereItems);
+                return super.materializeMainSchemaTable(table, selectItems, whereItems, firstRow, maxRows);
+            }
+
+            @Override
+            protected DataSet materializeMainSchemaTable(Table table, Column[] columns, int maxRows) {
+                return delegate.materializeMainSchemaTable(table, columns, maxRows);
+            }
+
+            @Override
+            protected String getMainSchemaName() throws MetaModelException {
+                return schema.getName();
+            }
+
+            @Override
+            protected Schema getMainSchema() throws MetaModelException {
+                return schema;
+            }
+        };
+
+        final Query q = new Query().from(table1).from(table2);
+        q.select(table1.getColumnByName(COLUMN_CONTRIBUTOR_NAME), table2.getColumnByName(COLUMN_ROLE_ROLE_NAME));
+        q.where(table1.getColumnByName(COLUMN_CONTRIBUTOR_CONTRIBUTOR_ID), OperatorType.EQUALS_TO,
+                table2.getColumnByName(COLUMN_ROLE_CONTRIBUTOR_ID));
+        q.where(new FilterItem(new SelectItem(table2.getColumnByName(COLUMN_ROLE_ROLE_NAME)),
+                OperatorType.EQUALS_TO, "founder"));
+        q.where(new FilterItem(new SelectItem(table1.getColumnByName(COLUMN_CONTRIBUTOR_COUNTRY)),
+                OperatorType.EQUALS_TO, "denmark"));
+
+        final DataSet data = dc.executeQuery(q);
+        assertTrue(data.next());
+        assertEquals("Row[values=[kasper, founder]]", data.getRow().toString());
+        assertTrue(data.next());
+        assertEquals("Row[values=[jesper, founder]]", data.getRow().toString());
+        assertFalse(data.next());
+        data.close();
+
+        assertEquals("[contributor.country = 'denmark']", materializedWhereItems.get(table1).toString());
+        assertEquals("[role.name = 'founder']", materializedWhereItems.get(table2).toString());
+    }
+
+    public void testParallelMaterialization() throws Exception {
+        final QueryPostprocessDataContext delegate = (QueryPostprocessDataContext) getDataContext();
+        final Map<Table, Thread> materializingThreads = new ConcurrentHashMap<Table, Thread>();
+        final QueryPostprocessDataContext dc = new QueryPostprocessDataContext() {
+            @Override
+            protected DataSet materializeMainSchemaTable(Table table, Column[] columns, int maxRows) {
+                materializingThreads.put(table, Thread.currentThread());
+                return delegate.materializeMainSchemaTable(table, columns, maxRows);
+            }
+
+            @Override
+            protected String getMainSchemaName() throws MetaModelException {
+                return schema.getName();
+            }
+
+            @Override
+            protected Schema getMainSchema() throws MetaModelException {
+                return schema;
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            dc.setMaterializationExecutor(executor);
+
+            final Query q = new Query().from(table1).from(table2);
+            q.select(table1.getColumnByName(COLUMN_CONTRIBUTOR_NAME), table2.getColumnByName(COLUMN_ROLE_ROLE_NAME));
+            q.where(table1.getColumnByName(COLUMN_CONTRIBUTOR_CONTRIBUTOR_ID), OperatorType.EQUALS_TO,
+                    table2.getColumnByName(COLUMN_ROLE_CONTRIBUTOR_ID));
+            q.where(table2.getColumnByName(COLUMN_ROLE_ROLE_NAME), OperatorType.EQUALS_TO, "founder");
+
+            final DataSet data = dc.executeQuery(q);
+            assertTrue(data.next());
+            assertEquals("Row[values=[kasper, founder]]", data.getRow().toString());
+            assertTrue(data.next());
+            assertEquals("Row[values=[jesper, founder]]", data.getRow().toString());
+            assertFalse(data.next());
+            data.close();
+
+            assertSame(Thread.currentThread(), materializingThreads.get(table1));
+            assertNotSame(Thread.currentThread(), materializingThreads.get(table2));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testParallelMaterializationFailureClosesSiblings() throws Exception {
+        final QueryPostprocessDataContext delegate = (QueryPostprocessDataContext) getDataContext();
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        final QueryPostprocessDataContext dc = new QueryPostprocessDataContext() {
+            @Override
+            protected DataSet materializeMainSchemaTable(Table table, Column[] columns, int maxRows) {
+                if (table == table2) {
+                    throw new IllegalStateException("Failed to materialize " + table.getName());
+                }
+                final DataSet dataSet = delegate.materializeMainSchemaTable(table, columns, maxRows);
+                return new AbstractDataSet(dataSet) {
+                    @Override
+                    public boolean next() {
+                        return dataSet.next();
+                    }
+
+                    @Override
+                    public Row getRow() {
+                        return dataSet.getRow();
+                    }
+
+                    @Override
+                    public void close() {
+                        super.close();
+                        dataSet.close();
+                        closed.set(true);
+                    }
+                };
+            }
+
+            @Override
+            protected String getMainSchemaName() throws MetaModelException {
+                return schema.getName();
+            }
+
+            @Override
+            protected Schema getMainSchema() throws MetaModelException {
+                return schema;
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            dc.setMaterializationExecutor(executor);
+
+            final Query q = new Query().from(table1).from(table2);
+            q.select(table1.getColumnByName(COLUMN_CONTRIBUTOR_NAME), table2.getColumnByName(COLUMN_ROLE_ROLE_NAME));
+            try {
+                dc.executeQuery(q);
+                fail("Exception expected");
+            } catch (IllegalStateException e) {
+                assertEquals("Failed to materialize role", e.getMessage());
+            }
+            assertTrue(closed.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testParallelMaterializationFailureClosesCompletedTasks() throws Exception {
+        final QueryPostprocessDataContext delegate = (QueryPostprocessDataContext) getDataContext();
+        final AtomicInteger opened = new AtomicInteger();
+        final AtomicInteger closed = new AtomicInteger();
+        final QueryPostprocessDataContext dc = new QueryPostprocessDataContext() {
+            @Override
+            protected DataSet materializeMainSchemaTable(Table table, Column[] columns, int maxRows) {
+                if (table == table1) {
+                    // the calling thread fails, while the task of table2 may
+                    // be completing
+                    throw new IllegalStateException("Failed to materialize " + table.getName());
+                }
+                final DataSet dataSet = delegate.materializeMainSchemaTable(table, columns, maxRows);
+                opened.incrementAndGet();
+                return new AbstractDataSet(dataSet) {
+                    @Override
+                    public boolean next() {
+                        return dataSet.next();
+                    }
+
+                    @Override
+                    public Row getRow() {
+                        return dataSet.getRow();
+                    }
+
+                    @Override
+                    public void close() {
+                        super.close();
+                        dataSet.close();
+                        closed.incrementAndGet();
+                    }
+                };
+            }
+
+            @Override
+            protected String getMainSchemaName() throws MetaModelException {
+                return schema.getName();
+            }
+
+            @Override
+            protected Schema getMainSchema() throws MetaModelException {
+                return schema;
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            dc.setMaterializationExecutor(executor);
+
+            final Query q = new Query().from(table1).from(table2);
+            q.select(table1.getColumnByName(COLUMN_CONTRIBUTOR_NAME), table2.getColumnByName(COLUMN_ROLE_ROLE_NAME));
+            for (int i = 0; i < 200; i++) {
+                try {
+                    dc.executeQuery(q);
+                    fail("Exception expected");
+                } catch (IllegalStateException e) {
+                    assertEquals("Failed to materialize contributor", e.getMessage());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // every dataset materialized by a task was closed, whether the task
+        // completed before or after the failure was observed
+        assertEquals(opened.get(), closed.get());
+    }
+
     public void testSelectDistinct() throws Exception {
         // there will be three distinct values in bar column: hello (x2), hi,
         // howdy
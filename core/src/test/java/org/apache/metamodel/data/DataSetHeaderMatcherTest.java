@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.data;
+
+import junit.framework.TestCase;
+
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.schema.ColumnType;
+import org.apache.metamodel.schema.MutableColumn;
+
+public class DataSetHeaderMatcherTest extends TestCase {
+
+    private final SelectItem item1 = new SelectItem(new MutableColumn("foo", ColumnType.VARCHAR));
+    private final SelectItem item2 = new SelectItem(new MutableColumn("bar", ColumnType.VARCHAR));
+
+    public void testMatches() throws Exception {
+        final DataSetHeader header = new CachingDataSetHeader(new SelectItem[] { item1, item2 });
+        final DataSetHeaderMatcher matcher = new DataSetHeaderMatcher(header);
+
+        assertTrue(matcher.matches(new DefaultRow(header, new Object[] { "a", "b" })));
+
+        // another header with the same select items
+        final DataSetHeader sameItems = new SimpleDataSetHeader(new SelectItem[] { item1, item2 });
+        assertTrue(matcher.matches(new DefaultRow(sameItems, new Object[] { "a", "b" })));
+        assertTrue(matcher.matches(new DefaultRow(sameItems, new Object[] { "c", "d" })));
+
+        // same size, but other select items or another order
+        final DataSetHeader reversed = new SimpleDataSetHeader(new SelectItem[] { item2, item1 });
+        assertFalse(matcher.matches(new DefaultRow(reversed, new Object[] { "b", "a" })));
+        final DataSetHeader equalItems = new SimpleDataSetHeader(new SelectItem[] {
+                new SelectItem(item1.getColumn()), new SelectItem(item2.getColumn()) });
+        assertFalse(matcher.matches(new DefaultRow(equalItems, new Object[] { "a", "b" })));
+        assertFalse(matcher.matches(new DefaultRow(new SimpleDataSetHeader(new SelectItem[] { item1 }),
+                new Object[] { "a" })));
+
+        assertTrue(matcher.matches(new DefaultRow(header, new Object[] { "a", "b" })));
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.schema.MutableColumn;
+
+import junit.framework.TestCase;
+
+public class ExternalSortDataSetTest extends TestCase {
+
+    private SelectItem[] items = new SelectItem[] { new SelectItem(new MutableColumn("key")),
+            new SelectItem(new MutableColumn("value")) };
+    private DataSetHeader header = new SimpleDataSetHeader(items);
+
+    private final Comparator<Row> comparator = new Comparator<Row>() {
+        @Override
+        public int compare(Row o1, Row o2) {
+            return ((Integer) o1.getValue(0)).compareTo((Integer) o2.getValue(0));
+        }
+    };
+
+    private InMemoryDataSet createDataSet(int size) {
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < size; i++) {
+            rows.add(new DefaultRow(header, new Object[] { (i * 7) % 5, "row" + i }));
+        }
+        return new InMemoryDataSet(header, rows);
+    }
+
+    public void testSpillAndMerge() throws Exception {
+        ExternalSortDataSet ds = new ExternalSortDataSet(createDataSet(23), comparator, 4);
+
+        List<Object[]> result = ds.toObjectArrays();
+        assertEquals(23, result.size());
+
+        int previousKey = -1;
+        int previousRowNumber = -1;
+        for (Object[] values : result) {
+            int key = (Integer) values[0];
+            int rowNumber = Integer.parseInt(((String) values[1]).substring(3));
+            assertTrue(key >= previousKey);
+            if (key == previousKey) {
+                // the sort must be stable
+                assertTrue(rowNumber > previousRowNumber);
+            }
+            previousKey = key;
+            previousRowNumber = rowNumber;
+        }
+    }
+
+    public void testFitsInMemory() throws Exception {
+        ExternalSortDataSet ds = new ExternalSortDataSet(createDataSet(5), comparator, 10);
+        assertTrue(ds.next());
+        assertEquals("Row[values=[0, row0]]", ds.getRow().toString());
+        assertTrue(ds.next());
+        assertEquals("Row[values=[1, row3]]", ds.getRow().toString());
+        assertTrue(ds.next());
+        assertTrue(ds.next());
+        assertTrue(ds.next());
+        assertEquals("Row[values=[4, row2]]", ds.getRow().toString());
+        assertFalse(ds.next());
+        ds.close();
+    }
+
+    public void testEmptyDataSet() throws Exception {
+        ExternalSortDataSet ds = new ExternalSortDataSet(new EmptyDataSet(header), comparator, 2);
+        assertFalse(ds.next());
+        ds.close();
+    }
+}
@@ -18,6 +18,10 @@
  */
 package org.apache.metamodel.data;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import junit.framework.TestCase;
 
 import org.apache.metamodel.query.SelectItem;
@@ -36,7 +40,7 @@ public class RowPublisherDataSetTest extends TestCase {
 					public void run(RowPublisher publisher) throws Exception {
 
 						// we want to exceed the buffer size
-						int iterations = RowPublisherImpl.BUFFER_SIZE * 2;
+						int iterations = RowPublisherImpl.DEFAULT_BATCH_SIZE * RowPublisherImpl.DEFAULT_QUEUE_SIZE * 2;
 
 						for (int i = 0; i < iterations; i++) {
 							publisher.publish(new Object[] { "foo" + i,
@@ -86,4 +90,82 @@ public class RowPublisherDataSetTest extends TestCase {
 		    ds.close();
 		}
 	}
+
+	public void testErrorInAction() throws Exception {
+		SelectItem[] selectItems = new SelectItem[1];
+		selectItems[0] = new SelectItem(new MutableColumn("foos"));
+		DataSet ds = new RowPublisherDataSet(selectItems, -1,
+				new Action<RowPublisher>() {
+					@Override
+					public void run(RowPublisher publisher) throws Exception {
+						publisher.publish(new Object[] { "foo0" });
+						throw new AssertionError("foobar!");
+					}
+				});
+
+		assertTrue(ds.next());
+		assertEquals("Row[values=[foo0]]", ds.getRow().toString());
+
+		try {
+			ds.next();
+			fail("Error expected");
+		} catch (AssertionError e) {
+			assertEquals("foobar!", e.getMessage());
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testManyRowsInOrder() throws Exception {
+		SelectItem[] selectItems = new SelectItem[1];
+		selectItems[0] = new SelectItem(new MutableColumn("foos"));
+		final int rows = RowPublisherImpl.DEFAULT_BATCH_SIZE * RowPublisherImpl.DEFAULT_QUEUE_SIZE * 3 + 7;
+		DataSet ds = new RowPublisherDataSet(selectItems, -1,
+				new Action<RowPublisher>() {
+					@Override
+					public void run(RowPublisher publisher) throws Exception {
+						for (int i = 0; i < rows; i++) {
+							publisher.publish(new Object[] { i });
+						}
+					}
+				});
+
+		for (int i = 0; i < rows; i++) {
+			assertTrue(ds.next());
+			assertEquals(i, ds.getRow().getValue(0));
+		}
+		assertFalse(ds.next());
+		assertFalse(ds.next());
+		ds.close();
+	}
+
+	public void testCloseCancelsPublisher() throws Exception {
+		SelectItem[] selectItems = new SelectItem[1];
+		selectItems[0] = new SelectItem(new MutableColumn("foos"));
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicInteger published = new AtomicInteger();
+		DataSet ds = new RowPublisherDataSet(selectItems, -1,
+				new Action<RowPublisher>() {
+					@Override
+					public void run(RowPublisher publisher) throws Exception {
+						try {
+							// publish until the consumer is no longer interested
+							while (publisher.publish(new Object[] { published.get() })) {
+								published.incrementAndGet();
+							}
+						} finally {
+							latch.countDown();
+						}
+					}
+				});
+
+		assertTrue(ds.next());
+		assertEquals(0, ds.getRow().getValue(0));
+		ds.close();
+
+		assertTrue("Publisher was not cancelled", latch.await(10, TimeUnit.SECONDS));
+		assertTrue(published.get() <= RowPublisherImpl.DEFAULT_BATCH_SIZE
+				* (RowPublisherImpl.DEFAULT_QUEUE_SIZE + 2));
+		assertFalse(ds.next());
+	}
 }
@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ApproximateCountDistinctAggregateBuilderTest {
+
+    @Test
+    public void testExactForFewValues() throws Exception {
+        ApproximateCountDistinctAggregateBuilder aggregateBuilder = new ApproximateCountDistinctAggregateBuilder();
+        for (int i = 0; i < 3; i++) {
+            aggregateBuilder.add("foo");
+            aggregateBuilder.add("bar");
+            aggregateBuilder.add(null);
+            aggregateBuilder.add(i);
+        }
+        assertEquals(5L, aggregateBuilder.getAggregate().longValue());
+    }
+
+    @Test
+    public void testEstimateManyValues() throws Exception {
+        ApproximateCountDistinctAggregateBuilder aggregateBuilder = new ApproximateCountDistinctAggregateBuilder();
+        final int distinctValues = 200000;
+        for (int i = 0; i < 2 * distinctValues; i++) {
+            aggregateBuilder.add("value" + (i % distinctValues));
+        }
+        final long estimate = aggregateBuilder.getAggregate();
+        final double error = Math.abs(estimate - distinctValues) / (double) distinctValues;
+        assertTrue("Estimate too far off: " + estimate, error < 0.03);
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.apache.metamodel.util.AggregateBuilder;
+import org.junit.Test;
+
+public class ApproximatePercentileAggregateBuilderTest {
+
+    @Test
+    public void testFewValues() throws Exception {
+        ApproximatePercentileAggregateBuilder aggregateBuilder = new ApproximatePercentileAggregateBuilder(0.5);
+        assertNull(aggregateBuilder.getAggregate());
+
+        aggregateBuilder.add(3);
+        aggregateBuilder.add("1");
+        aggregateBuilder.add((Object) null);
+        aggregateBuilder.add(2.0);
+        assertEquals(2.0, aggregateBuilder.getAggregate(), 0.0);
+
+        aggregateBuilder.add(4);
+        assertEquals(2.5, aggregateBuilder.getAggregate(), 0.0);
+    }
+
+    @Test
+    public void testManyValues() throws Exception {
+        final int count = 100000;
+        final double[] percentiles = new double[] { 0, 0.01, 0.5, 0.9, 0.99, 1 };
+        final ApproximatePercentileAggregateBuilder[] aggregateBuilders = new ApproximatePercentileAggregateBuilder[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            aggregateBuilders[i] = new ApproximatePercentileAggregateBuilder(percentiles[i]);
+        }
+
+        // add the numbers 0 to (count - 1) in random order
+        final int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = i;
+        }
+        final Random random = new Random(1234);
+        for (int i = count - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+        for (int value : values) {
+            for (ApproximatePercentileAggregateBuilder aggregateBuilder : aggregateBuilders) {
+                aggregateBuilder.add(value);
+            }
+        }
+
+        for (int i = 0; i < percentiles.length; i++) {
+            final double expected = percentiles[i] * (count - 1);
+            assertEquals("Percentile " + percentiles[i], expected, aggregateBuilders[i].getAggregate(), count * 0.005);
+        }
+    }
+
+    @Test
+    public void testFunctionPercentileParameter() throws Exception {
+        final AggregateFunction function = FunctionType.APPROX_PERCENTILE;
+
+        // without a parameter the median is estimated
+        assertEquals(3.0, (Double) function.evaluate(1, 2, 3, 4, 5), 0.0);
+        assertEquals(2.5, (Double) function.evaluate(4, null, 1, 3, 2), 0.0);
+        assertNull(function.evaluate());
+        AggregateBuilder<?> aggregateBuilder = ((DefaultAggregateFunction<?>) function)
+                .createAggregateBuilder(new Object[0]);
+        aggregateBuilder.add(1);
+        aggregateBuilder.add(2);
+        aggregateBuilder.add(3);
+        assertEquals(2.0, (Double) aggregateBuilder.getAggregate(), 0.0);
+
+        aggregateBuilder = ((DefaultAggregateFunction<?>) function).createAggregateBuilder(new Object[] { "0.25" });
+        for (int i = 1; i <= 5; i++) {
+            aggregateBuilder.add(i);
+        }
+        assertEquals(1.75, (Double) aggregateBuilder.getAggregate(), 0.0);
+
+        try {
+            ((DefaultAggregateFunction<?>) function).createAggregateBuilder(new Object[] { "foo" });
+            fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Percentile is not a number: foo", e.getMessage());
+        }
+    }
+}
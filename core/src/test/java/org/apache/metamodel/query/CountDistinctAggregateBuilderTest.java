@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.query;
+
+import junit.framework.TestCase;
+
+public class CountDistinctAggregateBuilderTest extends TestCase {
+
+    public void testMixedValues() throws Exception {
+        CountDistinctAggregateBuilder aggregateBuilder = new CountDistinctAggregateBuilder();
+        aggregateBuilder.add(1);
+        aggregateBuilder.add(1L);
+        aggregateBuilder.add(null);
+        aggregateBuilder.add("1");
+        aggregateBuilder.add("foo");
+        aggregateBuilder.add("foo");
+        aggregateBuilder.add(0);
+        assertEquals(4L, aggregateBuilder.getAggregate().longValue());
+    }
+
+    public void testManyIntegers() throws Exception {
+        CountDistinctAggregateBuilder aggregateBuilder = new CountDistinctAggregateBuilder();
+        for (int i = 0; i < 100000; i++) {
+            aggregateBuilder.add(i % 30000);
+            aggregateBuilder.add(-1L * i);
+        }
+        // 0 is added both as a positive and negative number
+        assertEquals(30000 + 100000 - 1, aggregateBuilder.getAggregate().longValue());
+    }
+}
@@ -27,6 +27,7 @@ import org.apache.metamodel.data.CachingDataSetHeader;
 import org.apache.metamodel.data.DataSet;
 import org.apache.metamodel.data.DataSetHeader;
 import org.apache.metamodel.data.DefaultRow;
+import org.apache.metamodel.data.IRowFilter;
 import org.apache.metamodel.data.InMemoryDataSet;
 import org.apache.metamodel.data.Row;
 import org.apache.metamodel.data.SimpleDataSetHeader;
@@ -441,4 +442,77 @@ public class FilterItemTest extends TestCase {
         assertTrue(filterItem.evaluate(new DefaultRow(header, new Object[] { "bar" })));
         assertFalse(filterItem.evaluate(new DefaultRow(header, new Object[] { "foobar" })));
     }
-}
\ No newline at end of file
+
+    public void testCompileGivesSameResultsAsEvaluate() throws Exception {
+        SelectItem selectItem1 = new SelectItem(new MutableColumn("foo", ColumnType.VARCHAR));
+        SelectItem selectItem2 = new SelectItem(new MutableColumn("bar", ColumnType.INTEGER));
+        DataSetHeader header = new CachingDataSetHeader(new SelectItem[] { selectItem1, selectItem2 });
+
+        List<FilterItem> filterItems = new ArrayList<FilterItem>();
+        Object[] operands = new Object[] { 2, 2.5, "2", "foo", "true", null };
+        for (OperatorType operator : OperatorType.BUILT_IN_OPERATORS) {
+            for (Object operand : operands) {
+                if (operand == null && operator != OperatorType.EQUALS_TO && operator != OperatorType.DIFFERENT_FROM) {
+                    continue;
+                }
+                if (operator == OperatorType.LIKE) {
+                    if (operand instanceof String) {
+                        filterItems.add(new FilterItem(selectItem1, operator, "%" + operand + "%"));
+                    }
+                    continue;
+                }
+                if (operator == OperatorType.IN) {
+                    operand = new Object[] { operand, "foo" };
+                }
+                filterItems.add(new FilterItem(selectItem1, operator, operand));
+                filterItems.add(new FilterItem(selectItem2, operator, operand));
+            }
+        }
+        filterItems.add(new FilterItem(selectItem1, OperatorType.LESS_THAN, selectItem2));
+        filterItems.add(new FilterItem(new FilterItem(selectItem1, OperatorType.EQUALS_TO, "foo"), new FilterItem(
+                selectItem2, OperatorType.GREATER_THAN, 1)));
+        filterItems.add(new FilterItem(LogicalOperator.AND, new FilterItem(selectItem1, OperatorType.LIKE, "f%"),
+                new FilterItem(selectItem2, OperatorType.LESS_THAN, 3L)));
+
+        Object[][] rows = new Object[][] { { "foo", 1 }, { "2", 2 }, { "true", 3L }, { null, null }, { "afoob", 2.5 },
+                { "3", new java.math.BigDecimal("2.5") } };
+
+        for (int i = 0; i < filterItems.size(); i++) {
+            FilterItem filterItem = filterItems.get(i);
+            IRowFilter compiled = filterItem.compile(header);
+            for (Object[] values : rows) {
+                Row row = new DefaultRow(header, values);
+                assertEquals("Filter item " + i + " on " + Arrays.toString(values), filterItem.evaluate(row),
+                        compiled.accept(row));
+            }
+        }
+    }
+
+    public void testCompileLikePatternWithSelectItemOperand() throws Exception {
+        SelectItem selectItem1 = new SelectItem(new MutableColumn("foo", ColumnType.VARCHAR));
+        SelectItem selectItem2 = new SelectItem(new MutableColumn("bar", ColumnType.VARCHAR));
+        SelectItem selectItem3 = new SelectItem(new MutableColumn("baz", ColumnType.VARCHAR));
+        DataSetHeader header = new CachingDataSetHeader(new SelectItem[] { selectItem1, selectItem2 });
+
+        IRowFilter compiled = new FilterItem(selectItem1, OperatorType.LIKE, selectItem2).compile(header);
+        assertTrue(compiled.accept(new DefaultRow(header, new Object[] { "hello world", "%wor%" })));
+        assertFalse(compiled.accept(new DefaultRow(header, new Object[] { "hello world", "wor%" })));
+
+        // select items that are not in the header are treated as null values
+        compiled = new FilterItem(selectItem3, OperatorType.EQUALS_TO, null).compile(header);
+        assertTrue(compiled.accept(new DefaultRow(header, new Object[] { "hello world", "%wor%" })));
+    }
+
+    public void testCompiledFilterOnRowWithOtherLayout() throws Exception {
+        SelectItem selectItem1 = new SelectItem(new MutableColumn("foo", ColumnType.VARCHAR));
+        SelectItem selectItem2 = new SelectItem(new MutableColumn("bar", ColumnType.VARCHAR));
+        DataSetHeader header = new CachingDataSetHeader(new SelectItem[] { selectItem1, selectItem2 });
+        DataSetHeader reversedHeader = new CachingDataSetHeader(new SelectItem[] { selectItem2, selectItem1 });
+
+        // a row of the same size, but with the select items in another order
+        IRowFilter compiled = new FilterItem(selectItem1, OperatorType.EQUALS_TO, "a").compile(header);
+        assertTrue(compiled.accept(new DefaultRow(header, new Object[] { "a", "b" })));
+        assertTrue(compiled.accept(new DefaultRow(reversedHeader, new Object[] { "b", "a" })));
+        assertFalse(compiled.accept(new DefaultRow(reversedHeader, new Object[] { "a", "b" })));
+    }
+}
@@ -39,4 +39,14 @@ public class FunctionTypeTest extends TestCase {
 		assertEquals("a", FunctionType.MIN.evaluate("abc", "a", null, "bcd"));
 		assertEquals("bcd", FunctionType.MAX.evaluate("abc", "a", null, "bcd"));
 	}
+
+	public void testEvaluateLargeIntegers() throws Exception {
+		// integer sums are rounded once, adding each value to a double would
+		// have lost both increments
+		final long largeValue = 1L << 53;
+		assertEquals(9007199254740994.0, FunctionType.SUM.evaluate(largeValue, 1, 1));
+		assertEquals(2.0 * Long.MAX_VALUE, FunctionType.SUM.evaluate(Long.MAX_VALUE, Long.MAX_VALUE));
+		assertEquals(Long.MAX_VALUE, FunctionType.MAX.evaluate(1, Long.MAX_VALUE, (short) 2));
+		assertEquals(0.0, FunctionType.AVG.evaluate());
+	}
 }
\ No newline at end of file
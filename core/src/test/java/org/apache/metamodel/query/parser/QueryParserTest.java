@@ -27,6 +27,7 @@ import org.apache.metamodel.MockDataContext;
 import org.apache.metamodel.query.FilterClause;
 import org.apache.metamodel.query.FilterItem;
 import org.apache.metamodel.query.FromItem;
+import org.apache.metamodel.query.FunctionType;
 import org.apache.metamodel.query.OperatorType;
 import org.apache.metamodel.query.OrderByItem;
 import org.apache.metamodel.query.OrderByItem.Direction;
@@ -117,6 +118,15 @@ public class QueryParserTest extends TestCase {
         assertTrue(q.getSelectClause().getItem(0).isFunctionApproximationAllowed());
     }
 
+    public void testApproximateAggregateFunctions() throws Exception {
+        Query q = MetaModelHelper.parseQuery(dc,
+                "SELECT APPROX_COUNT_DISTINCT(foo), APPROX_MEDIAN(bar), APPROX_PERCENTILE('0.95',bar) FROM sch.tbl");
+        assertEquals("SELECT APPROX_COUNT_DISTINCT(tbl.foo), APPROX_MEDIAN(tbl.bar), "
+                + "APPROX_PERCENTILE('0.95',tbl.bar) FROM sch.tbl", q.toSql());
+        assertEquals(FunctionType.APPROX_COUNT_DISTINCT, q.getSelectClause().getItem(0).getAggregateFunction());
+        assertEquals("[0.95]", Arrays.toString(q.getSelectClause().getItem(2).getFunctionParameters()));
+    }
+
     public void testSelectAlias() throws Exception {
         Query q = MetaModelHelper.parseQuery(dc, "SELECT foo AS f FROM sch.tbl");
         assertEquals("SELECT tbl.foo AS f FROM sch.tbl", q.toSql());
@@ -0,0 +1,369 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.elasticsearch.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.metamodel.MetaModelHelper;
+import org.apache.metamodel.data.DataSet;
+import org.apache.metamodel.data.DataSetHeader;
+import org.apache.metamodel.data.DefaultRow;
+import org.apache.metamodel.data.InMemoryDataSet;
+import org.apache.metamodel.data.Row;
+import org.apache.metamodel.data.SimpleDataSetHeader;
+import org.apache.metamodel.query.AggregateFunction;
+import org.apache.metamodel.query.FromItem;
+import org.apache.metamodel.query.FunctionType;
+import org.apache.metamodel.query.GroupByItem;
+import org.apache.metamodel.query.LogicalOperator;
+import org.apache.metamodel.query.OrderByItem;
+import org.apache.metamodel.query.Query;
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.schema.Column;
+import org.apache.metamodel.schema.ColumnType;
+import org.apache.metamodel.schema.Table;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+
+/**
+ * Translation of a simple aggregation query into ElasticSearch aggregations.
+ *
+ * Each GROUP BY column becomes a (nested) "terms" aggregation, accompanied by
+ * a "missing" aggregation for the documents without a value. Aggregate
+ * functions become metric aggregations of the innermost buckets (or of the
+ * whole query, when there is no GROUP BY clause). Only number columns are
+ * grouped and aggregated, since (analyzed) string fields would be grouped by
+ * their terms rather than by their values.
+ *
+ * The aggregated rows are ordered and paged client-side, which is cheap since
+ * there is only a row per group.
+ */
+public final class ElasticSearchAggregation {
+
+    private final Query _query;
+    private final QueryBuilder _queryBuilder;
+    private final List<Column> _groupByColumns;
+
+    private ElasticSearchAggregation(Query query, QueryBuilder queryBuilder, List<Column> groupByColumns) {
+        _query = query;
+        _queryBuilder = queryBuilder;
+        _groupByColumns = groupByColumns;
+    }
+
+    /**
+     * Creates an aggregation translation of a query.
+     *
+     * @param query
+     * @return the translation, or null if the query is not a (supported)
+     *         aggregation query.
+     */
+    public static ElasticSearchAggregation create(Query query) {
+        if (query.getSelectClause().isDistinct() || !query.getHavingClause().isEmpty()) {
+            return null;
+        }
+
+        final List<FromItem> fromItems = query.getFromClause().getItems();
+        if (fromItems.size() != 1 || fromItems.get(0).getTable() == null) {
+            return null;
+        }
+        final Table table = fromItems.get(0).getTable();
+
+        final List<Column> groupByColumns = new ArrayList<>();
+        for (GroupByItem groupByItem : query.getGroupByClause().getItems()) {
+            final SelectItem selectItem = groupByItem.getSelectItem();
+            if (!isNumberColumn(selectItem, table)) {
+                return null;
+            }
+            groupByColumns.add(selectItem.getColumn());
+        }
+
+        final List<SelectItem> selectItems = query.getSelectClause().getItems();
+        if (groupByColumns.isEmpty() && selectItems.size() == 1 && SelectItem.isCountAllItem(selectItems.get(0))) {
+            // plain counts are executed as count queries
+            return null;
+        }
+
+        boolean aggregated = !groupByColumns.isEmpty();
+        for (SelectItem selectItem : selectItems) {
+            if (isAggregate(selectItem, table)) {
+                aggregated = true;
+            } else if (!isNumberColumn(selectItem, table) || !groupByColumns.contains(selectItem.getColumn())) {
+                return null;
+            }
+        }
+        if (!aggregated) {
+            return null;
+        }
+
+        for (OrderByItem orderByItem : query.getOrderByClause().getItems()) {
+            if (indexOf(selectItems, orderByItem.getSelectItem()) == -1) {
+                return null;
+            }
+        }
+
+        final QueryBuilder queryBuilder = ElasticSearchUtils.createQueryBuilderForSimpleWhere(query.getWhereClause()
+                .getItems(), LogicalOperator.AND);
+        if (queryBuilder == null) {
+            return null;
+        }
+
+        return new ElasticSearchAggregation(query, queryBuilder, groupByColumns);
+    }
+
+    private static int indexOf(List<SelectItem> selectItems, SelectItem selectItem) {
+        for (int i = 0; i < selectItems.size(); i++) {
+            if (selectItems.get(i).equalsIgnoreAlias(selectItem)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isNumberColumn(SelectItem selectItem, Table table) {
+        if (selectItem == null || selectItem.hasFunction()) {
+            return false;
+        }
+        return isNumberColumn(selectItem.getColumn(), table);
+    }
+
+    private static boolean isNumberColumn(Column column, Table table) {
+        return column != null && table.equals(column.getTable()) && column.getType() != null
+                && column.getType().isNumber();
+    }
+
+    private static boolean isAggregate(SelectItem selectItem, Table table) {
+        final AggregateFunction function = selectItem.getAggregateFunction();
+        if (function == null || selectItem.getScalarFunction() != null) {
+            return false;
+        }
+        final Object[] functionParameters = selectItem.getFunctionParameters();
+        if (functionParameters != null && functionParameters.length > 0) {
+            return false;
+        }
+        if (SelectItem.isCountAllItem(selectItem)) {
+            return true;
+        }
+        if (!isNumberColumn(selectItem.getColumn(), table)) {
+            return false;
+        }
+        return FunctionType.COUNT.equals(function) || FunctionType.SUM.equals(function)
+                || FunctionType.AVG.equals(function) || FunctionType.MIN.equals(function)
+                || FunctionType.MAX.equals(function);
+    }
+
+    /**
+     * Gets the query corresponding to the WHERE clause.
+     *
+     * @return
+     */
+    public QueryBuilder getQueryBuilder() {
+        return _queryBuilder;
+    }
+
+    /**
+     * Creates the top level aggregations of the search request.
+     *
+     * @return
+     */
+    public List<AbstractAggregationBuilder> createAggregations() {
+        return createAggregations(0);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private List<AbstractAggregationBuilder> createAggregations(int level) {
+        if (level == _groupByColumns.size()) {
+            return createMetricAggregations();
+        }
+
+        final String fieldName = _groupByColumns.get(level).getName();
+        final AggregationBuilder terms = AggregationBuilders.terms("g" + level).field(fieldName).size(0);
+        final AggregationBuilder missing = AggregationBuilders.missing("m" + level).field(fieldName);
+        for (AbstractAggregationBuilder subAggregation : createAggregations(level + 1)) {
+            terms.subAggregation(subAggregation);
+            missing.subAggregation(subAggregation);
+        }
+
+        final List<AbstractAggregationBuilder> aggregations = new ArrayList<>(2);
+        aggregations.add(terms);
+        aggregations.add(missing);
+        return aggregations;
+    }
+
+    private List<AbstractAggregationBuilder> createMetricAggregations() {
+        final List<AbstractAggregationBuilder> aggregations = new ArrayList<>();
+        final List<SelectItem> selectItems = _query.getSelectClause().getItems();
+        for (int i = 0; i < selectItems.size(); i++) {
+            final SelectItem selectItem = selectItems.get(i);
+            final AggregateFunction function = selectItem.getAggregateFunction();
+            if (function == null || SelectItem.isCountAllItem(selectItem)) {
+                // grouped values and counts are taken from the buckets
+                continue;
+            }
+
+            final String name = "a" + i;
+            final String fieldName = selectItem.getColumn().getName();
+            if (FunctionType.COUNT.equals(function)) {
+                aggregations.add(AggregationBuilders.count(name).field(fieldName));
+            } else if (FunctionType.SUM.equals(function)) {
+                aggregations.add(AggregationBuilders.sum(name).field(fieldName));
+            } else if (FunctionType.AVG.equals(function)) {
+                aggregations.add(AggregationBuilders.avg(name).field(fieldName));
+            } else if (FunctionType.MIN.equals(function)) {
+                aggregations.add(AggregationBuilders.min(name).field(fieldName));
+            } else {
+                aggregations.add(AggregationBuilders.max(name).field(fieldName));
+            }
+        }
+        return aggregations;
+    }
+
+    /**
+     * Creates the resulting {@link DataSet} of the query, ordered and paged.
+     *
+     * @param searchResponse
+     *            the search response, in map format (as parsed from the JSON
+     *            response)
+     * @return
+     */
+    public DataSet createDataSet(Map<String, ?> searchResponse) {
+        final DataSetHeader header = new SimpleDataSetHeader(_query.getSelectClause().getItems());
+
+        final Map<String, ?> hits = getMap(searchResponse, "hits");
+        final long totalHits = toLong(hits.get("total"));
+
+        final List<Row> rows = new ArrayList<>();
+        final Object[] groupValues = new Object[_groupByColumns.size()];
+        collectRows(getMap(searchResponse, "aggregations"), 0, groupValues, totalHits, header, rows);
+
+        DataSet dataSet = new InMemoryDataSet(header, rows);
+        dataSet = MetaModelHelper.getOrdered(dataSet, _query.getOrderByClause().getItems());
+        final int firstRow = (_query.getFirstRow() == null ? 1 : _query.getFirstRow());
+        final int maxRows = (_query.getMaxRows() == null ? -1 : _query.getMaxRows());
+        return MetaModelHelper.getPaged(dataSet, firstRow, maxRows);
+    }
+
+    private void collectRows(Map<String, ?> aggregations, int level, Object[] groupValues, long docCount,
+            DataSetHeader header, List<Row> rows) {
+        if (level == _groupByColumns.size()) {
+            rows.add(createRow(aggregations, groupValues, docCount, header));
+            return;
+        }
+
+        final Column column = _groupByColumns.get(level);
+        final List<?> buckets = (List<?>) getMap(aggregations, "g" + level).get("buckets");
+        if (buckets != null) {
+            for (Object bucketObject : buckets) {
+                @SuppressWarnings("unchecked")
+                final Map<String, ?> bucket = (Map<String, ?>) bucketObject;
+                groupValues[level] = toNumber(column, bucket.get("key"));
+                collectRows(bucket, level + 1, groupValues, toLong(bucket.get("doc_count")), header, rows);
+            }
+        }
+
+        final Map<String, ?> missing = getMap(aggregations, "m" + level);
+        final long missingCount = toLong(missing.get("doc_count"));
+        if (missingCount > 0) {
+            groupValues[level] = null;
+            collectRows(missing, level + 1, groupValues, missingCount, header, rows);
+        }
+    }
+
+    private Row createRow(Map<String, ?> aggregations, Object[] groupValues, long docCount, DataSetHeader header) {
+        final Object[] values = new Object[header.size()];
+        for (int i = 0; i < values.length; i++) {
+            final SelectItem selectItem = header.getSelectItem(i);
+            final AggregateFunction function = selectItem.getAggregateFunction();
+            if (function == null) {
+                values[i] = groupValues[_groupByColumns.indexOf(selectItem.getColumn())];
+            } else if (SelectItem.isCountAllItem(selectItem)) {
+                values[i] = docCount;
+            } else {
+                final Object value = getMap(aggregations, "a" + i).get("value");
+                if (FunctionType.COUNT.equals(function)) {
+                    values[i] = toLong(value);
+                } else if (FunctionType.SUM.equals(function) || FunctionType.AVG.equals(function)) {
+                    // MetaModel sums and averages no values as zero
+                    final Number number = toNumber(null, value);
+                    values[i] = (number == null ? 0d : number.doubleValue());
+                } else {
+                    values[i] = toNumber(selectItem.getColumn(), value);
+                }
+            }
+        }
+        return new DefaultRow(header, values);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?> getMap(Map<String, ?> map, String key) {
+        final Object value = (map == null ? null : map.get(key));
+        if (value instanceof Map) {
+            return (Map<String, ?>) value;
+        }
+        return Collections.emptyMap();
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return 0L;
+    }
+
+    /**
+     * Converts a key or metric value into a number of the type of a column.
+     * Metrics are always doubles in ElasticSearch, and missing metric values
+     * (eg. the minimum of no values) are either null or not finite.
+     */
+    private static Number toNumber(Column column, Object value) {
+        final Number number;
+        if (value instanceof Number) {
+            number = (Number) value;
+        } else if (value instanceof String) {
+            try {
+                number = Double.valueOf((String) value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+
+        final double doubleValue = number.doubleValue();
+        if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+            return null;
+        }
+        if (column != null && isIntegerType(column.getType())) {
+            return number.longValue();
+        }
+        if (column != null) {
+            return doubleValue;
+        }
+        return number;
+    }
+
+    private static boolean isIntegerType(ColumnType type) {
+        return type == ColumnType.BIGINT || type == ColumnType.INTEGER || type == ColumnType.SMALLINT
+                || type == ColumnType.TINYINT;
+    }
+}
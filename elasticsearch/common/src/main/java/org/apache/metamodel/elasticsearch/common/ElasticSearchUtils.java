@@ -29,16 +29,22 @@ import java.util.Map;
 import org.apache.metamodel.query.FilterItem;
 import org.apache.metamodel.query.LogicalOperator;
 import org.apache.metamodel.query.OperatorType;
+import org.apache.metamodel.query.OrderByItem;
+import org.apache.metamodel.query.SelectItem;
 import org.apache.metamodel.schema.Column;
 import org.apache.metamodel.schema.ColumnType;
 import org.apache.metamodel.schema.MutableColumn;
 import org.apache.metamodel.schema.MutableTable;
+import org.apache.metamodel.schema.Table;
 import org.apache.metamodel.util.CollectionUtils;
 import org.elasticsearch.common.base.Strings;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +55,16 @@ public class ElasticSearchUtils {
     public static final String FIELD_ID = "_id";
     public static final String SYSTEM_PROPERTY_STRIP_INVALID_FIELD_CHARS = "metamodel.elasticsearch.strip_invalid_field_chars";
 
+    /**
+     * The offset (zero-based first row) beyond which documents are no longer
+     * skipped using "from", since every shard has to collect and sort
+     * from+size documents for that. Instead the leading documents are
+     * scrolled through in pages of {@link #DEEP_PAGING_SCROLL_SIZE}.
+     */
+    public static final int DEEP_PAGING_THRESHOLD = 10000;
+
+    public static final int DEEP_PAGING_SCROLL_SIZE = 1000;
+
     /**
      * Gets a "filter" query which is both 1.x and 2.x compatible.
      */
@@ -275,6 +291,38 @@ public class ElasticSearchUtils {
         return result;
     }
 
+    /**
+     * Creates, if possible, the {@link SortBuilder}s corresponding to a list of
+     * ORDER BY items. Only plain number, date and boolean columns are sorted by
+     * in ElasticSearch, since (analyzed) string fields would be sorted by
+     * their terms rather than by their values.
+     *
+     * @return the sort builders, or null if the items could not be pushed down
+     *         to ElasticSearch
+     */
+    public static List<SortBuilder> createSortBuilders(List<OrderByItem> orderByItems, Table table) {
+        final List<SortBuilder> sortBuilders = new ArrayList<>(orderByItems.size());
+        for (OrderByItem orderByItem : orderByItems) {
+            final SelectItem selectItem = orderByItem.getSelectItem();
+            final Column column = selectItem.getColumn();
+            if (selectItem.hasFunction() || column == null || !table.equals(column.getTable())) {
+                return null;
+            }
+            final ColumnType type = column.getType();
+            if (type == null || !(type.isNumber() || type.isTimeBased() || type.isBoolean())) {
+                return null;
+            }
+
+            // MetaModel orders null values first
+            if (orderByItem.isAscending()) {
+                sortBuilders.add(SortBuilders.fieldSort(column.getName()).order(SortOrder.ASC).missing("_first"));
+            } else {
+                sortBuilders.add(SortBuilders.fieldSort(column.getName()).order(SortOrder.DESC).missing("_last"));
+            }
+        }
+        return sortBuilders;
+    }
+
     public static ColumnType getColumnTypeFromElasticSearchType(final String metaDataFieldType) {
         final ColumnType columnType;
         if (metaDataFieldType.startsWith("date")) {
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.elasticsearch.common;
+
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.metamodel.data.DataSet;
+import org.apache.metamodel.query.FunctionType;
+import org.apache.metamodel.query.OrderByItem;
+import org.apache.metamodel.query.Query;
+import org.apache.metamodel.schema.ColumnType;
+import org.apache.metamodel.schema.MutableColumn;
+import org.apache.metamodel.schema.MutableTable;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+public class ElasticSearchAggregationTest extends TestCase {
+
+    private final MutableTable table = new MutableTable("people");
+    private final MutableColumn genderColumn = new MutableColumn("gender", ColumnType.STRING, table, 0, true);
+    private final MutableColumn ageColumn = new MutableColumn("age", ColumnType.BIGINT, table, 1, true);
+    private final MutableColumn incomeColumn = new MutableColumn("income", ColumnType.DOUBLE, table, 2, true);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        table.addColumn(genderColumn).addColumn(ageColumn).addColumn(incomeColumn);
+    }
+
+    public void testUnsupportedQueries() throws Exception {
+        // string columns are not grouped by in ElasticSearch
+        assertNull(ElasticSearchAggregation.create(new Query().from(table).select(genderColumn).selectCount()
+                .groupBy(genderColumn)));
+
+        // plain counts are count queries
+        assertNull(ElasticSearchAggregation.create(new Query().from(table).selectCount()));
+
+        // not an aggregation query
+        assertNull(ElasticSearchAggregation.create(new Query().from(table).select(ageColumn)));
+
+        // selected column which is not grouped by
+        assertNull(ElasticSearchAggregation.create(new Query().from(table).select(incomeColumn).select(
+                FunctionType.MAX, ageColumn)));
+    }
+
+    public void testGroupedAggregation() throws Exception {
+        final Query query = new Query().from(table).select(ageColumn).selectCount().select(FunctionType.SUM,
+                incomeColumn).select(FunctionType.MAX, incomeColumn).groupBy(ageColumn);
+        query.orderBy(new OrderByItem(query.getSelectClause().getItem(0)));
+        final ElasticSearchAggregation aggregation = ElasticSearchAggregation.create(query);
+        assertNotNull(aggregation);
+
+        final List<AbstractAggregationBuilder> aggregations = aggregation.createAggregations();
+        assertEquals(2, aggregations.size());
+        final SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+        for (AbstractAggregationBuilder aggregationBuilder : aggregations) {
+            searchSourceBuilder.aggregation(aggregationBuilder);
+        }
+        final String source = searchSourceBuilder.toString().replaceAll("\\s", "");
+        assertTrue(source, source.contains("\"g0\":{\"terms\":{\"field\":\"age\",\"size\":0}"));
+        assertTrue(source, source.contains("\"m0\":{\"missing\":{\"field\":\"age\"}"));
+        assertTrue(source, source.contains("\"a2\":{\"sum\":{\"field\":\"income\"}}"));
+        assertTrue(source, source.contains("\"a3\":{\"max\":{\"field\":\"income\"}}"));
+
+        final String response = "{\"hits\":{\"total\":6,\"hits\":[]},\"aggregations\":{"
+                + "\"g0\":{\"buckets\":[{\"key\":30,\"doc_count\":3,\"a2\":{\"value\":300.0},\"a3\":{\"value\":150.0}},"
+                + "{\"key\":20,\"doc_count\":2,\"a2\":{\"value\":0.0},\"a3\":{\"value\":null}}]},"
+                + "\"m0\":{\"doc_count\":1,\"a2\":{\"value\":50.0},\"a3\":{\"value\":50.0}}}}";
+        final Map<String, Object> responseMap = XContentHelper.convertToMap(new BytesArray(response), false).v2();
+
+        try (DataSet dataSet = aggregation.createDataSet(responseMap)) {
+            assertTrue(dataSet.next());
+            assertEquals("Row[values=[null, 1, 50.0, 50.0]]", dataSet.getRow().toString());
+            assertTrue(dataSet.next());
+            assertEquals("Row[values=[20, 2, 0.0, null]]", dataSet.getRow().toString());
+            assertTrue(dataSet.next());
+            assertEquals("Row[values=[30, 3, 300.0, 150.0]]", dataSet.getRow().toString());
+            assertFalse(dataSet.next());
+        }
+    }
+
+    public void testUngroupedAggregation() throws Exception {
+        final Query query = new Query().from(table).selectCount().select(FunctionType.COUNT, ageColumn).select(
+                FunctionType.AVG, ageColumn).select(FunctionType.MIN, ageColumn);
+        final ElasticSearchAggregation aggregation = ElasticSearchAggregation.create(query);
+        assertNotNull(aggregation);
+        assertEquals(3, aggregation.createAggregations().size());
+
+        final String response = "{\"hits\":{\"total\":0,\"hits\":[]},\"aggregations\":{"
+                + "\"a1\":{\"value\":0},\"a2\":{\"value\":null},\"a3\":{\"value\":null}}}";
+        final Map<String, Object> responseMap = XContentHelper.convertToMap(new BytesArray(response), false).v2();
+
+        try (DataSet dataSet = aggregation.createDataSet(responseMap)) {
+            assertTrue(dataSet.next());
+            assertEquals("Row[values=[0, 0, 0.0, null]]", dataSet.getRow().toString());
+            assertFalse(dataSet.next());
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.metamodel.elasticsearch.nativeclient;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -27,6 +28,7 @@ import java.util.Map;
 
 import org.apache.metamodel.DataContext;
 import org.apache.metamodel.MetaModelException;
+import org.apache.metamodel.MetaModelHelper;
 import org.apache.metamodel.QueryPostprocessDataContext;
 import org.apache.metamodel.UpdateScript;
 import org.apache.metamodel.UpdateableDataContext;
@@ -34,10 +36,13 @@ import org.apache.metamodel.data.DataSet;
 import org.apache.metamodel.data.DataSetHeader;
 import org.apache.metamodel.data.Row;
 import org.apache.metamodel.data.SimpleDataSetHeader;
+import org.apache.metamodel.elasticsearch.common.ElasticSearchAggregation;
 import org.apache.metamodel.elasticsearch.common.ElasticSearchMetaData;
 import org.apache.metamodel.elasticsearch.common.ElasticSearchUtils;
 import org.apache.metamodel.query.FilterItem;
+import org.apache.metamodel.query.FromItem;
 import org.apache.metamodel.query.LogicalOperator;
+import org.apache.metamodel.query.Query;
 import org.apache.metamodel.query.SelectItem;
 import org.apache.metamodel.schema.Column;
 import org.apache.metamodel.schema.MutableColumn;
@@ -60,8 +65,14 @@ import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.hppc.ObjectLookupContainer;
 import org.elasticsearch.common.hppc.cursors.ObjectCursor;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -277,19 +288,120 @@ public class ElasticSearchDataContext extends QueryPostprocessDataContext implem
         return indexName;
     }
 
+    @Override
+    public DataSet executeQuery(Query query) {
+        final List<FromItem> fromItems = query.getFromClause().getItems();
+        if (fromItems.size() == 1 && fromItems.get(0).getTable() != null
+                && isMainSchemaTable(fromItems.get(0).getTable())) {
+            final Table table = fromItems.get(0).getTable();
+
+            final ElasticSearchAggregation aggregation = ElasticSearchAggregation.create(query);
+            if (aggregation != null) {
+                logger.debug("Query can be expressed as ElasticSearch aggregations, no post processing needed.");
+                return executeAggregationQuery(table, aggregation);
+            }
+
+            final DataSet dataSet = executeSortedQuery(table, query);
+            if (dataSet != null) {
+                return dataSet;
+            }
+        }
+        return super.executeQuery(query);
+    }
+
+    /**
+     * Executes a "SELECT [columns] FROM [table] WHERE [conditions] ORDER BY
+     * [columns]" query with the sorting done by ElasticSearch.
+     *
+     * @return the resulting dataset, or null if the query cannot be executed
+     *         like that
+     */
+    private DataSet executeSortedQuery(Table table, Query query) {
+        if (query.getOrderByClause().isEmpty() || !query.getGroupByClause().isEmpty()
+                || !query.getHavingClause().isEmpty() || query.getSelectClause().isDistinct()) {
+            return null;
+        }
+        final List<SelectItem> selectItems = query.getSelectClause().getItems();
+        for (SelectItem selectItem : selectItems) {
+            if (selectItem.hasFunction() || selectItem.getColumn() == null) {
+                return null;
+            }
+        }
+        final List<SortBuilder> sortBuilders = ElasticSearchUtils.createSortBuilders(query.getOrderByClause()
+                .getItems(), table);
+        if (sortBuilders == null) {
+            return null;
+        }
+        final QueryBuilder queryBuilder = ElasticSearchUtils.createQueryBuilderForSimpleWhere(query.getWhereClause()
+                .getItems(), LogicalOperator.AND);
+        if (queryBuilder == null) {
+            return null;
+        }
+
+        final int firstRow = (query.getFirstRow() == null ? 1 : query.getFirstRow());
+        final int maxRows = (query.getMaxRows() == null ? -1 : query.getMaxRows());
+        if (maxRows == 0) {
+            return null;
+        }
+        return searchDocuments(table, selectItems, queryBuilder, sortBuilders, firstRow, maxRows);
+    }
+
+    private DataSet executeAggregationQuery(Table table, ElasticSearchAggregation aggregation) {
+        final SearchRequestBuilder searchRequest = elasticSearchClient.prepareSearch(indexName)
+                .setTypes(table.getName()).setQuery(aggregation.getQueryBuilder()).setSize(0);
+        for (AbstractAggregationBuilder aggregationBuilder : aggregation.createAggregations()) {
+            searchRequest.addAggregation(aggregationBuilder);
+        }
+        final SearchResponse response = searchRequest.execute().actionGet();
+
+        final Map<String, Object> responseMap;
+        try {
+            final XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+            response.toXContent(builder, ToXContent.EMPTY_PARAMS);
+            builder.endObject();
+            responseMap = XContentHelper.convertToMap(builder.bytes(), false).v2();
+        } catch (IOException e) {
+            throw new MetaModelException("Failed to read ElasticSearch aggregations", e);
+        }
+        return aggregation.createDataSet(responseMap);
+    }
+
     @Override
     protected DataSet materializeMainSchemaTable(Table table, List<SelectItem> selectItems,
             List<FilterItem> whereItems, int firstRow, int maxRows) {
         final QueryBuilder queryBuilder = ElasticSearchUtils.createQueryBuilderForSimpleWhere(whereItems, LogicalOperator.AND);
         if (queryBuilder != null) {
             // where clause can be pushed down to an ElasticSearch query
-            final SearchRequestBuilder searchRequest = createSearchRequest(table, firstRow, maxRows, queryBuilder);
-            final SearchResponse response = searchRequest.execute().actionGet();
-            return new ElasticSearchDataSet(elasticSearchClient, response, selectItems, false);
+            return searchDocuments(table, selectItems, queryBuilder, null, firstRow, maxRows);
         }
         return super.materializeMainSchemaTable(table, selectItems, whereItems, firstRow, maxRows);
     }
 
+    private DataSet searchDocuments(Table table, List<SelectItem> selectItems, QueryBuilder queryBuilder,
+            List<SortBuilder> sortBuilders, int firstRow, int maxRows) {
+        final boolean deepPaging = firstRow - 1 > ElasticSearchUtils.DEEP_PAGING_THRESHOLD;
+        final SearchRequestBuilder searchRequest;
+        if (deepPaging) {
+            // scroll past the leading documents instead of using a deep "from"
+            searchRequest = createSearchRequest(table, 1, -1, queryBuilder);
+            searchRequest.setSize(ElasticSearchUtils.DEEP_PAGING_SCROLL_SIZE);
+        } else {
+            searchRequest = createSearchRequest(table, firstRow, maxRows, queryBuilder);
+        }
+        if (sortBuilders != null) {
+            for (SortBuilder sortBuilder : sortBuilders) {
+                searchRequest.addSort(sortBuilder);
+            }
+        }
+
+        final SearchResponse response = searchRequest.execute().actionGet();
+        final DataSet dataSet = new ElasticSearchDataSet(elasticSearchClient, response, selectItems, false);
+        if (deepPaging) {
+            return MetaModelHelper.getPaged(dataSet, firstRow, maxRows);
+        }
+        return dataSet;
+    }
+
     @Override
     protected DataSet materializeMainSchemaTable(Table table, Column[] columns, int maxRows) {
         final SearchRequestBuilder searchRequest = createSearchRequest(table, 1, maxRows, null);
@@ -343,13 +455,22 @@ public class ElasticSearchDataContext extends QueryPostprocessDataContext implem
 
     @Override
     protected Number executeCountQuery(Table table, List<FilterItem> whereItems, boolean functionApproximationAllowed) {
-        if (!whereItems.isEmpty()) {
+        final QueryBuilder whereQueryBuilder = ElasticSearchUtils.createQueryBuilderForSimpleWhere(whereItems,
+                LogicalOperator.AND);
+        if (whereQueryBuilder == null) {
             // not supported - will have to be done by counting client-side
             return null;
         }
         final String documentType = table.getName();
-        final CountResponse response = elasticSearchClient.prepareCount(indexName)
-                .setQuery(QueryBuilders.termQuery("_type", documentType)).execute().actionGet();
+        final QueryBuilder queryBuilder;
+        if (whereItems.isEmpty()) {
+            queryBuilder = QueryBuilders.termQuery("_type", documentType);
+        } else {
+            queryBuilder = QueryBuilders.boolQuery().must(QueryBuilders.termQuery("_type", documentType)).must(
+                    whereQueryBuilder);
+        }
+        final CountResponse response = elasticSearchClient.prepareCount(indexName).setQuery(queryBuilder).execute()
+                .actionGet();
         return response.getCount();
     }
 
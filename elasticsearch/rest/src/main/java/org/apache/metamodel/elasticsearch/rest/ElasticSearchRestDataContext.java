@@ -29,6 +29,7 @@ import java.util.Set;
 import org.apache.metamodel.BatchUpdateScript;
 import org.apache.metamodel.DataContext;
 import org.apache.metamodel.MetaModelException;
+import org.apache.metamodel.MetaModelHelper;
 import org.apache.metamodel.QueryPostprocessDataContext;
 import org.apache.metamodel.UpdateScript;
 import org.apache.metamodel.UpdateableDataContext;
@@ -36,10 +37,13 @@ import org.apache.metamodel.data.DataSet;
 import org.apache.metamodel.data.DataSetHeader;
 import org.apache.metamodel.data.Row;
 import org.apache.metamodel.data.SimpleDataSetHeader;
+import org.apache.metamodel.elasticsearch.common.ElasticSearchAggregation;
 import org.apache.metamodel.elasticsearch.common.ElasticSearchMetaData;
 import org.apache.metamodel.elasticsearch.common.ElasticSearchUtils;
 import org.apache.metamodel.query.FilterItem;
+import org.apache.metamodel.query.FromItem;
 import org.apache.metamodel.query.LogicalOperator;
+import org.apache.metamodel.query.Query;
 import org.apache.metamodel.query.SelectItem;
 import org.apache.metamodel.schema.Column;
 import org.apache.metamodel.schema.MutableColumn;
@@ -48,9 +52,13 @@ import org.apache.metamodel.schema.MutableTable;
 import org.apache.metamodel.schema.Schema;
 import org.apache.metamodel.schema.Table;
 import org.apache.metamodel.util.SimpleTableDef;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -260,6 +268,77 @@ public class ElasticSearchRestDataContext extends QueryPostprocessDataContext im
         return indexName;
     }
 
+    @Override
+    public DataSet executeQuery(Query query) {
+        final List<FromItem> fromItems = query.getFromClause().getItems();
+        if (fromItems.size() == 1 && fromItems.get(0).getTable() != null
+                && isMainSchemaTable(fromItems.get(0).getTable())) {
+            final Table table = fromItems.get(0).getTable();
+
+            final ElasticSearchAggregation aggregation = ElasticSearchAggregation.create(query);
+            if (aggregation != null) {
+                logger.debug("Query can be expressed as ElasticSearch aggregations, no post processing needed.");
+                return executeAggregationQuery(table, aggregation);
+            }
+
+            final DataSet dataSet = executeSortedQuery(table, query);
+            if (dataSet != null) {
+                return dataSet;
+            }
+        }
+        return super.executeQuery(query);
+    }
+
+    /**
+     * Executes a "SELECT [columns] FROM [table] WHERE [conditions] ORDER BY
+     * [columns]" query with the sorting done by ElasticSearch.
+     *
+     * @return the resulting dataset, or null if the query cannot be executed
+     *         like that
+     */
+    private DataSet executeSortedQuery(Table table, Query query) {
+        if (query.getOrderByClause().isEmpty() || !query.getGroupByClause().isEmpty()
+                || !query.getHavingClause().isEmpty() || query.getSelectClause().isDistinct()) {
+            return null;
+        }
+        final List<SelectItem> selectItems = query.getSelectClause().getItems();
+        for (SelectItem selectItem : selectItems) {
+            if (selectItem.hasFunction() || selectItem.getColumn() == null) {
+                return null;
+            }
+        }
+        final List<SortBuilder> sortBuilders = ElasticSearchUtils.createSortBuilders(query.getOrderByClause()
+                .getItems(), table);
+        if (sortBuilders == null) {
+            return null;
+        }
+        final QueryBuilder queryBuilder = ElasticSearchUtils.createQueryBuilderForSimpleWhere(query.getWhereClause()
+                .getItems(), LogicalOperator.AND);
+        if (queryBuilder == null) {
+            return null;
+        }
+
+        final int firstRow = (query.getFirstRow() == null ? 1 : query.getFirstRow());
+        final int maxRows = (query.getMaxRows() == null ? -1 : query.getMaxRows());
+        if (maxRows == 0) {
+            return null;
+        }
+        return searchDocuments(table, selectItems, queryBuilder, sortBuilders, firstRow, maxRows);
+    }
+
+    private DataSet executeAggregationQuery(Table table, ElasticSearchAggregation aggregation) {
+        final SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+        searchSourceBuilder.query(aggregation.getQueryBuilder()).size(0);
+        for (AbstractAggregationBuilder aggregationBuilder : aggregation.createAggregations()) {
+            searchSourceBuilder.aggregation(aggregationBuilder);
+        }
+        final SearchResult result = executeSearch(table, searchSourceBuilder, false);
+
+        final Map<String, Object> responseMap = XContentHelper.convertToMap(new BytesArray(result.getJsonString()),
+                false).v2();
+        return aggregation.createDataSet(responseMap);
+    }
+
     @Override
     protected DataSet materializeMainSchemaTable(Table table, List<SelectItem> selectItems, List<FilterItem> whereItems,
             int firstRow, int maxRows) {
@@ -267,14 +346,35 @@ public class ElasticSearchRestDataContext extends QueryPostprocessDataContext im
                 LogicalOperator.AND);
         if (queryBuilder != null) {
             // where clause can be pushed down to an ElasticSearch query
-            SearchSourceBuilder searchSourceBuilder = createSearchRequest(firstRow, maxRows, queryBuilder);
-            SearchResult result = executeSearch(table, searchSourceBuilder, scrollNeeded(maxRows));
-
-            return new JestElasticSearchDataSet(elasticSearchClient, result, selectItems);
+            return searchDocuments(table, selectItems, queryBuilder, null, firstRow, maxRows);
         }
         return super.materializeMainSchemaTable(table, selectItems, whereItems, firstRow, maxRows);
     }
 
+    private DataSet searchDocuments(Table table, List<SelectItem> selectItems, QueryBuilder queryBuilder,
+            List<SortBuilder> sortBuilders, int firstRow, int maxRows) {
+        final boolean deepPaging = firstRow - 1 > ElasticSearchUtils.DEEP_PAGING_THRESHOLD;
+        final SearchSourceBuilder searchSourceBuilder;
+        if (deepPaging) {
+            // scroll past the leading documents instead of using a deep "from"
+            searchSourceBuilder = createSearchRequest(1, ElasticSearchUtils.DEEP_PAGING_SCROLL_SIZE, queryBuilder);
+        } else {
+            searchSourceBuilder = createSearchRequest(firstRow, maxRows, queryBuilder);
+        }
+        if (sortBuilders != null) {
+            for (SortBuilder sortBuilder : sortBuilders) {
+                searchSourceBuilder.sort(sortBuilder);
+            }
+        }
+
+        final SearchResult result = executeSearch(table, searchSourceBuilder, deepPaging || scrollNeeded(maxRows));
+        final DataSet dataSet = new JestElasticSearchDataSet(elasticSearchClient, result, selectItems);
+        if (deepPaging) {
+            return MetaModelHelper.getPaged(dataSet, firstRow, maxRows);
+        }
+        return dataSet;
+    }
+
     private boolean scrollNeeded(int maxRows) {
         // if either we don't know about max rows or max rows is set higher than threshold
         return !limitMaxRowsIsSet(maxRows) || maxRows > SCROLL_THRESHOLD;
@@ -345,13 +445,20 @@ public class ElasticSearchRestDataContext extends QueryPostprocessDataContext im
 
     @Override
     protected Number executeCountQuery(Table table, List<FilterItem> whereItems, boolean functionApproximationAllowed) {
-        if (!whereItems.isEmpty()) {
+        final QueryBuilder whereQueryBuilder = ElasticSearchUtils.createQueryBuilderForSimpleWhere(whereItems,
+                LogicalOperator.AND);
+        if (whereQueryBuilder == null) {
             // not supported - will have to be done by counting client-side
             return null;
         }
         final String documentType = table.getName();
         SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
-        sourceBuilder.query(QueryBuilders.termQuery("_type", documentType));
+        if (whereItems.isEmpty()) {
+            sourceBuilder.query(QueryBuilders.termQuery("_type", documentType));
+        } else {
+            sourceBuilder.query(QueryBuilders.boolQuery().must(QueryBuilders.termQuery("_type", documentType)).must(
+                    whereQueryBuilder));
+        }
 
         Count count = new Count.Builder().addIndex(indexName).query(sourceBuilder.toString()).build();
 
@@ -523,6 +523,48 @@ public class JestElasticSearchDataContextTest {
         assertEquals(5, tableModel.getRowCount());
     }
 
+    @Test
+    public void testGroupByNumberColumnQuery() throws Exception {
+        DataSet data = dataContext.executeQuery("SELECT age, COUNT(*), MIN(id) FROM " + peopleIndexType
+                + " GROUP BY age ORDER BY age");
+        assertEquals(InMemoryDataSet.class, data.getClass());
+
+        assertTrue(data.next());
+        assertEquals("Row[values=[17, 2, 2]]", data.getRow().toString());
+        assertTrue(data.next());
+        assertEquals("Row[values=[18, 3, 3]]", data.getRow().toString());
+        assertTrue(data.next());
+        assertEquals("Row[values=[19, 2, 1]]", data.getRow().toString());
+        assertTrue(data.next());
+        assertEquals("Row[values=[20, 2, 5]]", data.getRow().toString());
+        assertFalse(data.next());
+    }
+
+    @Test
+    public void testOrderByNumberColumnsQuery() throws Exception {
+        Table table = dataContext.getDefaultSchema().getTableByName(peopleIndexType);
+        Query q = dataContext.query().from(table).select("id").where("gender").eq("female").orderBy("age").desc()
+                .orderBy("id").asc().toQuery();
+
+        List<Object[]> data = dataContext.executeQuery(q).toObjectArrays();
+        assertEquals(5, data.size());
+        assertEquals("[5]", Arrays.toString(data.get(0)));
+        assertEquals("[11]", Arrays.toString(data.get(1)));
+        assertEquals("[10]", Arrays.toString(data.get(2)));
+        assertEquals("[9]", Arrays.toString(data.get(3)));
+        assertEquals("[8]", Arrays.toString(data.get(4)));
+    }
+
+    @Test
+    public void testCountQueryWithWhere() throws Exception {
+        Table table = dataContext.getDefaultSchema().getTableByName(peopleIndexType);
+        Query q = dataContext.query().from(table).selectCount().where("gender").eq("male").toQuery();
+
+        List<Object[]> data = dataContext.executeQuery(q).toObjectArrays();
+        assertEquals(1, data.size());
+        assertEquals("[4]", Arrays.toString(data.get(0)));
+    }
+
     @Test
     public void testCountQuery() throws Exception {
         Table table = dataContext.getDefaultSchema().getTableByName(bulkIndexType);
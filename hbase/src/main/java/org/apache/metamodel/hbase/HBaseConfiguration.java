@@ -38,6 +38,8 @@ public class HBaseConfiguration extends BaseObject implements Serializable {
     public static final int DEFAULT_HBASE_CLIENT_RETRIES = 1;
     public static final int DEFAULT_ZOOKEEPER_SESSION_TIMEOUT = 5000;
     public static final int DEFAULT_ZOOKEEPER_RECOVERY_RETRIES = 1;
+    public static final int DEFAULT_SCANNER_CACHING = -1;
+    public static final int DEFAULT_SCANNER_BATCH_SIZE = -1;
 
     private final String _schemaName;
     private final int _zookeeperPort;
@@ -47,6 +49,8 @@ public class HBaseConfiguration extends BaseObject implements Serializable {
     private final int _hbaseClientRetries;
     private final int _zookeeperSessionTimeout;
     private final int _zookeeperRecoveryRetries;
+    private final int _scannerCaching;
+    private final int _scannerBatchSize;
 
     /**
      * Creates a {@link HBaseConfiguration} using default values.
@@ -95,6 +99,33 @@ public class HBaseConfiguration extends BaseObject implements Serializable {
     public HBaseConfiguration(String schemaName, String zookeeperHostname, int zookeeperPort,
             SimpleTableDef[] tableDefinitions, ColumnType defaultRowKeyType, int hbaseClientRetries,
             int zookeeperSessionTimeout, int zookeeperRecoveryRetries) {
+        this(schemaName, zookeeperHostname, zookeeperPort, tableDefinitions, defaultRowKeyType, hbaseClientRetries,
+                zookeeperSessionTimeout, zookeeperRecoveryRetries, DEFAULT_SCANNER_CACHING,
+                DEFAULT_SCANNER_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a {@link HBaseConfiguration} using detailed configuration
+     * properties.
+     * 
+     * @param schemaName
+     * @param zookeeperHostname
+     * @param zookeeperPort
+     * @param tableDefinitions
+     * @param defaultRowKeyType
+     * @param hbaseClientRetries
+     * @param zookeeperSessionTimeout
+     * @param zookeeperRecoveryRetries
+     * @param scannerCaching
+     *            the number of rows to fetch per RPC when scanning tables, or
+     *            -1 to use the HBase client default
+     * @param scannerBatchSize
+     *            the maximum number of cells to fetch per RPC for wide rows,
+     *            or -1 to always fetch complete rows
+     */
+    public HBaseConfiguration(String schemaName, String zookeeperHostname, int zookeeperPort,
+            SimpleTableDef[] tableDefinitions, ColumnType defaultRowKeyType, int hbaseClientRetries,
+            int zookeeperSessionTimeout, int zookeeperRecoveryRetries, int scannerCaching, int scannerBatchSize) {
         _schemaName = schemaName;
         _zookeeperHostname = zookeeperHostname;
         _zookeeperPort = zookeeperPort;
@@ -103,6 +134,8 @@ public class HBaseConfiguration extends BaseObject implements Serializable {
         _hbaseClientRetries = hbaseClientRetries;
         _zookeeperSessionTimeout = zookeeperSessionTimeout;
         _zookeeperRecoveryRetries = zookeeperRecoveryRetries;
+        _scannerCaching = scannerCaching;
+        _scannerBatchSize = scannerBatchSize;
     }
 
     public String getSchemaName() {
@@ -145,4 +178,12 @@ public class HBaseConfiguration extends BaseObject implements Serializable {
     public int getZookeeperRecoveryRetries() {
         return _zookeeperRecoveryRetries;
     }
+
+    public int getScannerCaching() {
+        return _scannerCaching;
+    }
+
+    public int getScannerBatchSize() {
+        return _scannerBatchSize;
+    }
 }
@@ -20,24 +20,38 @@ package org.apache.metamodel.hbase;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
 import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.util.Pair;
 import org.apache.metamodel.DataContext;
 import org.apache.metamodel.MetaModelException;
+import org.apache.metamodel.MetaModelHelper;
 import org.apache.metamodel.QueryPostprocessDataContext;
 import org.apache.metamodel.data.DataSet;
 import org.apache.metamodel.data.DataSetHeader;
+import org.apache.metamodel.data.EmptyDataSet;
 import org.apache.metamodel.data.Row;
 import org.apache.metamodel.data.SimpleDataSetHeader;
 import org.apache.metamodel.query.FilterItem;
@@ -46,7 +60,9 @@ import org.apache.metamodel.schema.Column;
 import org.apache.metamodel.schema.MutableSchema;
 import org.apache.metamodel.schema.Schema;
 import org.apache.metamodel.schema.Table;
+import org.apache.metamodel.util.CollectionUtils;
 import org.apache.metamodel.util.FileHelper;
+import org.apache.metamodel.util.SharedExecutorService;
 import org.apache.metamodel.util.SimpleTableDef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -161,20 +177,90 @@ public class HBaseDataContext extends QueryPostprocessDataContext {
 
     @Override
     protected Number executeCountQuery(Table table, List<FilterItem> whereItems, boolean functionApproximationAllowed) {
-        if (whereItems != null && !whereItems.isEmpty()) {
+        final HBaseScanCriteria criteria = HBaseScanCriteria.create(whereItems);
+        if (!criteria.getRemainingItems().isEmpty()) {
             return null;
         }
+        if (criteria.isEmpty()) {
+            return 0;
+        }
+
+        final TableName tableName = TableName.valueOf(table.getName());
+        final Pair<byte[][], byte[][]> regionKeys;
+        try (final RegionLocator regionLocator = _connection.getRegionLocator(tableName)) {
+            regionKeys = regionLocator.getStartEndKeys();
+        } catch (IOException e) {
+            throw new MetaModelException(e);
+        }
+
+        // count the rows of each (relevant) region in parallel
+        final List<Scan> scans = new ArrayList<>();
+        for (int i = 0; i < regionKeys.getFirst().length; i++) {
+            final Scan scan = createCountScan(criteria);
+            if (criteria.applyRowRange(scan, regionKeys.getFirst()[i], regionKeys.getSecond()[i])) {
+                scans.add(scan);
+            }
+        }
+        logger.debug("Counting rows of table '{}' using {} region scans", tableName, scans.size());
+
+        if (scans.size() == 1) {
+            return countRows(tableName, scans.get(0));
+        }
+
+        final List<Future<Long>> futures = new ArrayList<>(scans.size());
+        for (final Scan scan : scans) {
+            futures.add(SharedExecutorService.get().submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return countRows(tableName, scan);
+                }
+            }));
+        }
 
         long result = 0;
-        final org.apache.hadoop.hbase.client.Table hTable = getHTable(table.getName());
         try {
-            ResultScanner scanner = hTable.getScanner(new Scan());
-            try {
-                while (scanner.next() != null) {
-                    result++;
-                }
-            } finally {
-                scanner.close();
+            for (Future<Long> future : futures) {
+                result += future.get();
+            }
+        } catch (InterruptedException e) {
+            throw new MetaModelException("Interrupted while counting rows of table: " + tableName, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new MetaModelException(e);
+        } finally {
+            for (Future<Long> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return result;
+    }
+
+    private Scan createCountScan(HBaseScanCriteria criteria) {
+        final Scan scan = new Scan();
+        scan.setCacheBlocks(false);
+        if (_configuration.getScannerCaching() > 0) {
+            scan.setCaching(_configuration.getScannerCaching());
+        }
+        final Filter filter = criteria.getFilter();
+        if (filter == null) {
+            // only the row keys are needed for counting
+            scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, new FirstKeyOnlyFilter(),
+                    new KeyOnlyFilter()));
+        } else {
+            scan.setFilter(filter);
+        }
+        return scan;
+    }
+
+    private long countRows(TableName tableName, Scan scan) {
+        long result = 0;
+        try (final org.apache.hadoop.hbase.client.Table hTable = _connection.getTable(tableName);
+                final ResultScanner scanner = hTable.getScanner(scan)) {
+            while (scanner.next() != null) {
+                result++;
             }
             return result;
         } catch (IOException e) {
@@ -210,9 +296,103 @@ public class HBaseDataContext extends QueryPostprocessDataContext {
         }
     }
 
+    @Override
+    protected DataSet materializeMainSchemaTable(Table table, List<SelectItem> selectItems,
+            List<FilterItem> whereItems, int firstRow, int maxRows) {
+        final HBaseScanCriteria criteria = HBaseScanCriteria.create(whereItems);
+        final List<FilterItem> remainingItems = criteria.getRemainingItems();
+        final List<SelectItem> workingSelectItems = CollectionUtils.concat(true, selectItems,
+                MetaModelHelper.getEvaluatedSelectItems(remainingItems));
+        if (!criteria.isTranslated() || !isPlainColumns(workingSelectItems)) {
+            return super.materializeMainSchemaTable(table, selectItems, whereItems, firstRow, maxRows);
+        }
+        if (criteria.isEmpty()) {
+            return new EmptyDataSet(selectItems);
+        }
+
+        final List<Column> scannedColumns = new ArrayList<>();
+        for (SelectItem selectItem : workingSelectItems) {
+            scannedColumns.add(selectItem.getColumn());
+        }
+        final Scan scan = createScan(scannedColumns);
+        if (scan.hasFamilies()) {
+            // value filters only see the cells of the scanned families
+            addFamilies(scan, criteria.getFilterColumns());
+        }
+        criteria.applyRowRange(scan, HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW);
+
+        final List<Filter> filters = new ArrayList<>(2);
+        if (criteria.getFilter() != null) {
+            filters.add(criteria.getFilter());
+        }
+        if (remainingItems.isEmpty() && maxRows > 0) {
+            // note that the page filter is applied per region, so paging is
+            // also applied client-side
+            filters.add(new PageFilter(firstRow - 1 + maxRows));
+        }
+        if (filters.size() == 1) {
+            scan.setFilter(filters.get(0));
+        } else if (filters.size() > 1) {
+            scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, filters));
+        }
+        final boolean batched = setBatch(scan);
+
+        final org.apache.hadoop.hbase.client.Table hTable = getHTable(table.getName());
+        DataSet dataSet;
+        try {
+            final ResultScanner scanner = hTable.getScanner(scan);
+            dataSet = new HBaseDataSet(workingSelectItems, scanner, hTable, batched);
+        } catch (Exception e) {
+            FileHelper.safeClose(hTable);
+            throw new MetaModelException(e);
+        }
+
+        if (!remainingItems.isEmpty()) {
+            dataSet = MetaModelHelper.getFiltered(dataSet, remainingItems);
+        }
+        dataSet = MetaModelHelper.getPaged(dataSet, firstRow, maxRows);
+        dataSet = MetaModelHelper.getSelection(selectItems, dataSet);
+        return dataSet;
+    }
+
+    private static boolean isPlainColumns(List<SelectItem> selectItems) {
+        for (SelectItem selectItem : selectItems) {
+            if (selectItem.getColumn() == null || selectItem.getScalarFunction() != null
+                    || selectItem.getAggregateFunction() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     protected DataSet materializeMainSchemaTable(Table table, Column[] columns, int maxRows) {
+        final Scan scan = createScan(Arrays.asList(columns));
+        if (maxRows > 0) {
+            setMaxRows(scan, maxRows);
+        }
+        final boolean batched = setBatch(scan);
+
+        final org.apache.hadoop.hbase.client.Table hTable = getHTable(table.getName());
+        try {
+            final ResultScanner scanner = hTable.getScanner(scan);
+            return new HBaseDataSet(columns, scanner, hTable, batched);
+        } catch (Exception e) {
+            FileHelper.safeClose(hTable);
+            throw new MetaModelException(e);
+        }
+    }
+
+    private Scan createScan(List<Column> columns) {
         final Scan scan = new Scan();
+        addFamilies(scan, columns);
+        if (_configuration.getScannerCaching() > 0) {
+            scan.setCaching(_configuration.getScannerCaching());
+        }
+        return scan;
+    }
+
+    private static void addFamilies(Scan scan, List<Column> columns) {
         for (Column column : columns) {
             if (!column.isPrimaryKey()) {
                 final int colonIndex = column.getName().indexOf(':');
@@ -224,19 +404,25 @@ public class HBaseDataContext extends QueryPostprocessDataContext {
                 }
             }
         }
+    }
 
-        if (maxRows > 0) {
-            setMaxRows(scan, maxRows);
+    /**
+     * Sets the configured batch size of a {@link Scan}, unless its filter
+     * needs to see complete rows.
+     * 
+     * @return whether a batch size was set
+     */
+    private boolean setBatch(Scan scan) {
+        final int batchSize = _configuration.getScannerBatchSize();
+        if (batchSize <= 0) {
+            return false;
         }
-
-        final org.apache.hadoop.hbase.client.Table hTable = getHTable(table.getName());
-        try {
-            final ResultScanner scanner = hTable.getScanner(scan);
-            return new HBaseDataSet(columns, scanner, hTable);
-        } catch (Exception e) {
-            FileHelper.safeClose(hTable);
-            throw new MetaModelException(e);
+        final Filter filter = scan.getFilter();
+        if (filter != null && filter.hasFilterRow()) {
+            return false;
         }
+        scan.setBatch(batchSize);
+        return true;
     }
 
     private void setMaxRows(Scan scan, int maxRows) {
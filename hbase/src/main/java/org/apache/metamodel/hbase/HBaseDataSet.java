@@ -19,12 +19,18 @@
 package org.apache.metamodel.hbase;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.metamodel.MetaModelException;
 import org.apache.metamodel.data.AbstractDataSet;
 import org.apache.metamodel.data.Row;
+import org.apache.metamodel.query.SelectItem;
 import org.apache.metamodel.schema.Column;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,12 +41,35 @@ final class HBaseDataSet extends AbstractDataSet {
 
     private final ResultScanner _scanner;
     private final org.apache.hadoop.hbase.client.Table _hTable;
+    private final boolean _batched;
     private volatile Result _nextResult;
+    private Result _lookaheadResult;
 
-    public HBaseDataSet(Column[] columns, ResultScanner scanner, org.apache.hadoop.hbase.client.Table hTable) {
+    /**
+     * Creates a {@link HBaseDataSet}.
+     * 
+     * @param columns
+     * @param scanner
+     * @param hTable
+     * @param batched
+     *            whether the scan has a batch size, in which case wide rows
+     *            are split into several consecutive {@link Result}s that need
+     *            to be merged
+     */
+    public HBaseDataSet(Column[] columns, ResultScanner scanner, org.apache.hadoop.hbase.client.Table hTable,
+            boolean batched) {
         super(columns);
         _scanner = scanner;
         _hTable = hTable;
+        _batched = batched;
+    }
+
+    public HBaseDataSet(List<SelectItem> selectItems, ResultScanner scanner,
+            org.apache.hadoop.hbase.client.Table hTable, boolean batched) {
+        super(selectItems);
+        _scanner = scanner;
+        _hTable = hTable;
+        _batched = batched;
     }
 
     @Override
@@ -61,13 +90,40 @@ final class HBaseDataSet extends AbstractDataSet {
     @Override
     public boolean next() {
         try {
-            _nextResult = _scanner.next();
+            if (_lookaheadResult == null) {
+                _nextResult = _scanner.next();
+            } else {
+                _nextResult = _lookaheadResult;
+                _lookaheadResult = null;
+            }
+            if (_batched && _nextResult != null) {
+                _nextResult = mergeBatches(_nextResult);
+            }
         } catch (IOException e) {
             throw new MetaModelException(e);
         }
         return _nextResult != null;
     }
 
+    private Result mergeBatches(Result result) throws IOException {
+        List<Cell> cells = null;
+        while (true) {
+            final Result batch = _scanner.next();
+            if (batch == null || !Bytes.equals(batch.getRow(), result.getRow())) {
+                _lookaheadResult = batch;
+                break;
+            }
+            if (cells == null) {
+                cells = new ArrayList<>(Arrays.asList(result.rawCells()));
+            }
+            cells.addAll(Arrays.asList(batch.rawCells()));
+        }
+        if (cells == null) {
+            return result;
+        }
+        return Result.create(cells);
+    }
+
     @Override
     public Row getRow() {
         return new HBaseRow(getHeader(), _nextResult);
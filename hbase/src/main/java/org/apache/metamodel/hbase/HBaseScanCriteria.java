@@ -0,0 +1,424 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.hbase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.BinaryPrefixComparator;
+import org.apache.hadoop.hbase.filter.ByteArrayComparable;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.RowFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.metamodel.query.FilterItem;
+import org.apache.metamodel.query.LogicalOperator;
+import org.apache.metamodel.query.OperatorType;
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.schema.Column;
+
+/**
+ * The part of a WHERE clause that can be evaluated by HBase when scanning a
+ * table.
+ * 
+ * Criteria on the row key ({@link HBaseDataContext#FIELD_ID}) are translated
+ * into the start and stop rows of the {@link Scan}, so that only the regions
+ * containing the requested rows are scanned. Criteria on qualifiers (columns
+ * named "family:qualifier") are translated into
+ * {@link SingleColumnValueFilter}s. Since HBase compares raw bytes, only
+ * criteria on columns with a literal type and with string operands are
+ * translated. The remaining WHERE items have to be evaluated client-side.
+ */
+final class HBaseScanCriteria {
+
+    private final List<FilterItem> _remainingItems;
+    private final List<Filter> _filters;
+    private final List<Column> _filterColumns;
+    private byte[] _startRow;
+    private byte[] _stopRow;
+    private boolean _empty;
+
+    /**
+     * Creates the {@link HBaseScanCriteria} of a list of WHERE items (which
+     * are implicitly AND'ed).
+     * 
+     * @param whereItems
+     * @return
+     */
+    public static HBaseScanCriteria create(List<FilterItem> whereItems) {
+        final HBaseScanCriteria criteria = new HBaseScanCriteria();
+        if (whereItems != null) {
+            for (FilterItem whereItem : whereItems) {
+                criteria.add(whereItem);
+            }
+        }
+        return criteria;
+    }
+
+    private HBaseScanCriteria() {
+        _remainingItems = new ArrayList<>();
+        _filters = new ArrayList<>();
+        _filterColumns = new ArrayList<>();
+        _startRow = HConstants.EMPTY_START_ROW;
+        _stopRow = HConstants.EMPTY_END_ROW;
+        _empty = false;
+    }
+
+    private void add(FilterItem whereItem) {
+        if (!whereItem.isCompoundFilter()) {
+            final Column column = getColumn(whereItem);
+            if (column != null && isRowKey(column)) {
+                if (narrowRowRange(whereItem.getOperator(), whereItem.getOperand())) {
+                    return;
+                }
+            }
+        }
+
+        final Filter filter = createFilter(whereItem, _filterColumns);
+        if (filter == null) {
+            _remainingItems.add(whereItem);
+        } else {
+            _filters.add(filter);
+        }
+    }
+
+    /**
+     * Narrows the row range of the scan, if possible.
+     * 
+     * @return true if the criteria is completely represented by the row range
+     */
+    private boolean narrowRowRange(OperatorType operator, Object operand) {
+        if (!(operand instanceof String)) {
+            return false;
+        }
+        final byte[] key = Bytes.toBytes((String) operand);
+        if (OperatorType.EQUALS_TO.equals(operator)) {
+            setStartRow(key);
+            setStopRow(Bytes.add(key, new byte[1]));
+        } else if (OperatorType.GREATER_THAN.equals(operator)) {
+            setStartRow(Bytes.add(key, new byte[1]));
+        } else if (OperatorType.GREATER_THAN_OR_EQUAL.equals(operator)) {
+            setStartRow(key);
+        } else if (OperatorType.LESS_THAN.equals(operator)) {
+            setStopRow(key);
+        } else if (OperatorType.LESS_THAN_OR_EQUAL.equals(operator)) {
+            setStopRow(Bytes.add(key, new byte[1]));
+        } else if (OperatorType.LIKE.equals(operator)) {
+            final String prefix = getLikePrefix((String) operand);
+            if (prefix == null) {
+                return false;
+            }
+            final byte[] prefixBytes = Bytes.toBytes(prefix);
+            final byte[] stopRow = getPrefixStopRow(prefixBytes);
+            if (stopRow == null) {
+                return false;
+            }
+            setStartRow(prefixBytes);
+            setStopRow(stopRow);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void setStartRow(byte[] startRow) {
+        if (Bytes.compareTo(startRow, _startRow) > 0) {
+            _startRow = startRow;
+        }
+        updateEmpty();
+    }
+
+    private void setStopRow(byte[] stopRow) {
+        if (_stopRow.length == 0 || Bytes.compareTo(stopRow, _stopRow) < 0) {
+            _stopRow = stopRow;
+        }
+        updateEmpty();
+    }
+
+    private void updateEmpty() {
+        if (_stopRow.length > 0 && Bytes.compareTo(_startRow, _stopRow) >= 0) {
+            _empty = true;
+        }
+    }
+
+    private static Filter createFilter(FilterItem item, List<Column> filterColumns) {
+        if (item.isCompoundFilter()) {
+            final FilterItem[] childItems = item.getChildItems();
+            final List<Filter> childFilters = new ArrayList<>(childItems.length);
+            for (FilterItem childItem : childItems) {
+                final Filter childFilter = createFilter(childItem, filterColumns);
+                if (childFilter == null) {
+                    return null;
+                }
+                childFilters.add(childFilter);
+            }
+            if (item.getLogicalOperator() == LogicalOperator.AND) {
+                return new FilterList(FilterList.Operator.MUST_PASS_ALL, childFilters);
+            }
+            return new FilterList(FilterList.Operator.MUST_PASS_ONE, childFilters);
+        }
+
+        final Column column = getColumn(item);
+        if (column == null) {
+            return null;
+        }
+
+        final OperatorType operator = item.getOperator();
+        final Object operand = item.getOperand();
+        if (OperatorType.IN.equals(operator)) {
+            final List<?> values = getInValues(operand);
+            if (values == null || values.isEmpty()) {
+                return null;
+            }
+            final List<Filter> childFilters = new ArrayList<>(values.size());
+            for (Object value : values) {
+                final Filter childFilter = createFilter(column, OperatorType.EQUALS_TO, value, filterColumns);
+                if (childFilter == null) {
+                    return null;
+                }
+                childFilters.add(childFilter);
+            }
+            return new FilterList(FilterList.Operator.MUST_PASS_ONE, childFilters);
+        }
+
+        return createFilter(column, operator, operand, filterColumns);
+    }
+
+    private static Filter createFilter(Column column, OperatorType operator, Object operand,
+            List<Column> filterColumns) {
+        if (!(operand instanceof String)) {
+            return null;
+        }
+
+        final CompareOp compareOp;
+        final ByteArrayComparable comparator;
+        if (OperatorType.LIKE.equals(operator)) {
+            final String prefix = getLikePrefix((String) operand);
+            if (prefix == null) {
+                return null;
+            }
+            compareOp = CompareOp.EQUAL;
+            comparator = new BinaryPrefixComparator(Bytes.toBytes(prefix));
+        } else {
+            compareOp = getCompareOp(operator);
+            if (compareOp == null) {
+                return null;
+            }
+            comparator = new BinaryComparator(Bytes.toBytes((String) operand));
+        }
+
+        if (isRowKey(column)) {
+            return new RowFilter(compareOp, comparator);
+        }
+
+        final String name = column.getName();
+        final int colonIndex = name.indexOf(':');
+        if (colonIndex == -1) {
+            // criteria on a complete column family
+            return null;
+        }
+        final byte[] family = Bytes.toBytes(name.substring(0, colonIndex));
+        final byte[] qualifier = Bytes.toBytes(name.substring(colonIndex + 1));
+        final SingleColumnValueFilter filter = new SingleColumnValueFilter(family, qualifier, compareOp, comparator);
+        // a missing value is a null value, which only satisfies "<>"
+        filter.setFilterIfMissing(compareOp != CompareOp.NOT_EQUAL);
+        filterColumns.add(column);
+        return filter;
+    }
+
+    private static CompareOp getCompareOp(OperatorType operator) {
+        if (OperatorType.EQUALS_TO.equals(operator)) {
+            return CompareOp.EQUAL;
+        } else if (OperatorType.DIFFERENT_FROM.equals(operator)) {
+            return CompareOp.NOT_EQUAL;
+        } else if (OperatorType.GREATER_THAN.equals(operator)) {
+            return CompareOp.GREATER;
+        } else if (OperatorType.GREATER_THAN_OR_EQUAL.equals(operator)) {
+            return CompareOp.GREATER_OR_EQUAL;
+        } else if (OperatorType.LESS_THAN.equals(operator)) {
+            return CompareOp.LESS;
+        } else if (OperatorType.LESS_THAN_OR_EQUAL.equals(operator)) {
+            return CompareOp.LESS_OR_EQUAL;
+        }
+        return null;
+    }
+
+    private static List<?> getInValues(Object operand) {
+        if (operand instanceof List) {
+            return (List<?>) operand;
+        } else if (operand instanceof Set) {
+            return new ArrayList<Object>((Set<?>) operand);
+        } else if (operand instanceof Object[]) {
+            final List<Object> values = new ArrayList<>();
+            Collections.addAll(values, (Object[]) operand);
+            return values;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the prefix of a LIKE pattern of the form "prefix%".
+     * 
+     * @return the prefix, or null if the pattern is not a simple prefix
+     *         pattern
+     */
+    private static String getLikePrefix(String pattern) {
+        final int wildcardIndex = pattern.indexOf('%');
+        if (wildcardIndex < 1 || wildcardIndex != pattern.length() - 1) {
+            return null;
+        }
+        return pattern.substring(0, wildcardIndex);
+    }
+
+    /**
+     * Gets the first row key which does not start with a prefix.
+     * 
+     * @return the stop row, or null if all row keys after the prefix start
+     *         with the prefix (which is the case for prefixes consisting of
+     *         only 0xFF bytes)
+     */
+    private static byte[] getPrefixStopRow(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                final byte[] stopRow = Bytes.copy(prefix, 0, i + 1);
+                stopRow[i]++;
+                return stopRow;
+            }
+        }
+        return null;
+    }
+
+    private static Column getColumn(FilterItem item) {
+        if (item.getExpression() != null) {
+            return null;
+        }
+        final SelectItem selectItem = item.getSelectItem();
+        if (selectItem == null || selectItem.getScalarFunction() != null || selectItem.getAggregateFunction() != null) {
+            return null;
+        }
+        final Column column = selectItem.getColumn();
+        if (column == null || column.getType() == null || !column.getType().isLiteral()) {
+            return null;
+        }
+        return column;
+    }
+
+    private static boolean isRowKey(Column column) {
+        return HBaseDataContext.FIELD_ID.equals(column.getName());
+    }
+
+    /**
+     * Determines if any of the WHERE items were translated.
+     * 
+     * @return
+     */
+    public boolean isTranslated() {
+        return _empty || !_filters.isEmpty() || _startRow.length > 0 || _stopRow.length > 0;
+    }
+
+    /**
+     * Determines if the criteria can never be satisfied, ie. the row range is
+     * empty.
+     * 
+     * @return
+     */
+    public boolean isEmpty() {
+        return _empty;
+    }
+
+    /**
+     * Gets the WHERE items that could not be translated and must be evaluated
+     * client-side.
+     * 
+     * @return
+     */
+    public List<FilterItem> getRemainingItems() {
+        return _remainingItems;
+    }
+
+    /**
+     * Gets the columns referenced by the value filters, which need to be part
+     * of the scanned column families.
+     * 
+     * @return
+     */
+    public List<Column> getFilterColumns() {
+        return _filterColumns;
+    }
+
+    public byte[] getStartRow() {
+        return _startRow;
+    }
+
+    public byte[] getStopRow() {
+        return _stopRow;
+    }
+
+    /**
+     * Gets the filter (if any) that represents the translated criteria which
+     * are not represented by the row range.
+     * 
+     * @return a filter, or null if no filtering is needed
+     */
+    public Filter getFilter() {
+        if (_filters.isEmpty()) {
+            return null;
+        }
+        if (_filters.size() == 1) {
+            return _filters.get(0);
+        }
+        return new FilterList(FilterList.Operator.MUST_PASS_ALL, _filters);
+    }
+
+    /**
+     * Applies the row range of the criteria to a {@link Scan}, restricted to a
+     * region (or other key range).
+     * 
+     * @param scan
+     * @param regionStartRow
+     *            the start row of the region, or an empty array if unbounded
+     * @param regionStopRow
+     *            the stop row of the region, or an empty array if unbounded
+     * @return false if the region does not overlap the row range
+     */
+    public boolean applyRowRange(Scan scan, byte[] regionStartRow, byte[] regionStopRow) {
+        final byte[] startRow = Bytes.compareTo(regionStartRow, _startRow) > 0 ? regionStartRow : _startRow;
+        final byte[] stopRow;
+        if (_stopRow.length == 0) {
+            stopRow = regionStopRow;
+        } else if (regionStopRow.length == 0) {
+            stopRow = _stopRow;
+        } else {
+            stopRow = Bytes.compareTo(regionStopRow, _stopRow) < 0 ? regionStopRow : _stopRow;
+        }
+        if (_empty || (stopRow.length > 0 && Bytes.compareTo(startRow, stopRow) >= 0)) {
+            return false;
+        }
+        scan.setStartRow(startRow);
+        scan.setStopRow(stopRow);
+        return true;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.hbase;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.metamodel.query.FilterItem;
+import org.apache.metamodel.query.LogicalOperator;
+import org.apache.metamodel.query.OperatorType;
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.schema.ColumnType;
+import org.apache.metamodel.schema.MutableColumn;
+import org.apache.metamodel.schema.MutableTable;
+
+public class HBaseScanCriteriaTest extends TestCase {
+
+    private final MutableTable table = new MutableTable("tbl");
+    private final MutableColumn idColumn = new MutableColumn(HBaseDataContext.FIELD_ID, ColumnType.VARCHAR, table, 0,
+            true).setPrimaryKey(true);
+    private final MutableColumn nameColumn = new MutableColumn("fam:name", ColumnType.VARCHAR, table, 1, true);
+    private final MutableColumn binaryColumn = new MutableColumn("fam:data", ColumnType.BINARY, table, 2, true);
+
+    public void testRowKeyRange() throws Exception {
+        final HBaseScanCriteria criteria = HBaseScanCriteria.create(Arrays.asList(
+                new FilterItem(new SelectItem(idColumn), OperatorType.GREATER_THAN_OR_EQUAL, "row05"),
+                new FilterItem(new SelectItem(idColumn), OperatorType.LESS_THAN, "row10")));
+
+        assertTrue(criteria.isTranslated());
+        assertFalse(criteria.isEmpty());
+        assertTrue(criteria.getRemainingItems().isEmpty());
+        assertNull(criteria.getFilter());
+        assertEquals("row05", Bytes.toString(criteria.getStartRow()));
+        assertEquals("row10", Bytes.toString(criteria.getStopRow()));
+
+        // restricted to regions
+        final Scan scan = new Scan();
+        assertFalse(criteria.applyRowRange(scan, Bytes.toBytes("row10"), HConstants.EMPTY_END_ROW));
+        assertTrue(criteria.applyRowRange(scan, Bytes.toBytes("row07"), Bytes.toBytes("row20")));
+        assertEquals("row07", Bytes.toString(scan.getStartRow()));
+        assertEquals("row10", Bytes.toString(scan.getStopRow()));
+    }
+
+    public void testRowKeyEqualsAndPrefix() throws Exception {
+        HBaseScanCriteria criteria = HBaseScanCriteria.create(Collections.singletonList(new FilterItem(
+                new SelectItem(idColumn), OperatorType.EQUALS_TO, "row1")));
+        assertEquals("row1", Bytes.toString(criteria.getStartRow()));
+        assertTrue(Bytes.equals(Bytes.add(Bytes.toBytes("row1"), new byte[1]), criteria.getStopRow()));
+
+        criteria = HBaseScanCriteria.create(Collections.singletonList(new FilterItem(new SelectItem(idColumn),
+                OperatorType.LIKE, "row1%")));
+        assertEquals("row1", Bytes.toString(criteria.getStartRow()));
+        assertEquals("row2", Bytes.toString(criteria.getStopRow()));
+        assertTrue(criteria.getRemainingItems().isEmpty());
+
+        criteria = HBaseScanCriteria.create(Arrays.asList(
+                new FilterItem(new SelectItem(idColumn), OperatorType.EQUALS_TO, "row1"),
+                new FilterItem(new SelectItem(idColumn), OperatorType.GREATER_THAN, "row2")));
+        assertTrue(criteria.isEmpty());
+    }
+
+    public void testValueFilters() throws Exception {
+        final FilterItem orItem = new FilterItem(LogicalOperator.OR,
+                new FilterItem(new SelectItem(nameColumn), OperatorType.EQUALS_TO, "foo"),
+                new FilterItem(new SelectItem(nameColumn), OperatorType.DIFFERENT_FROM, "bar"));
+        final HBaseScanCriteria criteria = HBaseScanCriteria.create(Arrays.asList(orItem,
+                new FilterItem(new SelectItem(idColumn), OperatorType.DIFFERENT_FROM, "row1")));
+
+        assertTrue(criteria.getRemainingItems().isEmpty());
+        assertEquals(0, criteria.getStartRow().length);
+        assertEquals(0, criteria.getStopRow().length);
+        assertEquals(2, criteria.getFilterColumns().size());
+
+        final FilterList filter = (FilterList) criteria.getFilter();
+        assertEquals(FilterList.Operator.MUST_PASS_ALL, filter.getOperator());
+        assertEquals(2, filter.getFilters().size());
+
+        final FilterList orFilter = (FilterList) filter.getFilters().get(0);
+        assertEquals(FilterList.Operator.MUST_PASS_ONE, orFilter.getOperator());
+        final SingleColumnValueFilter equalsFilter = (SingleColumnValueFilter) orFilter.getFilters().get(0);
+        assertEquals("fam", Bytes.toString(equalsFilter.getFamily()));
+        assertEquals("name", Bytes.toString(equalsFilter.getQualifier()));
+        assertTrue(equalsFilter.getFilterIfMissing());
+        final SingleColumnValueFilter differentFilter = (SingleColumnValueFilter) orFilter.getFilters().get(1);
+        assertFalse(differentFilter.getFilterIfMissing());
+    }
+
+    public void testRemainingItems() throws Exception {
+        final FilterItem binaryItem = new FilterItem(new SelectItem(binaryColumn), OperatorType.EQUALS_TO, "foo");
+        final FilterItem likeItem = new FilterItem(new SelectItem(nameColumn), OperatorType.LIKE, "%foo");
+        final FilterItem numberItem = new FilterItem(new SelectItem(nameColumn), OperatorType.EQUALS_TO, 42);
+        final HBaseScanCriteria criteria = HBaseScanCriteria.create(Arrays.asList(binaryItem, likeItem, numberItem));
+
+        assertFalse(criteria.isTranslated());
+        assertEquals(Arrays.asList(binaryItem, likeItem, numberItem), criteria.getRemainingItems());
+    }
+}
@@ -18,7 +18,9 @@
  */
 package org.apache.metamodel.jdbc;
 
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.metamodel.query.Query;
 import org.apache.metamodel.query.SelectItem;
@@ -34,6 +36,11 @@ import org.slf4j.LoggerFactory;
  * Oracle's caching size, see <a href=
  * "http://www.oracle.com/technetwork/database/enterprise-edition/memory.pdf"
  * >JDBC Memory Management</a>, section "Where does it all go?".
+ * 
+ * In adaptive mode, the average sizes of values observed while reading query
+ * results (see {@link #observeValueSizes(Column[], long[], int)}) are
+ * remembered per column and used instead of the estimates based on the column
+ * type.
  */
 final class FetchSizeCalculator {
 
@@ -53,10 +60,104 @@ final class FetchSizeCalculator {
 
 	private static final int MIN_FETCH_SIZE = 1;
 	private static final int MAX_FETCH_SIZE = 25000;
-	private final int _bytesInMemory;
+
+	private final ConcurrentHashMap<Column, Integer> _observedValueSizes;
+	private volatile int _bytesInMemory;
+	private volatile boolean _adaptive;
 
 	public FetchSizeCalculator(int bytesInMemory) {
 		_bytesInMemory = bytesInMemory;
+		_observedValueSizes = new ConcurrentHashMap<Column, Integer>();
+		_adaptive = false;
+	}
+
+	/**
+	 * Sets the amount of memory (in bytes) that fetched rows are allowed to
+	 * occupy.
+	 * 
+	 * @param bytesInMemory
+	 */
+	public void setBytesInMemory(int bytesInMemory) {
+		if (bytesInMemory < 1) {
+			throw new IllegalArgumentException(
+					"Bytes in memory must be a positive number");
+		}
+		_bytesInMemory = bytesInMemory;
+	}
+
+	public int getBytesInMemory() {
+		return _bytesInMemory;
+	}
+
+	/**
+	 * Sets whether or not to adapt fetch sizes to the observed size of values.
+	 * 
+	 * @param adaptive
+	 */
+	public void setAdaptive(boolean adaptive) {
+		_adaptive = adaptive;
+		if (!adaptive) {
+			_observedValueSizes.clear();
+		}
+	}
+
+	public boolean isAdaptive() {
+		return _adaptive;
+	}
+
+	/**
+	 * Registers the observed size of values of a number of columns. Has no
+	 * effect unless the calculator is adaptive.
+	 * 
+	 * @param columns
+	 *            the columns that the values belong to. Null elements are
+	 *            ignored.
+	 * @param bytes
+	 *            the total size (in bytes) of the observed values of each
+	 *            column, or a negative number if the size could not be
+	 *            determined
+	 * @param rows
+	 *            the number of observed rows
+	 */
+	public void observeValueSizes(Column[] columns, long[] bytes, int rows) {
+		if (!_adaptive || rows < 1) {
+			return;
+		}
+		for (int i = 0; i < columns.length; i++) {
+			final Column column = columns[i];
+			if (column != null && bytes[i] >= 0) {
+				final int valueSize = (int) Math.max(1, bytes[i] / rows);
+				final Integer previousValueSize = _observedValueSizes.put(column, valueSize);
+				if (logger.isDebugEnabled() && previousValueSize == null) {
+					logger.debug("Observed value size of column {}: {} bytes (estimate was {} bytes)",
+							column.getName(), valueSize, getSize(column));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the (approximate) size (in bytes) of a value read from a resultset.
+	 * 
+	 * @param value
+	 * @return the size of the value, or -1 if the size cannot be determined
+	 *         cheaply, eg. for LOB objects.
+	 */
+	public static int getObservedSize(Object value) {
+		if (value == null) {
+			return 1;
+		} else if (value instanceof String) {
+			return 2 * ((String) value).length();
+		} else if (value instanceof byte[]) {
+			return ((byte[]) value).length;
+		} else if (value instanceof Boolean) {
+			return 2;
+		} else if (value instanceof Number) {
+			return 16;
+		} else if (value instanceof Date) {
+			return DEFAULT_COLUMN_SIZE;
+		}
+		return -1;
 	}
 
 	/**
@@ -193,6 +294,16 @@ final class FetchSizeCalculator {
 	 * Gets the size (in bytes) of a single {@link Column}
 	 */
 	protected int getValueSize(Column column) {
+		if (_adaptive) {
+			final Integer observedValueSize = _observedValueSizes.get(column);
+			if (observedValueSize != null) {
+				return observedValueSize;
+			}
+		}
+		return getSize(column);
+	}
+
+	private int getSize(Column column) {
 		ColumnType type = column.getType();
 		if (type == null) {
 			return DEFAULT_COLUMN_SIZE;
@@ -21,8 +21,14 @@ package org.apache.metamodel.jdbc;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.metamodel.UpdateCallback;
+import org.apache.metamodel.jdbc.dialects.IBulkInsertQueryRewriter;
+import org.apache.metamodel.jdbc.dialects.IQueryRewriter;
+import org.apache.metamodel.schema.Column;
 import org.apache.metamodel.util.FileHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,45 +36,278 @@ import org.slf4j.LoggerFactory;
 /**
  * Jdbc {@link UpdateCallback} for databases that support the JDBC Batch
  * features.
+ * 
+ * Batches of reused prepared statements are flushed automatically once they
+ * reach a maximum number of rows, see
+ * {@link JdbcDataContext#SYSTEM_PROPERTY_BATCH_SIZE}. Long running scripts can
+ * furthermore be committed in intervals, see
+ * {@link JdbcDataContext#SYSTEM_PROPERTY_BATCH_COMMIT_INTERVAL}. Note that
+ * intermediate commits mean that a failing script will only roll back the work
+ * done since the last commit.
+ * 
+ * If the dialect supports bulk inserts (see
+ * {@link IBulkInsertQueryRewriter#isBulkInsertSupported()}), consecutive
+ * inserts into the same table are buffered, and runs of at least
+ * {@link JdbcDataContext#SYSTEM_PROPERTY_BULK_INSERT_THRESHOLD} rows are
+ * inserted using
+ * {@link IBulkInsertQueryRewriter#executeBulkInsert(java.sql.Connection, String, String[], Column[], List)}
+ * instead of batches of single row statements.
  */
 final class JdbcBatchUpdateCallback extends JdbcUpdateCallback {
 
     private static final Logger logger = LoggerFactory.getLogger(JdbcBatchUpdateCallback.class);
 
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+    public static final int DEFAULT_BULK_INSERT_THRESHOLD = 100;
+
+    private final int _batchSize;
+    private final int _commitInterval;
+    private final int _bulkInsertThreshold;
+
+    private String _bulkInsertSql;
+    private String _bulkInsertTableLabel;
+    private String[] _bulkInsertColumnLabels;
+    private Column[] _bulkInsertColumns;
+    private List<Object[]> _bulkInsertRows = new ArrayList<Object[]>();
+
+    private PreparedStatement _batchStatement;
+    private int _batchRows;
+    private long _uncommittedRows;
+    private int _executedBatches;
+    private long _executedBatchNanos;
+
     public JdbcBatchUpdateCallback(JdbcDataContext dataContext) {
+        this(dataContext, getSystemPropertyValue(JdbcDataContext.SYSTEM_PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE),
+                getSystemPropertyValue(JdbcDataContext.SYSTEM_PROPERTY_BATCH_COMMIT_INTERVAL, 0),
+                getSystemPropertyValue(JdbcDataContext.SYSTEM_PROPERTY_BULK_INSERT_THRESHOLD,
+                        DEFAULT_BULK_INSERT_THRESHOLD));
+    }
+
+    /**
+     * Creates a batch update callback
+     * 
+     * @param dataContext
+     * @param batchSize
+     *            the max number of rows in a batch before it is executed, or 0
+     *            for unbounded batches
+     * @param commitInterval
+     *            the number of rows after which the work is committed (once
+     *            the current batch has been executed), or 0 to only commit
+     *            when the update script has finished
+     * @param bulkInsertThreshold
+     *            the minimum number of consecutive inserts into a table for
+     *            using the bulk insert capabilities of the dialect, or 0 to
+     *            disable bulk inserts
+     */
+    public JdbcBatchUpdateCallback(JdbcDataContext dataContext, int batchSize, int commitInterval,
+            int bulkInsertThreshold) {
         super(dataContext);
+        _batchSize = Math.max(batchSize, 0);
+        _commitInterval = Math.max(commitInterval, 0);
+        _bulkInsertThreshold = Math.max(bulkInsertThreshold, 0);
+    }
+
+    private static int getSystemPropertyValue(String property, int defaultValue) {
+        final String str = System.getProperty(property);
+        if (str == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(str.trim());
+        } catch (NumberFormatException e) {
+            logger.debug("Failed to parse system property '{}': '{}'", property, str);
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public void executePreparedStatement(PreparedStatement preparedStatement, boolean reusedStatement)
+            throws SQLException {
+        super.executePreparedStatement(preparedStatement, reusedStatement);
+        if (reusedStatement) {
+            if (preparedStatement != _batchStatement) {
+                _batchStatement = preparedStatement;
+                _batchRows = 0;
+            }
+            _batchRows++;
+            if (_batchSize > 0 && _batchRows >= _batchSize) {
+                executeBatch(preparedStatement);
+            }
+        }
     }
 
     @Override
     protected void closePreparedStatement(PreparedStatement preparedStatement) {
         try {
-            int[] results = preparedStatement.executeBatch();
-            if (logger.isDebugEnabled()) {
-                for (int i = 0; i < results.length; i++) {
-                    int result = results[i];
-                    final String resultString;
-                    switch (result) {
-                    case Statement.SUCCESS_NO_INFO:
-                        resultString = "SUCCESS_NO_INFO";
-                        break;
-                    case Statement.EXECUTE_FAILED:
-                        resultString = "EXECUTE_FAILED";
-                        break;
-                    default:
-                        resultString = result + " rows updated";
+            executeBatch(preparedStatement);
+        } finally {
+            if (preparedStatement == _batchStatement) {
+                _batchStatement = null;
+            }
+            FileHelper.safeClose(preparedStatement);
+        }
+    }
+
+    private void executeBatch(PreparedStatement preparedStatement) {
+        final long start = System.nanoTime();
+        final int[] results;
+        try {
+            results = preparedStatement.executeBatch();
+        } catch (SQLException e) {
+            throw JdbcUtils.wrapException(e, "execute batch: " + preparedStatement);
+        }
+        final long nanos = System.nanoTime() - start;
+
+        if (preparedStatement == _batchStatement) {
+            _batchRows = 0;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Executed batch #{} of {} statements in {} ms", _executedBatches + 1, results.length,
+                    TimeUnit.NANOSECONDS.toMillis(nanos));
+            for (int i = 0; i < results.length; i++) {
+                int result = results[i];
+                final String resultString;
+                switch (result) {
+                case Statement.SUCCESS_NO_INFO:
+                    resultString = "SUCCESS_NO_INFO";
+                    break;
+                case Statement.EXECUTE_FAILED:
+                    resultString = "EXECUTE_FAILED";
+                    break;
+                default:
+                    resultString = result + " rows updated";
+                }
+                logger.debug("batch execute result[" + i + "]:" + resultString);
+            }
+        }
+
+        batchExecuted(results.length, nanos);
+    }
+
+    private void batchExecuted(int rows, long nanos) {
+        _executedBatches++;
+        _executedBatchNanos += nanos;
+
+        _uncommittedRows += rows;
+        if (_commitInterval > 0 && _uncommittedRows >= _commitInterval) {
+            logger.debug("Committing {} rows", _uncommittedRows);
+            commitIntermediate();
+            _uncommittedRows = 0;
+        }
+    }
+
+    /**
+     * Determines if inserts should be passed on to
+     * {@link #addBulkInsertRow(String, String, String[], Column[], Object[])}
+     * instead of being executed as prepared statements.
+     * 
+     * @return
+     */
+    public boolean isBulkInsertEnabled() {
+        if (_bulkInsertThreshold <= 0) {
+            return false;
+        }
+        final IQueryRewriter queryRewriter = getDataContext().getQueryRewriter();
+        return queryRewriter instanceof IBulkInsertQueryRewriter
+                && ((IBulkInsertQueryRewriter) queryRewriter).isBulkInsertSupported();
+    }
+
+    /**
+     * Buffers a row to be inserted. Consecutive rows with the same insert
+     * statement are buffered together, up to the batch size.
+     * 
+     * @param sql
+     *            the single row insert statement, with parameters
+     * @param tableLabel
+     * @param columnLabels
+     * @param columns
+     * @param values
+     *            the parameter values of the insert statement
+     */
+    public void addBulkInsertRow(String sql, String tableLabel, String[] columnLabels, Column[] columns,
+            Object[] values) {
+        if (!sql.equals(_bulkInsertSql)) {
+            flushBufferedInserts();
+            _bulkInsertSql = sql;
+            _bulkInsertTableLabel = tableLabel;
+            _bulkInsertColumnLabels = columnLabels;
+            _bulkInsertColumns = columns;
+        }
+        _bulkInsertRows.add(values);
+
+        final int capacity = (_batchSize == 0 ? DEFAULT_BATCH_SIZE : _batchSize);
+        if (_bulkInsertRows.size() >= capacity) {
+            flushBufferedInserts();
+        }
+    }
+
+    @Override
+    protected void flushBufferedInserts() {
+        if (_bulkInsertRows.isEmpty()) {
+            return;
+        }
+        final List<Object[]> rows = _bulkInsertRows;
+        _bulkInsertRows = new ArrayList<Object[]>();
+
+        final IQueryRewriter queryRewriter = getDataContext().getQueryRewriter();
+        if (rows.size() < _bulkInsertThreshold) {
+            // too few rows to benefit, use a regular batch
+            final PreparedStatement st = getPreparedStatement(_bulkInsertSql, true);
+            try {
+                for (Object[] values : rows) {
+                    for (int i = 0; i < values.length; i++) {
+                        queryRewriter.setStatementParameter(st, i + 1, _bulkInsertColumns[i], values[i]);
                     }
-                    logger.debug("batch execute result[" + i + "]:" + resultString);
+                    executePreparedStatement(st, true);
                 }
+            } catch (SQLException e) {
+                throw JdbcUtils.wrapException(e, "execute insert statement: " + _bulkInsertSql);
             }
+            return;
+        }
+
+        // pending statements must be executed first to retain the order
+        closeReusedPreparedStatement();
+
+        final long start = System.nanoTime();
+        final int count;
+        try {
+            count = ((IBulkInsertQueryRewriter) queryRewriter).executeBulkInsert(getConnection(),
+                    _bulkInsertTableLabel, _bulkInsertColumnLabels, _bulkInsertColumns, rows);
         } catch (SQLException e) {
-            throw JdbcUtils.wrapException(e, "execute batch: " + preparedStatement);
-        } finally {
-            FileHelper.safeClose(preparedStatement);
+            throw JdbcUtils.wrapException(e, "execute bulk insert into " + _bulkInsertTableLabel);
+        }
+        final long nanos = System.nanoTime() - start;
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Executed bulk insert #{} of {} rows into {} in {} ms", _executedBatches + 1, count,
+                    _bulkInsertTableLabel, TimeUnit.NANOSECONDS.toMillis(nanos));
         }
+
+        batchExecuted(rows.size(), nanos);
     }
 
     @Override
     protected void executePreparedStatement(PreparedStatement st) throws SQLException {
         st.addBatch();
     }
+
+    /**
+     * Gets the number of batches that have been executed so far.
+     * 
+     * @return
+     */
+    public int getExecutedBatches() {
+        return _executedBatches;
+    }
+
+    /**
+     * Gets the total time spent executing batches so far, in milliseconds.
+     * 
+     * @return
+     */
+    public long getExecutedBatchMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(_executedBatchNanos);
+    }
 }
@@ -25,6 +25,7 @@ import java.util.List;
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.apache.commons.pool.impl.GenericObjectPool.Config;
 import org.apache.metamodel.MetaModelException;
+import org.apache.metamodel.jdbc.dialects.IQueryRewriter;
 import org.apache.metamodel.query.CompiledQuery;
 import org.apache.metamodel.query.DefaultCompiledQuery;
 import org.apache.metamodel.query.Query;
@@ -42,13 +43,17 @@ final class JdbcCompiledQuery extends DefaultCompiledQuery implements CompiledQu
 
     private final String _sql;
     private final Query _query;
+    private final IQueryRewriter _queryRewriter;
+    private final FetchSizeCalculator _fetchSizeCalculator;
     private final GenericObjectPool<JdbcCompiledQueryLease> _pool;
     private boolean _closed;
 
     public JdbcCompiledQuery(JdbcDataContext dc, Query query) {
         super(query);
         _query = query;
-        _sql = dc.getQueryRewriter().rewriteQuery(query);
+        _queryRewriter = dc.getQueryRewriter();
+        _fetchSizeCalculator = dc.getFetchSizeCalculator();
+        _sql = _queryRewriter.rewriteQuery(query);
 
         final Config config = new Config();
         config.maxActive = getSystemPropertyValue(JdbcDataContext.SYSTEM_PROPERTY_COMPILED_QUERY_POOL_MAX_SIZE, -1);
@@ -120,6 +125,18 @@ final class JdbcCompiledQuery extends DefaultCompiledQuery implements CompiledQu
         return _pool.getNumIdle();
     }
 
+    protected boolean isClosed() {
+        return _closed;
+    }
+
+    protected IQueryRewriter getQueryRewriter() {
+        return _queryRewriter;
+    }
+
+    protected FetchSizeCalculator getFetchSizeCalculator() {
+        return _fetchSizeCalculator;
+    }
+
     protected Query getQuery() {
         return _query;
     }
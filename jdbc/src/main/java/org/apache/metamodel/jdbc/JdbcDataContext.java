@@ -74,8 +74,15 @@ import org.slf4j.LoggerFactory;
 public class JdbcDataContext extends AbstractDataContext implements UpdateableDataContext {
 
     public static final String SYSTEM_PROPERTY_BATCH_UPDATES = "metamodel.jdbc.batch.updates";
+    public static final String SYSTEM_PROPERTY_BATCH_SIZE = "metamodel.jdbc.batch.size";
+    public static final String SYSTEM_PROPERTY_BATCH_COMMIT_INTERVAL = "metamodel.jdbc.batch.commit.interval";
+    public static final String SYSTEM_PROPERTY_BULK_INSERT_THRESHOLD = "metamodel.jdbc.bulk.insert.threshold";
     public static final String SYSTEM_PROPERTY_CONVERT_LOBS = "metamodel.jdbc.convert.lobs";
 
+    public static final String SYSTEM_PROPERTY_STATEMENT_CACHE_SIZE = "metamodel.jdbc.statement.cache.size";
+    public static final String SYSTEM_PROPERTY_FETCH_SIZE_MEMORY = "metamodel.jdbc.fetchsize.memory";
+    public static final String SYSTEM_PROPERTY_FETCH_SIZE_ADAPTIVE = "metamodel.jdbc.fetchsize.adaptive";
+
     public static final String SYSTEM_PROPERTY_COMPILED_QUERY_POOL_MAX_SIZE = "metamodel.jdbc.compiledquery.pool.max.size";
     public static final String SYSTEM_PROPERTY_COMPILED_QUERY_POOL_MIN_EVICTABLE_IDLE_TIME_MILLIS = "metamodel.jdbc.compiledquery.pool.idle.timeout";
     public static final String SYSTEM_PROPERTY_COMPILED_QUERY_POOL_TIME_BETWEEN_EVICTION_RUNS_MILLIS = "metamodel.jdbc.compiledquery.pool.eviction.period.millis";
@@ -98,6 +105,8 @@ public class JdbcDataContext extends AbstractDataContext implements UpdateableDa
 
     private static final Logger logger = LoggerFactory.getLogger(JdbcDataContext.class);
 
+    private static final int DEFAULT_FETCH_SIZE_MEMORY = 16 * 1024 * 1024;
+
     private final FetchSizeCalculator _fetchSizeCalculator;
     private final Connection _connection;
     private final DataSource _dataSource;
@@ -113,6 +122,8 @@ public class JdbcDataContext extends AbstractDataContext implements UpdateableDa
     private IQueryRewriter _queryRewriter;
     private final String _databaseProductName;
 
+    private volatile JdbcStatementCache _statementCache;
+
     /**
      * There are some confusion as to the definition of catalogs and schemas.
      * Some databases seperate "groups of tables" by using schemas, others by
@@ -177,8 +188,18 @@ public class JdbcDataContext extends AbstractDataContext implements UpdateableDa
             _singleConnection = false;
         }
 
-        // available memory for fetching is so far fixed at 16 megs.
-        _fetchSizeCalculator = new FetchSizeCalculator(16 * 1024 * 1024);
+        // available memory for fetching defaults to 16 megs.
+        _fetchSizeCalculator = new FetchSizeCalculator(DEFAULT_FETCH_SIZE_MEMORY);
+        final String fetchSizeMemory = System.getProperty(SYSTEM_PROPERTY_FETCH_SIZE_MEMORY);
+        if (fetchSizeMemory != null) {
+            try {
+                _fetchSizeCalculator.setBytesInMemory(Integer.parseInt(fetchSizeMemory.trim()));
+            } catch (IllegalArgumentException e) {
+                logger.debug("Failed to parse system property '{}': '{}'", SYSTEM_PROPERTY_FETCH_SIZE_MEMORY,
+                        fetchSizeMemory);
+            }
+        }
+        _fetchSizeCalculator.setAdaptive("true".equals(System.getProperty(SYSTEM_PROPERTY_FETCH_SIZE_ADAPTIVE)));
 
         boolean supportsBatchUpdates = false;
         String identifierQuoteString = null;
@@ -247,6 +268,16 @@ public class JdbcDataContext extends AbstractDataContext implements UpdateableDa
         _identifierQuoteString = identifierQuoteString;
         _usesCatalogsAsSchemas = usesCatalogsAsSchemas;
         _metadataLoader = new JdbcMetadataLoader(this, _usesCatalogsAsSchemas, _identifierQuoteString);
+
+        final String statementCacheSize = System.getProperty(SYSTEM_PROPERTY_STATEMENT_CACHE_SIZE);
+        if (statementCacheSize != null) {
+            try {
+                setStatementCacheSize(Integer.parseInt(statementCacheSize.trim()));
+            } catch (NumberFormatException e) {
+                logger.debug("Failed to parse system property '{}': '{}'", SYSTEM_PROPERTY_STATEMENT_CACHE_SIZE,
+                        statementCacheSize);
+            }
+        }
     }
 
     /**
@@ -492,6 +523,13 @@ public class JdbcDataContext extends AbstractDataContext implements UpdateableDa
     }
 
     public DataSet executeQuery(Query query) throws MetaModelException {
+        final JdbcStatementCache statementCache = _statementCache;
+        if (statementCache != null) {
+            final DataSet dataSet = statementCache.executeQuery(query);
+            if (dataSet != null) {
+                return dataSet;
+            }
+        }
 
         final Connection connection = getConnection();
         final Statement statement;
@@ -767,9 +805,49 @@ public class JdbcDataContext extends AbstractDataContext implements UpdateableDa
             throw new IllegalArgumentException("Query rewriter cannot be null");
         }
         _queryRewriter = queryRewriter;
+        final JdbcStatementCache statementCache = _statementCache;
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+        return this;
+    }
+
+    /**
+     * Sets the number of statements to cache for executing regular queries.
+     * When enabled, literal operands of queries are turned into parameters,
+     * so that queries of the same shape are rewritten to SQL only once and
+     * executed using pooled prepared statements (see
+     * {@link #compileQuery(Query)}). The least recently used statements are
+     * closed when the cache is full.
+     * 
+     * Statement caching is disabled by default. It can also be enabled using
+     * the {@link #SYSTEM_PROPERTY_STATEMENT_CACHE_SIZE} system property.
+     * 
+     * @param cacheSize
+     *            the max number of statements to cache, or 0 to disable the
+     *            cache
+     * @return
+     */
+    public JdbcDataContext setStatementCacheSize(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Statement cache size cannot be negative");
+        }
+        final JdbcStatementCache oldCache = _statementCache;
+        if (cacheSize == 0) {
+            _statementCache = null;
+        } else {
+            _statementCache = new JdbcStatementCache(this, cacheSize);
+        }
+        if (oldCache != null) {
+            oldCache.clear();
+        }
         return this;
     }
 
+    JdbcStatementCache getStatementCache() {
+        return _statementCache;
+    }
+
     public IQueryRewriter getQueryRewriter() {
         return _queryRewriter;
     }
@@ -836,6 +914,37 @@ public class JdbcDataContext extends AbstractDataContext implements UpdateableDa
         return _fetchSizeCalculator;
     }
 
+    /**
+     * Sets the amount of memory (in bytes) that the rows fetched by a query
+     * are allowed to occupy. The fetch size of queries is calculated based on
+     * this amount and the (estimated) size of rows. Defaults to 16 MB.
+     * 
+     * @param bytesInMemory
+     * @return
+     */
+    public JdbcDataContext setFetchSizeMemory(int bytesInMemory) {
+        _fetchSizeCalculator.setBytesInMemory(bytesInMemory);
+        return this;
+    }
+
+    /**
+     * Sets whether or not fetch sizes should adapt to the actual size of the
+     * values being read. When enabled, the sizes of values in the first rows
+     * of query results are measured. The fetch size of the running query is
+     * adjusted accordingly, and the measured sizes are remembered per column
+     * for later queries.
+     * 
+     * Adaptive fetch sizes are disabled by default. They can also be enabled
+     * using the {@link #SYSTEM_PROPERTY_FETCH_SIZE_ADAPTIVE} system property.
+     * 
+     * @param adaptive
+     * @return
+     */
+    public JdbcDataContext setFetchSizeAdaptive(boolean adaptive) {
+        _fetchSizeCalculator.setAdaptive(adaptive);
+        return this;
+    }
+
     @Override
     public void executeUpdate(final UpdateScript update) {
         final JdbcUpdateCallback updateCallback;
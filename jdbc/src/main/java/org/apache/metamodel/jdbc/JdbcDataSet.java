@@ -22,33 +22,63 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.metamodel.MetaModelException;
 import org.apache.metamodel.data.AbstractDataSet;
 import org.apache.metamodel.data.DefaultRow;
 import org.apache.metamodel.data.Row;
-import org.apache.metamodel.jdbc.dialects.DefaultQueryRewriter;
+import org.apache.metamodel.jdbc.dialects.AbstractQueryRewriter;
 import org.apache.metamodel.jdbc.dialects.IQueryRewriter;
 import org.apache.metamodel.query.Query;
 import org.apache.metamodel.query.SelectItem;
 import org.apache.metamodel.schema.Column;
+import org.apache.metamodel.schema.ColumnType;
 import org.apache.metamodel.util.FileHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * DataSet implementation that wraps a JDBC resultset.
+ * 
+ * The way each column is read from the resultset is determined once, when the
+ * dataset is created. Columns are read using type-specific getters, unless the
+ * query rewriter has its own way of reading resultset values, in which case
+ * {@link IQueryRewriter#getResultSetValue(ResultSet, int, Column)} is used.
  */
 final class JdbcDataSet extends AbstractDataSet {
 
     private static final Logger logger = LoggerFactory.getLogger(JdbcDataSet.class);
 
+    private static final int READ_OBJECT = 0;
+    private static final int READ_OBJECT_CHECK_NULL = 1;
+    private static final int READ_BOOLEAN = 2;
+    private static final int READ_DATE = 3;
+    private static final int READ_TIME = 4;
+    private static final int READ_TIMESTAMP = 5;
+    private static final int READ_BYTES = 6;
+    private static final int READ_USING_REWRITER = 7;
+
+    // the number of rows to measure when fetch sizes are adaptive
+    private static final int SAMPLE_ROWS = 100;
+
+    // query rewriter classes, mapped to whether or not they read resultset
+    // values the way that AbstractQueryRewriter does
+    private static final ConcurrentHashMap<Class<?>, Boolean> DEFAULT_VALUE_READING = new ConcurrentHashMap<>();
+
     private final JdbcCompiledQuery _compiledQuery;
     private final JdbcCompiledQueryLease _lease;
     private final Statement _statement;
     private final ResultSet _resultSet;
     private final JdbcDataContext _jdbcDataContext;
     private final Connection _connection;
+    private final IQueryRewriter _queryRewriter;
+    private final Column[] _columns;
+    private final int[] _readers;
+    private final Query _query;
+    private final FetchSizeCalculator _fetchSizeCalculator;
+    private long[] _sampledBytes;
+    private int _sampledRows;
     private Row _row;
     private boolean _closed;
 
@@ -74,6 +104,12 @@ final class JdbcDataSet extends AbstractDataSet {
         _closed = false;
         _compiledQuery = null;
         _lease = null;
+        _queryRewriter = jdbcDataContext.getQueryRewriter();
+        _columns = new Column[getHeader().size()];
+        _readers = createReaders();
+        _query = query;
+        _fetchSizeCalculator = jdbcDataContext.getFetchSizeCalculator();
+        _sampledBytes = createSampledBytes();
     }
 
     /**
@@ -97,6 +133,85 @@ final class JdbcDataSet extends AbstractDataSet {
         _statement = null;
         _resultSet = resultSet;
         _closed = false;
+        _queryRewriter = compiledQuery.getQueryRewriter();
+        _columns = new Column[getHeader().size()];
+        _readers = createReaders();
+        _query = compiledQuery.getQuery();
+        _fetchSizeCalculator = compiledQuery.getFetchSizeCalculator();
+        _sampledBytes = createSampledBytes();
+    }
+
+    JdbcCompiledQuery getCompiledQuery() {
+        return _compiledQuery;
+    }
+
+    private long[] createSampledBytes() {
+        if (_fetchSizeCalculator == null || !_fetchSizeCalculator.isAdaptive()) {
+            return null;
+        }
+        return new long[_columns.length];
+    }
+
+    private int[] createReaders() {
+        final boolean defaultValueReading = isDefaultValueReading(_queryRewriter);
+        final int[] readers = new int[_columns.length];
+        for (int i = 0; i < readers.length; i++) {
+            final SelectItem selectItem = getHeader().getSelectItem(i);
+            final Column column = (selectItem.getAggregateFunction() == null ? selectItem.getColumn() : null);
+            _columns[i] = column;
+            if (column == null) {
+                readers[i] = READ_OBJECT_CHECK_NULL;
+            } else if (!defaultValueReading) {
+                readers[i] = READ_USING_REWRITER;
+            } else {
+                readers[i] = getReader(column.getType());
+            }
+        }
+        return readers;
+    }
+
+    /**
+     * Determines the reader of a column type, corresponding to
+     * {@link AbstractQueryRewriter#getResultSetValue(ResultSet, int, Column)}.
+     */
+    private static int getReader(ColumnType type) {
+        if (type == null) {
+            return READ_OBJECT_CHECK_NULL;
+        } else if (type == ColumnType.TIME) {
+            return READ_TIME;
+        } else if (type == ColumnType.DATE) {
+            return READ_DATE;
+        } else if (type == ColumnType.TIMESTAMP) {
+            return READ_TIMESTAMP;
+        } else if (type == ColumnType.BLOB || type == JdbcDataContext.COLUMN_TYPE_BLOB_AS_BYTES
+                || type == ColumnType.CLOB || type == ColumnType.NCLOB
+                || type == JdbcDataContext.COLUMN_TYPE_CLOB_AS_STRING) {
+            return READ_USING_REWRITER;
+        } else if (type.isBinary()) {
+            return READ_BYTES;
+        } else if (type.isBoolean()) {
+            return READ_BOOLEAN;
+        } else if (type.isLiteral() || type.isTimeBased()) {
+            // getObject(...) returns null for these types
+            return READ_OBJECT;
+        }
+        // some drivers return boxed primitive types in stead of nulls
+        return READ_OBJECT_CHECK_NULL;
+    }
+
+    private static boolean isDefaultValueReading(IQueryRewriter queryRewriter) {
+        final Class<?> cls = queryRewriter.getClass();
+        Boolean result = DEFAULT_VALUE_READING.get(cls);
+        if (result == null) {
+            try {
+                result = cls.getMethod("getResultSetValue", ResultSet.class, int.class, Column.class)
+                        .getDeclaringClass() == AbstractQueryRewriter.class;
+            } catch (NoSuchMethodException e) {
+                result = false;
+            }
+            DEFAULT_VALUE_READING.put(cls, result);
+        }
+        return result;
     }
 
     /**
@@ -115,26 +230,20 @@ final class JdbcDataSet extends AbstractDataSet {
         try {
             boolean result = _resultSet.next();
             if (result) {
-                Object[] values = new Object[getHeader().size()];
+                final Object[] values = new Object[_readers.length];
                 for (int i = 0; i < values.length; i++) {
-
-                    values[i] = getValue(_resultSet, i);
-
-                    try {
-                        // some drivers return boxed primitive types in stead of
-                        // nulls (such as false in stead of null for a Boolean
-                        // column)
-                        if (_resultSet.wasNull()) {
-                            values[i] = null;
-                        }
-                    } catch (Exception e) {
-                        logger.debug("Could not invoke wasNull() method on resultset, error message: {}", e
-                                .getMessage());
-                    }
+                    values[i] = getValue(i);
                 }
                 _row = new DefaultRow(getHeader(), values);
+                if (_sampledBytes != null) {
+                    sample(values);
+                }
             } else {
                 _row = null;
+                if (_sampledBytes != null) {
+                    _fetchSizeCalculator.observeValueSizes(_columns, _sampledBytes, _sampledRows);
+                    _sampledBytes = null;
+                }
             }
             return result;
         } catch (SQLException e) {
@@ -142,22 +251,100 @@ final class JdbcDataSet extends AbstractDataSet {
         }
     }
 
-    private Object getValue(ResultSet resultSet, int i) throws SQLException {
-        final SelectItem selectItem = getHeader().getSelectItem(i);
-        final int columnIndex = i + 1;
-        if (selectItem.getAggregateFunction() == null) {
-            final Column column = selectItem.getColumn();
-            if (column != null) {
-                final IQueryRewriter queryRewriter;
-                if (_jdbcDataContext == null) {
-                    queryRewriter = new DefaultQueryRewriter(null);
+    private void sample(Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (_sampledBytes[i] >= 0) {
+                final int size = FetchSizeCalculator.getObservedSize(values[i]);
+                if (size < 0) {
+                    _sampledBytes[i] = -1;
                 } else {
-                    queryRewriter = _jdbcDataContext.getQueryRewriter();
+                    _sampledBytes[i] += size;
+                }
+            }
+        }
+        _sampledRows++;
+
+        if (_sampledRows == SAMPLE_ROWS) {
+            _fetchSizeCalculator.observeValueSizes(_columns, _sampledBytes, _sampledRows);
+            _sampledBytes = null;
+            adjustFetchSize();
+        }
+    }
+
+    private void adjustFetchSize() {
+        try {
+            final int fetchSize = _resultSet.getFetchSize();
+            if (fetchSize <= 0) {
+                // the driver is not using fetch sizes (or is streaming)
+                return;
+            }
+            final int adjustedFetchSize = _fetchSizeCalculator.getFetchSize(_query);
+            if (adjustedFetchSize != fetchSize) {
+                logger.debug("Adjusting fetch_size from {} to {} based on observed value sizes", fetchSize,
+                        adjustedFetchSize);
+                _resultSet.setFetchSize(adjustedFetchSize);
+            }
+        } catch (Exception e) {
+            logger.debug("Could not adjust fetch size of ResultSet: {}", e.getMessage());
+        }
+    }
+
+    private Object getValue(int i) throws SQLException {
+        final int columnIndex = i + 1;
+        final Object value;
+        switch (_readers[i]) {
+        case READ_OBJECT:
+            return _resultSet.getObject(columnIndex);
+        case READ_USING_REWRITER:
+            value = _queryRewriter.getResultSetValue(_resultSet, columnIndex, _columns[i]);
+            break;
+        case READ_BOOLEAN:
+            value = getTypedValue(i);
+            break;
+        case READ_DATE:
+        case READ_TIME:
+        case READ_TIMESTAMP:
+        case READ_BYTES:
+            return getTypedValue(i);
+        default:
+            value = _resultSet.getObject(columnIndex);
+        }
+
+        if (value != null) {
+            try {
+                // some drivers return boxed primitive types in stead of
+                // nulls (such as false in stead of null for a Boolean
+                // column)
+                if (_resultSet.wasNull()) {
+                    return null;
                 }
-                return queryRewriter.getResultSetValue(resultSet, columnIndex, column);
+            } catch (Exception e) {
+                logger.debug("Could not invoke wasNull() method on resultset, error message: {}", e.getMessage());
+            }
+        }
+        return value;
+    }
+
+    private Object getTypedValue(int i) throws SQLException {
+        final int columnIndex = i + 1;
+        try {
+            switch (_readers[i]) {
+            case READ_BOOLEAN:
+                return _resultSet.getBoolean(columnIndex);
+            case READ_DATE:
+                return _resultSet.getDate(columnIndex);
+            case READ_TIME:
+                return _resultSet.getTime(columnIndex);
+            case READ_TIMESTAMP:
+                return _resultSet.getTimestamp(columnIndex);
+            case READ_BYTES:
+                return _resultSet.getBytes(columnIndex);
             }
+        } catch (Exception e) {
+            logger.warn("Failed to retrieve " + _columns[i].getType()
+                    + " value using type-specific getter, retrying with generic getObject(...) method", e);
         }
-        return resultSet.getObject(columnIndex);
+        return _resultSet.getObject(columnIndex);
     }
 
     /**
@@ -20,7 +20,9 @@ package org.apache.metamodel.jdbc;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.metamodel.insert.AbstractRowInsertionBuilder;
 import org.apache.metamodel.insert.RowInsertionBuilder;
@@ -66,6 +68,13 @@ final class JdbcInsertBuilder extends AbstractRowInsertionBuilder<JdbcUpdateCall
 		}
 		final JdbcUpdateCallback updateCallback = getUpdateCallback();
 		final boolean reuseStatement = !_inlineValues;
+		if (reuseStatement && updateCallback instanceof JdbcBatchUpdateCallback) {
+			final JdbcBatchUpdateCallback batchUpdateCallback = (JdbcBatchUpdateCallback) updateCallback;
+			if (batchUpdateCallback.isBulkInsertEnabled()) {
+				addBulkInsertRow(batchUpdateCallback, sql);
+				return;
+			}
+		}
 		final PreparedStatement st = updateCallback.getPreparedStatement(sql, reuseStatement);
 		try {
 			if (reuseStatement) {
@@ -91,6 +100,30 @@ final class JdbcInsertBuilder extends AbstractRowInsertionBuilder<JdbcUpdateCall
 		}
 	}
 	
+	private void addBulkInsertRow(JdbcBatchUpdateCallback updateCallback, String sql) {
+		final Column[] columns = getColumns();
+		final Object[] values = getValues();
+		final boolean[] explicitNulls = getExplicitNulls();
+
+		final List<Column> insertColumns = new ArrayList<Column>(columns.length);
+		final List<Object> insertValues = new ArrayList<Object>(columns.length);
+		for (int i = 0; i < columns.length; i++) {
+			if (values[i] != null || explicitNulls[i]) {
+				insertColumns.add(columns[i]);
+				insertValues.add(values[i]);
+			}
+		}
+
+		final String[] columnLabels = new String[insertColumns.size()];
+		for (int i = 0; i < columnLabels.length; i++) {
+			columnLabels[i] = updateCallback.quoteIfNescesary(insertColumns.get(i).getName());
+		}
+		final String tableLabel = _queryRewriter.rewriteFromItem(new FromItem(getTable()));
+
+		updateCallback.addBulkInsertRow(sql, tableLabel, columnLabels,
+				insertColumns.toArray(new Column[insertColumns.size()]), insertValues.toArray());
+	}
+
 	protected String createSqlStatement() {
 	    return createSqlStatement(_inlineValues);
 	}
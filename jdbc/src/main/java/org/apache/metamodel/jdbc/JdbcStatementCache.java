@@ -0,0 +1,332 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.metamodel.data.AbstractDataSet;
+import org.apache.metamodel.data.DataSet;
+import org.apache.metamodel.data.Row;
+import org.apache.metamodel.data.WrappingDataSet;
+import org.apache.metamodel.query.FilterItem;
+import org.apache.metamodel.query.FromItem;
+import org.apache.metamodel.query.GroupByItem;
+import org.apache.metamodel.query.OperatorType;
+import org.apache.metamodel.query.OrderByItem;
+import org.apache.metamodel.query.Query;
+import org.apache.metamodel.query.QueryParameter;
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.schema.Column;
+import org.apache.metamodel.schema.ColumnType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of {@link JdbcCompiledQuery}s for regular (non-compiled) queries.
+ *
+ * Literal string, number and boolean operands in the WHERE clause of a query
+ * (compared to columns of a corresponding type) are replaced by parameters, so
+ * that queries which only differ by such literals share the same "shape". Each
+ * shape is rewritten to SQL once and executed using the pooled prepared
+ * statements of a {@link JdbcCompiledQuery}.
+ *
+ * The least recently used shapes are evicted once the cache exceeds its
+ * maximum size. Every execution holds a reference to its cache entry until the
+ * resulting {@link DataSet} is closed, and an evicted entry is only closed once
+ * its last reference is released.
+ */
+final class JdbcStatementCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcStatementCache.class);
+
+    // a single parameter instance is used for all shapes, in order for equal
+    // shapes to also be equal queries
+    private static final QueryParameter PARAMETER = new QueryParameter();
+
+    private final JdbcDataContext _dataContext;
+    private final Map<List<Object>, CacheEntry> _entries;
+
+    public JdbcStatementCache(JdbcDataContext dataContext, final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be a positive number");
+        }
+        _dataContext = dataContext;
+        _entries = new LinkedHashMap<List<Object>, CacheEntry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, CacheEntry> eldest) {
+                if (size() > maxSize) {
+                    logger.debug("Evicting cached statement: {}", eldest.getValue().compiledQuery);
+                    evict(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Executes a query using a cached statement.
+     *
+     * @param query
+     * @return the resulting dataset, or null if the query cannot be executed
+     *         using a cached statement.
+     */
+    public DataSet executeQuery(Query query) {
+        final List<Object> parameterValues = new ArrayList<Object>();
+        final List<FilterItem> whereItems = parameterize(query.getWhereClause().getItems(), parameterValues);
+        if (whereItems == null) {
+            return null;
+        }
+
+        final CacheEntry entry;
+        synchronized (_entries) {
+            CacheEntry existingEntry = _entries.get(createKey(query, whereItems));
+            if (existingEntry == null) {
+                // the shape is a copy, so that the cached key is not affected
+                // by later modifications of the query
+                final Query shape = createShape(query);
+                existingEntry = new CacheEntry(new JdbcCompiledQuery(_dataContext, shape));
+                _entries.put(createKey(shape, shape.getWhereClause().getItems()), existingEntry);
+            }
+            entry = existingEntry;
+            entry.references++;
+        }
+
+        final DataSet dataSet;
+        try {
+            dataSet = _dataContext.executeQuery(entry.compiledQuery, parameterValues.toArray());
+        } catch (RuntimeException e) {
+            release(entry);
+            throw e;
+        } catch (Error e) {
+            release(entry);
+            throw e;
+        }
+        return new CachedStatementDataSet(dataSet, entry);
+    }
+
+    /**
+     * Removes all cached statements. Statements are closed once the datasets
+     * that are currently using them are closed.
+     */
+    public void clear() {
+        synchronized (_entries) {
+            for (CacheEntry entry : _entries.values()) {
+                evict(entry);
+            }
+            _entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (_entries) {
+            return _entries.size();
+        }
+    }
+
+    // must be invoked while holding the lock of _entries
+    private void evict(CacheEntry entry) {
+        entry.evicted = true;
+        if (entry.references == 0) {
+            entry.compiledQuery.close();
+        }
+    }
+
+    private void release(CacheEntry entry) {
+        synchronized (_entries) {
+            entry.references--;
+            if (entry.evicted && entry.references == 0) {
+                entry.compiledQuery.close();
+            }
+        }
+    }
+
+    /**
+     * Creates the cache key of a query shape. The key corresponds to the
+     * identity of the shape query (plus the first row, which the query identity
+     * does not cover), without having to copy the query.
+     */
+    private static List<Object> createKey(Query query, List<FilterItem> whereItems) {
+        return Arrays.<Object> asList(query.getMaxRows(), query.getFirstRow(), query.getSelectClause().isDistinct(),
+                new ArrayList<SelectItem>(query.getSelectClause().getItems()),
+                new ArrayList<FromItem>(query.getFromClause().getItems()), whereItems,
+                new ArrayList<GroupByItem>(query.getGroupByClause().getItems()),
+                new ArrayList<FilterItem>(query.getHavingClause().getItems()),
+                new ArrayList<OrderByItem>(query.getOrderByClause().getItems()));
+    }
+
+    /**
+     * Creates a parameterized copy of a query.
+     */
+    private static Query createShape(Query query) {
+        final Query shape = query.clone();
+        final List<FilterItem> whereItems = parameterize(shape.getWhereClause().getItems(),
+                new ArrayList<Object>());
+        shape.getWhereClause().removeItems();
+        shape.where(whereItems);
+        return shape;
+    }
+
+    /**
+     * Replaces literal operands of WHERE items by parameters.
+     *
+     * @param whereItems
+     * @param parameterValues
+     *            a list to add the replaced literals to
+     * @return the parameterized items, or null if the query cannot be cached
+     */
+    private static List<FilterItem> parameterize(List<FilterItem> whereItems, List<Object> parameterValues) {
+        final List<FilterItem> newWhereItems = new ArrayList<FilterItem>(whereItems.size());
+        for (FilterItem whereItem : whereItems) {
+            final FilterItem newWhereItem = parameterize(whereItem, parameterValues);
+            if (newWhereItem == null) {
+                return null;
+            }
+            newWhereItems.add(newWhereItem);
+        }
+        return newWhereItems;
+    }
+
+    private static FilterItem parameterize(FilterItem item, List<Object> parameterValues) {
+        if (item.isCompoundFilter()) {
+            final FilterItem[] childItems = item.getChildItems();
+            final FilterItem[] newChildItems = new FilterItem[childItems.length];
+            for (int i = 0; i < childItems.length; i++) {
+                newChildItems[i] = parameterize(childItems[i], parameterValues);
+                if (newChildItems[i] == null) {
+                    return null;
+                }
+            }
+            return new FilterItem(item.getLogicalOperator(), newChildItems);
+        }
+
+        if (item.getExpression() != null) {
+            return item;
+        }
+
+        final Object operand = item.getOperand();
+        if (operand instanceof QueryParameter) {
+            // parameters are reserved for the parameters of the shape
+            return null;
+        }
+        if (OperatorType.IN.equals(item.getOperator()) || OperatorType.LIKE.equals(item.getOperator())) {
+            // the number of IN values is part of the shape, and LIKE patterns
+            // are kept as literals since they may determine the use of indexes
+            return item;
+        }
+        if (isParameterizable(item.getSelectItem(), operand)) {
+            parameterValues.add(operand);
+            return new FilterItem(item.getSelectItem(), item.getOperator(), PARAMETER);
+        }
+        return item;
+    }
+
+    /**
+     * Determines if an operand can be bound as a parameter. This is only the
+     * case when the operand type corresponds to the column type, since some
+     * databases do not implicitly convert parameters like they do literals.
+     */
+    private static boolean isParameterizable(SelectItem selectItem, Object operand) {
+        if (selectItem.getScalarFunction() != null || selectItem.getAggregateFunction() != null) {
+            return false;
+        }
+        final Column column = selectItem.getColumn();
+        if (column == null || column.getType() == null) {
+            return false;
+        }
+        final ColumnType type = column.getType();
+        if (operand instanceof String) {
+            return type.isLiteral();
+        }
+        if (operand instanceof Number) {
+            return type.isNumber();
+        }
+        if (operand instanceof Boolean) {
+            return type.isBoolean();
+        }
+        return false;
+    }
+
+    /**
+     * A cached statement and the number of executions currently using it.
+     * Fields are guarded by the lock of the cache's entries.
+     */
+    private static final class CacheEntry {
+
+        private final JdbcCompiledQuery compiledQuery;
+        private int references;
+        private boolean evicted;
+
+        public CacheEntry(JdbcCompiledQuery compiledQuery) {
+            this.compiledQuery = compiledQuery;
+        }
+    }
+
+    /**
+     * DataSet wrapper which releases its reference to the cache entry when
+     * closed.
+     */
+    private final class CachedStatementDataSet extends AbstractDataSet implements WrappingDataSet {
+
+        private final DataSet _dataSet;
+        private final CacheEntry _entry;
+        private final AtomicBoolean _closed;
+
+        public CachedStatementDataSet(DataSet dataSet, CacheEntry entry) {
+            super(dataSet);
+            _dataSet = dataSet;
+            _entry = entry;
+            _closed = new AtomicBoolean(false);
+        }
+
+        @Override
+        public DataSet getWrappedDataSet() {
+            return _dataSet;
+        }
+
+        @Override
+        public boolean next() {
+            return _dataSet.next();
+        }
+
+        @Override
+        public Row getRow() {
+            return _dataSet.getRow();
+        }
+
+        @Override
+        public void close() {
+            if (_closed.compareAndSet(false, true)) {
+                try {
+                    _dataSet.close();
+                } finally {
+                    release(_entry);
+                }
+            }
+        }
+    }
+}
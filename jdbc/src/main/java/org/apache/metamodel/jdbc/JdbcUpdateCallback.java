@@ -75,6 +75,20 @@ abstract class JdbcUpdateCallback extends AbstractUpdateCallback implements Upda
     }
 
     public final void close(boolean success) {
+        boolean flushed = false;
+        try {
+            if (success) {
+                flushBufferedInserts();
+            }
+            flushed = true;
+        } finally {
+            // if flushing failed, the transaction is rolled back and the
+            // connection released before the error is propagated
+            closeConnection(success && flushed);
+        }
+    }
+
+    private void closeConnection(boolean success) {
         if (_connection != null) {
             if (success && _preparedStatement != null) {
                 closePreparedStatement(_preparedStatement);
@@ -98,6 +112,38 @@ abstract class JdbcUpdateCallback extends AbstractUpdateCallback implements Upda
         }
     }
 
+    /**
+     * Executes any inserts that have been buffered by the update callback.
+     * Invoked before other statements are prepared and when the update
+     * callback is closed successfully, so that statements are executed in the
+     * order they were issued. The default implementation does nothing.
+     */
+    protected void flushBufferedInserts() {
+    }
+
+    /**
+     * Closes the currently reused prepared statement, if any.
+     */
+    protected final void closeReusedPreparedStatement() {
+        if (_preparedStatement != null) {
+            final PreparedStatement preparedStatement = _preparedStatement;
+            _preparedStatement = null;
+            _preparedStatementSql = null;
+            closePreparedStatement(preparedStatement);
+        }
+    }
+
+    /**
+     * Commits the work done so far, while the update callback is still in use.
+     * Has no effect if the database is not treated as transactional, or if no
+     * connection has been acquired yet.
+     */
+    protected final void commitIntermediate() {
+        if (_connection != null && _dataContext.getQueryRewriter().isTransactional()) {
+            commitOrRollback(true);
+        }
+    }
+
     private void commitOrRollback(boolean success) {
         if (success) {
             try {
@@ -154,6 +200,7 @@ abstract class JdbcUpdateCallback extends AbstractUpdateCallback implements Upda
     }
 
     public final PreparedStatement getPreparedStatement(String sql, boolean reuseStatement) {
+        flushBufferedInserts();
         final PreparedStatement preparedStatement;
         if (reuseStatement) {
             if (sql.equals(_preparedStatementSql)) {
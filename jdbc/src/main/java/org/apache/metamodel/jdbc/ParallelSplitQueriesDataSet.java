@@ -0,0 +1,328 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.jdbc;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.metamodel.DataContext;
+import org.apache.metamodel.MetaModelException;
+import org.apache.metamodel.data.AbstractDataSet;
+import org.apache.metamodel.data.DataSet;
+import org.apache.metamodel.data.Row;
+import org.apache.metamodel.query.Query;
+import org.apache.metamodel.util.SharedExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DataSet for split queries that executes several of the queries
+ * concurrently. Each query (partition) is executed by a worker thread, which
+ * hands over the rows in batches through a bounded buffer.
+ * 
+ * If the rows are ordered, the rows of the partitions are returned in the
+ * order of the queries (like {@link SplitQueriesDataSet} does), and workers
+ * are not allowed to run too far ahead of the partition that is being
+ * consumed. Otherwise rows are returned as soon as any partition has
+ * produced them.
+ * 
+ * @see org.apache.metamodel.jdbc.QuerySplitter
+ */
+final class ParallelSplitQueriesDataSet extends AbstractDataSet {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelSplitQueriesDataSet.class);
+
+    private static final int BATCH_SIZE = 256;
+    private static final int BATCHES_PER_PARTITION = 4;
+
+    private final DataContext _dataContext;
+    private final Partition[] _partitions;
+    private final int _parallelism;
+    private final boolean _ordered;
+    private final AtomicInteger _nextPartition = new AtomicInteger();
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Condition _rowsAvailable = _lock.newCondition();
+    private final Condition _roomAvailable = _lock.newCondition();
+
+    // guarded by _lock
+    private boolean _closed;
+    private int _consumerPartition;
+    private Throwable _error;
+
+    // only accessed by the consuming thread
+    private boolean _started;
+    private Row[] _batch;
+    private int _batchIndex;
+    private Row _row;
+
+    public ParallelSplitQueriesDataSet(DataContext dataContext, List<Query> splitQueries, int parallelism,
+            boolean ordered) {
+        super(splitQueries.get(0).getSelectClause().getItems());
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be a positive number");
+        }
+        _dataContext = dataContext;
+        _parallelism = Math.min(parallelism, splitQueries.size());
+        _ordered = ordered;
+        _partitions = new Partition[splitQueries.size()];
+        for (int i = 0; i < _partitions.length; i++) {
+            _partitions[i] = new Partition(i, splitQueries.get(i));
+        }
+    }
+
+    @Override
+    public boolean next() {
+        if (!_started) {
+            _started = true;
+            logger.debug("Executing {} split queries using {} threads", _partitions.length, _parallelism);
+            for (int i = 0; i < _parallelism; i++) {
+                SharedExecutorService.get().submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        runWorker();
+                    }
+                });
+            }
+        }
+
+        if (_batch != null && _batchIndex < _batch.length) {
+            _row = _batch[_batchIndex];
+            _batchIndex++;
+            return true;
+        }
+        _batch = null;
+        _row = null;
+
+        _lock.lock();
+        try {
+            while (true) {
+                if (_error instanceof RuntimeException) {
+                    throw (RuntimeException) _error;
+                }
+                if (_error != null) {
+                    throw (Error) _error;
+                }
+                if (_closed) {
+                    return false;
+                }
+                final Partition partition = findPartitionWithRows();
+                if (partition != null) {
+                    _batch = partition.batches.poll();
+                    _roomAvailable.signalAll();
+                    _batchIndex = 1;
+                    _row = _batch[0];
+                    return true;
+                }
+                if (_consumerPartition == _partitions.length) {
+                    return false;
+                }
+                _rowsAvailable.awaitUninterruptibly();
+            }
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the next partition that has rows to consume. Must be invoked
+     * while holding the lock.
+     */
+    private Partition findPartitionWithRows() {
+        if (_ordered) {
+            while (_consumerPartition < _partitions.length) {
+                final Partition partition = _partitions[_consumerPartition];
+                if (!partition.batches.isEmpty()) {
+                    return partition;
+                }
+                if (!partition.done) {
+                    return null;
+                }
+                _consumerPartition++;
+                // workers waiting to start a partition may proceed
+                _roomAvailable.signalAll();
+            }
+            return null;
+        }
+
+        boolean allDone = true;
+        for (Partition partition : _partitions) {
+            if (!partition.batches.isEmpty()) {
+                return partition;
+            }
+            allDone = allDone && partition.done;
+        }
+        if (allDone) {
+            _consumerPartition = _partitions.length;
+        }
+        return null;
+    }
+
+    private void runWorker() {
+        while (true) {
+            final int index = _nextPartition.getAndIncrement();
+            if (index >= _partitions.length) {
+                return;
+            }
+            final Partition partition = _partitions[index];
+
+            _lock.lock();
+            try {
+                // in ordered mode, don't get too far ahead of the consumer
+                while (_ordered && !_closed && index >= _consumerPartition + _parallelism) {
+                    _roomAvailable.awaitUninterruptibly();
+                }
+                if (_closed) {
+                    return;
+                }
+            } finally {
+                _lock.unlock();
+            }
+
+            try {
+                runPartition(partition);
+            } catch (Throwable e) {
+                // errors are reported as well, the consumer would otherwise
+                // wait for the partition forever
+                logger.warn("Split query #" + index + " failed: " + partition.query, e);
+                _lock.lock();
+                try {
+                    if (_error == null) {
+                        _error = e;
+                    }
+                    _rowsAvailable.signalAll();
+                } finally {
+                    _lock.unlock();
+                }
+                return;
+            }
+        }
+    }
+
+    private void runPartition(Partition partition) {
+        final long startTime = System.nanoTime();
+        final DataSet dataSet = _dataContext.executeQuery(partition.query);
+        final long executionTime = System.nanoTime() - startTime;
+        long rowCount = 0;
+        try {
+            Row[] batch = new Row[BATCH_SIZE];
+            int batchCount = 0;
+            while (dataSet.next()) {
+                batch[batchCount] = dataSet.getRow();
+                batchCount++;
+                rowCount++;
+                if (batchCount == BATCH_SIZE) {
+                    if (!offer(partition, batch)) {
+                        return;
+                    }
+                    batch = new Row[BATCH_SIZE];
+                    batchCount = 0;
+                }
+            }
+            if (batchCount > 0) {
+                final Row[] lastBatch = new Row[batchCount];
+                System.arraycopy(batch, 0, lastBatch, 0, batchCount);
+                if (!offer(partition, lastBatch)) {
+                    return;
+                }
+            }
+        } finally {
+            dataSet.close();
+
+            _lock.lock();
+            try {
+                partition.done = true;
+                _rowsAvailable.signalAll();
+            } finally {
+                _lock.unlock();
+            }
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Split query #{} produced {} rows (execution: {} ms, total: {} ms)", new Object[] {
+                        partition.index, rowCount, TimeUnit.NANOSECONDS.toMillis(executionTime),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) });
+            }
+        }
+    }
+
+    /**
+     * Adds a batch of rows to the buffer of a partition, waiting for room if
+     * necessary.
+     * 
+     * @return false if the dataset has been closed
+     */
+    private boolean offer(Partition partition, Row[] batch) {
+        _lock.lock();
+        try {
+            while (!_closed && _error == null && partition.batches.size() >= BATCHES_PER_PARTITION) {
+                _roomAvailable.awaitUninterruptibly();
+            }
+            if (_closed || _error != null) {
+                return false;
+            }
+            partition.batches.add(batch);
+            _rowsAvailable.signalAll();
+            return true;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public Row getRow() throws MetaModelException {
+        return _row;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        _lock.lock();
+        try {
+            _closed = true;
+            for (Partition partition : _partitions) {
+                partition.batches.clear();
+            }
+            _roomAvailable.signalAll();
+            _rowsAvailable.signalAll();
+        } finally {
+            _lock.unlock();
+        }
+        _batch = null;
+        _row = null;
+    }
+
+    private static final class Partition {
+
+        private final int index;
+        private final Query query;
+
+        // guarded by the lock of the dataset
+        private final ArrayDeque<Row[]> batches = new ArrayDeque<Row[]>(BATCHES_PER_PARTITION);
+        private boolean done;
+
+        public Partition(int index, Query query) {
+            this.index = index;
+            this.query = query;
+        }
+    }
+}
@@ -62,6 +62,7 @@ public final class QuerySplitter {
     private final Query _query;
     private final DataContext _dataContext;
     private long _maxRows = DEFAULT_MAX_ROWS;
+    private int _parallelism = 1;
     private Long _cachedRowCount = null;
 
     public QuerySplitter(DataContext dc, Query q) {
@@ -326,11 +327,37 @@ public final class QuerySplitter {
         return this;
     }
 
+    /**
+     * Sets the number of split queries to execute concurrently when invoking
+     * {@link #executeQueries()}. Defaults to 1, ie. the split queries are
+     * executed one after another.
+     * 
+     * Concurrent execution is only used for {@link JdbcDataContext}s that are
+     * based on a {@link javax.sql.DataSource}, since every concurrent query
+     * needs its own connection.
+     * 
+     * @param parallelism
+     */
+    public QuerySplitter setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be a positive number");
+        }
+        _parallelism = parallelism;
+        return this;
+    }
+
     public DataSet executeQueries() {
         return executeQueries(splitQuery());
     }
 
     public DataSet executeQueries(List<Query> splitQueries) {
+        if (_parallelism > 1 && splitQueries.size() > 1) {
+            if (_dataContext instanceof JdbcDataContext && !((JdbcDataContext) _dataContext).isSingleConnection()) {
+                final boolean ordered = _query.getOrderByClause().getItemCount() > 0;
+                return new ParallelSplitQueriesDataSet(_dataContext, splitQueries, _parallelism, ordered);
+            }
+            logger.debug("Executing split queries sequentially, concurrent execution requires a DataSource");
+        }
         return new SplitQueriesDataSet(_dataContext, splitQueries);
     }
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.sql.Blob;
 import java.sql.Clob;
+import java.sql.Connection;
 import java.sql.NClob;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -61,7 +62,7 @@ import org.slf4j.LoggerFactory;
  * be rendered. This makes it easy to overload single methods in order to
  * correct syntax quirks.
  */
-public abstract class AbstractQueryRewriter implements IQueryRewriter {
+public abstract class AbstractQueryRewriter implements IQueryRewriter, IBulkInsertQueryRewriter {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractQueryRewriter.class);
 
@@ -405,6 +406,101 @@ public abstract class AbstractQueryRewriter implements IQueryRewriter {
         }
     }
     
+    @Override
+    public boolean isBulkInsertSupported() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * This implementation inserts the rows using INSERT statements with
+     * multi-row VALUES lists, each one bound by
+     * {@link #getMaxBulkInsertParameters()}.
+     */
+    @Override
+    public int executeBulkInsert(Connection connection, String tableLabel, String[] columnLabels, Column[] columns,
+            List<Object[]> rows) throws SQLException {
+        final int rowsPerStatement = Math.max(1,
+                Math.min(getMaxBulkInsertRows(), getMaxBulkInsertParameters() / Math.max(1, columns.length)));
+
+        String sql = null;
+        int sqlRows = -1;
+        int rowIndex = 0;
+        while (rowIndex < rows.size()) {
+            final int statementRows = Math.min(rowsPerStatement, rows.size() - rowIndex);
+            if (statementRows != sqlRows) {
+                sql = createMultiRowInsertSql(tableLabel, columnLabels, statementRows);
+                sqlRows = statementRows;
+            }
+            final PreparedStatement st = connection.prepareStatement(sql);
+            try {
+                int valueIndex = 1;
+                for (int i = 0; i < statementRows; i++) {
+                    final Object[] values = rows.get(rowIndex + i);
+                    for (int j = 0; j < columns.length; j++) {
+                        setStatementParameter(st, valueIndex, columns[j], values[j]);
+                        valueIndex++;
+                    }
+                }
+                st.executeUpdate();
+            } finally {
+                FileHelper.safeClose(st);
+            }
+            rowIndex += statementRows;
+        }
+        return rows.size();
+    }
+
+    private String createMultiRowInsertSql(String tableLabel, String[] columnLabels, int rows) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("INSERT INTO ");
+        sb.append(tableLabel);
+        sb.append(" (");
+        for (int i = 0; i < columnLabels.length; i++) {
+            if (i != 0) {
+                sb.append(',');
+            }
+            sb.append(columnLabels[i]);
+        }
+        sb.append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i != 0) {
+                sb.append(',');
+            }
+            sb.append('(');
+            for (int j = 0; j < columnLabels.length; j++) {
+                if (j != 0) {
+                    sb.append(',');
+                }
+                sb.append('?');
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Gets the maximum number of rows to insert in a single multi-row INSERT
+     * statement.
+     * 
+     * @return
+     */
+    protected int getMaxBulkInsertRows() {
+        return 1000;
+    }
+
+    /**
+     * Gets the maximum number of parameters to use in a single multi-row
+     * INSERT statement. Many drivers and databases limit the number of
+     * parameters in a statement.
+     * 
+     * @return
+     */
+    protected int getMaxBulkInsertParameters() {
+        return 2000;
+    }
+
     protected Time toTime(Date value) {
         if (value instanceof Time) {
             return (Time) value;
@@ -40,6 +40,11 @@ public class DB2QueryRewriter extends DefaultQueryRewriter {
         super(dataContext);
     }
 
+    @Override
+    public boolean isBulkInsertSupported() {
+        return true;
+    }
+
     @Override
     public String escapeQuotes(String filterItemOperand) {
         return filterItemOperand.replaceAll("\\'", "\\\\'");
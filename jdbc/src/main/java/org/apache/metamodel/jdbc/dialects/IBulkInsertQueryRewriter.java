@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.jdbc.dialects;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.metamodel.schema.Column;
+
+/**
+ * Optional interface for {@link IQueryRewriter}s of dialects that have an
+ * efficient way of inserting many rows at a time. Batch update callbacks check
+ * for this interface before buffering inserts.
+ * 
+ * @see AbstractQueryRewriter
+ */
+public interface IBulkInsertQueryRewriter {
+
+    /**
+     * Determines if the dialect has an efficient way of inserting many rows at
+     * a time, which should be preferred over batches of single row INSERT
+     * statements. If so, {@link #executeBulkInsert(Connection, String, String[], Column[], List)}
+     * is used for large runs of inserts.
+     * 
+     * @return
+     */
+    public boolean isBulkInsertSupported();
+
+    /**
+     * Inserts a number of rows into a table, using the most efficient
+     * mechanism available for the dialect, eg. multi-row VALUES lists or a
+     * native load command.
+     * 
+     * @param connection
+     *            the connection to use. The connection is not closed or
+     *            committed.
+     * @param tableLabel
+     *            the table name, as rendered in SQL
+     * @param columnLabels
+     *            the column names, as rendered in SQL
+     * @param columns
+     *            the columns that the values correspond to
+     * @param rows
+     *            the values of the rows to insert, each array corresponding
+     *            to the columns
+     * @return the number of inserted rows
+     * @throws SQLException
+     */
+    public int executeBulkInsert(Connection connection, String tableLabel, String[] columnLabels, Column[] columns,
+            List<Object[]> rows) throws SQLException;
+}
@@ -159,4 +159,4 @@ public interface IQueryRewriter {
      * @return
      */
     public boolean isTransactional();
-}
\ No newline at end of file
+}
@@ -30,6 +30,11 @@ public class MysqlQueryRewriter extends LimitOffsetQueryRewriter {
         super(dataContext);
     }
 
+    @Override
+    public boolean isBulkInsertSupported() {
+        return true;
+    }
+
     @Override
     public String escapeQuotes(String filterItemOperand) {
         return filterItemOperand.replaceAll("\\'", "\\\\'");
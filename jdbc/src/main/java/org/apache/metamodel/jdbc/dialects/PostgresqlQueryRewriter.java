@@ -18,9 +18,15 @@
  */
 package org.apache.metamodel.jdbc.dialects;
 
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.metamodel.jdbc.JdbcDataContext;
@@ -30,6 +36,8 @@ import org.apache.metamodel.schema.Column;
 import org.apache.metamodel.schema.ColumnType;
 import org.apache.metamodel.schema.Schema;
 import org.apache.metamodel.schema.Table;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 import org.postgresql.util.PGobject;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -39,6 +47,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public class PostgresqlQueryRewriter extends LimitOffsetQueryRewriter {
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // the amount of CSV text to buffer before writing to the COPY stream
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
     private final ObjectMapper jsonObjectMapper = new ObjectMapper();
 
     public PostgresqlQueryRewriter(JdbcDataContext dataContext) {
@@ -104,6 +117,136 @@ public class PostgresqlQueryRewriter extends LimitOffsetQueryRewriter {
         super.setStatementParameter(st, valueIndex, column, value);
     }
 
+    @Override
+    public boolean isBulkInsertSupported() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * This implementation streams the rows as CSV using COPY ... FROM STDIN,
+     * if the connection is (or wraps) a PostgreSQL driver connection.
+     */
+    @Override
+    public int executeBulkInsert(Connection connection, String tableLabel, String[] columnLabels, Column[] columns,
+            List<Object[]> rows) throws SQLException {
+        final PGConnection pgConnection = getPGConnection(connection);
+        if (pgConnection == null) {
+            return super.executeBulkInsert(connection, tableLabel, columnLabels, columns, rows);
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append("COPY ");
+        sb.append(tableLabel);
+        sb.append(" (");
+        for (int i = 0; i < columnLabels.length; i++) {
+            if (i != 0) {
+                sb.append(',');
+            }
+            sb.append(columnLabels[i]);
+        }
+        sb.append(") FROM STDIN WITH CSV");
+
+        final CopyIn copyIn = pgConnection.getCopyAPI().copyIn(sb.toString());
+        try {
+            sb.setLength(0);
+            for (Object[] values : rows) {
+                for (int i = 0; i < columns.length; i++) {
+                    if (i != 0) {
+                        sb.append(',');
+                    }
+                    appendCsvValue(sb, columns[i], values[i]);
+                }
+                sb.append('\n');
+                if (sb.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copyIn, sb);
+                }
+            }
+            writeToCopy(copyIn, sb);
+            return (int) copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private PGConnection getPGConnection(Connection connection) {
+        if (connection instanceof PGConnection) {
+            return (PGConnection) connection;
+        }
+        try {
+            if (connection.isWrapperFor(PGConnection.class)) {
+                return connection.unwrap(PGConnection.class);
+            }
+        } catch (SQLException | AbstractMethodError e) {
+            // pre-JDBC 4 connection wrappers
+        }
+        return null;
+    }
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder sb) throws SQLException {
+        if (sb.length() > 0) {
+            final byte[] bytes = sb.toString().getBytes(UTF8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            sb.setLength(0);
+        }
+    }
+
+    private void appendCsvValue(StringBuilder sb, Column column, Object value) {
+        if (value == null) {
+            // an unquoted empty value is NULL in CSV mode
+            return;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+            return;
+        }
+        if (value instanceof Calendar) {
+            value = ((Calendar) value).getTime();
+        }
+
+        final String str;
+        if (value instanceof Date) {
+            final ColumnType type = column.getType();
+            if (type == ColumnType.DATE) {
+                str = new java.sql.Date(((Date) value).getTime()).toString();
+            } else if (type == ColumnType.TIME) {
+                str = toTime((Date) value).toString();
+            } else {
+                str = toTimestamp((Date) value).toString();
+            }
+        } else if (value instanceof byte[]) {
+            final byte[] bytes = (byte[]) value;
+            final StringBuilder hex = new StringBuilder(2 + bytes.length * 2);
+            hex.append("\\x");
+            for (byte b : bytes) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            str = hex.toString();
+        } else if (value instanceof Map) {
+            try {
+                str = jsonObjectMapper.writeValueAsString(value);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Unable to write value as JSON string: " + value);
+            }
+        } else {
+            str = value.toString();
+        }
+
+        sb.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
     @Override
     public Object getResultSetValue(ResultSet resultSet, int columnIndex, Column column) throws SQLException {
         switch (column.getNativeType()) {
@@ -37,6 +37,11 @@ public class SQLServerQueryRewriter extends DefaultQueryRewriter {
         super(dataContext);
     }
 
+    @Override
+    public boolean isBulkInsertSupported() {
+        return true;
+    }
+
     @Override
     public boolean isMaxRowsSupported() {
         return true;
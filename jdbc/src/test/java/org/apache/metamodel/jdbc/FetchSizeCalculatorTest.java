@@ -39,6 +39,31 @@ public class FetchSizeCalculatorTest extends TestCase {
 				ColumnType.BLOB).setColumnSize(4096)));
 	}
 
+	public void testAdaptiveFetchSize() throws Exception {
+		FetchSizeCalculator calc = new FetchSizeCalculator(8 * 1024 * 1024);
+		Column[] columns = new Column[] {
+				new MutableColumn("a", ColumnType.VARCHAR).setColumnSize(256),
+				new MutableColumn("b", ColumnType.BLOB).setColumnSize(4096) };
+		assertEquals(1820, calc.getFetchSize(columns));
+
+		// observations are ignored unless adaptive
+		calc.observeValueSizes(columns, new long[] { 2000, 100000 }, 100);
+		assertEquals(1820, calc.getFetchSize(columns));
+
+		calc.setAdaptive(true);
+		calc.observeValueSizes(columns, new long[] { 2000, 100000 }, 100);
+		assertEquals(8224, calc.getFetchSize(columns));
+
+		// unknown sizes are not registered
+		calc.setAdaptive(false);
+		calc.setAdaptive(true);
+		calc.observeValueSizes(columns, new long[] { 2000, -1 }, 100);
+		assertEquals(2038, calc.getFetchSize(columns));
+
+		calc.setBytesInMemory(1024 * 1024);
+		assertEquals(254, calc.getFetchSize(columns));
+	}
+
 	public void testSingleRowQuery() throws Exception {
 		FetchSizeCalculator calc = new FetchSizeCalculator(8 * 1024 * 1024);
 		assertEquals(1, calc.getFetchSize(new Query().selectCount().from(
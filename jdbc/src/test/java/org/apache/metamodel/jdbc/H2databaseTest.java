@@ -21,11 +21,13 @@ package org.apache.metamodel.jdbc;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.metamodel.MetaModelException;
 import org.apache.metamodel.UpdateCallback;
 import org.apache.metamodel.UpdateScript;
 import org.apache.metamodel.create.CreateTable;
@@ -34,6 +36,7 @@ import org.apache.metamodel.data.Row;
 import org.apache.metamodel.delete.DeleteFrom;
 import org.apache.metamodel.drop.DropTable;
 import org.apache.metamodel.insert.InsertInto;
+import org.apache.metamodel.jdbc.dialects.H2QueryRewriter;
 import org.apache.metamodel.jdbc.dialects.IQueryRewriter;
 import org.apache.metamodel.query.FunctionType;
 import org.apache.metamodel.query.OperatorType;
@@ -129,6 +132,179 @@ public class H2databaseTest extends TestCase {
         assertNull(schema.getTableByName("test_table"));
     }
 
+    public void testBatchUpdatesFlushAndCommitInIntervals() throws Exception {
+        final JdbcDataContext dc = new JdbcDataContext(conn);
+
+        final Schema schema = dc.getDefaultSchema();
+        dc.executeUpdate(new CreateTable(schema, "test_table").withColumn("id").ofType(ColumnType.VARCHAR));
+        final Table table = schema.getTableByName("test_table");
+
+        JdbcBatchUpdateCallback callback = new JdbcBatchUpdateCallback(dc, 100, 0, 0);
+        for (int i = 0; i < 250; i++) {
+            callback.insertInto(table).value("id", "foo" + i).execute();
+        }
+        assertEquals(2, callback.getExecutedBatches());
+        callback.close(true);
+        assertEquals(3, callback.getExecutedBatches());
+
+        DataSet ds = dc.query().from(table).selectCount().execute();
+        assertTrue(ds.next());
+        assertEquals("Row[values=[250]]", ds.getRow().toString());
+        ds.close();
+
+        // with intermediate commits, a rollback only affects the rows since
+        // the last commit
+        callback = new JdbcBatchUpdateCallback(dc, 100, 200, 0);
+        for (int i = 0; i < 250; i++) {
+            callback.insertInto(table).value("id", "bar" + i).execute();
+        }
+        callback.close(false);
+
+        ds = dc.query().from(table).selectCount().execute();
+        assertTrue(ds.next());
+        assertEquals("Row[values=[450]]", ds.getRow().toString());
+        ds.close();
+
+        dc.executeUpdate(new DropTable(table));
+    }
+
+    public void testBulkInserts() throws Exception {
+        final JdbcDataContext dc = new JdbcDataContext(conn);
+
+        final Schema schema = dc.getDefaultSchema();
+        dc.executeUpdate(new CreateTable(schema, "test_table").withColumn("id").ofType(ColumnType.INTEGER)
+                .withColumn("name").ofType(ColumnType.VARCHAR));
+        final Table table = schema.getTableByName("test_table");
+
+        final JdbcBatchUpdateCallback callback = new JdbcBatchUpdateCallback(dc, 1000, 0, 100);
+        assertTrue(callback.isBulkInsertEnabled());
+        for (int i = 0; i < 2500; i++) {
+            callback.insertInto(table).value("id", i).value("name", (i % 10 == 0 ? null : "foo" + i)).execute();
+        }
+        // a short run of inserts followed by an update, which must see them
+        callback.insertInto(table).value("id", -1).execute();
+        callback.update(table).value("name", "bar").where("id").eq(-1).execute();
+        callback.close(true);
+
+        // 2 bulk inserts of 1000 rows, 1 of 500 rows and 2 regular batches
+        assertEquals(5, callback.getExecutedBatches());
+
+        DataSet ds = dc.query().from(table).selectCount().execute();
+        assertTrue(ds.next());
+        assertEquals("Row[values=[2501]]", ds.getRow().toString());
+        ds.close();
+
+        ds = dc.query().from(table).select("id", "name").where("id").in(-1, 0, 1, 2499).orderBy("id").execute();
+        assertEquals("[[-1, bar], [0, null], [1, foo1], [2499, foo2499]]",
+                Arrays.deepToString(ds.toObjectArrays().toArray()));
+        ds.close();
+
+        dc.executeUpdate(new DropTable(table));
+    }
+
+    public void testFailingBulkInsertOnClose() throws Exception {
+        final JdbcDataContext dc = new JdbcDataContext(conn);
+
+        final Schema schema = dc.getDefaultSchema();
+        dc.executeUpdate(new CreateTable(schema, "test_table").withColumn("id").ofType(ColumnType.INTEGER)
+                .asPrimaryKey());
+        final Table table = schema.getTableByName("test_table");
+
+        final JdbcBatchUpdateCallback callback = new JdbcBatchUpdateCallback(dc, 1000, 0, 100);
+        for (int i = 0; i < 200; i++) {
+            // the last row is a duplicate key
+            callback.insertInto(table).value("id", Math.min(i, 198)).execute();
+        }
+        try {
+            callback.close(true);
+            fail("Exception expected");
+        } catch (MetaModelException e) {
+            // expected
+        }
+
+        // the buffered inserts were rolled back and the connection released
+        assertTrue(conn.getAutoCommit());
+        DataSet ds = dc.query().from(table).selectCount().execute();
+        assertTrue(ds.next());
+        assertEquals("Row[values=[0]]", ds.getRow().toString());
+        ds.close();
+
+        dc.executeUpdate(new DropTable(table));
+    }
+
+    /**
+     * Timed comparison of reading resultset values with the readers that
+     * {@link JdbcDataSet} resolves per column, and with the query rewriter for
+     * every value (which is used when a query rewriter overrides
+     * {@link IQueryRewriter#getResultSetValue(ResultSet, int, Column)}). This
+     * is not a rigorous benchmark (JMH is not a part of this build), so the
+     * timings are only printed, and only the results are asserted.
+     */
+    public void testResultSetReadersTiming() throws Exception {
+        final JdbcDataContext dc = new JdbcDataContext(conn);
+
+        final Schema schema = dc.getDefaultSchema();
+        dc.executeUpdate(new CreateTable(schema, "test_table").withColumn("id").ofType(ColumnType.INTEGER)
+                .withColumn("name").ofType(ColumnType.VARCHAR).withColumn("created").ofType(ColumnType.TIMESTAMP)
+                .withColumn("active").ofType(ColumnType.BOOLEAN));
+        final Table table = schema.getTableByName("test_table");
+
+        dc.executeUpdate(new UpdateScript() {
+            @Override
+            public void run(UpdateCallback callback) {
+                for (int i = 0; i < 20000; i++) {
+                    callback.insertInto(table).value("id", i).value("name", (i % 10 == 0 ? null : "foo" + i))
+                            .value("created", new java.sql.Timestamp(1000000000000L + i)).value("active", i % 2 == 0)
+                            .execute();
+                }
+            }
+        });
+
+        final H2QueryRewriter defaultRewriter = new H2QueryRewriter(dc);
+        final H2QueryRewriter overridingRewriter = new H2QueryRewriter(dc) {
+            @Override
+            public Object getResultSetValue(ResultSet resultSet, int columnIndex, Column column)
+                    throws SQLException {
+                return super.getResultSetValue(resultSet, columnIndex, column);
+            }
+        };
+
+        List<Object[]> resolvedRows = null;
+        List<Object[]> rewriterRows = null;
+        long resolvedNanos = Long.MAX_VALUE;
+        long rewriterNanos = Long.MAX_VALUE;
+        // the best of a number of rounds is reported, to leave out the warm-up
+        for (int round = 0; round < 10; round++) {
+            dc.setQueryRewriter(defaultRewriter);
+            long start = System.nanoTime();
+            DataSet ds = dc.query().from(table).select("id", "name", "created", "active").execute();
+            resolvedRows = ds.toObjectArrays();
+            ds.close();
+            resolvedNanos = Math.min(resolvedNanos, System.nanoTime() - start);
+
+            dc.setQueryRewriter(overridingRewriter);
+            start = System.nanoTime();
+            ds = dc.query().from(table).select("id", "name", "created", "active").execute();
+            rewriterRows = ds.toObjectArrays();
+            ds.close();
+            rewriterNanos = Math.min(rewriterNanos, System.nanoTime() - start);
+        }
+
+        assertEquals(20000, resolvedRows.size());
+        assertEquals(10, resolvedRows.get(10)[0]);
+        assertNull(resolvedRows.get(10)[1]);
+        assertEquals(new java.sql.Timestamp(1000000000010L), resolvedRows.get(10)[2]);
+        assertEquals(true, resolvedRows.get(10)[3]);
+        for (int i = 0; i < resolvedRows.size(); i++) {
+            assertTrue(Arrays.equals(rewriterRows.get(i), resolvedRows.get(i)));
+        }
+        System.out.println("Reading 20000 rows: " + TimeUnit.NANOSECONDS.toMicros(resolvedNanos)
+                + " us with resolved readers, " + TimeUnit.NANOSECONDS.toMicros(rewriterNanos)
+                + " us with the query rewriter");
+
+        dc.executeUpdate(new DropTable(table));
+    }
+
     public void testScenario() throws Exception {
         int rowsAffected = conn.createStatement().executeUpdate(
                 "CREATE TABLE test_table (id INTEGER AUTO_INCREMENT, name VARCHAR(255), age INTEGER)");
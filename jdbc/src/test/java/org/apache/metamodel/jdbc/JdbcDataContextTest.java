@@ -40,10 +40,12 @@ import org.apache.metamodel.DataContext;
 import org.apache.metamodel.MetaModelException;
 import org.apache.metamodel.QueryPostprocessDataContext;
 import org.apache.metamodel.data.DataSet;
+import org.apache.metamodel.data.WrappingDataSet;
 import org.apache.metamodel.data.DataSetTableModel;
 import org.apache.metamodel.data.EmptyDataSet;
 import org.apache.metamodel.data.Row;
 import org.apache.metamodel.jdbc.dialects.DefaultQueryRewriter;
+import org.apache.metamodel.jdbc.dialects.HsqldbQueryRewriter;
 import org.apache.metamodel.jdbc.dialects.IQueryRewriter;
 import org.apache.metamodel.query.CompiledQuery;
 import org.apache.metamodel.query.FilterItem;
@@ -225,6 +227,119 @@ public class JdbcDataContextTest extends JdbcTestCase {
         assertEquals(0, jdbcCompiledQuery.getIdleLeases());
     }
 
+    public void testExecuteQueryWithStatementCache() throws Exception {
+        Connection connection = getTestDbConnection();
+        JdbcDataContext dataContext = new JdbcDataContext(connection,
+                new TableType[] { TableType.TABLE, TableType.VIEW }, null);
+        dataContext.setStatementCacheSize(2);
+        final JdbcStatementCache statementCache = dataContext.getStatementCache();
+        assertEquals(0, statementCache.size());
+
+        DataSet ds = dataContext.query().from("CUSTOMERS").select("CUSTOMERNAME").where("CUSTOMERNUMBER").eq(103)
+                .execute();
+        assertEquals("[[Atelier graphique]]", Arrays.deepToString(ds.toObjectArrays().toArray()));
+        ds.close();
+
+        // same shape, different literal
+        ds = dataContext.query().from("CUSTOMERS").select("CUSTOMERNAME").where("CUSTOMERNUMBER").eq(112).execute();
+        assertEquals("[[Signal Gift Stores]]", Arrays.deepToString(ds.toObjectArrays().toArray()));
+        ds.close();
+        assertEquals(1, statementCache.size());
+
+        ds = dataContext.query().from("CUSTOMERS").select("CUSTOMERNUMBER").where("CUSTOMERNAME")
+                .like("Atelier%").and("COUNTRY").eq("France").execute();
+        assertEquals("[[103]]", Arrays.deepToString(ds.toObjectArrays().toArray()));
+        ds.close();
+        assertEquals(2, statementCache.size());
+
+        // the least recently used statement is evicted
+        ds = dataContext.query().from("CUSTOMERS").selectCount().where("COUNTRY").eq("Norway").execute();
+        assertEquals("[[3]]", Arrays.deepToString(ds.toObjectArrays().toArray()));
+        ds.close();
+        assertEquals(2, statementCache.size());
+
+        dataContext.setStatementCacheSize(0);
+        assertNull(dataContext.getStatementCache());
+        assertEquals(0, statementCache.size());
+    }
+
+    public void testStatementCacheEvictionWhileInUse() throws Exception {
+        Connection connection = getTestDbConnection();
+        JdbcDataContext dataContext = new JdbcDataContext(connection,
+                new TableType[] { TableType.TABLE, TableType.VIEW }, null);
+        dataContext.setStatementCacheSize(1);
+        final JdbcStatementCache statementCache = dataContext.getStatementCache();
+
+        final DataSet ds1 = dataContext.query().from("CUSTOMERS").select("CUSTOMERNAME").where("CUSTOMERNUMBER")
+                .eq(103).execute();
+        final JdbcCompiledQuery compiledQuery = ((JdbcDataSet) ((WrappingDataSet) ds1).getWrappedDataSet())
+                .getCompiledQuery();
+
+        // evicts the statement of ds1, which is still in use
+        DataSet ds2 = dataContext.query().from("CUSTOMERS").selectCount().where("COUNTRY").eq("Norway").execute();
+        assertEquals("[[3]]", Arrays.deepToString(ds2.toObjectArrays().toArray()));
+        ds2.close();
+        assertEquals(1, statementCache.size());
+        assertFalse(compiledQuery.isClosed());
+
+        assertEquals("[[Atelier graphique]]", Arrays.deepToString(ds1.toObjectArrays().toArray()));
+        ds1.close();
+        assertTrue(compiledQuery.isClosed());
+
+        // closing twice does not release the statement twice
+        ds1.close();
+
+        // a cached statement is reused, and only closed when evicted after use
+        ds2 = dataContext.query().from("CUSTOMERS").selectCount().where("COUNTRY").eq("France").execute();
+        final JdbcCompiledQuery compiledQuery2 = ((JdbcDataSet) ((WrappingDataSet) ds2).getWrappedDataSet())
+                .getCompiledQuery();
+        ds2.close();
+        assertFalse(compiledQuery2.isClosed());
+        statementCache.clear();
+        assertTrue(compiledQuery2.isClosed());
+    }
+
+    public void testQueryRewriterReadsResultSetValues() throws Exception {
+        Connection connection = getTestDbConnection();
+        final JdbcDataContext dataContext = new JdbcDataContext(connection,
+                new TableType[] { TableType.TABLE, TableType.VIEW }, null);
+        dataContext.setQueryRewriter(new HsqldbQueryRewriter(dataContext) {
+            @Override
+            public Object getResultSetValue(ResultSet resultSet, int columnIndex, Column column)
+                    throws SQLException {
+                final Object value = super.getResultSetValue(resultSet, columnIndex, column);
+                if (value instanceof String) {
+                    return ((String) value).toUpperCase();
+                }
+                return value;
+            }
+        });
+
+        DataSet ds = dataContext.query().from("CUSTOMERS").select("CUSTOMERNUMBER", "CUSTOMERNAME", "ADDRESSLINE2")
+                .where("CUSTOMERNUMBER").eq(103).execute();
+        assertEquals("[[103, ATELIER GRAPHIQUE, null]]", Arrays.deepToString(ds.toObjectArrays().toArray()));
+        ds.close();
+    }
+
+    public void testAdaptiveFetchSize() throws Exception {
+        Connection connection = getTestDbConnection();
+        JdbcDataContext dataContext = new JdbcDataContext(connection,
+                new TableType[] { TableType.TABLE, TableType.VIEW }, null);
+        dataContext.setFetchSizeMemory(100000).setFetchSizeAdaptive(true);
+
+        final Column column = dataContext.getDefaultSchema().getTableByName("CUSTOMERS")
+                .getColumnByName("CUSTOMERNAME");
+        final FetchSizeCalculator fetchSizeCalculator = dataContext.getFetchSizeCalculator();
+        final int estimatedFetchSize = fetchSizeCalculator.getFetchSize(column);
+
+        DataSet ds = dataContext.query().from(column.getTable()).select(column).execute();
+        assertEquals(122, ds.toObjectArrays().size());
+        ds.close();
+
+        // customer names are much shorter than the column size
+        assertTrue(fetchSizeCalculator.getFetchSize(column) > estimatedFetchSize);
+    }
+
     public void testSelectScalarFunction() throws Exception {
         final Connection connection = getTestDbConnection();
         final JdbcDataContext dataContext = new JdbcDataContext(connection);
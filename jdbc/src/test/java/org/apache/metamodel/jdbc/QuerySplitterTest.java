@@ -19,9 +19,12 @@
 package org.apache.metamodel.jdbc;
 
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.metamodel.DataContext;
 import org.apache.metamodel.data.DataSet;
 import org.apache.metamodel.query.FromItem;
@@ -201,6 +204,96 @@ public class QuerySplitterTest extends JdbcTestCase {
 		assertEquals(2806, count);
 	}
 
+	public void testExecuteQueriesInParallel() throws Exception {
+		final BasicDataSource ds = new BasicDataSource();
+		ds.setDriverClassName("org.hsqldb.jdbcDriver");
+		ds.setUrl("jdbc:hsqldb:res:metamodel");
+		ds.setMaxActive(4);
+		ds.setDefaultReadOnly(true);
+
+		try {
+			DataContext dc = new JdbcDataContext(ds);
+			Schema schema = dc.getDefaultSchema();
+			Table employeesTable = schema.getTableByName("EMPLOYEES");
+			Table customersTable = schema.getTableByName("CUSTOMERS");
+			Query q = new Query().from(employeesTable, "e").from(customersTable, "c");
+			q.select(employeesTable.getColumns()[0], customersTable.getColumns()[0]);
+
+			QuerySplitter qs = new QuerySplitter(dc, q).setMaxRows(300);
+			List<Query> splitQueries = qs.splitQuery();
+			assertTrue(splitQueries.size() > 3);
+
+			List<String> sequentialRows = toSortedStrings(qs.executeQueries(splitQueries));
+			assertEquals(2806, sequentialRows.size());
+
+			// partitions are consumed as they become available, so only the
+			// set of rows is comparable with sequential execution
+			DataSet data = qs.setParallelism(3).executeQueries(splitQueries);
+			assertEquals(ParallelSplitQueriesDataSet.class, data.getClass());
+			assertEquals(sequentialRows, toSortedStrings(data));
+
+			// closing early releases the connections of all partitions
+			data = qs.executeQueries(splitQueries);
+			assertTrue(data.next());
+			data.close();
+			for (int i = 0; i < 100 && ds.getNumActive() > 0; i++) {
+				Thread.sleep(50);
+			}
+			assertEquals(0, ds.getNumActive());
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testErrorInParallelQuery() throws Exception {
+		final BasicDataSource ds = new BasicDataSource();
+		ds.setDriverClassName("org.hsqldb.jdbcDriver");
+		ds.setUrl("jdbc:hsqldb:res:metamodel");
+		ds.setDefaultReadOnly(true);
+
+		try {
+			DataContext dc = new JdbcDataContext(ds);
+			Table employeesTable = dc.getDefaultSchema().getTableByName("EMPLOYEES");
+			Query q = new Query().from(employeesTable).select(employeesTable.getColumns()[0]);
+			final List<Query> splitQueries = Arrays.asList(q, q.clone(), q.clone());
+
+			// an error in one of the split queries is reported to the
+			// consumer, instead of leaving it waiting for rows
+			DataContext failingDc = new JdbcDataContext(ds) {
+				@Override
+				public DataSet executeQuery(Query query) {
+					if (query == splitQueries.get(1)) {
+						throw new AssertionError("foobar!");
+					}
+					return super.executeQuery(query);
+				}
+			};
+			DataSet data = new ParallelSplitQueriesDataSet(failingDc, splitQueries, 2, true);
+			try {
+				while (data.next()) {
+					// consume until the error is reported
+				}
+				fail("Error expected");
+			} catch (AssertionError e) {
+				assertEquals("foobar!", e.getMessage());
+			} finally {
+				data.close();
+			}
+		} finally {
+			ds.close();
+		}
+	}
+
+	private List<String> toSortedStrings(DataSet data) {
+		List<String> result = new ArrayList<String>();
+		while (data.next()) {
+			result.add(data.getRow().toString());
+		}
+		data.close();
+		Collections.sort(result);
+		return result;
+	}
+
 	/**
 	 * Utility method for asserting that a query and it's splitted queries have
 	 * the same total count
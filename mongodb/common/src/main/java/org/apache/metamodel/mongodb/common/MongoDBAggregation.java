@@ -0,0 +1,364 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.mongodb.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.metamodel.data.DataSetHeader;
+import org.apache.metamodel.data.DefaultRow;
+import org.apache.metamodel.data.Row;
+import org.apache.metamodel.query.AggregateFunction;
+import org.apache.metamodel.query.FilterItem;
+import org.apache.metamodel.query.FromItem;
+import org.apache.metamodel.query.FunctionType;
+import org.apache.metamodel.query.GroupByItem;
+import org.apache.metamodel.query.LogicalOperator;
+import org.apache.metamodel.query.OperatorType;
+import org.apache.metamodel.query.OrderByItem;
+import org.apache.metamodel.query.Query;
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.schema.Column;
+import org.apache.metamodel.schema.Table;
+import org.apache.metamodel.util.CollectionUtils;
+
+/**
+ * Translation of a simple aggregation query into the stages of a MongoDB
+ * aggregation pipeline.
+ * 
+ * Only single table queries which group by plain columns and select
+ * COUNT/SUM/AVG/MIN/MAX of plain columns (or COUNT(*)) are translated, with
+ * an optional ORDER BY on grouped columns or aggregates. Queries with a HAVING
+ * clause, DISTINCT or other functions are not translated.
+ * 
+ * The stages are built as (nested) maps, so that they can be converted into
+ * the document type of the driver in use. The $match stage is not a part of
+ * this translation, since it is the data context that knows how to express the
+ * WHERE clause as a MongoDB query (see {@link #isFilterSupported(FilterItem)}).
+ */
+public final class MongoDBAggregation {
+
+    private static final List<OperatorType> SUPPORTED_OPERATORS = Arrays.asList(OperatorType.EQUALS_TO,
+            OperatorType.DIFFERENT_FROM, OperatorType.LESS_THAN, OperatorType.LESS_THAN_OR_EQUAL,
+            OperatorType.GREATER_THAN, OperatorType.GREATER_THAN_OR_EQUAL, OperatorType.LIKE, OperatorType.IN);
+
+    private final Query _query;
+    private final List<Column> _groupByColumns;
+    private final String[] _fieldPaths;
+    private final Map<String, Object> _sort;
+
+    private MongoDBAggregation(Query query, List<Column> groupByColumns, String[] fieldPaths,
+            Map<String, Object> sort) {
+        _query = query;
+        _groupByColumns = groupByColumns;
+        _fieldPaths = fieldPaths;
+        _sort = sort;
+    }
+
+    /**
+     * Creates an aggregation pipeline translation of a query.
+     * 
+     * @param query
+     * @return the translation, or null if the query is not a (supported)
+     *         aggregation query.
+     */
+    public static MongoDBAggregation create(Query query) {
+        if (query.getSelectClause().isDistinct() || !query.getHavingClause().isEmpty()) {
+            return null;
+        }
+
+        final List<FromItem> fromItems = query.getFromClause().getItems();
+        if (fromItems.size() != 1 || fromItems.get(0).getTable() == null) {
+            return null;
+        }
+        final Table table = fromItems.get(0).getTable();
+
+        final List<Column> groupByColumns = new ArrayList<Column>();
+        for (GroupByItem groupByItem : query.getGroupByClause().getItems()) {
+            final SelectItem selectItem = groupByItem.getSelectItem();
+            if (!isColumn(selectItem, table)) {
+                return null;
+            }
+            groupByColumns.add(selectItem.getColumn());
+        }
+
+        final List<SelectItem> selectItems = query.getSelectClause().getItems();
+        if (groupByColumns.isEmpty() && selectItems.size() == 1 && SelectItem.isCountAllItem(selectItems.get(0))) {
+            // plain counts are cheaper to execute as 'count' commands
+            return null;
+        }
+
+        boolean aggregated = !groupByColumns.isEmpty();
+        final String[] fieldPaths = new String[selectItems.size()];
+        for (int i = 0; i < fieldPaths.length; i++) {
+            final SelectItem selectItem = selectItems.get(i);
+            if (isAggregate(selectItem, table)) {
+                aggregated = true;
+            }
+            fieldPaths[i] = getFieldPath(selectItem, i, table, groupByColumns);
+            if (fieldPaths[i] == null) {
+                return null;
+            }
+        }
+        if (!aggregated) {
+            return null;
+        }
+
+        for (FilterItem whereItem : query.getWhereClause().getItems()) {
+            if (!isFilterSupported(whereItem)) {
+                return null;
+            }
+        }
+
+        final Map<String, Object> sort = new LinkedHashMap<String, Object>();
+        for (OrderByItem orderByItem : query.getOrderByClause().getItems()) {
+            final SelectItem selectItem = orderByItem.getSelectItem();
+            String fieldPath = null;
+            if (isColumn(selectItem, table)) {
+                fieldPath = getFieldPath(selectItem, -1, table, groupByColumns);
+            } else {
+                for (int i = 0; i < selectItems.size(); i++) {
+                    if (selectItems.get(i).equalsIgnoreAlias(selectItem)) {
+                        fieldPath = fieldPaths[i];
+                        break;
+                    }
+                }
+            }
+            if (fieldPath == null) {
+                return null;
+            }
+            sort.put(fieldPath, orderByItem.isAscending() ? 1 : -1);
+        }
+
+        return new MongoDBAggregation(query, groupByColumns, fieldPaths, sort);
+    }
+
+    /**
+     * Determines if a filter item can be expressed as a MongoDB query, ie. if
+     * it compares a plain column to a constant operand using a supported
+     * operator. Compound items are only supported as OR conditions.
+     * 
+     * @param item
+     * @return
+     */
+    public static boolean isFilterSupported(FilterItem item) {
+        if (item.isCompoundFilter()) {
+            if (item.getLogicalOperator() != LogicalOperator.OR) {
+                return false;
+            }
+            for (FilterItem childItem : item.getChildItems()) {
+                if (!isFilterSupported(childItem)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        final SelectItem selectItem = item.getSelectItem();
+        if (item.getExpression() != null || selectItem == null || selectItem.hasFunction()
+                || selectItem.getColumn() == null || selectItem.getColumn().getName().indexOf('[') != -1) {
+            return false;
+        }
+        final Object operand = item.getOperand();
+        if (operand instanceof SelectItem) {
+            return false;
+        }
+        if (OperatorType.LIKE.equals(item.getOperator()) && operand == null) {
+            return false;
+        }
+        return SUPPORTED_OPERATORS.contains(item.getOperator());
+    }
+
+    private static boolean isColumn(SelectItem selectItem, Table table) {
+        return selectItem != null && !selectItem.hasFunction() && isFieldColumn(selectItem.getColumn(), table);
+    }
+
+    /**
+     * Determines if a column refers to a document field which can be
+     * referenced in the pipeline. Array-index columns (eg. "addresses[0]") can
+     * not, so queries using them are evaluated on the client side.
+     */
+    private static boolean isFieldColumn(Column column, Table table) {
+        return column != null && table.equals(column.getTable()) && column.getName().indexOf('[') == -1;
+    }
+
+    private static boolean isAggregate(SelectItem selectItem, Table table) {
+        final AggregateFunction function = selectItem.getAggregateFunction();
+        if (function == null || selectItem.getScalarFunction() != null) {
+            return false;
+        }
+        final Object[] functionParameters = selectItem.getFunctionParameters();
+        if (functionParameters != null && functionParameters.length > 0) {
+            return false;
+        }
+        if (SelectItem.isCountAllItem(selectItem)) {
+            return true;
+        }
+        if (!isFieldColumn(selectItem.getColumn(), table)) {
+            return false;
+        }
+        return FunctionType.COUNT.equals(function) || FunctionType.SUM.equals(function)
+                || FunctionType.AVG.equals(function) || FunctionType.MIN.equals(function)
+                || FunctionType.MAX.equals(function);
+    }
+
+    /**
+     * Gets the path of the field holding the value of a select item in the
+     * resulting documents. Grouped columns are kept in the "_id" field of the
+     * $group stage, aggregates in their own fields.
+     */
+    private static String getFieldPath(SelectItem selectItem, int index, Table table, List<Column> groupByColumns) {
+        if (isColumn(selectItem, table)) {
+            final int groupByIndex = groupByColumns.indexOf(selectItem.getColumn());
+            if (groupByIndex == -1) {
+                return null;
+            }
+            return "_id.k" + groupByIndex;
+        }
+        if (index != -1 && isAggregate(selectItem, table)) {
+            return "a" + index;
+        }
+        return null;
+    }
+
+    /**
+     * Creates the pipeline stages following the $match stage: $group and
+     * optionally $sort, $skip and $limit.
+     * 
+     * @return
+     */
+    public List<Map<String, Object>> createStages() {
+        final List<Map<String, Object>> stages = new ArrayList<Map<String, Object>>();
+
+        final Map<String, Object> group = new LinkedHashMap<String, Object>();
+        if (_groupByColumns.isEmpty()) {
+            group.put("_id", null);
+        } else {
+            final Map<String, Object> id = new LinkedHashMap<String, Object>();
+            for (int i = 0; i < _groupByColumns.size(); i++) {
+                // missing fields and explicit nulls should form a single group
+                final String fieldReference = "$" + _groupByColumns.get(i).getName();
+                id.put("k" + i, stage("$ifNull", Arrays.<Object> asList(fieldReference, null)));
+            }
+            group.put("_id", id);
+        }
+
+        final List<SelectItem> selectItems = _query.getSelectClause().getItems();
+        for (int i = 0; i < selectItems.size(); i++) {
+            final SelectItem selectItem = selectItems.get(i);
+            if (selectItem.getAggregateFunction() != null) {
+                group.put(_fieldPaths[i], createAccumulator(selectItem));
+            }
+        }
+        stages.add(stage("$group", group));
+
+        if (!_sort.isEmpty()) {
+            stages.add(stage("$sort", _sort));
+        }
+
+        final Integer firstRow = _query.getFirstRow();
+        if (firstRow != null && firstRow > 1) {
+            stages.add(stage("$skip", firstRow - 1));
+        }
+        final Integer maxRows = _query.getMaxRows();
+        if (maxRows != null && maxRows > 0) {
+            stages.add(stage("$limit", maxRows));
+        }
+
+        return stages;
+    }
+
+    private static Object createAccumulator(SelectItem selectItem) {
+        final AggregateFunction function = selectItem.getAggregateFunction();
+        if (SelectItem.isCountAllItem(selectItem)) {
+            return stage("$sum", 1);
+        }
+
+        final String fieldReference = "$" + selectItem.getColumn().getName();
+        if (FunctionType.COUNT.equals(function)) {
+            // count the values which are not null or missing
+            final Map<String, Object> notNull = stage("$gt", Arrays.<Object> asList(fieldReference, null));
+            return stage("$sum", stage("$cond", Arrays.<Object> asList(notNull, 1, 0)));
+        } else if (FunctionType.SUM.equals(function)) {
+            return stage("$sum", fieldReference);
+        } else if (FunctionType.AVG.equals(function)) {
+            return stage("$avg", fieldReference);
+        } else if (FunctionType.MIN.equals(function)) {
+            return stage("$min", fieldReference);
+        } else {
+            return stage("$max", fieldReference);
+        }
+    }
+
+    private static Map<String, Object> stage(String key, Object value) {
+        final Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put(key, value);
+        return map;
+    }
+
+    /**
+     * Converts a document produced by the pipeline into a MetaModel
+     * {@link Row}. Aggregate values are converted into the types that
+     * MetaModel's own aggregation would produce.
+     * 
+     * @param document
+     * @param header
+     *            a header of the select items of the query
+     * @return
+     */
+    public Row toRow(Map<?, ?> document, DataSetHeader header) {
+        final Object[] values = new Object[header.size()];
+        for (int i = 0; i < values.length; i++) {
+            final SelectItem selectItem = header.getSelectItem(i);
+            final Object value = CollectionUtils.find(document, _fieldPaths[i]);
+            final AggregateFunction function = selectItem.getAggregateFunction();
+            if (FunctionType.COUNT.equals(function)) {
+                values[i] = (value == null ? 0L : ((Number) value).longValue());
+            } else if (FunctionType.SUM.equals(function) || FunctionType.AVG.equals(function)) {
+                values[i] = (value == null ? 0d : ((Number) value).doubleValue());
+            } else {
+                values[i] = MongoDBUtils.toValue(selectItem.getColumn(), value);
+            }
+        }
+        return new DefaultRow(header, values);
+    }
+
+    /**
+     * Creates the result of the query for when the pipeline does not produce
+     * any documents. Queries without a GROUP BY clause always yield a single
+     * row (unless it is skipped), eg. a count of zero.
+     * 
+     * @param header
+     *            a header of the select items of the query
+     * @return
+     */
+    public List<Row> createEmptyResultRows(DataSetHeader header) {
+        final Integer firstRow = _query.getFirstRow();
+        if (!_groupByColumns.isEmpty() || (firstRow != null && firstRow > 1)) {
+            return new ArrayList<Row>(0);
+        }
+        final List<Row> rows = new ArrayList<Row>(1);
+        rows.add(toRow(Collections.emptyMap(), header));
+        return rows;
+    }
+}
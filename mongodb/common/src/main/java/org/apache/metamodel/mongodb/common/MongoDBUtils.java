@@ -18,14 +18,18 @@
  */
 package org.apache.metamodel.mongodb.common;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.metamodel.data.DataSetHeader;
 import org.apache.metamodel.data.DefaultRow;
 import org.apache.metamodel.data.Row;
+import org.apache.metamodel.query.OrderByItem;
 import org.apache.metamodel.query.SelectItem;
 import org.apache.metamodel.schema.Column;
+import org.apache.metamodel.schema.Table;
 import org.apache.metamodel.util.CollectionUtils;
 
 import com.mongodb.DBObject;
@@ -79,7 +83,7 @@ public class MongoDBUtils {
         return new DefaultRow(header, values);
     }
 
-    private static Object toValue(Column column, Object value) {
+    static Object toValue(Column column, Object value) {
         if (value instanceof List) {
             return value;
         }
@@ -90,4 +94,71 @@ public class MongoDBUtils {
         return value;
     }
 
+    /**
+     * Gets the fields to include in the projection of a MongoDB query, in order
+     * to retrieve only the values of a set of columns. Array indexes (eg.
+     * "addresses[0]") are stripped, and nested fields (eg. "address.city") are
+     * left out if their parent field is included as well, since MongoDB does
+     * not allow overlapping paths in a projection.
+     * 
+     * @param columns
+     *            the columns to retrieve
+     * @return the fields to include, or an empty list if all fields should be
+     *         retrieved.
+     */
+    public static List<String> getProjectionFields(Column[] columns) {
+        final List<String> fields = new ArrayList<String>(columns.length);
+        for (Column column : columns) {
+            String field = column.getName();
+            final int indexOfBracket = field.indexOf('[');
+            if (indexOfBracket != -1) {
+                field = field.substring(0, indexOfBracket);
+            }
+            if (!field.isEmpty() && !fields.contains(field)) {
+                fields.add(field);
+            }
+        }
+
+        final List<String> result = new ArrayList<String>(fields.size());
+        for (String field : fields) {
+            boolean parentIncluded = false;
+            for (String otherField : fields) {
+                if (field.startsWith(otherField + ".")) {
+                    parentIncluded = true;
+                    break;
+                }
+            }
+            if (!parentIncluded) {
+                result.add(field);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the sort specification of a MongoDB query, corresponding to the
+     * ORDER BY items of a query. MongoDB orders null and missing values first,
+     * just like MetaModel does.
+     * 
+     * @param orderByItems
+     * @param table
+     *            the table being queried
+     * @return the field names mapped to 1 (ascending) or -1 (descending), or
+     *         null if an item cannot be sorted by in MongoDB, ie. if it is not a
+     *         plain column of the table.
+     */
+    public static Map<String, Object> createSort(List<OrderByItem> orderByItems, Table table) {
+        final Map<String, Object> sort = new LinkedHashMap<String, Object>();
+        for (OrderByItem orderByItem : orderByItems) {
+            final SelectItem selectItem = orderByItem.getSelectItem();
+            final Column column = selectItem.getColumn();
+            if (selectItem.hasFunction() || column == null || !table.equals(column.getTable())
+                    || column.getName().indexOf('[') != -1) {
+                return null;
+            }
+            sort.put(column.getName(), orderByItem.isAscending() ? 1 : -1);
+        }
+        return sort;
+    }
+
 }
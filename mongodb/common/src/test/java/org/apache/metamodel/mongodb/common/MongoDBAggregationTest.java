@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.mongodb.common;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.metamodel.data.DataSetHeader;
+import org.apache.metamodel.data.SimpleDataSetHeader;
+import org.apache.metamodel.query.FilterItem;
+import org.apache.metamodel.query.FunctionType;
+import org.apache.metamodel.query.LogicalOperator;
+import org.apache.metamodel.query.OperatorType;
+import org.apache.metamodel.query.OrderByItem;
+import org.apache.metamodel.query.OrderByItem.Direction;
+import org.apache.metamodel.query.Query;
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.schema.ColumnType;
+import org.apache.metamodel.schema.MutableColumn;
+import org.apache.metamodel.schema.MutableTable;
+
+public class MongoDBAggregationTest extends TestCase {
+
+    private final MutableTable table = new MutableTable("orders");
+    private final MutableColumn country = new MutableColumn("country", ColumnType.VARCHAR, table, 0, true);
+    private final MutableColumn amount = new MutableColumn("amount", ColumnType.INTEGER, table, 1, true);
+    private final MutableColumn items = new MutableColumn("items[0]", ColumnType.VARCHAR, table, 2, true);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        table.addColumn(country).addColumn(amount).addColumn(items);
+    }
+
+    public void testCreateStages() throws Exception {
+        final SelectItem sumItem = new SelectItem(FunctionType.SUM, amount);
+        final Query query = new Query().from(table).select(country).selectCount().select(sumItem)
+                .groupBy(country).orderBy(new OrderByItem(sumItem, Direction.DESC)).orderBy(country);
+        query.setFirstRow(3).setMaxRows(10);
+
+        final MongoDBAggregation aggregation = MongoDBAggregation.create(query);
+        assertNotNull(aggregation);
+
+        final List<Map<String, Object>> stages = aggregation.createStages();
+        assertEquals(4, stages.size());
+        assertEquals("{$group={_id={k0={$ifNull=[$country, null]}}, a1={$sum=1}, a2={$sum=$amount}}}",
+                stages.get(0).toString());
+        assertEquals("{$sort={a2=-1, _id.k0=1}}", stages.get(1).toString());
+        assertEquals("{$skip=2}", stages.get(2).toString());
+        assertEquals("{$limit=10}", stages.get(3).toString());
+    }
+
+    public void testCreateStagesWithoutGroupBy() throws Exception {
+        final Query query = new Query().from(table).select(FunctionType.COUNT, amount)
+                .select(FunctionType.AVG, amount).select(FunctionType.MIN, amount).select(FunctionType.MAX, amount)
+                .where(country, OperatorType.EQUALS_TO, "DK");
+
+        final MongoDBAggregation aggregation = MongoDBAggregation.create(query);
+        assertNotNull(aggregation);
+
+        final List<Map<String, Object>> stages = aggregation.createStages();
+        assertEquals(1, stages.size());
+        assertEquals("{$group={_id=null, a0={$sum={$cond=[{$gt=[$amount, null]}, 1, 0]}}, a1={$avg=$amount}, "
+                + "a2={$min=$amount}, a3={$max=$amount}}}", stages.get(0).toString());
+    }
+
+    public void testCreateUnsupported() throws Exception {
+        // no aggregation
+        assertNull(MongoDBAggregation.create(new Query().from(table).select(country)));
+
+        // plain counts are executed as 'count' commands
+        assertNull(MongoDBAggregation.create(new Query().from(table).selectCount()));
+
+        // selected column that is not grouped by
+        assertNull(MongoDBAggregation.create(new Query().from(table).select(country).selectCount()));
+
+        // array index columns
+        assertNull(MongoDBAggregation.create(new Query().from(table).select(items).selectCount().groupBy(items)));
+
+        // HAVING and DISTINCT
+        final Query havingQuery = new Query().from(table).select(country).selectCount().groupBy(country);
+        havingQuery.having(FunctionType.COUNT, country, OperatorType.GREATER_THAN, 1);
+        assertNull(MongoDBAggregation.create(havingQuery));
+
+        final Query distinctQuery = new Query().from(table).select(country).selectCount().groupBy(country);
+        distinctQuery.selectDistinct();
+        assertNull(MongoDBAggregation.create(distinctQuery));
+
+        // unsupported filter
+        final FilterItem andItem = new FilterItem(LogicalOperator.AND, new FilterItem(new SelectItem(country),
+                OperatorType.EQUALS_TO, "DK"), new FilterItem(new SelectItem(amount), OperatorType.GREATER_THAN, 1));
+        assertNull(MongoDBAggregation.create(new Query().from(table).selectCount().select(FunctionType.SUM, amount)
+                .where(andItem)));
+    }
+
+    public void testToRow() throws Exception {
+        final Query query = new Query().from(table).select(country).selectCount().select(FunctionType.SUM, amount)
+                .select(FunctionType.MAX, amount).groupBy(country);
+        final MongoDBAggregation aggregation = MongoDBAggregation.create(query);
+        final DataSetHeader header = new SimpleDataSetHeader(query.getSelectClause().getItems());
+
+        final Map<String, Object> id = new LinkedHashMap<String, Object>();
+        id.put("k0", "DK");
+        final Map<String, Object> document = new LinkedHashMap<String, Object>();
+        document.put("_id", id);
+        document.put("a1", 3);
+        document.put("a2", 10);
+        document.put("a3", 7);
+
+        assertEquals("Row[values=[DK, 3, 10.0, 7]]", aggregation.toRow(document, header).toString());
+        final Object[] values = aggregation.toRow(document, header).getValues();
+        assertEquals(Long.class, values[1].getClass());
+        assertEquals(Double.class, values[2].getClass());
+
+        // missing fields (null group key, no values to sum)
+        document.put("_id", new LinkedHashMap<String, Object>());
+        document.remove("a2");
+        document.remove("a3");
+        assertEquals("Row[values=[null, 3, 0.0, null]]", aggregation.toRow(document, header).toString());
+    }
+
+    public void testCreateEmptyResultRows() throws Exception {
+        final Query query = new Query().from(table).selectCount().select(FunctionType.SUM, amount);
+        final DataSetHeader header = new SimpleDataSetHeader(query.getSelectClause().getItems());
+        assertEquals("[Row[values=[0, 0.0]]]", MongoDBAggregation.create(query).createEmptyResultRows(header)
+                .toString());
+
+        query.setFirstRow(2);
+        assertEquals(0, MongoDBAggregation.create(query).createEmptyResultRows(header).size());
+
+        final Query groupedQuery = new Query().from(table).select(country).selectCount().groupBy(country);
+        assertEquals(0, MongoDBAggregation.create(groupedQuery)
+                .createEmptyResultRows(new SimpleDataSetHeader(groupedQuery.getSelectClause().getItems())).size());
+    }
+
+    public void testIsFilterSupported() throws Exception {
+        final Query query = new Query().from(table).select(country).where(country, OperatorType.IN,
+                Arrays.asList("DK", "SE"));
+        assertTrue(MongoDBAggregation.isFilterSupported(query.getWhereClause().getItem(0)));
+
+        query.where(items, OperatorType.EQUALS_TO, "foo");
+        assertFalse(MongoDBAggregation.isFilterSupported(query.getWhereClause().getItem(1)));
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.mongodb.common;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.metamodel.data.SimpleDataSetHeader;
+import org.apache.metamodel.query.FunctionType;
+import org.apache.metamodel.query.OrderByItem;
+import org.apache.metamodel.query.OrderByItem.Direction;
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.schema.Column;
+import org.apache.metamodel.schema.ColumnType;
+import org.apache.metamodel.schema.MutableColumn;
+import org.apache.metamodel.schema.MutableTable;
+
+public class MongoDBUtilsTest extends TestCase {
+
+    public void testGetProjectionFields() throws Exception {
+        final Column[] columns = new Column[] { new MutableColumn("name"), new MutableColumn("address.city"),
+                new MutableColumn("address"), new MutableColumn("items[0]"), new MutableColumn("items[1]"),
+                new MutableColumn("name"), new MutableColumn("tags[0].label") };
+        assertEquals("[name, address, items, tags]", MongoDBUtils.getProjectionFields(columns).toString());
+
+        // nested fields without their parent
+        assertEquals("[address.city, address.zip]",
+                MongoDBUtils.getProjectionFields(
+                        new Column[] { new MutableColumn("address.city"), new MutableColumn("address.zip") })
+                        .toString());
+
+        // a field which merely starts with the name of another field
+        assertEquals("[address, addressee]",
+                MongoDBUtils.getProjectionFields(
+                        new Column[] { new MutableColumn("address"), new MutableColumn("addressee") }).toString());
+
+        assertTrue(MongoDBUtils.getProjectionFields(new Column[0]).isEmpty());
+    }
+
+    public void testCreateSort() throws Exception {
+        final MutableTable table = new MutableTable("persons");
+        final MutableColumn name = new MutableColumn("name", ColumnType.VARCHAR, table, 0, true);
+        final MutableColumn age = new MutableColumn("age", ColumnType.INTEGER, table, 1, true);
+        final MutableColumn items = new MutableColumn("items[0]", ColumnType.VARCHAR, table, 2, true);
+        table.addColumn(name).addColumn(age).addColumn(items);
+
+        final Map<String, Object> sort = MongoDBUtils.createSort(
+                Arrays.asList(new OrderByItem(new SelectItem(age), Direction.DESC), new OrderByItem(new SelectItem(name))),
+                table);
+        assertEquals("{age=-1, name=1}", sort.toString());
+
+        assertTrue(MongoDBUtils.createSort(Arrays.<OrderByItem> asList(), table).isEmpty());
+
+        // functions, array index columns and columns of other tables
+        assertNull(MongoDBUtils.createSort(
+                Arrays.asList(new OrderByItem(new SelectItem(FunctionType.MAX, age))), table));
+        assertNull(MongoDBUtils.createSort(Arrays.asList(new OrderByItem(new SelectItem(items))), table));
+        final MutableTable otherTable = new MutableTable("other");
+        final MutableColumn otherColumn = new MutableColumn("name", ColumnType.VARCHAR, otherTable, 0, true);
+        otherTable.addColumn(otherColumn);
+        assertNull(MongoDBUtils.createSort(Arrays.asList(new OrderByItem(new SelectItem(otherColumn))), table));
+    }
+
+    public void testToRow() throws Exception {
+        final MutableTable table = new MutableTable("persons");
+        final MutableColumn name = new MutableColumn("name", ColumnType.VARCHAR, table, 0, true);
+        final MutableColumn city = new MutableColumn("address.city", ColumnType.VARCHAR, table, 1, true);
+        table.addColumn(name).addColumn(city);
+
+        final Map<String, Object> address = new LinkedHashMap<String, Object>();
+        address.put("city", "Aarhus");
+        final Map<String, Object> document = new LinkedHashMap<String, Object>();
+        document.put("name", "Jane");
+        document.put("address", address);
+
+        final SimpleDataSetHeader header = new SimpleDataSetHeader(new SelectItem[] { new SelectItem(name),
+                new SelectItem(city) });
+        assertEquals("Row[values=[Jane, Aarhus]]", MongoDBUtils.toRow(document, header).toString());
+        assertNull(MongoDBUtils.toRow((Map<?, ?>) null, header));
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.metamodel.mongodb.mongo2;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
@@ -37,6 +38,7 @@ import org.apache.metamodel.data.DataSetHeader;
 import org.apache.metamodel.data.InMemoryDataSet;
 import org.apache.metamodel.data.Row;
 import org.apache.metamodel.data.SimpleDataSetHeader;
+import org.apache.metamodel.mongodb.common.MongoDBAggregation;
 import org.apache.metamodel.mongodb.common.MongoDBUtils;
 import org.apache.metamodel.mongodb.common.MongoDbTableDef;
 import org.apache.metamodel.query.FilterItem;
@@ -57,8 +59,10 @@ import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.mongodb.AggregationOptions;
 import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
@@ -272,12 +276,12 @@ public class MongoDbDataContext extends QueryPostprocessDataContext implements U
         if (fromItems.size() == 1 && fromItems.get(0).getTable() != null
                 && fromItems.get(0).getTable().getSchema() == _schema) {
             final Table table = fromItems.get(0).getTable();
+            final List<FilterItem> whereItems = query.getWhereClause().getItems();
 
-            // if GROUP BY, HAVING and ORDER BY clauses are not specified
-            if (query.getGroupByClause().isEmpty() && query.getHavingClause().isEmpty()
-                    && query.getOrderByClause().isEmpty()) {
-
-                final List<FilterItem> whereItems = query.getWhereClause().getItems();
+            // if GROUP BY and HAVING clauses are not specified, and the ORDER
+            // BY clause (if any) only refers to columns
+            final Map<String, Object> sort = MongoDBUtils.createSort(query.getOrderByClause().getItems(), table);
+            if (query.getGroupByClause().isEmpty() && query.getHavingClause().isEmpty() && sort != null) {
 
                 // if all of the select items are "pure" column selection
                 boolean allSelectItemsAreColumns = true;
@@ -342,44 +346,122 @@ public class MongoDbDataContext extends QueryPostprocessDataContext implements U
                                 table,
                                 selectItemsAsArray,
                                 whereItems,
+                                sort,
                                 firstRow,
                                 maxRows, false);
                         return dataSet;
                     } else {
-                        final DataSet dataSet = materializeMainSchemaTableInternal(table, columns, whereItems, firstRow,
-                                maxRows, false);
+                        final DataSet dataSet = materializeMainSchemaTableInternal(table, columns, whereItems, sort,
+                                firstRow, maxRows, false);
                         return dataSet;
                     }
                 }
             }
+
+            // if it is a simple aggregation query, eg.
+            // "SELECT [columns], [aggregates] FROM [table] WHERE [conditions] GROUP BY [columns]"
+            final MongoDBAggregation aggregation = MongoDBAggregation.create(query);
+            if (aggregation != null) {
+                logger.debug("Query can be expressed as a MongoDB aggregation pipeline, no post processing needed.");
+                return executeAggregationQuery(table, query, aggregation);
+            }
         }
 
         logger.debug("Query will be simplified for MongoDB and post processed.");
         return super.executeQuery(query);
     }
 
+    private DataSet executeAggregationQuery(Table table, Query query, MongoDBAggregation aggregation) {
+        final DBCollection collection = _mongoDb.getCollection(table.getName());
+
+        final List<DBObject> pipeline = new ArrayList<DBObject>();
+        final BasicDBObject match = createMongoDbQuery(table, query.getWhereClause().getItems());
+        if (!match.isEmpty()) {
+            pipeline.add(new BasicDBObject("$match", match));
+        }
+        for (Map<String, Object> stage : aggregation.createStages()) {
+            pipeline.add(toDBObject(stage));
+        }
+
+        logger.info("Executing MongoDB 'aggregate' query: {}", pipeline);
+        final AggregationOptions options = AggregationOptions.builder()
+                .outputMode(AggregationOptions.OutputMode.CURSOR).allowDiskUse(true).build();
+        final DataSetHeader header = new SimpleDataSetHeader(query.getSelectClause().getItems());
+        final List<Row> rows = new ArrayList<Row>();
+        final Cursor cursor = collection.aggregate(pipeline, options);
+        try {
+            while (cursor.hasNext()) {
+                rows.add(aggregation.toRow(cursor.next().toMap(), header));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (rows.isEmpty()) {
+            rows.addAll(aggregation.createEmptyResultRows(header));
+        }
+        return new InMemoryDataSet(header, rows);
+    }
+
+    private static DBObject toDBObject(Map<?, ?> map) {
+        final BasicDBObject dbObject = new BasicDBObject();
+        for (Entry<?, ?> entry : map.entrySet()) {
+            dbObject.put((String) entry.getKey(), toDBObjectValue(entry.getValue()));
+        }
+        return dbObject;
+    }
+
+    private static Object toDBObjectValue(Object value) {
+        if (value instanceof Map) {
+            return toDBObject((Map<?, ?>) value);
+        }
+        if (value instanceof List) {
+            final BasicDBList list = new BasicDBList();
+            for (Object item : (List<?>) value) {
+                list.add(toDBObjectValue(item));
+            }
+            return list;
+        }
+        return value;
+    }
+
     private DataSet materializeMainSchemaTableInternal(Table table, Column[] columns, List<FilterItem> whereItems,
-            int firstRow, int maxRows, boolean queryPostProcessed) {
-        DBCursor cursor = getCursor(table, whereItems, firstRow, maxRows);
+            Map<String, Object> sort, int firstRow, int maxRows, boolean queryPostProcessed) {
+        DBCursor cursor = getCursor(table, columns, whereItems, sort, firstRow, maxRows);
 
         return new MongoDbDataSet(cursor, columns, queryPostProcessed);
     }
 
     private DataSet materializeMainSchemaTableInternal(Table table, SelectItem[] selectItems,
-            List<FilterItem> whereItems, int firstRow, int maxRows, boolean queryPostProcessed) {
-        DBCursor cursor = getCursor(table, whereItems, firstRow, maxRows);
+            List<FilterItem> whereItems, Map<String, Object> sort, int firstRow, int maxRows,
+            boolean queryPostProcessed) {
+        final Column[] columns = new Column[selectItems.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = selectItems[i].getColumn();
+        }
+        DBCursor cursor = getCursor(table, columns, whereItems, sort, firstRow, maxRows);
 
         return new MongoDbDataSet(cursor, selectItems, queryPostProcessed);
     }
 
-    private DBCursor getCursor(Table table, List<FilterItem> whereItems, int firstRow, int maxRows) {
+    private DBCursor getCursor(Table table, Column[] columns, List<FilterItem> whereItems, Map<String, Object> sort,
+            int firstRow, int maxRows) {
         final DBCollection collection = _mongoDb.getCollection(table.getName());
 
         final DBObject query = createMongoDbQuery(table, whereItems);
 
+        // only retrieve the fields of the requested columns
+        final BasicDBObject keys = new BasicDBObject();
+        for (String field : MongoDBUtils.getProjectionFields(columns)) {
+            keys.put(field, 1);
+        }
+
         logger.info("Executing MongoDB 'find' query: {}", query);
-        DBCursor cursor = collection.find(query);
+        DBCursor cursor = collection.find(query, keys);
 
+        if (sort != null && !sort.isEmpty()) {
+            cursor = cursor.sort(new BasicDBObject(sort));
+        }
         if (maxRows > 0) {
             cursor = cursor.limit(maxRows);
         }
@@ -492,12 +574,12 @@ public class MongoDbDataContext extends QueryPostprocessDataContext implements U
 
     @Override
     protected DataSet materializeMainSchemaTable(Table table, Column[] columns, int maxRows) {
-        return materializeMainSchemaTableInternal(table, columns, null, 1, maxRows, true);
+        return materializeMainSchemaTableInternal(table, columns, null, null, 1, maxRows, true);
     }
 
     @Override
     protected DataSet materializeMainSchemaTable(Table table, Column[] columns, int firstRow, int maxRows) {
-        return materializeMainSchemaTableInternal(table, columns, null, firstRow, maxRows, true);
+        return materializeMainSchemaTableInternal(table, columns, null, null, firstRow, maxRows, true);
     }
 
     /**
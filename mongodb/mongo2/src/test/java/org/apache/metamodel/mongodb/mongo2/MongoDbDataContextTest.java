@@ -240,6 +240,58 @@ public class MongoDbDataContextTest extends MongoDbTestCase {
         ds.close();
     }
 
+    public void testSortingAndAggregationPushdown() throws Exception {
+        if (!isConfigured()) {
+            System.err.println(getInvalidConfigurationMessage());
+            return;
+        }
+
+        DBCollection col = db.createCollection(getCollectionName(), new BasicDBObject());
+
+        // delete if already exists
+        {
+            col.drop();
+            col = db.createCollection(getCollectionName(), new BasicDBObject());
+        }
+
+        // create 6 records, alternating between two groups
+        for (int i = 0; i < 6; i++) {
+            BasicDBObject dbRow = new BasicDBObject();
+            dbRow.put("id", i + 1);
+            dbRow.put("foo", i % 2 == 0 ? "even" : "odd");
+            col.insert(dbRow);
+        }
+
+        final MongoDbDataContext dc = new MongoDbDataContext(db);
+
+        DataSet ds;
+
+        ds = dc.query().from(getCollectionName()).select("id").orderBy("id").desc().maxRows(2).execute();
+        assertTrue(ds instanceof MongoDbDataSet);
+        assertTrue(ds.next());
+        assertEquals("Row[values=[6]]", ds.getRow().toString());
+        assertTrue(ds.next());
+        assertEquals("Row[values=[5]]", ds.getRow().toString());
+        assertFalse(ds.next());
+        ds.close();
+
+        ds = dc.executeQuery("SELECT foo, COUNT(*), SUM(id), MAX(id) FROM " + getCollectionName()
+                + " GROUP BY foo ORDER BY foo");
+        assertTrue(ds instanceof InMemoryDataSet);
+        assertTrue(ds.next());
+        assertEquals("Row[values=[even, 3, 9.0, 5]]", ds.getRow().toString());
+        assertTrue(ds.next());
+        assertEquals("Row[values=[odd, 3, 12.0, 6]]", ds.getRow().toString());
+        assertFalse(ds.next());
+        ds.close();
+
+        ds = dc.executeQuery("SELECT COUNT(id), AVG(id) FROM " + getCollectionName() + " WHERE id > 10");
+        assertTrue(ds.next());
+        assertEquals("Row[values=[0, 0.0]]", ds.getRow().toString());
+        assertFalse(ds.next());
+        ds.close();
+    }
+
     public void testRead() throws Exception {
         // Adding a comment to commit something and invoke a build in Travis...
         if (!isConfigured()) {
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
@@ -38,6 +39,7 @@ import org.apache.metamodel.data.DataSetHeader;
 import org.apache.metamodel.data.InMemoryDataSet;
 import org.apache.metamodel.data.Row;
 import org.apache.metamodel.data.SimpleDataSetHeader;
+import org.apache.metamodel.mongodb.common.MongoDBAggregation;
 import org.apache.metamodel.mongodb.common.MongoDBUtils;
 import org.apache.metamodel.query.FilterItem;
 import org.apache.metamodel.query.FromItem;
@@ -260,12 +262,12 @@ public class MongoDbDataContext extends QueryPostprocessDataContext implements U
         if (fromItems.size() == 1 && fromItems.get(0).getTable() != null
                 && fromItems.get(0).getTable().getSchema() == _schema) {
             final Table table = fromItems.get(0).getTable();
+            final List<FilterItem> whereItems = query.getWhereClause().getItems();
 
-            // if GROUP BY, HAVING and ORDER BY clauses are not specified
-            if (query.getGroupByClause().isEmpty() && query.getHavingClause().isEmpty()
-                    && query.getOrderByClause().isEmpty()) {
-
-                final List<FilterItem> whereItems = query.getWhereClause().getItems();
+            // if GROUP BY and HAVING clauses are not specified, and the ORDER
+            // BY clause (if any) only refers to columns
+            final Map<String, Object> sort = MongoDBUtils.createSort(query.getOrderByClause().getItems(), table);
+            if (query.getGroupByClause().isEmpty() && query.getHavingClause().isEmpty() && sort != null) {
 
                 // if all of the select items are "pure" column selection
                 boolean allSelectItemsAreColumns = true;
@@ -331,38 +333,100 @@ public class MongoDbDataContext extends QueryPostprocessDataContext implements U
                                 table,
                                 selectItemsAsArray,
                                 whereItems,
+                                sort,
                                 firstRow,
                                 maxRows, false);
                         return dataSet;
                     } else {
-                        final DataSet dataSet = materializeMainSchemaTableInternal(table, columns, whereItems, firstRow,
-                                maxRows, false);
+                        final DataSet dataSet = materializeMainSchemaTableInternal(table, columns, whereItems, sort,
+                                firstRow, maxRows, false);
                         return dataSet;
                     }
                 }
             }
+
+            // if it is a simple aggregation query, eg.
+            // "SELECT [columns], [aggregates] FROM [table] WHERE [conditions] GROUP BY [columns]"
+            final MongoDBAggregation aggregation = MongoDBAggregation.create(query);
+            if (aggregation != null) {
+                logger.debug("Query can be expressed as a MongoDB aggregation pipeline, no post processing needed.");
+                return executeAggregationQuery(table, query, aggregation);
+            }
         }
 
         logger.debug("Query will be simplified for MongoDB and post processed.");
         return super.executeQuery(query);
     }
 
+    private DataSet executeAggregationQuery(Table table, Query query, MongoDBAggregation aggregation) {
+        final MongoCollection<Document> collection = _mongoDb.getCollection(table.getName());
+
+        final List<Document> pipeline = new ArrayList<Document>();
+        final Document match = createMongoDbQuery(table, query.getWhereClause().getItems());
+        if (!match.isEmpty()) {
+            pipeline.add(new Document("$match", match));
+        }
+        for (Map<String, Object> stage : aggregation.createStages()) {
+            pipeline.add(toDocument(stage));
+        }
+
+        logger.info("Executing MongoDB 'aggregate' query: {}", pipeline);
+        final DataSetHeader header = new SimpleDataSetHeader(query.getSelectClause().getItems());
+        final List<Row> rows = new ArrayList<Row>();
+        try (final MongoCursor<Document> cursor = collection.aggregate(pipeline).allowDiskUse(true).iterator()) {
+            while (cursor.hasNext()) {
+                rows.add(aggregation.toRow(cursor.next(), header));
+            }
+        }
+
+        if (rows.isEmpty()) {
+            rows.addAll(aggregation.createEmptyResultRows(header));
+        }
+        return new InMemoryDataSet(header, rows);
+    }
+
+    private static Document toDocument(Map<?, ?> map) {
+        final Document document = new Document();
+        for (Entry<?, ?> entry : map.entrySet()) {
+            document.put((String) entry.getKey(), toDocumentValue(entry.getValue()));
+        }
+        return document;
+    }
+
+    private static Object toDocumentValue(Object value) {
+        if (value instanceof Map) {
+            return toDocument((Map<?, ?>) value);
+        }
+        if (value instanceof List) {
+            final List<Object> list = new ArrayList<Object>();
+            for (Object item : (List<?>) value) {
+                list.add(toDocumentValue(item));
+            }
+            return list;
+        }
+        return value;
+    }
+
     private DataSet materializeMainSchemaTableInternal(Table table, Column[] columns, List<FilterItem> whereItems,
-            int firstRow, int maxRows, boolean queryPostProcessed) {
-        MongoCursor<Document> cursor = getDocumentMongoCursor(table, whereItems, firstRow, maxRows);
+            Map<String, Object> sort, int firstRow, int maxRows, boolean queryPostProcessed) {
+        MongoCursor<Document> cursor = getDocumentMongoCursor(table, columns, whereItems, sort, firstRow, maxRows);
 
         return new MongoDbDataSet(cursor, columns, queryPostProcessed);
     }
 
     private DataSet materializeMainSchemaTableInternal(Table table, SelectItem[] selectItems, List<FilterItem> whereItems,
-            int firstRow, int maxRows, boolean queryPostProcessed) {
-        MongoCursor<Document> cursor = getDocumentMongoCursor(table, whereItems, firstRow, maxRows);
+            Map<String, Object> sort, int firstRow, int maxRows, boolean queryPostProcessed) {
+        final Column[] columns = new Column[selectItems.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = selectItems[i].getColumn();
+        }
+        MongoCursor<Document> cursor = getDocumentMongoCursor(table, columns, whereItems, sort, firstRow, maxRows);
 
         return new MongoDbDataSet(cursor, selectItems, queryPostProcessed);
     }
 
-    private MongoCursor<Document> getDocumentMongoCursor(Table table, List<FilterItem> whereItems, int firstRow,
-            int maxRows) {
+    private MongoCursor<Document> getDocumentMongoCursor(Table table, Column[] columns, List<FilterItem> whereItems,
+            Map<String, Object> sort, int firstRow, int maxRows) {
         final MongoCollection<Document> collection = _mongoDb.getCollection(table.getName());
 
         final Document query = createMongoDbQuery(table, whereItems);
@@ -370,6 +434,19 @@ public class MongoDbDataContext extends QueryPostprocessDataContext implements U
         logger.info("Executing MongoDB 'find' query: {}", query);
         FindIterable<Document> iterable = collection.find(query);
 
+        // only retrieve the fields of the requested columns
+        final List<String> projectionFields = MongoDBUtils.getProjectionFields(columns);
+        if (!projectionFields.isEmpty()) {
+            final Document projection = new Document();
+            for (String field : projectionFields) {
+                projection.put(field, 1);
+            }
+            iterable = iterable.projection(projection);
+        }
+
+        if (sort != null && !sort.isEmpty()) {
+            iterable = iterable.sort(new Document(sort));
+        }
         if (maxRows > 0) {
             iterable = iterable.limit(maxRows);
         }
@@ -509,12 +586,12 @@ public class MongoDbDataContext extends QueryPostprocessDataContext implements U
 
     @Override
     protected DataSet materializeMainSchemaTable(Table table, Column[] columns, int maxRows) {
-        return materializeMainSchemaTableInternal(table, columns, null, 1, maxRows, true);
+        return materializeMainSchemaTableInternal(table, columns, null, null, 1, maxRows, true);
     }
 
     @Override
     protected DataSet materializeMainSchemaTable(Table table, Column[] columns, int firstRow, int maxRows) {
-        return materializeMainSchemaTableInternal(table, columns, null, firstRow, maxRows, true);
+        return materializeMainSchemaTableInternal(table, columns, null, null, firstRow, maxRows, true);
     }
 
     /**
@@ -22,6 +22,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.metamodel.util.SimpleTableDef;
 
@@ -63,12 +64,28 @@ public class ArrayTableDataProvider implements TableDataProvider<Object[]> {
 
     @Override
     public void insert(Map<String, Object> recordData) {
+        insertRecord(recordData);
+    }
+
+    Object[] insertRecord(Map<String, Object> recordData) {
         String[] columnNames = _tableDef.getColumnNames();
         Object[] record = new Object[columnNames.length];
         for (int i = 0; i < record.length; i++) {
             record[i] = recordData.get(columnNames[i]);
         }
         _arrays.add(record);
+        return record;
     }
 
+    /**
+     * Removes records by identity, used by DELETE statements.
+     */
+    void removeRecords(Set<?> records) {
+        final Iterator<Object[]> it = _arrays.iterator();
+        while (it.hasNext()) {
+            if (records.contains(it.next())) {
+                it.remove();
+            }
+        }
+    }
 }
@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.metamodel.util.SimpleTableDef;
 
@@ -63,6 +64,23 @@ public class MapTableDataProvider implements TableDataProvider<Map<String, ? ext
 
     @Override
     public void insert(Map<String, Object> recordData) {
+        insertRecord(recordData);
+    }
+
+    Map<String, ?> insertRecord(Map<String, Object> recordData) {
         _maps.add(recordData);
+        return recordData;
+    }
+
+    /**
+     * Removes records by identity, used by DELETE statements.
+     */
+    void removeRecords(Set<?> records) {
+        final Iterator<Map<String, ?>> it = _maps.iterator();
+        while (it.hasNext()) {
+            if (records.contains(it.next())) {
+                it.remove();
+            }
+        }
     }
 }
@@ -18,7 +18,15 @@
  */
 package org.apache.metamodel.pojo;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -35,6 +43,12 @@ import org.apache.metamodel.util.SimpleTableDef;
 /**
  * {@link TableDataProvider} for regular Java objects with getter and setter
  * methods. Each of these method pairs will be treated as fields in a table.
+ * Objects of classes without any getter methods are instead accessed using
+ * their (instance) fields.
+ * 
+ * The accessors of each column are resolved once, when the
+ * {@link ObjectTableDataProvider} is created, and invoked using
+ * {@link MethodHandle}s.
  * 
  * @param <E>
  */
@@ -42,12 +56,20 @@ public final class ObjectTableDataProvider<E> implements TableDataProvider<E> {
 
     private static final long serialVersionUID = 1L;
 
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
     private final String _tableName;
     private final Collection<E> _collection;
     private final Class<E> _class;
     private final SimpleTableDef _tableDef;
     private final Map<String, Class<?>> _fieldTypes;
 
+    // method handles are not serializable, so they are resolved again when
+    // deserialized
+    private transient Map<String, MethodHandle> _getters;
+    private transient Map<String, MethodHandle> _setters;
+
     public ObjectTableDataProvider(Class<E> cls) {
         this(cls.getSimpleName(), cls);
     }
@@ -61,9 +83,15 @@ public final class ObjectTableDataProvider<E> implements TableDataProvider<E> {
         _collection = collection;
         _class = cls;
         _fieldTypes = new HashMap<String, Class<?>>();
+        createAccessors();
         _tableDef = createTableDef();
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        createAccessors();
+    }
+
     @Override
     public String getName() {
         return _tableName;
@@ -79,9 +107,11 @@ public final class ObjectTableDataProvider<E> implements TableDataProvider<E> {
         return _tableDef;
     }
 
-    private SimpleTableDef createTableDef() {
-        final Map<String,ColumnType> columns = new TreeMap<String, ColumnType>();
+    private void createAccessors() {
+        _getters = new HashMap<String, MethodHandle>();
+        _setters = new HashMap<String, MethodHandle>();
 
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
         final Method[] methods = _class.getMethods();
         for (final Method method : methods) {
             final String methodName = method.getName();
@@ -92,12 +122,96 @@ public final class ObjectTableDataProvider<E> implements TableDataProvider<E> {
                         final String columnName = Character.toLowerCase(methodName.charAt(3)) + methodName.substring(4);
 
                         _fieldTypes.put(columnName, returnType);
-                        final ColumnType columnType = ColumnTypeImpl.convertColumnType(returnType);
-                        columns.put(columnName, columnType);
+                        _getters.put(columnName, unreflect(lookup, method).asType(GETTER_TYPE));
+                    }
+                }
+            }
+        }
+
+        if (_getters.isEmpty()) {
+            createFieldAccessors(lookup);
+            return;
+        }
+
+        for (final String columnName : _getters.keySet()) {
+            final Method setterMethod = getMethod(columnName, "set", _fieldTypes.get(columnName));
+            if (setterMethod != null) {
+                _setters.put(columnName, unreflect(lookup, setterMethod).asType(SETTER_TYPE));
+            }
+        }
+    }
+
+    private void createFieldAccessors(final MethodHandles.Lookup lookup) {
+        for (Class<?> cls = _class; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            for (final Field field : cls.getDeclaredFields()) {
+                final int modifiers = field.getModifiers();
+                final String columnName = field.getName();
+                if (Modifier.isStatic(modifiers) || field.isSynthetic() || _getters.containsKey(columnName)) {
+                    // static fields, and fields hidden by a subclass, are
+                    // skipped
+                    continue;
+                }
+
+                final boolean accessible = setAccessible(field);
+                final MethodHandle getter;
+                final MethodHandle setter;
+                try {
+                    getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+                    if (Modifier.isFinal(modifiers)) {
+                        setter = null;
+                    } else {
+                        setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
                     }
+                } catch (IllegalAccessException e) {
+                    if (accessible) {
+                        throw new IllegalStateException("Failed to access field: " + field, e);
+                    }
+                    // eg. a field inherited from a class in a module which is
+                    // not open, the field is skipped
+                    continue;
+                }
+                _fieldTypes.put(columnName, field.getType());
+                _getters.put(columnName, getter);
+                if (setter != null) {
+                    _setters.put(columnName, setter);
                 }
             }
         }
+    }
+
+    private static MethodHandle unreflect(final MethodHandles.Lookup lookup, final Method method) {
+        setAccessible(method);
+        try {
+            return lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to access method: " + method, e);
+        }
+    }
+
+    /**
+     * Attempts to suppress access checks of a member.
+     * 
+     * @return whether or not access checks are suppressed
+     */
+    private static boolean setAccessible(AccessibleObject accessibleObject) {
+        try {
+            // allows access to public members of non-public classes
+            accessibleObject.setAccessible(true);
+            return true;
+        } catch (RuntimeException e) {
+            // eg. a SecurityException, or an InaccessibleObjectException
+            // (Java 9+) for members of modules which are not open. The regular
+            // access rules will apply.
+            return false;
+        }
+    }
+
+    private SimpleTableDef createTableDef() {
+        final Map<String,ColumnType> columns = new TreeMap<String, ColumnType>();
+        for (final String columnName : _getters.keySet()) {
+            final ColumnType columnType = ColumnTypeImpl.convertColumnType(_fieldTypes.get(columnName));
+            columns.put(columnName, columnType);
+        }
 
         final int size = columns.size();
         final String[] columnNames= new String[size];
@@ -117,19 +231,24 @@ public final class ObjectTableDataProvider<E> implements TableDataProvider<E> {
 
     @Override
     public Object getValue(final String column, E record) {
-        final Method getterMethod = getMethod(column, "get");
+        final MethodHandle getter = _getters.get(column);
+        if (getter == null) {
+            throw new IllegalArgumentException("Could not find 'get' method for column: " + column);
+        }
 
         try {
-            final Object result = getterMethod.invoke(record);
-            return result;
-        } catch (Exception e) {
-            throw new IllegalStateException("Failed to invoke getter method: " + getterMethod, e);
+            return (Object) getter.invokeExact((Object) record);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to invoke getter of column: " + column, e);
         }
-
     }
 
     @Override
     public void insert(Map<String, Object> recordData) {
+        insertRecord(recordData);
+    }
+
+    E insertRecord(Map<String, Object> recordData) {
         final E object;
         try {
             object = _class.newInstance();
@@ -140,33 +259,45 @@ public final class ObjectTableDataProvider<E> implements TableDataProvider<E> {
         final Set<Entry<String, Object>> entrySet = recordData.entrySet();
         for (Entry<String, Object> entry : entrySet) {
             final String column = entry.getKey();
-            final Class<?> fieldType = _fieldTypes.get(column);
-            final Method setterMethod = getMethod(column, "set", fieldType);
+            final MethodHandle setter = _setters.get(column);
+            if (setter == null) {
+                throw new IllegalArgumentException("Could not find 'set' method for column: " + column);
+            }
             final Object value = entry.getValue();
 
             try {
-                setterMethod.invoke(object, value);
-            } catch (Exception e) {
-                throw new IllegalStateException("Failed to invoke setter method: " + setterMethod, e);
+                setter.invokeExact((Object) object, value);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to invoke setter of column: " + column, e);
             }
         }
 
         _collection.add(object);
+        return object;
     }
 
     private Method getMethod(final String column, final String prefix, final Class<?>... parameterTypes) {
-        Method getterMethod;
         try {
-            getterMethod = _class.getMethod(prefix + Character.toUpperCase(column.charAt(0)) + column.substring(1),
+            return _class.getMethod(prefix + Character.toUpperCase(column.charAt(0)) + column.substring(1),
                     parameterTypes);
         } catch (Exception e) {
             try {
-                getterMethod = _class.getMethod(prefix + column, parameterTypes);
+                return _class.getMethod(prefix + column, parameterTypes);
             } catch (Exception e2) {
-                throw new IllegalArgumentException("Could not find '" + prefix + "' method for column: " + column);
+                return null;
             }
         }
-        return getterMethod;
     }
 
+    /**
+     * Removes records by identity, used by DELETE statements.
+     */
+    void removeRecords(Set<?> records) {
+        final Iterator<E> it = _collection.iterator();
+        while (it.hasNext()) {
+            if (records.contains(it.next())) {
+                it.remove();
+            }
+        }
+    }
 }
@@ -21,9 +21,14 @@ package org.apache.metamodel.pojo;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.metamodel.DataContext;
 import org.apache.metamodel.MetaModelException;
@@ -33,12 +38,15 @@ import org.apache.metamodel.UpdateScript;
 import org.apache.metamodel.UpdateableDataContext;
 import org.apache.metamodel.data.DataSet;
 import org.apache.metamodel.data.MaxRowsDataSet;
+import org.apache.metamodel.data.Row;
+import org.apache.metamodel.query.FilterItem;
 import org.apache.metamodel.query.SelectItem;
 import org.apache.metamodel.schema.Column;
 import org.apache.metamodel.schema.MutableSchema;
 import org.apache.metamodel.schema.MutableTable;
 import org.apache.metamodel.schema.Schema;
 import org.apache.metamodel.schema.Table;
+import org.apache.metamodel.util.CollectionUtils;
 import org.apache.metamodel.util.SimpleTableDef;
 
 /**
@@ -50,6 +58,7 @@ public class PojoDataContext extends QueryPostprocessDataContext implements Upda
     private static final long serialVersionUID = 1L;
 
     private final Map<String, TableDataProvider<?>> _tables;
+    private final Map<String, List<PojoIndex>> _indexes;
     private final String _schemaName;
 
     /**
@@ -96,6 +105,7 @@ public class PojoDataContext extends QueryPostprocessDataContext implements Upda
         }
         _schemaName = schemaName;
         _tables = new TreeMap<String, TableDataProvider<?>>();
+        _indexes = new ConcurrentHashMap<String, List<PojoIndex>>();
         for (TableDataProvider<?> pojoTable : tables) {
             addTableDataProvider(pojoTable);
         }
@@ -120,6 +130,202 @@ public class PojoDataContext extends QueryPostprocessDataContext implements Upda
         return dataSet;
     }
 
+    @Override
+    protected DataSet materializeMainSchemaTable(Table table, List<SelectItem> selectItems,
+            List<FilterItem> whereItems, int firstRow, int maxRows) {
+        final TableDataProvider<?> pojoTable = _tables.get(table.getName());
+        final List<SelectItem> workingSelectItems = CollectionUtils.concat(true, selectItems,
+                MetaModelHelper.getEvaluatedSelectItems(whereItems));
+        final List<?> records = getIndexedRecords(table, whereItems);
+        if (records == null || !isPlainColumns(workingSelectItems)) {
+            return super.materializeMainSchemaTable(table, selectItems, whereItems, firstRow, maxRows);
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        DataSet dataSet = new PojoDataSet(pojoTable, records.iterator(),
+                workingSelectItems.toArray(new SelectItem[workingSelectItems.size()]));
+
+        // the indexed records are only candidates, all WHERE items are
+        // evaluated on them
+        dataSet = MetaModelHelper.getFiltered(dataSet, whereItems);
+        dataSet = MetaModelHelper.getPaged(dataSet, firstRow, maxRows);
+        dataSet = MetaModelHelper.getSelection(selectItems, dataSet);
+        return dataSet;
+    }
+
+    private static boolean isPlainColumns(List<SelectItem> selectItems) {
+        for (SelectItem selectItem : selectItems) {
+            if (selectItem.getColumn() == null || selectItem.getScalarFunction() != null
+                    || selectItem.getAggregateFunction() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the records of a table that may match a list of WHERE items, using
+     * the index that yields the fewest records.
+     * 
+     * @param table
+     * @param whereItems
+     * @return the candidate records, or null if no index can be used
+     */
+    List<?> getIndexedRecords(Table table, List<FilterItem> whereItems) {
+        final TableDataProvider<?> pojoTable = _tables.get(table.getName());
+        final List<PojoIndex> indexes = _indexes.get(table.getName());
+        if (pojoTable == null || indexes == null) {
+            return null;
+        }
+
+        List<Object> result = null;
+        for (FilterItem whereItem : whereItems) {
+            final SelectItem selectItem = whereItem.getSelectItem();
+            if (whereItem.isCompoundFilter() || whereItem.getExpression() != null || selectItem == null
+                    || selectItem.getColumn() == null || selectItem.getScalarFunction() != null
+                    || !table.equals(selectItem.getColumn().getTable())) {
+                continue;
+            }
+            for (PojoIndex index : indexes) {
+                if (index.getColumnName().equals(selectItem.getColumn().getName())) {
+                    final List<Object> records = index.getRecords(pojoTable, whereItem.getOperator(),
+                            whereItem.getOperand());
+                    if (records != null && (result == null || records.size() < result.size())) {
+                        result = records;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a hash index on a column of a table. Hash indexes are used for
+     * queries with equality and IN conditions on the column.
+     * 
+     * Indexes are maintained when records are inserted, updated or deleted
+     * through this {@link DataContext}. If the records or the collection
+     * backing a {@link TableDataProvider} is modified directly, the indexes of
+     * the table should be refreshed using {@link #refreshIndexes(String)}.
+     * 
+     * @param tableName
+     * @param columnName
+     */
+    public void createIndex(String tableName, String columnName) {
+        addIndex(tableName, columnName, false);
+    }
+
+    /**
+     * Creates a sorted index on a column of a table. Sorted indexes are used
+     * for queries with equality, IN and range (greater than / less than)
+     * conditions on the column.
+     * 
+     * @param tableName
+     * @param columnName
+     * 
+     * @see #createIndex(String, String)
+     */
+    public void createSortedIndex(String tableName, String columnName) {
+        addIndex(tableName, columnName, true);
+    }
+
+    /**
+     * Marks all indexes of a table as out of date, causing them to be rebuilt
+     * when they are used next time.
+     * 
+     * @param tableName
+     */
+    public void refreshIndexes(String tableName) {
+        synchronized (this) {
+            final List<PojoIndex> indexes = _indexes.get(tableName);
+            if (indexes != null) {
+                for (PojoIndex index : indexes) {
+                    index.invalidate();
+                }
+            }
+        }
+    }
+
+    private void addIndex(String tableName, String columnName, boolean sorted) {
+        final TableDataProvider<?> table = _tables.get(tableName);
+        if (table == null) {
+            throw new IllegalArgumentException("No table data provider for table: " + tableName);
+        }
+        if (table.getTableDef().indexOf(columnName) == -1) {
+            throw new IllegalArgumentException("No such column in table " + tableName + ": " + columnName);
+        }
+        synchronized (this) {
+            List<PojoIndex> indexes = _indexes.get(tableName);
+            if (indexes == null) {
+                indexes = new CopyOnWriteArrayList<PojoIndex>();
+                _indexes.put(tableName, indexes);
+            }
+            indexes.add(new PojoIndex(columnName, sorted));
+        }
+    }
+
+    /**
+     * Deletes the records of a table that match a list of WHERE items, using
+     * an index to find the candidate records. Only the candidate records are
+     * evaluated, and they are removed using the removal hooks of the built-in
+     * {@link TableDataProvider}s, which still iterate the backing collection
+     * once but do not build and filter a row for every record.
+     * 
+     * @param table
+     * @param whereItems
+     * @return true if the records were deleted, or false if no index can be
+     *         used or the table is not backed by a built-in
+     *         {@link TableDataProvider}, in which case the table needs to be
+     *         scanned
+     */
+    boolean deleteIndexedRecords(Table table, List<FilterItem> whereItems) {
+        final TableDataProvider<?> pojoTable = _tables.get(table.getName());
+        if (!isRemovalSupported(pojoTable)) {
+            return false;
+        }
+        final List<?> candidates = getIndexedRecords(table, whereItems);
+        if (candidates == null) {
+            return false;
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        final PojoDataSet<?> dataSet = new PojoDataSet(pojoTable, candidates.iterator(),
+                MetaModelHelper.createSelectItems(table.getColumns()));
+        final Set<Object> records = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        while (dataSet.next()) {
+            final Row row = dataSet.getRow();
+            boolean delete = true;
+            for (FilterItem whereItem : whereItems) {
+                if (!whereItem.evaluate(row)) {
+                    delete = false;
+                    break;
+                }
+            }
+            if (delete) {
+                records.add(dataSet.getRecord());
+            }
+        }
+        dataSet.close();
+
+        if (!records.isEmpty()) {
+            removeRecords(pojoTable, records);
+            for (Object record : records) {
+                removeFromIndexes(table.getName(), record);
+            }
+        }
+        return true;
+    }
+
+    void removeFromIndexes(String tableName, Object record) {
+        final List<PojoIndex> indexes = _indexes.get(tableName);
+        if (indexes != null) {
+            final TableDataProvider<?> table = _tables.get(tableName);
+            for (PojoIndex index : indexes) {
+                index.remove(table, record);
+            }
+        }
+    }
+
     @Override
     protected Schema getMainSchema() throws MetaModelException {
         final MutableSchema schema = new MutableSchema(getMainSchemaName());
@@ -149,6 +355,7 @@ public class PojoDataContext extends QueryPostprocessDataContext implements Upda
 
     protected void addTableDataProvider(TableDataProvider<?> tableDataProvider) {
         _tables.put(tableDataProvider.getName(), tableDataProvider);
+        _indexes.remove(tableDataProvider.getName());
     }
 
     public void insert(String tableName, Map<String, Object> recordData) {
@@ -156,7 +363,57 @@ public class PojoDataContext extends QueryPostprocessDataContext implements Upda
         if (table == null) {
             throw new IllegalArgumentException("No table data provider for table: " + tableName);
         }
+
+        final List<PojoIndex> indexes = _indexes.get(tableName);
+        if (indexes == null) {
+            table.insert(recordData);
+            return;
+        }
+
+        final Object record = insertRecord(table, recordData);
+        for (PojoIndex index : indexes) {
+            if (record == null) {
+                index.invalidate();
+            } else {
+                index.add(table, record);
+            }
+        }
+    }
+
+    /**
+     * Inserts a record, and returns the inserted record if it can be
+     * determined (which is the case for the built-in
+     * {@link TableDataProvider}s).
+     */
+    private static Object insertRecord(TableDataProvider<?> table, Map<String, Object> recordData) {
+        // subclasses may override insert(...), so only the exact classes are
+        // handled
+        if (table instanceof ObjectTableDataProvider) {
+            return ((ObjectTableDataProvider<?>) table).insertRecord(recordData);
+        } else if (table.getClass() == MapTableDataProvider.class) {
+            return ((MapTableDataProvider) table).insertRecord(recordData);
+        } else if (table.getClass() == ArrayTableDataProvider.class) {
+            return ((ArrayTableDataProvider) table).insertRecord(recordData);
+        }
         table.insert(recordData);
+        return null;
+    }
+
+    private static boolean isRemovalSupported(TableDataProvider<?> table) {
+        // subclasses may override iterator(), so only the exact classes are
+        // handled
+        return table instanceof ObjectTableDataProvider || (table != null
+                && (table.getClass() == MapTableDataProvider.class || table.getClass() == ArrayTableDataProvider.class));
+    }
+
+    private static void removeRecords(TableDataProvider<?> table, Set<?> records) {
+        if (table instanceof ObjectTableDataProvider) {
+            ((ObjectTableDataProvider<?>) table).removeRecords(records);
+        } else if (table instanceof MapTableDataProvider) {
+            ((MapTableDataProvider) table).removeRecords(records);
+        } else {
+            ((ArrayTableDataProvider) table).removeRecords(records);
+        }
     }
 
 }
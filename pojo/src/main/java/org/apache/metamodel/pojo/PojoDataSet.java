@@ -39,10 +39,13 @@ final class PojoDataSet<E> extends AbstractDataSet {
     private E _next;
 
     public PojoDataSet(TableDataProvider<E> pojoTable, SelectItem[] selectItems) {
+        this(pojoTable, pojoTable.iterator(), selectItems);
+    }
+
+    public PojoDataSet(TableDataProvider<E> pojoTable, Iterator<E> iterator, SelectItem[] selectItems) {
         super(selectItems);
         _pojoTable = pojoTable;
-
-        _iterator = _pojoTable.iterator();
+        _iterator = iterator;
     }
 
     @Override
@@ -70,6 +73,13 @@ final class PojoDataSet<E> extends AbstractDataSet {
         return new DefaultRow(getHeader(), values);
     }
 
+    /**
+     * Gets the current record.
+     */
+    protected E getRecord() {
+        return _next;
+    }
+
     /**
      * Used by DELETE statements to delete a record.
      */
@@ -0,0 +1,297 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.metamodel.pojo;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.metamodel.query.OperatorType;
+import org.apache.metamodel.query.QueryParameter;
+import org.apache.metamodel.query.SelectItem;
+import org.apache.metamodel.util.BooleanComparator;
+import org.apache.metamodel.util.CollectionUtils;
+import org.apache.metamodel.util.NumberComparator;
+
+/**
+ * An in-memory index of the records of a {@link TableDataProvider}, by the
+ * values of a single column. A hash index supports equality and IN lookups,
+ * while a sorted index additionally supports range lookups.
+ * 
+ * Only integer, decimal, string and date values are indexed, and lookups are
+ * only performed if all indexed values (and operands) are of the same kind.
+ * This ensures that lookups never miss records that would be matched by the
+ * corresponding {@link org.apache.metamodel.query.FilterItem}. Lookups may
+ * return too many records though, so the filter should still be applied.
+ * 
+ * The index entries are not serialized, but rebuilt when needed.
+ */
+final class PojoIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int KIND_NONE = -1;
+    private static final int KIND_INTEGER = 0;
+    private static final int KIND_DECIMAL = 1;
+    private static final int KIND_STRING = 2;
+    private static final int KIND_DATE = 3;
+    private static final int KIND_OTHER = 4;
+
+    private final String _columnName;
+    private final boolean _sorted;
+
+    private transient Map<Object, List<Object>> _entries;
+    private transient int _kind;
+    private transient boolean _mixed;
+
+    public PojoIndex(String columnName, boolean sorted) {
+        _columnName = columnName;
+        _sorted = sorted;
+    }
+
+    public String getColumnName() {
+        return _columnName;
+    }
+
+    public boolean isSorted() {
+        return _sorted;
+    }
+
+    /**
+     * Marks the index as out of date, causing it to be rebuilt on the next
+     * lookup.
+     */
+    public synchronized void invalidate() {
+        _entries = null;
+    }
+
+    public synchronized void add(TableDataProvider<?> tableDataProvider, Object record) {
+        if (_entries != null) {
+            addEntry(getValue(tableDataProvider, record), record);
+        }
+    }
+
+    public synchronized void remove(TableDataProvider<?> tableDataProvider, Object record) {
+        if (_entries == null || _mixed) {
+            return;
+        }
+        final Object value = getValue(tableDataProvider, record);
+        if (value != null && getKind(value) == _kind && removeEntry(toKey(value), record)) {
+            return;
+        }
+        // the record may have been modified since it was indexed
+        for (Object key : new ArrayList<Object>(_entries.keySet())) {
+            if (removeEntry(key, record)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the records that may match a comparison of the indexed column with
+     * an operand.
+     * 
+     * @param tableDataProvider
+     * @param operator
+     * @param operand
+     * @return the records, or null if the index cannot be used for the
+     *         comparison
+     */
+    public synchronized List<Object> getRecords(TableDataProvider<?> tableDataProvider, OperatorType operator,
+            Object operand) {
+        if (operand == null || operand instanceof SelectItem || operand instanceof QueryParameter) {
+            return null;
+        }
+
+        final Collection<?> operands;
+        if (OperatorType.IN.equals(operator)) {
+            operands = CollectionUtils.toList(operand);
+        } else if (OperatorType.EQUALS_TO.equals(operator)) {
+            operands = Collections.singleton(operand);
+        } else if (_sorted && isRangeOperator(operator)) {
+            operands = Collections.singleton(operand);
+        } else {
+            return null;
+        }
+
+        if (_entries == null) {
+            build(tableDataProvider);
+        }
+        if (_mixed) {
+            return null;
+        }
+
+        final Set<Object> keys = new LinkedHashSet<Object>();
+        for (Object value : operands) {
+            if (value == null) {
+                // records with null values are not indexed
+                return null;
+            }
+            final int kind = getKind(value);
+            if (kind == KIND_OTHER || (_kind != KIND_NONE && kind != _kind)) {
+                return null;
+            }
+            keys.add(toKey(value));
+        }
+
+        final List<Object> result = new ArrayList<Object>();
+        if (isRangeOperator(operator)) {
+            if (keys.isEmpty()) {
+                return result;
+            }
+            final NavigableMap<Object, List<Object>> entries = (NavigableMap<Object, List<Object>>) _entries;
+            final Object key = keys.iterator().next();
+            final Map<Object, List<Object>> range;
+            if (OperatorType.GREATER_THAN.equals(operator)) {
+                range = entries.tailMap(key, false);
+            } else if (OperatorType.GREATER_THAN_OR_EQUAL.equals(operator)) {
+                range = entries.tailMap(key, true);
+            } else if (OperatorType.LESS_THAN.equals(operator)) {
+                range = entries.headMap(key, false);
+            } else {
+                range = entries.headMap(key, true);
+            }
+            for (List<Object> records : range.values()) {
+                result.addAll(records);
+            }
+        } else {
+            for (Object key : keys) {
+                final List<Object> records = _entries.get(key);
+                if (records != null) {
+                    result.addAll(records);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void build(TableDataProvider<?> tableDataProvider) {
+        if (_sorted) {
+            _entries = new TreeMap<Object, List<Object>>();
+        } else {
+            _entries = new HashMap<Object, List<Object>>();
+        }
+        _kind = KIND_NONE;
+        _mixed = false;
+
+        final Iterator<?> it = tableDataProvider.iterator();
+        while (it.hasNext()) {
+            final Object record = it.next();
+            addEntry(getValue(tableDataProvider, record), record);
+        }
+    }
+
+    private void addEntry(Object value, Object record) {
+        if (value == null || _mixed) {
+            return;
+        }
+        final int kind = getKind(value);
+        if (kind == KIND_OTHER || (_kind != KIND_NONE && kind != _kind)) {
+            // the index cannot be used anymore, until it is rebuilt
+            _mixed = true;
+            _entries.clear();
+            return;
+        }
+        _kind = kind;
+
+        final Object key = toKey(value);
+        List<Object> records = _entries.get(key);
+        if (records == null) {
+            records = new ArrayList<Object>(1);
+            _entries.put(key, records);
+        }
+        records.add(record);
+    }
+
+    private boolean removeEntry(Object key, Object record) {
+        final List<Object> records = _entries.get(key);
+        if (records == null) {
+            return false;
+        }
+        for (Iterator<Object> it = records.iterator(); it.hasNext();) {
+            if (it.next() == record) {
+                it.remove();
+                if (records.isEmpty()) {
+                    _entries.remove(key);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object getValue(TableDataProvider tableDataProvider, Object record) {
+        return tableDataProvider.getValue(_columnName, record);
+    }
+
+    private static boolean isRangeOperator(OperatorType operator) {
+        return OperatorType.GREATER_THAN.equals(operator) || OperatorType.GREATER_THAN_OR_EQUAL.equals(operator)
+                || OperatorType.LESS_THAN.equals(operator) || OperatorType.LESS_THAN_OR_EQUAL.equals(operator);
+    }
+
+    /**
+     * Determines the kind of a value. Values are only of the same kind if they
+     * are compared by MetaModel in the same way as their keys are compared by
+     * the index.
+     */
+    private static int getKind(Object value) {
+        if (value instanceof Number) {
+            if (NumberComparator.isIntegerType((Number) value)) {
+                return KIND_INTEGER;
+            }
+            if (value instanceof Double || value instanceof Float) {
+                return KIND_DECIMAL;
+            }
+            return KIND_OTHER;
+        }
+        if (value instanceof String) {
+            // strings like "true" are compared as booleans
+            return BooleanComparator.isBoolean(value) ? KIND_OTHER : KIND_STRING;
+        }
+        if (value instanceof Date && !(value instanceof Timestamp)) {
+            return KIND_DATE;
+        }
+        return KIND_OTHER;
+    }
+
+    private static Object toKey(Object value) {
+        if (value instanceof Number) {
+            if (NumberComparator.isIntegerType((Number) value)) {
+                return ((Number) value).longValue();
+            }
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        return value;
+    }
+}
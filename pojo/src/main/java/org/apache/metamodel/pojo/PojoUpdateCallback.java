@@ -125,9 +125,13 @@ final class PojoUpdateCallback extends AbstractUpdateCallback {
 
             @Override
             public void execute() throws MetaModelException {
+                final List<FilterItem> whereItems = getWhereItems();
+                if (_dataContext.deleteIndexedRecords(getTable(), whereItems)) {
+                    return;
+                }
+
                 final DataSet dataSet = _dataContext.query().from(getTable()).select(getTable().getColumns()).execute();
                 final PojoDataSet<?> pojoDataSet = (PojoDataSet<?>) dataSet;
-                final List<FilterItem> whereItems = getWhereItems();
                 while (pojoDataSet.next()) {
                     boolean delete = true;
                     final Row row = pojoDataSet.getRow();
@@ -139,6 +143,7 @@ final class PojoUpdateCallback extends AbstractUpdateCallback {
                     }
                     if (delete) {
                         pojoDataSet.remove();
+                        _dataContext.removeFromIndexes(getTable().getName(), pojoDataSet.getRecord());
                     }
                 }
             }
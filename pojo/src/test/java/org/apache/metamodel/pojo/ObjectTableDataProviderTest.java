@@ -18,6 +18,17 @@
  */
 package org.apache.metamodel.pojo;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import junit.framework.TestCase;
 
 import org.apache.metamodel.util.SimpleTableDef;
@@ -33,4 +44,92 @@ public class ObjectTableDataProviderTest extends TestCase {
                 "SimpleTableDef[name=FoobarBean,columnNames=[col1, col2, col3],columnTypes=[STRING, INTEGER, BOOLEAN]]",
                 tableDef.toString());
     }
+
+    public void testGetValueAndInsert() throws Exception {
+        List<FoobarBean> collection = new ArrayList<FoobarBean>();
+        collection.add(new FoobarBean("foo", 1, true));
+        ObjectTableDataProvider<FoobarBean> tableDataProvider = new ObjectTableDataProvider<FoobarBean>(
+                "foobar", FoobarBean.class, collection);
+
+        assertEquals("foo", tableDataProvider.getValue("col1", collection.get(0)));
+        assertEquals(1, tableDataProvider.getValue("col2", collection.get(0)));
+        assertEquals(true, tableDataProvider.getValue("col3", collection.get(0)));
+
+        Map<String, Object> recordData = new HashMap<String, Object>();
+        recordData.put("col1", "bar");
+        recordData.put("col2", 2);
+        tableDataProvider.insert(recordData);
+        assertEquals(2, collection.size());
+        assertEquals("bar", collection.get(1).getCol1());
+        assertEquals(2, collection.get(1).getCol2().intValue());
+        assertNull(collection.get(1).getCol3());
+
+        try {
+            tableDataProvider.getValue("col4", collection.get(0));
+            fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Could not find 'get' method for column: col4", e.getMessage());
+        }
+    }
+
+    public void testFieldAccess() throws Exception {
+        List<FieldBean> collection = new ArrayList<FieldBean>();
+        ObjectTableDataProvider<FieldBean> tableDataProvider = new ObjectTableDataProvider<FieldBean>("fields",
+                FieldBean.class, collection);
+
+        SimpleTableDef tableDef = tableDataProvider.getTableDef();
+        assertEquals("SimpleTableDef[name=fields,columnNames=[id, name],columnTypes=[INTEGER, STRING]]",
+                tableDef.toString());
+
+        Map<String, Object> recordData = new HashMap<String, Object>();
+        recordData.put("id", 42);
+        recordData.put("name", "baz");
+        tableDataProvider.insert(recordData);
+        assertEquals(1, collection.size());
+        assertEquals(42, tableDataProvider.getValue("id", collection.get(0)));
+        assertEquals("baz", tableDataProvider.getValue("name", collection.get(0)));
+    }
+
+    public void testInaccessibleInheritedFields() throws Exception {
+        // the private fields of java.io.Writer can not be made accessible on
+        // Java 9+, so they are skipped
+        ObjectTableDataProvider<WriterFieldBean> tableDataProvider = new ObjectTableDataProvider<WriterFieldBean>(
+                "writers", WriterFieldBean.class, new ArrayList<WriterFieldBean>());
+
+        SimpleTableDef tableDef = tableDataProvider.getTableDef();
+        assertTrue(tableDef.toString(), Arrays.asList(tableDef.getColumnNames()).contains("id"));
+    }
+
+    public void testSerializeAndDeserialize() throws Exception {
+        List<FoobarBean> collection = new ArrayList<FoobarBean>();
+        collection.add(new FoobarBean("foo", 1, true));
+        ObjectTableDataProvider<FoobarBean> tableDataProvider = new ObjectTableDataProvider<FoobarBean>(
+                "foobar", FoobarBean.class, collection);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream objectOut = new ObjectOutputStream(out);
+        objectOut.writeObject(tableDataProvider);
+        objectOut.close();
+
+        ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
+        @SuppressWarnings("unchecked")
+        ObjectTableDataProvider<FoobarBean> deserialized = (ObjectTableDataProvider<FoobarBean>) objectIn
+                .readObject();
+        objectIn.close();
+
+        FoobarBean bean = deserialized.iterator().next();
+        assertEquals("foo", deserialized.getValue("col1", bean));
+        assertEquals(1, deserialized.getValue("col2", bean));
+    }
+
+    public static class FieldBean {
+        private static final String IGNORED = "ignored";
+
+        private int id;
+        private String name;
+    }
+
+    public static abstract class WriterFieldBean extends Writer {
+        private int id;
+    }
 }
@@ -109,6 +109,88 @@ public class PojoDataContextTest extends TestCase {
         runScenario(tableDataProvider);
     }
 
+    public void testIndexedScenario() throws Exception {
+        final Collection<FoobarBean> collection = new ArrayList<FoobarBean>();
+        collection.add(new FoobarBean("2", 1000, true));
+        collection.add(new FoobarBean("1", 1001, false));
+        collection.add(new FoobarBean("1", 1002, true));
+        collection.add(new FoobarBean("2", 1003, false));
+        collection.add(new FoobarBean("2", 1004, false));
+        final PojoDataContext dc = new PojoDataContext("foo", new ObjectTableDataProvider<FoobarBean>("bar",
+                FoobarBean.class, collection));
+        dc.createIndex("bar", "col1");
+        dc.createSortedIndex("bar", "col2");
+        final Table table = dc.getDefaultSchema().getTableByName("bar");
+
+        Query q = dc.query().from("bar").select("col2").where("col1").eq("1").and("col3").eq(true).toQuery();
+        assertEquals(2, dc.getIndexedRecords(table, q.getWhereClause().getItems()).size());
+        assertEquals("[Row[values=[1002]]]", dc.executeQuery(q).toRows().toString());
+
+        q = dc.query().from("bar").select("col2").where("col2").gt(1002).toQuery();
+        assertEquals(2, dc.getIndexedRecords(table, q.getWhereClause().getItems()).size());
+        assertEquals("[Row[values=[1003]], Row[values=[1004]]]", dc.executeQuery(q).toRows().toString());
+
+        q = dc.query().from("bar").select("col2").where("col2").in(1000, 1004, 999).toQuery();
+        assertEquals("[Row[values=[1000]], Row[values=[1004]]]", dc.executeQuery(q).toRows().toString());
+
+        // string operands are not compared with the integers of the index
+        q = dc.query().from("bar").select("col2").where("col2").eq("1001").toQuery();
+        assertNull(dc.getIndexedRecords(table, q.getWhereClause().getItems()));
+        assertEquals("[Row[values=[1001]]]", dc.executeQuery(q).toRows().toString());
+
+        dc.executeUpdate(new UpdateScript() {
+            @Override
+            public void run(UpdateCallback callback) {
+                callback.deleteFrom(table).where("col1").eq("2").execute();
+                callback.insertInto(table).value("col1", "3").value("col2", 1005).value("col3", true).execute();
+                callback.update(table).where("col2").eq(1001).value("col1", "4").execute();
+            }
+        });
+
+        assertEquals(3, collection.size());
+        q = dc.query().from("bar").select("col1", "col2").where("col2").gte(1000).toQuery();
+        assertEquals(3, dc.getIndexedRecords(table, q.getWhereClause().getItems()).size());
+        assertEquals("[Row[values=[4, 1001]], Row[values=[1, 1002]], Row[values=[3, 1005]]]",
+                dc.executeQuery(q).toRows().toString());
+
+        q = dc.query().from("bar").select("col2").where("col1").in("2", "4").toQuery();
+        assertEquals(1, dc.getIndexedRecords(table, q.getWhereClause().getItems()).size());
+        assertEquals("[Row[values=[1001]]]", dc.executeQuery(q).toRows().toString());
+
+        // modifications of the collection itself require the indexes to be
+        // refreshed
+        collection.add(new FoobarBean("5", 1006, true));
+        dc.refreshIndexes("bar");
+        q = dc.query().from("bar").select("col2").where("col1").eq("5").toQuery();
+        assertEquals("[Row[values=[1006]]]", dc.executeQuery(q).toRows().toString());
+    }
+
+    public void testIndexedDeleteWithMaps() throws Exception {
+        final SimpleTableDef tableDef = new SimpleTableDef("bar", new String[] { "col1", "col2", "col3" },
+                new ColumnType[] { ColumnType.VARCHAR, ColumnType.INTEGER, ColumnType.BOOLEAN });
+        final List<Map<String, ?>> maps = new ArrayList<Map<String, ?>>();
+        maps.add(createMap("2", 1000, true));
+        maps.add(createMap("1", 1001, false));
+        maps.add(createMap("1", 1002, true));
+        maps.add(createMap("2", 1000, true));
+        final PojoDataContext dc = new PojoDataContext("foo", new MapTableDataProvider(tableDef, maps));
+        dc.createIndex("bar", "col1");
+        final Table table = dc.getDefaultSchema().getTableByName("bar");
+
+        dc.executeUpdate(new UpdateScript() {
+            @Override
+            public void run(UpdateCallback callback) {
+                callback.deleteFrom(table).where("col1").eq("1").where("col3").eq(true).execute();
+                callback.deleteFrom(table).where("col1").eq("2").execute();
+            }
+        });
+
+        assertEquals(1, maps.size());
+        final Query q = dc.query().from("bar").select("col2").where("col1").in("1", "2").toQuery();
+        assertEquals(1, dc.getIndexedRecords(table, q.getWhereClause().getItems()).size());
+        assertEquals("[Row[values=[1001]]]", dc.executeQuery(q).toRows().toString());
+    }
+
     private void runScenario(TableDataProvider<?> tableDataProvider) {
         final PojoDataContext dc = new PojoDataContext("foo", tableDataProvider);
 